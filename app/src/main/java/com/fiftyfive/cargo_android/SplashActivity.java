@@ -3,11 +3,15 @@ package com.fiftyfive.cargo_android;
 import android.content.Intent;
 import android.os.Bundle;
 import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
 
 import com.fiftyfive.cargo.Cargo;
-import com.fiftyfive.cargo.CargoInterface;
+import com.fiftyfive.cargo.CargoLog;
 import com.google.firebase.analytics.FirebaseAnalytics;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
 
 /**
  * Created by Julien Gil on 06/12/2016.
@@ -16,6 +20,17 @@ public class SplashActivity extends AppCompatActivity {
 
     FirebaseAnalytics mFirebaseAnalytics;
 
+    /** The maximum time the splash screen waits for the handlers to be initialized */
+    private static final long READY_TIMEOUT_MS = 3000;
+
+    /** Runs the listeners of Cargo on the UI thread */
+    private final Executor uiExecutor = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runOnUiThread(runnable);
+        }
+    };
+
     Cargo.Handler[] handlerArray = new Cargo.Handler[]{
             Cargo.Handler.AT,
             Cargo.Handler.FB,
@@ -29,15 +44,37 @@ public class SplashActivity extends AppCompatActivity {
         // initialize the Firebase tracker
         mFirebaseAnalytics = FirebaseAnalytics.getInstance(this);
 
+        // show all the logs of Cargo while debugging, only warnings and errors are shown by default
+        if (BuildConfig.DEBUG) {
+            CargoLog.setLevel(Log.VERBOSE);
+        }
+
         // initialize Cargo with the context and the GTM container
         // which has been received in the SplashActivity
         Cargo.init(this.getApplication());
+        // both are disabled by default, as they drop events. Uncomment to drop the events fired
+        // twice within half a second, e.g. on a double tap, and to only keep the scroll events
+        // of 5% of the users
+        // Cargo.getInstance().setDeduplicationWindow(500, TimeUnit.MILLISECONDS);
+        // Cargo.getInstance().setSamplingRules("ADB_tagEvent:scroll=5%");
 
-        // Register several handlers at a time with an array of Handler enum.
-        Cargo.getInstance().registerHandlers(handlerArray);
         // Register a single handler with a Handler enum
         Cargo.getInstance().registerHandler(Cargo.Handler.TUN);
+        // Register several handlers at a time with an array of Handler enum. They are
+        // initialized in parallel on background threads, without blocking the main thread.
+        Cargo.getInstance().registerHandlers(handlerArray).addListener(new Runnable() {
+            @Override
+            public void run() {
+                startTracking();
+            }
+        }, uiExecutor);
+    }
 
+    /**
+     * Called once the handlers are registered, fires the event initializing them and waits
+     * for them to be ready before showing the main activity.
+     */
+    private void startTracking() {
         // Launch an event to trigger the initialization method of the handlers,
         // with the required parameters. This is configured in the GTM container.
         Bundle appStartBundle = new Bundle();
@@ -45,15 +82,15 @@ public class SplashActivity extends AppCompatActivity {
         appStartBundle.putBoolean("enableDebug", true);
         mFirebaseAnalytics.logEvent("applicationStart", appStartBundle);
 
-        // register to the callback which is triggered when the all the handlers have been
-        // correctly initialized in order not to miss tracking.
-        Cargo.getInstance().trackingReady = new CargoInterface() {
+        // wait for all the handlers to be correctly initialized in order not to miss tracking,
+        // but no longer than READY_TIMEOUT_MS so that a SDK failing to start doesn't block the app.
+        Cargo.getInstance().whenAllReady().addListener(new Runnable() {
             @Override
-            public void isReady() {
+            public void run() {
                 Intent intent = new Intent(SplashActivity.this, MainActivity.class);
                 startActivity(intent);
                 finish(); // prevent to come back to the splashScreen
             }
-        };
+        }, uiExecutor, READY_TIMEOUT_MS, TimeUnit.MILLISECONDS);
     }
 }
\ No newline at end of file
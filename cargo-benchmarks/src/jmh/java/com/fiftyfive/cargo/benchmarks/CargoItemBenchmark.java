@@ -0,0 +1,79 @@
+package com.fiftyfive.cargo.benchmarks;
+
+import com.fiftyfive.cargo.CargoItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Measures the per event work done on the items of a cart: their conversion into the SDK items,
+ * which mirrors TuneHandler.buildItem(), and their formatting with CargoItem.toString(),
+ * used by the handlers to log the items they send.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CargoItemBenchmark {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The number of items in the cart */
+    @Param({"1", "10", "100", "1000"})
+    public int items;
+
+    /** The items attached to the event */
+    private ArrayList<CargoItem> cart;
+
+
+/* ******************************************* Setup ******************************************** */
+
+    /**
+     * Builds the cart.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        cart = DispatchBenchmark.buildItems(items);
+    }
+
+
+/* ***************************************** Benchmarks ***************************************** */
+
+    /**
+     * Converts the cart into the SDK items.
+     *
+     * @return the SDK items, consumed by JMH
+     */
+    @Benchmark
+    public List<StubSdk.StubItem> buildItems() {
+        return StubSdk.buildItems(cart);
+    }
+
+    /**
+     * Formats each item of the cart.
+     *
+     * @param blackhole consumes the descriptions
+     */
+    @Benchmark
+    public void itemsToString(Blackhole blackhole) {
+        for (CargoItem item : cart) {
+            blackhole.consume(item.toString());
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -0,0 +1,184 @@
+package com.fiftyfive.cargo.benchmarks;
+
+import android.app.Application;
+
+import com.fiftyfive.cargo.Cargo;
+import com.fiftyfive.cargo.CargoItem;
+import com.fiftyfive.cargo.Tags;
+import com.fiftyfive.cargo.models.Event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Measures the whole path of a tag, from Tags.execute() to the third part SDK call:
+ * parameters copy, routing, ModelsUtils accessors and CargoItem conversion.
+ * The same event is sent to 'handlers' StubHandlers through a multicast handlerMethod,
+ * and direct() gives the cost of the SDK calls alone, as a baseline.
+ *
+ * Run with the gc profiler (the default of this module) to get the bytes allocated per event,
+ * the SampleTime mode reports the latency percentiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DispatchBenchmark {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The number of handlers the event is sent to */
+    @Param({"1", "4", "8"})
+    public int handlers;
+
+    /** The number of parameters of the event, including its name and revenue */
+    @Param({"2", "8", "32"})
+    public int params;
+
+    /** The number of items attached to the event */
+    @Param({"0", "10", "100"})
+    public int items;
+
+    /** The GTM entry point */
+    private final Tags tags = new Tags();
+    /** The map received from the container */
+    private Map<String, Object> map;
+    /** The items attached to each event, null if there is none */
+    private ArrayList<CargoItem> itemsList;
+    /** The keys of the extra parameters set by direct(), built once so that it measures the SDK
+        calls alone */
+    private String[] keys;
+    /** The values of the extra parameters set by direct() */
+    private Object[] values;
+
+
+/* ******************************************* Setup ******************************************** */
+
+    /**
+     * Initializes Cargo and the stub handlers, then builds the event.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Cargo.init(new Application());
+        Cargo cargo = Cargo.getInstance();
+        for (String key : StubHandlerFactory.KEYS) {
+            if (cargo.getHandler(key) == null) {
+                cargo.registerHandler(key);
+                Map<String, Object> init = new HashMap<String, Object>();
+                init.put("handlerMethod", key + "_init");
+                tags.execute(init);
+            }
+        }
+
+        StringBuilder handlerMethod = new StringBuilder();
+        for (int i = 0; i < handlers; i++) {
+            if (i > 0) {
+                handlerMethod.append(',');
+            }
+            handlerMethod.append(StubHandlerFactory.KEYS[i]).append("_tagEvent");
+        }
+        map = buildEvent(handlerMethod.toString(), params);
+        itemsList = buildItems(items);
+
+        keys = new String[params];
+        values = new Object[params];
+        for (int i = 2; i < params; i++) {
+            keys[i] = "param" + i;
+            values[i] = map.get(keys[i]);
+        }
+    }
+
+    /**
+     * Builds the parameters of an event, alternating string and number values.
+     *
+     * @param handlerMethod the handler methods the event is sent to
+     * @param count         the number of parameters, including the name and revenue
+     * @return the map as the container would send it
+     */
+    static Map<String, Object> buildEvent(String handlerMethod, int count) {
+        Map<String, Object> event = new HashMap<String, Object>();
+        event.put("handlerMethod", handlerMethod);
+        event.put(Event.EVENT_NAME, "purchase");
+        event.put(StubHandler.EVENT_REVENUE, "42.5");
+        for (int i = 2; i < count; i++) {
+            event.put("param" + i, (i & 1) == 0 ? "value" + i : Integer.valueOf(i));
+        }
+        return event;
+    }
+
+    /**
+     * Builds a list of items with all their attributes set, as a large e-commerce cart would be.
+     *
+     * @param count the number of items
+     * @return the items, or null if count is 0
+     */
+    static ArrayList<CargoItem> buildItems(int count) {
+        if (count == 0) {
+            return null;
+        }
+        ArrayList<CargoItem> list = new ArrayList<CargoItem>(count);
+        for (int i = 0; i < count; i++) {
+            CargoItem item = new CargoItem("item" + i, 9.99, i + 1);
+            item.setId("sku" + i);
+            item.setBrand("brand");
+            item.setCategory("category");
+            item.setVariant("variant");
+            item.setPosition(i);
+            item.setAttribute1("attribute1");
+            item.setAttribute2("attribute2");
+            item.setAttribute3("attribute3");
+            item.setAttribute4("attribute4");
+            item.setAttribute5("attribute5");
+            list.add(item);
+        }
+        return list;
+    }
+
+
+/* ***************************************** Benchmarks ***************************************** */
+
+    /**
+     * Fires the tag through Cargo, as the GTM container does.
+     */
+    @Benchmark
+    public void cargo() {
+        CargoItem.setItemsList(itemsList);
+        tags.execute(map);
+    }
+
+    /**
+     * Sends the same event straight to the SDK, once per handler.
+     *
+     * @return the last event, consumed by JMH
+     */
+    @Benchmark
+    public Object direct() {
+        StubSdk.StubEvent event = null;
+        for (int i = 0; i < handlers; i++) {
+            event = new StubSdk.StubEvent("purchase");
+            event.revenue = 42.5;
+            for (int j = 2; j < params; j++) {
+                event.attributes.put(keys[j], values[j]);
+            }
+            event.items = StubSdk.buildItems(itemsList);
+            StubSdk.measureEvent(event);
+        }
+        return event;
+    }
+
+/* ********************************************************************************************** */
+
+}
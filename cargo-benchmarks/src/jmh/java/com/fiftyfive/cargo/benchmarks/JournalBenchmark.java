@@ -0,0 +1,111 @@
+package com.fiftyfive.cargo.benchmarks;
+
+import android.app.Application;
+
+import com.fiftyfive.cargo.Cargo;
+import com.fiftyfive.cargo.Tags;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Measures the cost of the journal on the path of a tag: each event is written to the memory
+ * mapped segment when it is routed, and acknowledged once the StubHandler has been called.
+ * Compare the 'journal' values to get the cost per event, segment rotations included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JournalBenchmark {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** Whether the journal is enabled */
+    @Param({"false", "true"})
+    public boolean journal;
+
+    /** The number of parameters of the event, including its name and revenue */
+    @Param({"2", "8", "32"})
+    public int params;
+
+    /** The GTM entry point */
+    private final Tags tags = new Tags();
+    /** The map received from the container */
+    private Map<String, Object> map;
+    /** The directory of the journal */
+    private File directory;
+
+
+/* ******************************************* Setup ******************************************** */
+
+    /**
+     * Initializes Cargo and a stub handler, enables the journal if needed and builds the event.
+     *
+     * @throws IOException if the directory of the journal can't be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Cargo.init(new Application());
+        Cargo cargo = Cargo.getInstance();
+        String key = StubHandlerFactory.KEYS[0];
+        if (cargo.getHandler(key) == null) {
+            cargo.registerHandler(key);
+            Map<String, Object> init = new HashMap<String, Object>();
+            init.put("handlerMethod", key + "_init");
+            tags.execute(init);
+        }
+        if (journal) {
+            directory = File.createTempFile("cargo-journal", "");
+            if (!directory.delete()) {
+                throw new IOException("Unable to replace " + directory);
+            }
+            cargo.enableJournal(directory);
+        }
+        map = DispatchBenchmark.buildEvent(key + "_tagEvent", params);
+    }
+
+    /**
+     * Disables the journal and deletes its segments.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Cargo.getInstance().disableJournal();
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            for (File file : files != null ? files : new File[0]) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+
+/* ***************************************** Benchmarks ***************************************** */
+
+    /**
+     * Fires the tag through Cargo, as the GTM container does.
+     */
+    @Benchmark
+    public void execute() {
+        tags.execute(map);
+    }
+
+/* ********************************************************************************************** */
+
+}
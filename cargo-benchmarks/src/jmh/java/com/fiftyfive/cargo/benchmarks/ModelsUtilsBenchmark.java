@@ -0,0 +1,133 @@
+package com.fiftyfive.cargo.benchmarks;
+
+import com.fiftyfive.cargo.ModelsUtils;
+import com.fiftyfive.cargo.ParamBag;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Measures each ModelsUtils accessor, which handlers call several times per event,
+ * over the types a parameter is received with:
+ *  * string  : the value as a text, e.g. "42.5" or "2018-03-02T14:13:20Z"
+ *  * number  : the value as a boxed number, e.g. 42.5 or a timestamp in milliseconds
+ *  * native  : the type the accessor returns (Date, Map, List...)
+ *  * missing : no value for this key
+ * Handlers receive a ParamBag from Cargo, the HashMap container is kept for handlers
+ * called directly with the map of the container.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ModelsUtilsBenchmark {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The type of the values */
+    @Param({"string", "number", "native", "missing"})
+    public String input;
+
+    /** The map holding the values */
+    @Param({"bag", "hashMap"})
+    public String container;
+
+    /** The parameter read by each accessor */
+    private static final String STRING = "eventName";
+    private static final String DOUBLE = "eventRevenue";
+    private static final String LONG = "userId";
+    private static final String DATE = "eventDate";
+    private static final String MAP = "eventProperties";
+    private static final String LIST = "eventItems";
+
+    /** The parameters of the event */
+    private Map<String, Object> params;
+
+
+/* ******************************************* Setup ******************************************** */
+
+    /**
+     * Fills the parameters with values of the benchmarked type.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> map = new HashMap<String, Object>();
+        if ("string".equals(input)) {
+            map.put(STRING, "purchase");
+            map.put(DOUBLE, "42.5");
+            map.put(LONG, "1520000000");
+            map.put(DATE, "2018-03-02T14:13:20Z");
+            map.put(MAP, "{}");
+            map.put(LIST, "[]");
+        }
+        else if ("number".equals(input)) {
+            map.put(STRING, 42);
+            map.put(DOUBLE, 42.5);
+            map.put(LONG, 1520000000L);
+            map.put(DATE, 1520000000000L);
+            map.put(MAP, 42);
+            map.put(LIST, 42);
+        }
+        else if ("native".equals(input)) {
+            map.put(STRING, "purchase");
+            map.put(DOUBLE, 42.5);
+            map.put(LONG, 1520000000L);
+            map.put(DATE, new Date(1520000000000L));
+            map.put(MAP, Collections.<String, Object>singletonMap("key", "value"));
+            map.put(LIST, Arrays.asList("item1", "item2"));
+        }
+        params = "bag".equals(container) ? new ParamBag(map) : map;
+    }
+
+
+/* ***************************************** Benchmarks ***************************************** */
+
+    @Benchmark
+    public String getString() {
+        return ModelsUtils.getString(params, STRING);
+    }
+
+    @Benchmark
+    public double getDouble() {
+        return ModelsUtils.getDouble(params, DOUBLE, -1);
+    }
+
+    @Benchmark
+    public long getLong() {
+        return ModelsUtils.getLong(params, LONG, -1);
+    }
+
+    @Benchmark
+    public Date getDate() {
+        return ModelsUtils.getDate(params, DATE);
+    }
+
+    @Benchmark
+    public Map<String, Object> getMap() {
+        return ModelsUtils.getMap(params, MAP);
+    }
+
+    @Benchmark
+    public List getList() {
+        return ModelsUtils.getList(params, LIST);
+    }
+
+/* ********************************************************************************************** */
+
+}
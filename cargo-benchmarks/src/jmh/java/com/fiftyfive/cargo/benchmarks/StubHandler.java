@@ -0,0 +1,114 @@
+package com.fiftyfive.cargo.benchmarks;
+
+import android.app.Activity;
+
+import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.CargoItem;
+import com.fiftyfive.cargo.TagMethod;
+import com.fiftyfive.cargo.models.Event;
+
+import java.util.Map;
+
+import static com.fiftyfive.cargo.ModelsUtils.getDouble;
+import static com.fiftyfive.cargo.ModelsUtils.getString;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * A handler forwarding its events to the StubSdk, shaped like the TuneHandler:
+ * it reads its parameters through ModelsUtils, removes them from the map and converts
+ * the attached items, so that the benchmarks measure the same work as a real handler.
+ */
+public class StubHandler extends AbstractTagHandler {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The key of the handler, H0 to H7 */
+    private final String handlerKey;
+
+    /** The parameter holding the revenue of an event */
+    static final String EVENT_REVENUE = "eventRevenue";
+
+
+/* ************************************ Handler core methods ************************************ */
+
+    /**
+     * Creates the handler and registers its methods.
+     *
+     * @param handlerKey the key of the handler
+     */
+    StubHandler(String handlerKey) {
+        this.handlerKey = handlerKey;
+
+        registerInitMethod(handlerKey + "_init", new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                setInitialized(true);
+            }
+        });
+        registerMethod(handlerKey + "_tagEvent", new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                tagEvent(params);
+            }
+        });
+    }
+
+    /**
+     * Called by the TagHandlerManager, initialize the core of the handler
+     */
+    @Override
+    public void initialize() {
+        super.initialize(handlerKey, "Stub " + handlerKey);
+        validate(true);
+    }
+
+
+/* ****************************************** Tracking ****************************************** */
+
+    /**
+     * Sends an event to the StubSdk, with its revenue, its remaining parameters and its items.
+     *
+     * @param map the parameters of the event
+     */
+    private void tagEvent(Map<String, Object> map) {
+        String eventName = getString(map, Event.EVENT_NAME);
+        if (eventName == null) {
+            logMissingParam(new String[]{Event.EVENT_NAME}, handlerKey + "_tagEvent");
+            return;
+        }
+        map.remove(Event.EVENT_NAME);
+
+        StubSdk.StubEvent event = new StubSdk.StubEvent(eventName);
+        double revenue = getDouble(map, EVENT_REVENUE, -1);
+        if (revenue != -1) {
+            event.revenue = revenue;
+            map.remove(EVENT_REVENUE);
+        }
+        event.attributes.putAll(map);
+        event.items = StubSdk.buildItems(CargoItem.getItemsList());
+        StubSdk.measureEvent(event);
+    }
+
+
+/* ********************************** Activity lifecycle methods ******************************** */
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -0,0 +1,59 @@
+package com.fiftyfive.cargo.benchmarks;
+
+import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.HandlerFactory;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Creates the StubHandlers, one factory per key as ServiceLoader instantiates each
+ * implementation declared in META-INF/services through its no-arg constructor.
+ */
+public abstract class StubHandlerFactory implements HandlerFactory {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The keys of the stub handlers, in the order of their factories */
+    public static final String[] KEYS = {"H0", "H1", "H2", "H3", "H4", "H5", "H6", "H7"};
+
+    /** The key of the handler created by this factory */
+    private final String key;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * @param key the key of the handler created by this factory
+     */
+    StubHandlerFactory(String key) {
+        this.key = key;
+    }
+
+
+/* ****************************************** Factory ******************************************* */
+
+    @Override
+    public String getKey() {
+        return key;
+    }
+
+    @Override
+    public AbstractTagHandler create() {
+        return new StubHandler(key);
+    }
+
+
+/* ***************************************** Factories ****************************************** */
+
+    public static final class H0 extends StubHandlerFactory { public H0() { super("H0"); } }
+    public static final class H1 extends StubHandlerFactory { public H1() { super("H1"); } }
+    public static final class H2 extends StubHandlerFactory { public H2() { super("H2"); } }
+    public static final class H3 extends StubHandlerFactory { public H3() { super("H3"); } }
+    public static final class H4 extends StubHandlerFactory { public H4() { super("H4"); } }
+    public static final class H5 extends StubHandlerFactory { public H5() { super("H5"); } }
+    public static final class H6 extends StubHandlerFactory { public H6() { super("H6"); } }
+    public static final class H7 extends StubHandlerFactory { public H7() { super("H7"); } }
+
+/* ********************************************************************************************** */
+
+}
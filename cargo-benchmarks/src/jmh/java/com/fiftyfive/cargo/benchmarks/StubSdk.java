@@ -0,0 +1,121 @@
+package com.fiftyfive.cargo.benchmarks;
+
+import com.fiftyfive.cargo.CargoItem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Stands for a third part SDK in the benchmarks. It builds its own event and item objects,
+ * as the real SDKs do, and publishes the last event in a volatile field so that the JIT
+ * can't eliminate the work done by the handlers.
+ */
+public final class StubSdk {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The last event measured, read by nobody but keeps the events reachable */
+    static volatile StubEvent lastEvent;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    private StubSdk() {
+    }
+
+
+/* ****************************************** Tracking ****************************************** */
+
+    /**
+     * Measures an event, the equivalent of Tune.measureEvent().
+     *
+     * @param event the event to send
+     */
+    static void measureEvent(StubEvent event) {
+        lastEvent = event;
+    }
+
+    /**
+     * Converts the items attached to an event into the SDK items, as TuneHandler.buildItem() does.
+     *
+     * @param items the items attached to the event, may be null
+     * @return the SDK items, or null if there is none
+     */
+    static List<StubItem> buildItems(List<CargoItem> items) {
+        if (items == null) {
+            return null;
+        }
+        ArrayList<StubItem> sdkItems = new ArrayList<StubItem>(items.size());
+        for (CargoItem item : items) {
+            sdkItems.add(buildItem(item));
+        }
+        return sdkItems;
+    }
+
+    /**
+     * Converts a CargoItem into a SDK item, copying the same fields than TuneHandler.buildItem().
+     *
+     * @param item the item to convert
+     * @return the SDK item
+     */
+    static StubItem buildItem(CargoItem item) {
+        StubItem sdkItem = new StubItem(item.getName());
+        sdkItem.unitPrice = item.getUnitPrice();
+        sdkItem.quantity = item.getQuantity();
+        sdkItem.revenue = item.getRevenue();
+        sdkItem.attribute1 = item.getAttribute1();
+        sdkItem.attribute2 = item.getAttribute2();
+        sdkItem.attribute3 = item.getAttribute3();
+        sdkItem.attribute4 = item.getAttribute4();
+        sdkItem.attribute5 = item.getAttribute5();
+        return sdkItem;
+    }
+
+
+/* ******************************************* Models ******************************************* */
+
+    /**
+     * The event object of the stub SDK.
+     */
+    static final class StubEvent {
+        /** The name of the event */
+        final String name;
+        /** The revenue of the event, -1 if not set */
+        double revenue = -1;
+        /** The other parameters of the event */
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        /** The items of the event, may be null */
+        List<StubItem> items;
+
+        StubEvent(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * The item object of the stub SDK.
+     */
+    static final class StubItem {
+        /** The name of the item */
+        final String name;
+        /** The price of one unit */
+        double unitPrice;
+        /** The number of units */
+        int quantity;
+        /** The total revenue of the item */
+        double revenue;
+        /** The custom attributes of the item */
+        String attribute1, attribute2, attribute3, attribute4, attribute5;
+
+        StubItem(String name) {
+            this.name = name;
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
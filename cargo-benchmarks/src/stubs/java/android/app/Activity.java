@@ -0,0 +1,9 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ */
+public class Activity extends Context {
+}
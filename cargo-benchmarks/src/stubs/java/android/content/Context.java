@@ -0,0 +1,19 @@
+package android.content;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ */
+public class Context {
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public android.content.res.AssetManager getAssets() {
+        return null;
+    }
+
+    public java.io.File getFilesDir() {
+        return new java.io.File(System.getProperty("java.io.tmpdir"));
+    }
+}
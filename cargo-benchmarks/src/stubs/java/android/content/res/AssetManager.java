@@ -0,0 +1,14 @@
+package android.content.res;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ */
+public class AssetManager {
+
+    public InputStream open(String fileName) throws IOException {
+        throw new IOException(fileName);
+    }
+}
@@ -0,0 +1,10 @@
+package android.location;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ */
+public class Location {
+
+    public Location(String provider) {
+    }
+}
@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ */
+public class Bundle {
+}
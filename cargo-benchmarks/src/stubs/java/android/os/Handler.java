@@ -0,0 +1,16 @@
+package android.os;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ * The tasks posted to it are run right away.
+ */
+public class Handler {
+
+    public Handler(Looper looper) {
+    }
+
+    public boolean post(Runnable runnable) {
+        runnable.run();
+        return true;
+    }
+}
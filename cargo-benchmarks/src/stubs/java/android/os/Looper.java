@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ */
+public final class Looper {
+
+    public static Looper getMainLooper() {
+        return null;
+    }
+}
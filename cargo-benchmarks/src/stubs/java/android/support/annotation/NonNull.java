@@ -0,0 +1,7 @@
+package android.support.annotation;
+
+/**
+ * Stub of the support annotation, only used to compile Cargo for the JVM benchmarks.
+ */
+public @interface NonNull {
+}
@@ -0,0 +1,27 @@
+package android.util;
+
+/**
+ * Stub of the Android class, only used to compile Cargo for the JVM benchmarks.
+ * Logs are dropped, as they would be filtered out in a release build.
+ */
+public final class Log {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    public static int v(String tag, String msg) { return 0; }
+    public static int d(String tag, String msg) { return 0; }
+    public static int i(String tag, String msg) { return 0; }
+    public static int w(String tag, String msg) { return 0; }
+    public static int w(String tag, String msg, Throwable tr) { return 0; }
+    public static int e(String tag, String msg) { return 0; }
+    public static int e(String tag, String msg, Throwable tr) { return 0; }
+
+    public static boolean isLoggable(String tag, int level) {
+        return false;
+    }
+}
@@ -0,0 +1,11 @@
+package com.google.android.gms.tagmanager;
+
+import java.util.Map;
+
+/**
+ * Stub of the GTM interface, only used to compile Cargo for the JVM benchmarks.
+ */
+public interface CustomTagProvider {
+
+    void execute(Map<String, Object> map);
+}
@@ -6,12 +6,12 @@ import android.app.Application;
 import android.content.ComponentName;
 import android.content.Context;
 import android.location.Location;
-import android.util.Log;
 
 import com.fiftyfive.cargo.AbstractTagHandler;
 import com.adobe.mobile.*;
 import com.fiftyfive.cargo.Cargo;
 import com.fiftyfive.cargo.CargoLocation;
+import com.fiftyfive.cargo.TagMethod;
 import com.fiftyfive.cargo.models.Event;
 import com.fiftyfive.cargo.models.Screen;
 
@@ -60,107 +60,151 @@ public class AdobeHandler extends AbstractTagHandler {
 
 /* ************************************ Handler core methods ************************************ */
 
+    /**
+     * Declares the methods of the handler which can be called through the GTM container,
+     * with the function tag they are called with.
+     */
+    public AdobeHandler() {
+        registerInitMethod(ADB_INIT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                init(params);
+            }
+        });
+        registerMethod(ADB_TAG_EVENT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                tagEvent(params);
+            }
+        });
+        registerMethod(ADB_TAG_SCREEN, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                tagScreen(params);
+            }
+        });
+        registerMethod(ADB_SET_PRIVACY, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                setPrivacy(params);
+            }
+        });
+        registerMethod(ADB_TRACK_LOCATION, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                trackLocation(params);
+            }
+        });
+        registerMethod(ADB_TRACK_TIME_START, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                trackTimeStart(params);
+            }
+        });
+        registerMethod(ADB_TRACK_TIME_END, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                trackTimeEnd(params);
+            }
+        });
+        registerMethod(ADB_TRACK_TIME_UPDATE, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                trackTimeUpdate(params);
+            }
+        });
+        registerMethod(ADB_INCREASE_LIFETIME_VALUE, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                increaseVisitorLifetimeValue(params);
+            }
+        });
+        registerMethod(ADB_SEND_QUEUE_HITS, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                sendQueueHits();
+            }
+        });
+        registerMethod(ADB_CLEAR_QUEUE, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                clearQueue();
+            }
+        });
+    }
+
     /**
      * Called by the TagHandlerManager, initialize the core of the handler
      */
     @Override
     public void initialize() {
         super.initialize("ADB", "Adobe Analytics");
-        Config.setContext(Cargo.getInstance().getAppContext());
+        callSdk("Config.setContext", new Runnable() {
+            @Override
+            public void run() {
+                Config.setContext(Cargo.getInstance().getAppContext());
+            }
+        });
         validate(true);
     }
 
     /**
-     * A callback method for the registered callbacks method name mentioned in the register method.
+     * The SDK expects Config.setContext() to be called on the main thread.
      *
-     * @param s     The method name called through the container (defined in the GTM interface)
-     * @param map   A map key-object used as a way to give parameters to the class method aimed here
+     * @return true
      */
     @Override
-    public void execute(String s, Map<String, Object> map) {
-        logReceivedFunction(s, map);
-
-        if (ADB_INIT.equals(s)) {
-            init(map);
-        }
-        else if (isInitialized()) {
-            switch (s) {
-                case ADB_TAG_EVENT:
-                    tagEvent(map);
-                    break;
-                case ADB_TAG_SCREEN:
-                    tagScreen(map);
-                    break;
-                case ADB_SET_PRIVACY:
-                    setPrivacy(map);
-                    break;
-                case ADB_TRACK_LOCATION:
-                    trackLocation(map);
-                    break;
-                case ADB_TRACK_TIME_START:
-                    trackTimeStart(map);
-                    break;
-                case ADB_TRACK_TIME_END:
-                    trackTimeEnd(map);
-                    break;
-                case ADB_TRACK_TIME_UPDATE:
-                    trackTimeUpdate(map);
-                    break;
-                case ADB_INCREASE_LIFETIME_VALUE:
-                    increaseVisitorLifetimeValue(map);
-                    break;
-                case ADB_SEND_QUEUE_HITS:
-                    sendQueueHits();
-                    break;
-                case ADB_CLEAR_QUEUE:
-                    clearQueue();
-                    break;
-                default:
-                    logUnknownFunction(s);
-            }
-        }
-        else {
-            logUninitializedFramework();
-        }
+    protected boolean initializesOnMainThread() {
+        return true;
     }
 
 /* ************************************* SDK initialization ************************************* */
 
 private void init(Map<String, Object> params){
     String overrideConfigPath = "overrideConfigPath";
-    Boolean debug = getBoolean(params, "enableDebug", false);
+    final Boolean debug = getBoolean(params, "enableDebug", false);
     String configPath = getString(params, overrideConfigPath);
 
-    this.initialized = true;
-    Config.setDebugLogging(debug);
+    callSdk("Config.setDebugLogging", new Runnable() {
+        @Override
+        public void run() {
+            Config.setDebugLogging(debug);
+        }
+    });
     if (configPath != null) {
         if (this.needOverrideConfigPath) {
             try {
-                InputStream configInput = Cargo.getInstance().getAppContext().getAssets().open(configPath + ".json");
-                Config.overrideConfigStream(configInput);
+                final InputStream configInput = Cargo.getInstance().openAsset(configPath + ".json");
+                callSdk("Config.overrideConfigStream", new Runnable() {
+                    @Override
+                    public void run() {
+                        Config.overrideConfigStream(configInput);
+                    }
+                });
                 this.needOverrideConfigPath = false;
                 this.onActivityResumed(latestActivity);
                 logParamSetWithSuccess(overrideConfigPath, configPath+".json");
                 setInitialized(true);
             } catch (IOException ex) {
-                Log.e(this.key, "overrideConfigPath failed: " + ex);
+                log().e("overrideConfigPath failed: {}", ex.toString());
                 setInitialized(false);
             }
         }
         else {
             setInitialized(true);
-            Log.w(this.key,
-                    "overrideConfigPath failed since the default config file has been used already (ADBMobileConfig.json). " +
+            log().w("overrideConfigPath failed since the default config file has been used already (ADBMobileConfig.json). " +
                             "In order to use another config file, delete the default one in the assets folder.");
         }
     }
     else if (this.needOverrideConfigPath) {
         setInitialized(false);
-        Log.w(this.key,
-                "Unable to find the default config file (ADBMobileConfig.json) and no other file has been provided." +
+        log().w("Unable to find the default config file (ADBMobileConfig.json) and no other file has been provided." +
                         "Either provide ADBMobileConfig.json or setup a replacement file name in the GTM container." +
                         "The config file has to be saved in the assets folder of your app.");
     }
+    else {
+        setInitialized(true);
+    }
 }
 
 
@@ -178,12 +222,18 @@ private void init(Map<String, Object> params){
      *                    as the event parameters
      */
     private void tagEvent(Map<String, Object> params) {
-        String eventName = getString(params, Event.EVENT_NAME);
+        final String eventName = getString(params, Event.EVENT_NAME);
 
         if (eventName != null) {
             params.remove(Event.EVENT_NAME);
-            HashMap<String, Object> contextData = params.size() > 0 ? new HashMap<>(params) : null;
-            Analytics.trackAction(eventName, contextData);
+            final HashMap<String, Object> contextData =
+                    params.size() > 0 ? new HashMap<>(params) : null;
+            callSdk("Analytics.trackAction", new Runnable() {
+                @Override
+                public void run() {
+                    Analytics.trackAction(eventName, contextData);
+                }
+            });
             logParamSetWithSuccess(Event.EVENT_NAME, eventName);
             if (contextData != null) {
                 logParamSetWithSuccess("eventParameters", contextData);
@@ -205,12 +255,18 @@ private void init(Map<String, Object> params){
      *                    as the screen parameters
      */
     private void tagScreen(Map<String, Object> params) {
-        String screenName = getString(params, Screen.SCREEN_NAME);
+        final String screenName = getString(params, Screen.SCREEN_NAME);
 
         if (screenName != null) {
             params.remove(Screen.SCREEN_NAME);
-            HashMap<String, Object> contextData = params.size() > 0 ? new HashMap<>(params) : null;
-            Analytics.trackState(screenName, contextData);
+            final HashMap<String, Object> contextData =
+                    params.size() > 0 ? new HashMap<>(params) : null;
+            callSdk("Analytics.trackState", new Runnable() {
+                @Override
+                public void run() {
+                    Analytics.trackState(screenName, contextData);
+                }
+            });
             logParamSetWithSuccess(Screen.SCREEN_NAME, screenName);
             if (contextData != null) {
                 logParamSetWithSuccess("screenParameters", contextData);
@@ -231,10 +287,16 @@ private void init(Map<String, Object> params){
     private void trackLocation(Map<String, Object> params) {
 
         if (CargoLocation.locationIsSet()) {
-            Location currentLocation = CargoLocation.getLocation();
-            HashMap<String, Object> contextData = params.size() > 0 ? new HashMap<>(params) : null;
+            final Location currentLocation = CargoLocation.getLocation();
+            final HashMap<String, Object> contextData =
+                    params.size() > 0 ? new HashMap<>(params) : null;
 
-            Analytics.trackLocation(currentLocation, contextData);
+            callSdk("Analytics.trackLocation", new Runnable() {
+                @Override
+                public void run() {
+                    Analytics.trackLocation(currentLocation, contextData);
+                }
+            });
             logParamSetWithSuccess("location", currentLocation);
             if (contextData != null) {
                 logParamSetWithSuccess(ADB_TRACK_LOCATION, contextData);
@@ -259,12 +321,18 @@ private void init(Map<String, Object> params){
      *                    as the timed action parameters
      */
     private void trackTimeStart(Map<String, Object> params) {
-        String actionName = getString(params, ACTION_NAME);
+        final String actionName = getString(params, ACTION_NAME);
 
         if (actionName != null) {
             params.remove(ACTION_NAME);
-            HashMap<String, Object> contextData = params.size() > 0 ? new HashMap<>(params) : null;
-            Analytics.trackTimedActionStart(actionName, contextData);
+            final HashMap<String, Object> contextData =
+                    params.size() > 0 ? new HashMap<>(params) : null;
+            callSdk("Analytics.trackTimedActionStart", new Runnable() {
+                @Override
+                public void run() {
+                    Analytics.trackTimedActionStart(actionName, contextData);
+                }
+            });
             logParamSetWithSuccess(ACTION_NAME, actionName);
             if (contextData != null) {
                 logParamSetWithSuccess(ADB_TRACK_TIME_START, contextData);
@@ -297,17 +365,24 @@ private void init(Map<String, Object> params){
             params.remove("successfulAction");
             final HashMap<String, Object> cData = new HashMap<>(params);
 
-            Analytics.trackTimedActionEnd(actionName, new Analytics.TimedActionBlock<Boolean>() {
+            callSdk("Analytics.trackTimedActionEnd", new Runnable() {
                 @Override
-                public Boolean call(long inAppDuration, long totalDuration, Map<String, Object> contextData) {
-                    contextData.putAll(cData);
-                    String message = sendHit ? "have been" : "haven't been";
-                    Log.v(AdobeHandler.super.key+"_handler", actionName+" trackTimeEnd hit "+message+" sent");
-                    logParamSetWithSuccess(ACTION_NAME, actionName);
-                    if (cData.size() > 0) {
-                        logParamSetWithSuccess(ADB_TRACK_TIME_END, cData);
-                    }
-                    return sendHit; // return true to send the hit, false to cancel
+                public void run() {
+                    Analytics.trackTimedActionEnd(actionName,
+                            new Analytics.TimedActionBlock<Boolean>() {
+                        @Override
+                        public Boolean call(long inAppDuration, long totalDuration,
+                                            Map<String, Object> contextData) {
+                            contextData.putAll(cData);
+                            String message = sendHit ? "have been" : "haven't been";
+                            log().v("{} trackTimeEnd hit {} sent", actionName, message);
+                            logParamSetWithSuccess(ACTION_NAME, actionName);
+                            if (cData.size() > 0) {
+                                logParamSetWithSuccess(ADB_TRACK_TIME_END, cData);
+                            }
+                            return sendHit; // return true to send the hit, false to cancel
+                        }
+                    });
                 }
             });
         }
@@ -326,12 +401,18 @@ private void init(Map<String, Object> params){
      *                    as the context data to add to the action
      */
     private void trackTimeUpdate(Map<String, Object> params) {
-        String actionName = getString(params, ACTION_NAME);
+        final String actionName = getString(params, ACTION_NAME);
 
         if (actionName != null) {
             params.remove(ACTION_NAME);
-            HashMap<String, Object> contextData = params.size() > 0 ? new HashMap<>(params) : null;
-            Analytics.trackTimedActionUpdate(actionName, contextData);
+            final HashMap<String, Object> contextData =
+                    params.size() > 0 ? new HashMap<>(params) : null;
+            callSdk("Analytics.trackTimedActionUpdate", new Runnable() {
+                @Override
+                public void run() {
+                    Analytics.trackTimedActionUpdate(actionName, contextData);
+                }
+            });
             logParamSetWithSuccess(ACTION_NAME, actionName);
             if (contextData != null) {
                 logParamSetWithSuccess(ADB_TRACK_TIME_UPDATE, contextData);
@@ -353,12 +434,18 @@ private void init(Map<String, Object> params){
      *                  * additionalLifetimeValue (Double) : the lifetime value to add to the existing one.
      */
     private void increaseVisitorLifetimeValue(Map<String, Object> params) {
-        Double additionalLifetimeValue = getDouble(params, ADDITIONAL_LIFETIME_VALUE, 0);
+        final Double additionalLifetimeValue = getDouble(params, ADDITIONAL_LIFETIME_VALUE, 0);
 
         if (additionalLifetimeValue > 0) {
             params.remove(ADDITIONAL_LIFETIME_VALUE);
-            HashMap<String, Object> cData = params.size() > 0 ? new HashMap<>(params) : null;
-            Analytics.trackLifetimeValueIncrease(BigDecimal.valueOf(additionalLifetimeValue), cData);
+            final HashMap<String, Object> cData = params.size() > 0 ? new HashMap<>(params) : null;
+            callSdk("Analytics.trackLifetimeValueIncrease", new Runnable() {
+                @Override
+                public void run() {
+                    Analytics.trackLifetimeValueIncrease(
+                            BigDecimal.valueOf(additionalLifetimeValue), cData);
+                }
+            });
             logParamSetWithSuccess(ADDITIONAL_LIFETIME_VALUE, additionalLifetimeValue);
             if (cData != null) {
                 logParamSetWithSuccess(ADB_INCREASE_LIFETIME_VALUE, cData);
@@ -390,13 +477,28 @@ private void init(Map<String, Object> params){
         boolean set = true;
 
         if ("OPT_IN".equals(privacyStatus)) {
-            Config.setPrivacyStatus(MobilePrivacyStatus.MOBILE_PRIVACY_STATUS_OPT_IN);
+            callSdk("Config.setPrivacyStatus", new Runnable() {
+                @Override
+                public void run() {
+                    Config.setPrivacyStatus(MobilePrivacyStatus.MOBILE_PRIVACY_STATUS_OPT_IN);
+                }
+            });
         }
         else if ("OPT_OUT".equals(privacyStatus)) {
-            Config.setPrivacyStatus(MobilePrivacyStatus.MOBILE_PRIVACY_STATUS_OPT_OUT);
+            callSdk("Config.setPrivacyStatus", new Runnable() {
+                @Override
+                public void run() {
+                    Config.setPrivacyStatus(MobilePrivacyStatus.MOBILE_PRIVACY_STATUS_OPT_OUT);
+                }
+            });
         }
         else if ("UNKNOWN".equals(privacyStatus)) {
-            Config.setPrivacyStatus(MobilePrivacyStatus.MOBILE_PRIVACY_STATUS_UNKNOWN);
+            callSdk("Config.setPrivacyStatus", new Runnable() {
+                @Override
+                public void run() {
+                    Config.setPrivacyStatus(MobilePrivacyStatus.MOBILE_PRIVACY_STATUS_UNKNOWN);
+                }
+            });
         }
         else {
             logNotFoundValue(PRIVACY_STATUS, privacyStatus, new String[]{"OPT_IN", "OPT_OUT", "UNKNOWN"});
@@ -416,10 +518,21 @@ private void init(Map<String, Object> params){
      * this method forces the library to send all hits in the offline queue.
      */
     private void sendQueueHits() {
-        long queueSize = Analytics.getQueueSize();
+        long start = sdkCallStart();
+        long queueSize;
+        try {
+            queueSize = Analytics.getQueueSize();
+        } finally {
+            sdkCallDone("Analytics.getQueueSize", start);
+        }
 
-        Analytics.sendQueuedHits();
-        Log.v(this.key+"_handler", "Forced to send "+Long.toString(queueSize)+" hits from queue");
+        callSdk("Analytics.sendQueuedHits", new Runnable() {
+            @Override
+            public void run() {
+                Analytics.sendQueuedHits();
+            }
+        });
+        log().v("Forced to send {} hits from queue", queueSize);
     }
 
     /**
@@ -427,10 +540,21 @@ private void init(Map<String, Object> params){
      * Use it with caution. This process cannot be reversed.
      */
     private void clearQueue() {
-        long queueSize = Analytics.getQueueSize();
+        long start = sdkCallStart();
+        long queueSize;
+        try {
+            queueSize = Analytics.getQueueSize();
+        } finally {
+            sdkCallDone("Analytics.getQueueSize", start);
+        }
 
-        Analytics.clearQueue();
-        Log.v(this.key+"_handler", "Cleared "+Long.toString(queueSize)+" hits from queue");
+        callSdk("Analytics.clearQueue", new Runnable() {
+            @Override
+            public void run() {
+                Analytics.clearQueue();
+            }
+        });
+        log().v("Cleared {} hits from queue", queueSize);
     }
 
     /**
@@ -447,17 +571,22 @@ private void init(Map<String, Object> params){
      * @param activity  the activity which triggered the callback
      */
     @Override
-    public void onActivityResumed(Activity activity) {
+    public void onActivityResumed(final Activity activity) {
         if (!this.isInitialized()) {
             try {
-                Cargo.getInstance().getAppContext().getAssets().open("ADBMobileConfig.json");
+                Cargo.getInstance().openAsset("ADBMobileConfig.json").close();
             } catch (IOException e) {
                 this.needOverrideConfigPath = true;
                 this.latestActivity = activity;
                 return;
             }
         }
-        Config.collectLifecycleData(activity);
+        callSdk("Config.collectLifecycleData", new Runnable() {
+            @Override
+            public void run() {
+                Config.collectLifecycleData(activity);
+            }
+        });
     }
 
     /**
@@ -466,7 +595,12 @@ private void init(Map<String, Object> params){
      */
     @Override
     public void onActivityPaused(Activity activity) {
-        Config.pauseCollectingLifecycleData();
+        callSdk("Config.pauseCollectingLifecycleData", new Runnable() {
+            @Override
+            public void run() {
+                Config.pauseCollectingLifecycleData();
+            }
+        });
     }
 
     /**
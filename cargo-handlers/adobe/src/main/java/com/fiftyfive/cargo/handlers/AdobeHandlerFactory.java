@@ -0,0 +1,33 @@
+package com.fiftyfive.cargo.handlers;
+
+import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.HandlerFactory;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Creates the AdobeHandler, declared in META-INF/services so that Cargo can discover it.
+ */
+public final class AdobeHandlerFactory implements HandlerFactory {
+
+    /**
+     * Returns the key of the AdobeHandler.
+     *
+     * @return "ADB"
+     */
+    @Override
+    public String getKey() {
+        return "ADB";
+    }
+
+    /**
+     * Creates a new AdobeHandler.
+     *
+     * @return the new handler
+     */
+    @Override
+    public AbstractTagHandler create() {
+        return new AdobeHandler();
+    }
+
+}
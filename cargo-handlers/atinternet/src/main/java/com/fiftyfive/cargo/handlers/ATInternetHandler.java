@@ -1,17 +1,18 @@
 package com.fiftyfive.cargo.handlers;
 
 import android.app.Activity;
-import android.util.Log;
 
 import com.atinternet.tracker.Debugger;
 import com.atinternet.tracker.Gesture;
 import com.atinternet.tracker.SetConfigCallback;
 import com.atinternet.tracker.Tracker;
 import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.TagMethod;
 import com.fiftyfive.cargo.models.Event;
 import com.fiftyfive.cargo.models.Screen;
 import com.fiftyfive.cargo.models.User;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -46,52 +47,76 @@ public class ATInternetHandler extends AbstractTagHandler {
     private static final String CHAPTER2 = "chapter2";
     private static final String CHAPTER3 = "chapter3";
 
+    /** The values of eventType, each sending the event with the Gesture method of its name */
+    private static final String[] EVENT_TYPES = {"sendTouch", "sendNavigation", "sendDownload",
+            "sendExit", "sendSearch"};
+    /** The names the Gesture calls are timed with, in the order of EVENT_TYPES */
+    private static final String[] GESTURE_METHODS = {"Gesture.sendTouch", "Gesture.sendNavigation",
+            "Gesture.sendDownload", "Gesture.sendExit", "Gesture.sendSearch"};
+
 
 /* ************************************ Handler core methods ************************************ */
 
+    /**
+     * Declares the methods of the handler which can be called through the GTM container,
+     * with the function tag they are called with.
+     */
+    public ATInternetHandler() {
+        registerInitMethod(AT_INIT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                init(params);
+            }
+        });
+        registerMethod(AT_SET_CONFIG, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                setConfig(params);
+            }
+        });
+        registerMethod(AT_TAG_SCREEN, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                tagScreen(params);
+            }
+        });
+        registerMethod(AT_TAG_EVENT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                tagEvent(params);
+            }
+        });
+        registerMethod(AT_IDENTIFY, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                identify(params);
+            }
+        });
+    }
+
     /**
      * Called by the TagHandlerManager, initialize the core of the handler
      */
     @Override
     public void initialize() {
         super.initialize("AT", "AT Internet");
-        atTracker = new Tracker(cargo.getAppContext());
+        callSdk("new Tracker", new Runnable() {
+            @Override
+            public void run() {
+                atTracker = new Tracker(cargo.getAppContext());
+            }
+        });
         validate(atTracker != null);
     }
 
     /**
-     * A callback method for the registered callbacks method name mentionned in the register method.
+     * The SDK expects the Tracker to be created on the main thread.
      *
-     * @param s     The method name called through the container (defined in the GTM interface)
-     * @param map   A map key-object used as a way to give parameters to the class method aimed here
+     * @return true
      */
-    public void execute(String s, Map<String, Object> map) {
-        logReceivedFunction(s, map);
-
-        if (AT_INIT.equals(s)) {
-            init(map);
-        }
-        else if (isInitialized()) {
-            switch (s) {
-                case AT_SET_CONFIG:
-                    setConfig(map);
-                    break;
-                case AT_TAG_SCREEN:
-                    tagScreen(map);
-                    break;
-                case AT_TAG_EVENT:
-                    tagEvent(map);
-                    break;
-                case AT_IDENTIFY:
-                    identify(map);
-                    break;
-                default:
-                    logUnknownFunction(s);
-            }
-        }
-        else {
-            logUninitializedFramework();
-        }
+    @Override
+    protected boolean initializesOnMainThread() {
+        return true;
     }
 
 
@@ -113,26 +138,30 @@ public class ATInternetHandler extends AbstractTagHandler {
         final String LOG = "log";
         final String LOG_SSL = "logSSL";
 
-        Double appIdDouble = getDouble(params, SITE, 0);
-        Long appIdLong = appIdDouble.longValue();
+        long appIdLong = getLong(params, SITE, 0);
         final String siteId = Long.toString(appIdLong);
         final String log = getString(params, LOG);
         final String logSSL = getString(params, LOG_SSL);
         enableDebug = getBoolean(params, com.fiftyfive.cargo.models.Tracker.ENABLE_DEBUG, false);
 
         if (appIdLong != 0 && siteId != null && log != null && logSSL != null) {
-            HashMap<String, Object> config = new HashMap<String, Object>();
+            final HashMap<String, Object> config = new HashMap<String, Object>();
             config.put(SITE, siteId);
             config.put(LOG, log);
             config.put(LOG_SSL, logSSL);
 
-            atTracker.setConfig(config, false, new SetConfigCallback() {
+            callSdk("Tracker.setConfig", new Runnable() {
                 @Override
-                public void setConfigEnd() {
-                    logParamSetWithSuccess(SITE, siteId);
-                    logParamSetWithSuccess(LOG, log);
-                    logParamSetWithSuccess(LOG_SSL, logSSL);
-                    setInitialized(true);
+                public void run() {
+                    atTracker.setConfig(config, false, new SetConfigCallback() {
+                        @Override
+                        public void setConfigEnd() {
+                            logParamSetWithSuccess(SITE, siteId);
+                            logParamSetWithSuccess(LOG, log);
+                            logParamSetWithSuccess(LOG_SSL, logSSL);
+                            setInitialized(true);
+                        }
+                    });
                 }
             });
         }
@@ -155,12 +184,16 @@ public class ATInternetHandler extends AbstractTagHandler {
         params.remove(OVERRIDE);
         logParamSetWithSuccess(OVERRIDE, override);
 
-        HashMap<String, Object> map = new HashMap<String, Object>(params);
-        atTracker.setConfig(map, override, new SetConfigCallback() {
+        final HashMap<String, Object> map = new HashMap<String, Object>(params);
+        callSdk("Tracker.setConfig", new Runnable() {
             @Override
-            public void setConfigEnd() {
-                Log.v(name, "New configuration has been set with override set to "
-                        + override.toString());
+            public void run() {
+                atTracker.setConfig(map, override, new SetConfigCallback() {
+                    @Override
+                    public void setConfigEnd() {
+                        log().v("New configuration has been set with override set to {}", override);
+                    }
+                });
             }
         });
     }
@@ -186,8 +219,14 @@ public class ATInternetHandler extends AbstractTagHandler {
             com.atinternet.tracker.Screen atScreen = atTracker.Screens().add(screenName);
             logParamSetWithSuccess(Screen.SCREEN_NAME, screenName);
 
-            atScreen = setAdditionalScreenProperties(atScreen, params);
-            atScreen.sendView();
+            final com.atinternet.tracker.Screen screen =
+                    setAdditionalScreenProperties(atScreen, params);
+            callSdk("Screen.sendView", new Runnable() {
+                @Override
+                public void run() {
+                    screen.sendView();
+                }
+            });
         }
         else {
             logMissingParam(new String[]{Screen.SCREEN_NAME}, AT_TAG_SCREEN);
@@ -213,10 +252,10 @@ public class ATInternetHandler extends AbstractTagHandler {
      */
     private void tagEvent(Map<String, Object> params){
         String eventName = getString(params, Event.EVENT_NAME);
-        String eventType = getString(params, Event.EVENT_TYPE);
+        final String eventType = getString(params, Event.EVENT_TYPE);
 
         if (eventName != null && eventType != null) {
-            Gesture gesture = setChapters(eventName, params);
+            final Gesture gesture = setChapters(eventName, params);
 
             if (params.containsKey(LEVEL2)) {
                 int    level2 = getInt(params, LEVEL2, -1);
@@ -224,31 +263,34 @@ public class ATInternetHandler extends AbstractTagHandler {
                 logParamSetWithSuccess(LEVEL2, Integer.toString(level2));
             }
 
-            switch (eventType) {
-                case "sendTouch":
-                    gesture.sendTouch();
-                    break;
-                case "sendNavigation":
-                    gesture.sendNavigation();
-                    break;
-                case "sendDownload":
-                    gesture.sendDownload();
-                    break;
-                case "sendExit":
-                    gesture.sendExit();
-                    break;
-                case "sendSearch":
-                    gesture.sendSearch();
-                    break;
-                default:
-                    String[] values = new String[]{"sendTouch", "sendNavigation", "sendDownload",
-                    "sendExit", "sendSearch"};
-                    logNotFoundValue(eventType, Event.EVENT_TYPE, values);
-                    eventType = null;
-            }
-            if (eventType != null) {
-                logParamSetWithSuccess(Event.EVENT_TYPE, eventType);
+            int type = Arrays.asList(EVENT_TYPES).indexOf(eventType);
+            if (type < 0) {
+                logNotFoundValue(eventType, Event.EVENT_TYPE, EVENT_TYPES);
+                return;
             }
+
+            callSdk(GESTURE_METHODS[type], new Runnable() {
+                @Override
+                public void run() {
+                    switch (eventType) {
+                        case "sendTouch":
+                            gesture.sendTouch();
+                            break;
+                        case "sendNavigation":
+                            gesture.sendNavigation();
+                            break;
+                        case "sendDownload":
+                            gesture.sendDownload();
+                            break;
+                        case "sendExit":
+                            gesture.sendExit();
+                            break;
+                        default:
+                            gesture.sendSearch();
+                    }
+                }
+            });
+            logParamSetWithSuccess(Event.EVENT_TYPE, eventType);
         }
         else {
             logMissingParam(new String[]{Event.EVENT_NAME, Event.EVENT_TYPE}, AT_TAG_EVENT);
@@ -267,10 +309,15 @@ public class ATInternetHandler extends AbstractTagHandler {
         final String android_id = getString(params, User.USER_ID);
 
         if (android_id != null) {
-            atTracker.setConfig("identifier", android_id, new SetConfigCallback() {
+            callSdk("Tracker.setConfig", new Runnable() {
                 @Override
-                public void setConfigEnd() {
-                    logParamSetWithSuccess(User.USER_ID, android_id);
+                public void run() {
+                    atTracker.setConfig("identifier", android_id, new SetConfigCallback() {
+                        @Override
+                        public void setConfigEnd() {
+                            logParamSetWithSuccess(User.USER_ID, android_id);
+                        }
+                    });
                 }
             });
         }
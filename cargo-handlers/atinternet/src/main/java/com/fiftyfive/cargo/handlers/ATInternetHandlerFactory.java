@@ -0,0 +1,33 @@
+package com.fiftyfive.cargo.handlers;
+
+import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.HandlerFactory;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Creates the ATInternetHandler, declared in META-INF/services so that Cargo can discover it.
+ */
+public final class ATInternetHandlerFactory implements HandlerFactory {
+
+    /**
+     * Returns the key of the ATInternetHandler.
+     *
+     * @return "AT"
+     */
+    @Override
+    public String getKey() {
+        return "AT";
+    }
+
+    /**
+     * Creates a new ATInternetHandler.
+     *
+     * @return the new handler
+     */
+    @Override
+    public AbstractTagHandler create() {
+        return new ATInternetHandler();
+    }
+
+}
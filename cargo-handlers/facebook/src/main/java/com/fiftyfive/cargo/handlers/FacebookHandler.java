@@ -2,11 +2,11 @@ package com.fiftyfive.cargo.handlers;
 
 import android.app.Activity;
 import android.os.Bundle;
-import android.util.Log;
 
 import com.facebook.FacebookSdk;
 import com.facebook.appevents.AppEventsLogger;
 import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.TagMethod;
 import com.fiftyfive.cargo.models.Event;
 import com.fiftyfive.cargo.models.Tracker;
 import com.fiftyfive.cargo.models.Transaction;
@@ -41,6 +41,31 @@ public class FacebookHandler extends AbstractTagHandler {
 
 /* ************************************ Handler core methods ************************************ */
 
+    /**
+     * Declares the methods of the handler which can be called through the GTM container,
+     * with the function tag they are called with.
+     */
+    public FacebookHandler() {
+        registerInitMethod(FB_INIT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                init(params);
+            }
+        });
+        registerMethod(FB_TAG_EVENT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                tagEvent(params);
+            }
+        });
+        registerMethod(FB_PURCHASE, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                purchase(params);
+            }
+        });
+    }
+
     /**
      * Called by the TagHandlerManager, initialize the core of the handler
      */
@@ -51,37 +76,6 @@ public class FacebookHandler extends AbstractTagHandler {
         validate(true);
     }
 
-    /**
-     * A callback method for the registered callbacks method name mentioned in the register method.
-     *
-     * @param s     The method name called through the container (defined in the GTM interface)
-     * @param map   A map key-object used as a way to give parameters to the class method aimed here
-     */
-    public void execute(String s, Map<String, Object> map) {
-        logReceivedFunction(s, map);
-
-        // a check fo the init method
-        if (FB_INIT.equals(s)) {
-            init(map);
-        }
-        // if the SDK is properly initialized, check for which method is called
-        else if (initialized) {
-            switch (s) {
-                case FB_TAG_EVENT:
-                    tagEvent(map);
-                    break;
-                case FB_PURCHASE:
-                    purchase(map);
-                    break;
-                default:
-                    logUnknownFunction(s);
-            }
-        }
-        else {
-            logUninitializedFramework();
-        }
-    }
-
 
 
 /* ************************************* SDK initialization ************************************* */
@@ -96,26 +90,51 @@ public class FacebookHandler extends AbstractTagHandler {
      */
     private void init(Map<String, Object> map) {
 
-        Double appIdDouble = getDouble(map, Tracker.APPLICATION_ID, 0);
-        Long appIdLong = appIdDouble.longValue();
-        String applicationId = Long.toString(appIdLong);
+        long appIdLong = getLong(map, Tracker.APPLICATION_ID, 0);
+        final String applicationId = Long.toString(appIdLong);
 
         if(appIdLong != 0 && applicationId != null) {
             // Since the applicationId isn't declared in the AndroidManifest, it is a necessity to
             // set it before initializing the FacebookSDK, or it will throw an error.
-            FacebookSdk.setApplicationId(applicationId);
-            FacebookSdk.sdkInitialize(cargo.getAppContext());
+            callSdk("FacebookSdk.setApplicationId", new Runnable() {
+                @Override
+                public void run() {
+                    FacebookSdk.setApplicationId(applicationId);
+                }
+            });
+            callSdk("FacebookSdk.sdkInitialize", new Runnable() {
+                @Override
+                public void run() {
+                    FacebookSdk.sdkInitialize(cargo.getAppContext());
+                }
+            });
             // Initialization of the logger which will send the events to the Fb Analytics interface
-            facebookLogger = AppEventsLogger.newLogger(cargo.getAppContext());
-            AppEventsLogger.activateApp(cargo.getAppContext());
+            callSdk("AppEventsLogger.newLogger", new Runnable() {
+                @Override
+                public void run() {
+                    facebookLogger = AppEventsLogger.newLogger(cargo.getAppContext());
+                }
+            });
+            callSdk("AppEventsLogger.activateApp", new Runnable() {
+                @Override
+                public void run() {
+                    AppEventsLogger.activateApp(cargo.getAppContext());
+                }
+            });
             logParamSetWithSuccess(Tracker.APPLICATION_ID, applicationId);
             setInitialized(FacebookSdk.isInitialized());
         }
         else {
             logMissingParam(new String[]{Tracker.APPLICATION_ID}, FB_INIT);
         }
-        FacebookSdk.setIsDebugEnabled(getBoolean(map, Tracker.ENABLE_DEBUG, false));
-        Log.d(this.key+"_handler", "debug enabled : " + Boolean.toString(FacebookSdk.isDebugEnabled()));
+        final boolean debug = getBoolean(map, Tracker.ENABLE_DEBUG, false);
+        callSdk("FacebookSdk.setIsDebugEnabled", new Runnable() {
+            @Override
+            public void run() {
+                FacebookSdk.setIsDebugEnabled(debug);
+            }
+        });
+        log().d("debug enabled : {}", FacebookSdk.isDebugEnabled());
     }
 
 
@@ -137,9 +156,9 @@ public class FacebookHandler extends AbstractTagHandler {
      */
     private void tagEvent(Map<String, Object> map){
 
-        String eventName = getString(map, Event.EVENT_NAME);
-        double valueToSum = getDouble(map, VALUE_TO_SUM, -1);
-        Bundle parameters;
+        final String eventName = getString(map, Event.EVENT_NAME);
+        final double valueToSum = getDouble(map, VALUE_TO_SUM, -1);
+        final Bundle parameters;
 
         if (eventName != null) {
             map.remove(Event.EVENT_NAME);
@@ -152,14 +171,24 @@ public class FacebookHandler extends AbstractTagHandler {
                 if (map.size() > 1) {
                     parameters = eventParamBuilder(map);
                     // fire the tag with the given parameters & valueToSum
-                    facebookLogger.logEvent(eventName, valueToSum, parameters);
+                    callSdk("AppEventsLogger.logEvent", new Runnable() {
+                        @Override
+                        public void run() {
+                            facebookLogger.logEvent(eventName, valueToSum, parameters);
+                        }
+                    });
                     logParamSetWithSuccess(Event.EVENT_NAME, eventName);
                     logParamSetWithSuccess(VALUE_TO_SUM, valueToSum);
                     logParamSetWithSuccess("parameters", parameters);
                 }
                 else {
                     // fire the tag with the given valueToSum
-                    facebookLogger.logEvent(eventName, valueToSum);
+                    callSdk("AppEventsLogger.logEvent", new Runnable() {
+                        @Override
+                        public void run() {
+                            facebookLogger.logEvent(eventName, valueToSum);
+                        }
+                    });
                     logParamSetWithSuccess(Event.EVENT_NAME, eventName);
                     logParamSetWithSuccess(VALUE_TO_SUM, valueToSum);
                 }
@@ -168,13 +197,23 @@ public class FacebookHandler extends AbstractTagHandler {
             else if (map.size() > 1) {
                 parameters = eventParamBuilder(map);
                 // fire the tag with the given parameters
-                facebookLogger.logEvent(eventName, parameters);
+                callSdk("AppEventsLogger.logEvent", new Runnable() {
+                    @Override
+                    public void run() {
+                        facebookLogger.logEvent(eventName, parameters);
+                    }
+                });
                 logParamSetWithSuccess(Event.EVENT_NAME, eventName);
                 logParamSetWithSuccess("parameters", parameters);
             }
             else {
                 // fire the tag
-                facebookLogger.logEvent(eventName);
+                callSdk("AppEventsLogger.logEvent", new Runnable() {
+                    @Override
+                    public void run() {
+                        facebookLogger.logEvent(eventName);
+                    }
+                });
                 logParamSetWithSuccess(Event.EVENT_NAME, eventName);
             }
         }
@@ -195,11 +234,17 @@ public class FacebookHandler extends AbstractTagHandler {
      */
     private void purchase (Map<String, Object> map) {
 
-        double total = getDouble(map, Transaction.TRANSACTION_TOTAL, -1);
-        String currency = getString(map, Transaction.TRANSACTION_CURRENCY_CODE);
+        final double total = getDouble(map, Transaction.TRANSACTION_TOTAL, -1);
+        final String currency = getString(map, Transaction.TRANSACTION_CURRENCY_CODE);
 
         if (total >= 0 && currency != null) {
-            facebookLogger.logPurchase(BigDecimal.valueOf(total), Currency.getInstance(currency));
+            callSdk("AppEventsLogger.logPurchase", new Runnable() {
+                @Override
+                public void run() {
+                    facebookLogger.logPurchase(BigDecimal.valueOf(total),
+                            Currency.getInstance(currency));
+                }
+            });
             logParamSetWithSuccess(Transaction.TRANSACTION_TOTAL, total);
             logParamSetWithSuccess(Transaction.TRANSACTION_CURRENCY_CODE, currency);
         }
@@ -267,9 +312,14 @@ public class FacebookHandler extends AbstractTagHandler {
      * @param activity  the activity which triggered the callback
      */
     @Override
-    public void onActivityResumed(Activity activity) {
+    public void onActivityResumed(final Activity activity) {
         if (isInitialized()) {
-            AppEventsLogger.activateApp(activity);
+            callSdk("AppEventsLogger.activateApp", new Runnable() {
+                @Override
+                public void run() {
+                    AppEventsLogger.activateApp(activity);
+                }
+            });
         }
     }
 
@@ -280,9 +330,14 @@ public class FacebookHandler extends AbstractTagHandler {
      * @param activity  the activity which triggered the callback
      */
     @Override
-    public void onActivityPaused(Activity activity) {
+    public void onActivityPaused(final Activity activity) {
         if (isInitialized()) {
-            AppEventsLogger.deactivateApp(activity);
+            callSdk("AppEventsLogger.deactivateApp", new Runnable() {
+                @Override
+                public void run() {
+                    AppEventsLogger.deactivateApp(activity);
+                }
+            });
         }
     }
 
@@ -0,0 +1,33 @@
+package com.fiftyfive.cargo.handlers;
+
+import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.HandlerFactory;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Creates the FacebookHandler, declared in META-INF/services so that Cargo can discover it.
+ */
+public final class FacebookHandlerFactory implements HandlerFactory {
+
+    /**
+     * Returns the key of the FacebookHandler.
+     *
+     * @return "FB"
+     */
+    @Override
+    public String getKey() {
+        return "FB";
+    }
+
+    /**
+     * Creates a new FacebookHandler.
+     *
+     * @return the new handler
+     */
+    @Override
+    public AbstractTagHandler create() {
+        return new FacebookHandler();
+    }
+
+}
@@ -1,10 +1,10 @@
 package com.fiftyfive.cargo.handlers;
 
 import android.app.Activity;
-import android.util.Log;
 
 import com.fiftyfive.cargo.AbstractTagHandler;
 import com.fiftyfive.cargo.CargoItem;
+import com.fiftyfive.cargo.TagMethod;
 import com.fiftyfive.cargo.models.Event;
 import com.fiftyfive.cargo.models.User;
 import com.tune.Tune;
@@ -91,6 +91,31 @@ public class TuneHandler extends AbstractTagHandler {
 
 /* ************************************ Handler core methods ************************************ */
 
+    /**
+     * Declares the methods of the handler which can be called through the GTM container,
+     * with the function tag they are called with.
+     */
+    public TuneHandler() {
+        registerInitMethod(TUN_INIT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                init(params);
+            }
+        });
+        registerMethod(TUN_IDENTIFY, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                identify(params);
+            }
+        });
+        registerMethod(TUN_TAG_EVENT, new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                tagEvent(params);
+            }
+        });
+    }
+
     /**
      * Called by the TagHandlerManager, initialize the core of the handler
      */
@@ -100,35 +125,6 @@ public class TuneHandler extends AbstractTagHandler {
         validate(true);
     }
 
-    /**
-     * A callback method for the registered callbacks method name mentioned in the register method.
-     *
-     * @param s     The method name called through the container (defined in the GTM interface)
-     * @param map   A map key-object used as a way to give parameters to the class method aimed here
-     */
-    public void execute(String s, Map<String, Object> map) {
-        logReceivedFunction(s, map);
-
-        if (TUN_INIT.equals(s)) {
-            init(map);
-        }
-        else if (initialized) {
-            switch (s) {
-                case TUN_IDENTIFY:
-                    identify(map);
-                    break;
-                case TUN_TAG_EVENT:
-                    tagEvent(map);
-                    break;
-                default:
-                    logUnknownFunction(s);
-            }
-        }
-        else {
-            logUninitializedFramework();
-        }
-    }
-
 
 
 /* ************************************* SDK initialization ************************************* */
@@ -142,14 +138,18 @@ public class TuneHandler extends AbstractTagHandler {
      *              * advertiserId & conversionKey (String) : ids you got when you register your app
      */
     private void init(Map<String, Object> map) {
-        Double advertIdDouble = getDouble(map, ADVERTISER_ID, 0);
-        Long advertIdLong = advertIdDouble.longValue();
+        long advertIdLong = getLong(map, ADVERTISER_ID, 0);
         final String advertiserId = Long.toString(advertIdLong);
         final String conversionKey = getString(map, CONVERSION_KEY);
 
         if (advertIdLong != 0 && advertiserId != null && conversionKey != null) {
             // set the required parameters
-            Tune.init(cargo.getAppContext(), advertiserId, conversionKey);
+            callSdk("Tune.init", new Runnable() {
+                @Override
+                public void run() {
+                    Tune.init(cargo.getAppContext(), advertiserId, conversionKey);
+                }
+            });
             logParamSetWithSuccess(ADVERTISER_ID, advertiserId);
             logParamSetWithSuccess(CONVERSION_KEY, conversionKey);
 
@@ -182,50 +182,85 @@ public class TuneHandler extends AbstractTagHandler {
      *               * userGender (String) : the gender of your user (MALE/FEMALE/UNKNOWN)
      */
     private void identify(Map<String, Object> map) {
-        String userId = getString(map, User.USER_ID);
-        String userGoogleId = getString(map, User.USER_GOOGLE_ID);
-        String userFacebookId = getString(map, User.USER_FACEBOOK_ID);
-        String userTwitterId = getString(map, User.USER_TWITTER_ID);
-        String userName = getString(map, User.USERNAME);
-        String userEmail = getString(map, User.USER_EMAIL);
+        final String userId = getString(map, User.USER_ID);
+        final String userGoogleId = getString(map, User.USER_GOOGLE_ID);
+        final String userFacebookId = getString(map, User.USER_FACEBOOK_ID);
+        final String userTwitterId = getString(map, User.USER_TWITTER_ID);
+        final String userName = getString(map, User.USERNAME);
+        final String userEmail = getString(map, User.USER_EMAIL);
         String userGender = getString(map, User.USER_GENDER);
 
         // set the android id given through the User.USER_ID parameter in Tune
         if (userId != null) {
-            tune.setUserId(getString(map, User.USER_ID));
+            callSdk("Tune.setUserId", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setUserId(userId);
+                }
+            });
             logParamSetWithSuccess(User.USER_ID, userId);
         }
 
         // set the GOOGLE_ID, FACEBOOK_ID, TWITTER_ID, USERNAME and EMAIL if they exist
         if (userGoogleId != null) {
-            tune.setGoogleUserId(userGoogleId);
+            callSdk("Tune.setGoogleUserId", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setGoogleUserId(userGoogleId);
+                }
+            });
             logParamSetWithSuccess(User.USER_GOOGLE_ID, userGoogleId);
         }
         if (userFacebookId != null) {
-            tune.setFacebookUserId(userFacebookId);
+            callSdk("Tune.setFacebookUserId", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setFacebookUserId(userFacebookId);
+                }
+            });
             logParamSetWithSuccess(User.USER_FACEBOOK_ID, userFacebookId);
         }
         if (userTwitterId != null) {
-            tune.setTwitterUserId(userTwitterId);
+            callSdk("Tune.setTwitterUserId", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setTwitterUserId(userTwitterId);
+                }
+            });
             logParamSetWithSuccess(User.USER_TWITTER_ID, userTwitterId);
         }
         if (userName != null) {
-            tune.setUserName(userName);
+            callSdk("Tune.setUserName", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setUserName(userName);
+                }
+            });
             logParamSetWithSuccess(User.USERNAME, userName);
         }
         if (userEmail != null) {
-            tune.setUserEmail(userEmail);
+            callSdk("Tune.setUserEmail", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setUserEmail(userEmail);
+                }
+            });
             logParamSetWithSuccess(User.USER_EMAIL, userEmail);
         }
 
         // set AGE and GENDER if they exist
         if (map.containsKey(User.USER_AGE)) {
-            int age = getInt(map, User.USER_AGE, -1);
+            // an age which can't be converted is recorded by getInt()
+            final int age = getInt(map, User.USER_AGE, -1);
             if (age == -1) {
-                logUncastableParam(User.USER_AGE, "String");
                 return ;
             }
-            tune.setAge(age);
+            callSdk("Tune.setAge", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setAge(age);
+                }
+            });
             logParamSetWithSuccess(User.USER_AGE, age);
         }
         if (userGender != null) {
@@ -284,10 +319,16 @@ public class TuneHandler extends AbstractTagHandler {
         }
         // if the returned event is not null, the event is fired.
         if (tuneEvent != null) {
-            tune.measureEvent(tuneEvent);
+            final TuneEvent event = tuneEvent;
+            callSdk("Tune.measureEvent", new Runnable() {
+                @Override
+                public void run() {
+                    tune.measureEvent(event);
+                }
+            });
         }
         else {
-            Log.e(this.key = "_handler", "Event object is null, the event hasn't been send.");
+            log().e("Event object is null, the event hasn't been send.");
         }
     }
 
@@ -302,15 +343,25 @@ public class TuneHandler extends AbstractTagHandler {
      *              If the gender doesn't match with the Tune genders,
      *              sets the gender to UNKNOWN.
      */
-    private void setGender(String val) {
+    private void setGender(final String val) {
         String gender = val.toUpperCase(Locale.ENGLISH);
         if (gender.equals("MALE") || gender.equals("FEMALE") || gender.equals("UNKNOWN")) {
-            tune.setGender(TuneGender.forValue(val));
+            callSdk("Tune.setGender", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setGender(TuneGender.forValue(val));
+                }
+            });
             logParamSetWithSuccess(User.USER_GENDER, gender);
         }
         else {
-            tune.setGender(TuneGender.UNKNOWN);
-            Log.w("Cargo TuneHandler", "in identify, waiting for MALE/FEMALE/UNKNOWN," +
+            callSdk("Tune.setGender", new Runnable() {
+                @Override
+                public void run() {
+                    tune.setGender(TuneGender.UNKNOWN);
+                }
+            });
+            log().w("in identify, waiting for MALE/FEMALE/UNKNOWN," +
                     " gender has been set to UNKNOWN");
         }
     }
@@ -329,7 +380,7 @@ public class TuneHandler extends AbstractTagHandler {
     private TuneEvent eventBuilder(Map<String, Object> map, TuneEvent tuneEvent) {
 
         if (tuneEvent == null) {
-            Log.e(this.key+"_handler", "trying to set properties on a nil TuneEvent. " +
+            log().e("trying to set properties on a nil TuneEvent. " +
                     "Operation has been cancelled");
             return null ;
         }
@@ -351,7 +402,7 @@ public class TuneHandler extends AbstractTagHandler {
                     Method method = tuneEvent.getClass().getMethod(mName, String.class);
                     method.invoke(tuneEvent, map.remove(property));
                 } catch (Exception e) {
-                    Log.e("Cargo TuneHandler", "exception", e);
+                    log().e("exception", e);
                     e.printStackTrace();
                 }
             }
@@ -359,8 +410,8 @@ public class TuneHandler extends AbstractTagHandler {
         // info log for unknown entries in the map of parameters
         Set<String> keys = map.keySet();
         for (String key : keys) {
-            Log.i(this.key+"_handler", " the event builder couldn't find any match with the " +
-                    "parameter key [" + key + "] with value [" + getString(map, key) + "]");
+            log().i(" the event builder couldn't find any match with the " +
+                    "parameter key [{}] with value [{}]", key, map.get(key));
         }
         return tuneEvent;
     }
@@ -373,50 +424,31 @@ public class TuneHandler extends AbstractTagHandler {
      * @return          the TuneEvent object with the values correctly set
      */
     private TuneEvent getEventsWithNumberParameters(Map<String, Object> map, TuneEvent tuneEvent) {
-        if (map.containsKey(EVENT_RATING)) {
-            double rating = getDouble(map, EVENT_RATING, -1);
-            if (rating != -1) {
-                tuneEvent.withRating(rating);
-                logParamSetWithSuccess(EVENT_RATING, tuneEvent.getRating());
-            }
-            else {
-                logUncastableParam(EVENT_RATING, "double");
-            }
+        // NaN rather than -1 as the default value, as -1 is a valid rating or revenue (a refund).
+        // The values which can't be converted are recorded by getDouble() and getInt()
+        double rating = getDouble(map, EVENT_RATING, Double.NaN);
+        if (!Double.isNaN(rating)) {
+            tuneEvent.withRating(rating);
+            logParamSetWithSuccess(EVENT_RATING, tuneEvent.getRating());
         }
 
-        if (map.containsKey(EVENT_REVENUE)) {
-            double revenue = getDouble(map, EVENT_REVENUE, -1);
-            if (revenue != -1) {
-                tuneEvent.withRevenue(revenue);
-                logParamSetWithSuccess(EVENT_REVENUE, tuneEvent.getRevenue());
-            }
-            else {
-                logUncastableParam(EVENT_REVENUE, "double");
-            }
+        double revenue = getDouble(map, EVENT_REVENUE, Double.NaN);
+        if (!Double.isNaN(revenue)) {
+            tuneEvent.withRevenue(revenue);
+            logParamSetWithSuccess(EVENT_REVENUE, tuneEvent.getRevenue());
         }
 
-        if (map.containsKey(EVENT_LEVEL)) {
-            Double levelDouble = getDouble(map, EVENT_LEVEL, -1);
-            int level = levelDouble.intValue();
-            if (level != -1) {
-                tuneEvent.withLevel(level);
-                logParamSetWithSuccess(EVENT_LEVEL, tuneEvent.getLevel());
-            }
-            else {
-                logUncastableParam(EVENT_LEVEL, "int");
-            }
+        // MIN_VALUE rather than -1 as the default value, as it isn't a level or a quantity
+        int level = getInt(map, EVENT_LEVEL, Integer.MIN_VALUE);
+        if (level != Integer.MIN_VALUE) {
+            tuneEvent.withLevel(level);
+            logParamSetWithSuccess(EVENT_LEVEL, tuneEvent.getLevel());
         }
 
-        if (map.containsKey(EVENT_QUANTITY)) {
-            Double quantityDouble = getDouble(map, EVENT_QUANTITY, -1);
-            int quantity = quantityDouble.intValue();
-            if (quantity != -1) {
-                tuneEvent.withQuantity(quantity);
-                logParamSetWithSuccess(EVENT_QUANTITY, tuneEvent.getQuantity());
-            }
-            else {
-                logUncastableParam(EVENT_QUANTITY, "int");
-            }
+        int quantity = getInt(map, EVENT_QUANTITY, Integer.MIN_VALUE);
+        if (quantity != Integer.MIN_VALUE) {
+            tuneEvent.withQuantity(quantity);
+            logParamSetWithSuccess(EVENT_QUANTITY, tuneEvent.getQuantity());
         }
 
         return tuneEvent;
@@ -549,9 +581,14 @@ public class TuneHandler extends AbstractTagHandler {
      * @param activity  the activity which triggered the callback
      */
     @Override
-    public void onActivityStarted(Activity activity) {
+    public void onActivityStarted(final Activity activity) {
         if (initialized) {
-            TuneActivity.onStart(activity);
+            callSdk("TuneActivity.onStart", new Runnable() {
+                @Override
+                public void run() {
+                    TuneActivity.onStart(activity);
+                }
+            });
         }
     }
 
@@ -561,9 +598,14 @@ public class TuneHandler extends AbstractTagHandler {
      * @param activity  the activity which triggered the callback
      */
     @Override
-    public void onActivityResumed(Activity activity) {
+    public void onActivityResumed(final Activity activity) {
         if (initialized) {
-            TuneActivity.onResume(activity);
+            callSdk("TuneActivity.onResume", new Runnable() {
+                @Override
+                public void run() {
+                    TuneActivity.onResume(activity);
+                }
+            });
         }
     }
 
@@ -581,9 +623,14 @@ public class TuneHandler extends AbstractTagHandler {
      * @param activity  the activity which triggered the callback
      */
     @Override
-    public void onActivityStopped(Activity activity) {
+    public void onActivityStopped(final Activity activity) {
         if (initialized) {
-            TuneActivity.onStop(activity);
+            callSdk("TuneActivity.onStop", new Runnable() {
+                @Override
+                public void run() {
+                    TuneActivity.onStop(activity);
+                }
+            });
         }
     }
 
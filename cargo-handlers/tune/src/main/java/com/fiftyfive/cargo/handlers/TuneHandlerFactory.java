@@ -0,0 +1,33 @@
+package com.fiftyfive.cargo.handlers;
+
+import com.fiftyfive.cargo.AbstractTagHandler;
+import com.fiftyfive.cargo.HandlerFactory;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Creates the TuneHandler, declared in META-INF/services so that Cargo can discover it.
+ */
+public final class TuneHandlerFactory implements HandlerFactory {
+
+    /**
+     * Returns the key of the TuneHandler.
+     *
+     * @return "TUN"
+     */
+    @Override
+    public String getKey() {
+        return "TUN";
+    }
+
+    /**
+     * Creates a new TuneHandler.
+     *
+     * @return the new handler
+     */
+    @Override
+    public AbstractTagHandler create() {
+        return new TuneHandler();
+    }
+
+}
@@ -154,6 +154,48 @@ public class TuneHandlerTest extends TestCase {
         verify(tuneMock, times(1)).measureEvent((TuneEvent) ArgumentMatchers.any());
     }
 
+    public void testTagEventWithIsoDates() throws Exception {
+        HashMap<String, Object> map= new HashMap<>();
+        map.put(Event.EVENT_NAME, "eventName");
+        map.put("eventDate1", "2018-03-21T14:05:30Z");
+        map.put("eventDate2", "2018-03-21T14:05:30.25+01:00");
+
+        handler.setInitialized(true);
+        handler.execute("TUN_tagEvent", map);
+
+        verify(tuneEventMock, times(1)).withDate1(new Date(1521641130000L));
+        verify(tuneEventMock, times(1)).withDate2(new Date(1521637530250L));
+        verify(tuneMock, times(1)).measureEvent((TuneEvent) ArgumentMatchers.any());
+    }
+
+    public void testTagEventWithEpochDates() throws Exception {
+        HashMap<String, Object> map= new HashMap<>();
+        map.put(Event.EVENT_NAME, "eventName");
+        map.put("eventDate1", 1521641130L);
+        map.put("eventDate2", 1521641130123.0);
+
+        handler.setInitialized(true);
+        handler.execute("TUN_tagEvent", map);
+
+        verify(tuneEventMock, times(1)).withDate1(new Date(1521641130000L));
+        verify(tuneEventMock, times(1)).withDate2(new Date(1521641130123L));
+        verify(tuneMock, times(1)).measureEvent((TuneEvent) ArgumentMatchers.any());
+    }
+
+    public void testTagEventWithNegativeRatingAndLevel() throws Exception {
+        HashMap<String, Object> map= new HashMap<>();
+        map.put(Event.EVENT_NAME, "eventName");
+        map.put("eventRating", -1);
+        map.put("eventLevel", "-1");
+
+        handler.setInitialized(true);
+        handler.execute("TUN_tagEvent", map);
+
+        verify(tuneEventMock, times(1)).withRating(-1.0);
+        verify(tuneEventMock, times(1)).withLevel(-1);
+        verify(tuneMock, times(1)).measureEvent((TuneEvent) ArgumentMatchers.any());
+    }
+
     public void testFailIDTagEvent() throws Exception {
         HashMap<String, Object> map= new HashMap<>();
         map.put(Event.EVENT_ID, 55.5f);
@@ -0,0 +1,16 @@
+# ProGuard rules applied to the applications using Cargo.
+
+# The handler factories are instantiated by a ServiceLoader from their name.
+-keep class * implements com.fiftyfive.cargo.HandlerFactory {
+    public <init>();
+}
+
+# The verbose and debug logs of Cargo are removed, along with the formatting of their arguments.
+# This only happens when ProGuard optimizes the application, i.e. with
+# getDefaultProguardFile('proguard-android-optimize.txt'): proguard-android.txt sets
+# -dontoptimize, which ignores this rule. The calls are then kept, and return right away as long
+# as the level set with CargoLog.setLevel() is above DEBUG, which is the default.
+-assumenosideeffects class com.fiftyfive.cargo.CargoLog {
+    public void v(...);
+    public void d(...);
+}
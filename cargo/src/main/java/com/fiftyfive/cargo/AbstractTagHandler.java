@@ -2,9 +2,10 @@
 package com.fiftyfive.cargo;
 
 import android.app.Activity;
-import android.util.Log;
 
-import java.util.Arrays;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -22,7 +23,7 @@ public abstract class AbstractTagHandler {
     public boolean valid = false;
 
     /** Validates whether the third part SDK has been correctly initialized. */
-    protected boolean initialized = false;
+    protected volatile boolean initialized = false;
 
     /** A reference to the Cargo instance, to retrieve easily the context, among other things. */
     public Cargo cargo;
@@ -33,6 +34,28 @@ public abstract class AbstractTagHandler {
     /** Key of the handler, which will be used for the logs. */
     protected String key;
 
+    /** The logger of the handler, built again only if its key changes. */
+    private CargoLog log;
+    /** The metrics of the handler, retrieved again only if its key changes. */
+    private HandlerMetrics metrics;
+
+    /** The methods declared by the handler, stored with their function tag as key. */
+    private final Map<String, TagRoute> routes = new HashMap<String, TagRoute>();
+
+    /** The default number of events kept while the third part SDK isn't initialized. */
+    public static final int DEFAULT_PENDING_EVENTS_CAPACITY = 50;
+
+    /** The maximum number of events kept while the third part SDK isn't initialized. */
+    private int pendingEventsCapacity = DEFAULT_PENDING_EVENTS_CAPACITY;
+    /** The events received before the initialization, null once they have been replayed. */
+    private volatile ArrayDeque<TagEvent> pendingEvents;
+    /** Whether a thread is currently replaying the pending events. */
+    private boolean replayingPendingEvents = false;
+    /** The lock guarding the pending events. */
+    private final Object pendingEventsLock = new Object();
+
+    /** Collects the events to deliver them by batches, null if batching is disabled. */
+    private volatile EventBatcher batcher;
 
 
 /* ************************************ Handlers core methods *********************************** */
@@ -43,6 +66,18 @@ public abstract class AbstractTagHandler {
     protected void initialize(){
     }
 
+    /**
+     * Whether initialize() calls on third part SDK methods which have to run on the main
+     * thread. A HandlerRegistration instantiates the handlers on background threads, and then
+     * runs the initialize() method of the ones returning true on the main thread.
+     * Returns false by default.
+     *
+     * @return true if initialize() has to run on the main thread
+     */
+    protected boolean initializesOnMainThread() {
+        return false;
+    }
+
     /**
      * Stores name and key of the handler, plus the Cargo instance as a variable to
      * allow the handler to access to variables of the cargo instance
@@ -59,12 +94,61 @@ public abstract class AbstractTagHandler {
 
     /**
      * This method which will allow you to redistribute the callbacks suscribed
-     * in the register method into your code
+     * in the register method into your code.
+     * By default, calls on the method registered for this function tag with registerMethod()
+     * or registerInitMethod(). Handlers which don't register their methods have to override it.
      *
      * @param s         the string you used to register your callback (eg. "handler_init")
      * @param map       a map of the arguments which have been sent with the datalayer.push()
      */
-    public abstract void execute(String s, Map<String, Object> map);
+    public void execute(String s, Map<String, Object> map) {
+        TagRoute route = routes.get(s);
+        if (route != null) {
+            route.execute(map);
+        }
+        else {
+            logReceivedFunction(s, map);
+            logUnknownFunction(s);
+        }
+    }
+
+    /**
+     * Declares the method which initializes the third part SDK.
+     * This method is called even if the handler hasn't been initialized yet.
+     *
+     * @param functionTag the function tag the method is called with, e.g. 'FB_init'
+     * @param method      the method to call
+     */
+    protected void registerInitMethod(String functionTag, TagMethod method) {
+        routes.put(functionTag, new TagRoute(this, functionTag, method, false));
+    }
+
+    /**
+     * Declares a method of the handler, which can only be called once the third part SDK has
+     * been initialized. Calls received before are kept until then, see setPendingEventsCapacity().
+     *
+     * @param functionTag the function tag the method is called with, e.g. 'FB_tagEvent'
+     * @param method      the method to call
+     */
+    protected void registerMethod(String functionTag, TagMethod method) {
+        routes.put(functionTag, new TagRoute(this, functionTag, method, true));
+    }
+
+    /**
+     * Resolves a function tag to the route Cargo has to use in order to call on the method.
+     * If the handler hasn't registered any method for this tag, the route calls on
+     * execute(String, Map), which either logs an unknown function or is overridden by the handler.
+     *
+     * @param functionTag the function tag received from the container
+     * @return the route to the method
+     */
+    TagRoute getRoute(String functionTag) {
+        TagRoute route = routes.get(functionTag);
+        if (route == null) {
+            route = new TagRoute(this, functionTag, null, false);
+        }
+        return route;
+    }
 
     /**
      * Called from the child class in order to verify that the SDK has been correctly initialized.
@@ -77,10 +161,10 @@ public abstract class AbstractTagHandler {
     public void validate(boolean isValid) {
         this.valid = isValid;
         if (isValid) {
-            Log.v(this.key + "_handler", this.name + " SDK has started without error");
+            log().v("{} SDK has started without error", this.name);
         }
         else {
-            Log.e(this.key + "_handler", "Failed to start the " + this.name + " SDK.");
+            log().e("Failed to start the {} SDK.", this.name);
         }
     }
 
@@ -92,13 +176,14 @@ public abstract class AbstractTagHandler {
     public void setInitialized(boolean value) {
         initialized = value;
         if (initialized) {
-            this.cargo.setHandlerInit();
-            Log.d(this.key + "_handler",
-                    "The handler has been correctly initialized and is ready to use");
+            log().d("The handler has been correctly initialized and is ready to use");
+            replayPendingEvents(null);
+            if (this.cargo != null) {
+                this.cargo.setHandlerInit(this);
+            }
         }
         else {
-            Log.w(this.key + "_handler",
-                    "Something went wrong, the handler hasn't been initialized");
+            log().w("Something went wrong, the handler hasn't been initialized");
         }
     }
 
@@ -110,9 +195,255 @@ public abstract class AbstractTagHandler {
      */
     public boolean isInitialized() { return initialized; }
 
+    /**
+     * Sets the maximum number of events kept while the third part SDK isn't initialized.
+     * These events are replayed in order once setInitialized(true) is called.
+     * When the limit is reached, further events are dropped with logUninitializedFramework().
+     *
+     * @param capacity the number of events to keep, 0 to drop all of them.
+     */
+    public void setPendingEventsCapacity(int capacity) {
+        synchronized (pendingEventsLock) {
+            pendingEventsCapacity = Math.max(0, capacity);
+        }
+    }
+
+
+/* ****************************************** Batching ****************************************** */
+
+    /**
+     * Enables the delivery of the events by batches, through the executeBatch() method.
+     * A batch is delivered once it contains maxEvents events, or maxDelayMillis milliseconds
+     * after its first event, whichever comes first. The init method isn't batched.
+     *
+     * @param maxEvents      the number of events which triggers the delivery of a batch,
+     *                       1 or less to disable batching.
+     * @param maxDelayMillis the delay after which a batch is delivered, even if it isn't full.
+     */
+    public void setBatching(int maxEvents, long maxDelayMillis) {
+        EventBatcher previous = batcher;
+        batcher = maxEvents > 1
+                ? new EventBatcher(this, maxEvents, Math.max(0, maxDelayMillis))
+                : null;
+        if (previous != null) {
+            previous.requestFlush();
+        }
+    }
+
+    /**
+     * Delivers the current batch of events, if batching is enabled. The delivery is dispatched
+     * to the lane of the handler, after the events already dispatched to it.
+     * Called when an activity is paused, so that events aren't held while the app is in background.
+     */
+    public void flushBatch() {
+        EventBatcher current = batcher;
+        if (current != null) {
+            current.requestFlush();
+        }
+    }
+
+    /**
+     * Receives a batch of events, in the order they have been fired.
+     * By default, calls on the handler method of each event. Override this method to send
+     * several events in one call to the third part SDK.
+     * Events whose method requires the SDK to be initialized are delayed until it is,
+     * when using TagEvent.execute().
+     *
+     * @param events the events of the batch
+     */
+    protected void executeBatch(List<TagEvent> events) {
+        for (TagEvent event : events) {
+            event.execute();
+        }
+    }
+
+    /**
+     * Calls on a method requiring the third part SDK to be initialized, or adds it to the current
+     * batch if batching is enabled.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     */
+    void executeOrBatch(TagRoute route, Map<String, Object> params) {
+        EventBatcher current = batcher;
+        if (current != null) {
+            current.add(route, params);
+        }
+        else {
+            executeWhenInitialized(route, params);
+        }
+    }
+
+
+/* *************************************** Pending events *************************************** */
+
+    /**
+     * Calls on a method requiring the third part SDK to be initialized.
+     * If it isn't initialized yet, the event is kept to be replayed once it is.
+     * Events received while the pending events are replayed are queued after them,
+     * so that the handler always receives its events in order.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     */
+    void executeWhenInitialized(TagRoute route, Map<String, Object> params) {
+        if (initialized && pendingEvents == null) {
+            route.invoke(params);
+            return;
+        }
+        TagEvent event;
+        synchronized (pendingEventsLock) {
+            if (initialized && pendingEvents == null) {
+                event = null;
+            }
+            else {
+                if (pendingEvents == null) {
+                    pendingEvents = new ArrayDeque<TagEvent>();
+                }
+                if (!initialized && pendingEvents.size() >= pendingEventsCapacity) {
+                    CargoTrace.record(CargoTrace.METHOD_DROPPED, route.traceId, 0);
+                    metrics().increment(HandlerMetrics.DROPPED);
+                    CargoJournal.acknowledge(params);
+                    logUninitializedFramework();
+                    return;
+                }
+                event = new TagEvent(route, params);
+                if (!initialized || replayingPendingEvents) {
+                    pendingEvents.add(event);
+                    CargoTrace.record(CargoTrace.METHOD_DELAYED, route.traceId,
+                            pendingEvents.size());
+                    metrics().increment(HandlerMetrics.DELAYED);
+                    log().d("{} will be called once the {} framework is initialized",
+                            route.functionTag, this.name);
+                    return;
+                }
+            }
+        }
+        if (event == null) {
+            route.invoke(params);
+        }
+        else {
+            replayPendingEvents(event);
+        }
+    }
+
+    /**
+     * Replays in order the events received before the initialization, unless another thread
+     * is already doing it. Called once the handler is initialized.
+     *
+     * @param last an event to replay after the pending ones, may be null.
+     */
+    void replayPendingEvents(TagEvent last) {
+        synchronized (pendingEventsLock) {
+            if (pendingEvents == null) {
+                return;
+            }
+            if (last != null) {
+                pendingEvents.add(last);
+            }
+            if (replayingPendingEvents) {
+                return;
+            }
+            replayingPendingEvents = true;
+        }
+        while (true) {
+            TagEvent event;
+            synchronized (pendingEventsLock) {
+                event = initialized ? pendingEvents.poll() : null;
+                if (event == null) {
+                    if (initialized) {
+                        pendingEvents = null;
+                    }
+                    replayingPendingEvents = false;
+                    return;
+                }
+            }
+            event.invoke();
+        }
+    }
+
+
+/* ***************************************** SDK calls ****************************************** */
+
+    /**
+     * Runs a call to the third part SDK, timed separately from the rest of the handler method
+     * and recorded with sdkCallDone(), even if it throws:
+     *
+     *     callSdk("AppEventsLogger.logEvent", new Runnable() {
+     *         @Override
+     *         public void run() {
+     *             facebookLogger.logEvent(eventName, parameters);
+     *         }
+     *     });
+     *
+     * @param sdkMethod the SDK method, e.g. 'AppEventsLogger.logEvent'
+     * @param call      the call to the SDK
+     */
+    protected void callSdk(String sdkMethod, Runnable call) {
+        long start = sdkCallStart();
+        try {
+            call.run();
+        } finally {
+            sdkCallDone(sdkMethod, start);
+        }
+    }
+
+    /**
+     * Marks the beginning of a call to the third part SDK, for the calls returning a value the
+     * handler needs, which can't be run with callSdk(): the call is made in a try block,
+     * with sdkCallDone() in its finally block so that the calls which throw are recorded too.
+     *
+     * @return the start of the call, to give to sdkCallDone()
+     */
+    protected long sdkCallStart() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a call to the third part SDK in the metrics of the handler and
+     * in the CargoTrace. Calls slower than CargoMetrics.setSlowCallThreshold() are reported
+     * with the handler, the SDK method and the thread.
+     *
+     * @param sdkMethod the SDK method, e.g. 'AppEventsLogger.logEvent'
+     * @param start     the value returned by sdkCallStart()
+     */
+    protected void sdkCallDone(String sdkMethod, long start) {
+        long end = System.nanoTime();
+        CargoTrace.record(CargoTrace.SDK_CALL, CargoTrace.idOf(sdkMethod), end - start, end);
+        CargoMetrics.recordSdkCall(this, sdkMethod, end - start);
+    }
+
 
 /* ************************************* Logging methods **************************************** */
 
+    /**
+     * Returns the metrics of the handler, shared by the handlers registered with the same key.
+     *
+     * @return the metrics of the handler
+     */
+    HandlerMetrics metrics() {
+        HandlerMetrics current = metrics;
+        if (current == null || current.key != key) {
+            current = CargoMetrics.forHandler(key);
+            metrics = current;
+        }
+        return current;
+    }
+
+    /**
+     * Returns the logger of the handler, which tag is built once from its key, e.g. 'FB_handler'.
+     *
+     * @return the logger of the handler
+     */
+    protected CargoLog log() {
+        CargoLog current = log;
+        if (current == null || current.key != key) {
+            current = CargoLog.forHandler(key);
+            log = current;
+        }
+        return current;
+    }
+
     /**
      * Logs a warning about a mandatory parameter missing in a method call.
      * Prints the name of the handler it happens in.
@@ -122,8 +453,9 @@ public abstract class AbstractTagHandler {
      */
     protected void logMissingParam(String[] parameters, String methodName){
         for (String parameter : parameters) {
-            Log.w(this.key+"_handler", "Parameter '"+ parameter +"' is required " +
-                    "in method '"+ methodName +"'");
+            CargoTrace.record(CargoTrace.PARAM_MISSING, CargoTrace.idOf(parameter), 0);
+            metrics().increment(HandlerMetrics.MISSING_PARAM);
+            log().w("Parameter '{}' is required in method '{}'", parameter, methodName);
         }
     }
 
@@ -132,8 +464,7 @@ public abstract class AbstractTagHandler {
      * Prints the name of the handler it happens in.
      */
     protected void logUninitializedFramework() {
-        Log.i(this.key+"_handler", "You must initialize the " +
-                this.name + " framework before using it");
+        log().i("You must initialize the {} framework before using it", this.name);
     }
 
     /**
@@ -144,8 +475,7 @@ public abstract class AbstractTagHandler {
      * @param value the value the parameter has been set to.
      */
     protected void logParamSetWithSuccess(String parameter, Object value) {
-        Log.v(this.key+"_handler", "Parameter '"+parameter+"' has been set to '"+
-                value.toString()+"' with success");
+        log().v("Parameter '{}' has been set to '{}' with success", parameter, value);
     }
 
     /**
@@ -157,8 +487,8 @@ public abstract class AbstractTagHandler {
      * @param values the set of the possible values.
      */
     protected void logNotFoundValue(String key, String value, Object[] values) {
-        Log.w(this.key+"_handler", "Value '"+value+"' for key '"+key+"' is not found " +
-                "among possible values " + values.toString());
+        log().w("Value '{}' for key '{}' is not found among possible values {}",
+                value, key, values);
     }
 
     /**
@@ -168,16 +498,18 @@ public abstract class AbstractTagHandler {
      * @param functionTag the function tag which doesn't match any method.
      */
     protected void logUnknownFunction(String functionTag) {
-        Log.d(this.key+"_handler", "Unable to find a method matching the function tag ["+functionTag+"].");
+        metrics().increment(HandlerMetrics.UNKNOWN_FUNCTION);
+        log().d("Unable to find a method matching the function tag [{}].", functionTag);
     }
 
     protected void logReceivedFunction(String functionTag, Map<String, Object> map) {
-        Log.i(this.key+"_handler", "Received function "+ functionTag
-                +" with parameters "+ Arrays.toString(map.entrySet().toArray())+".");
+        log().i("Received function {} with parameters {}.", functionTag, map);
     }
 
     protected void logUncastableParam(String parameter, String type) {
-        Log.e(this.key+"_handler", "Parameter "+ parameter +" cannot be casted to "+ type +".");
+        CargoTrace.record(CargoTrace.PARAM_UNCASTABLE, CargoTrace.idOf(parameter), 0);
+        metrics().increment(HandlerMetrics.UNCASTABLE_PARAM);
+        log().e("Parameter {} cannot be casted to {}.", parameter, type);
     }
 
 
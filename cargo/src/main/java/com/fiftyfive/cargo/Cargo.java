@@ -2,10 +2,29 @@ package com.fiftyfive.cargo;
 
 import android.app.Application;
 import android.content.Context;
-import android.util.Log;
-
+import android.os.Looper;
+
+import com.fiftyfive.cargo.models.Event;
+import com.fiftyfive.cargo.models.User;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import static com.fiftyfive.cargo.ModelsUtils.*;
 
@@ -22,18 +41,48 @@ public class Cargo {
 
     /** A reference to the instance of Cargo, in order to use it as a kind of singleton */
     private static Cargo instance = null;
-    /** The name of the class, used for the logs */
-    private static final String TAG = "Cargo" ;
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
     /** A boolean which defines whether the instance has been correctly initialized */
     private static boolean init = false;
-    private int handlersReady = 0;
+    /** The thread running the small timed tasks of Cargo, e.g. the timeouts of the readiness
+        listeners or the sampling of the CargoWatchdog, created when first needed */
+    private static ScheduledExecutorService scheduler;
+    /** The thread Cargo has been initialized on, the main thread of the application */
+    private static volatile Thread mainThread;
+    /** Posts the tasks which have to run on the main thread, created when first needed */
+    private static android.os.Handler mainHandler;
 
     /** An instance of the appContext within Cargo is instantiated */
     private Context appContext;
     /** Used to store initialized handlers and call on their activity life cycle callback methods */
     private TagHandlerManager manager;
-    /** Callback called when Cargo and its handlers are ready */
-    public CargoInterface trackingReady;
+    /** Callback called when Cargo and its handlers are ready, see also whenAllReady() */
+    public volatile CargoInterface trackingReady;
+    /** Whether trackingReady has already been called */
+    private boolean trackingReadyNotified = false;
+    /** The initialization of each handler, stored with its upper cased key */
+    private final ConcurrentHashMap<String, CargoFuture<AbstractTagHandler>> readiness =
+            new ConcurrentHashMap<String, CargoFuture<AbstractTagHandler>>();
+    /** Whether the handlers are only created when their first tag is received */
+    private volatile boolean lazyHandlers = false;
+    /** Runs the handler methods once a tag has been routed, on the calling thread by default */
+    private volatile DispatchExecutor dispatchExecutor = DispatchExecutors.callerRuns();
+    /** The journal of the routed events, null unless enableJournal() has been called */
+    private volatile CargoJournal journal;
+    /** Drops the repeated events, null unless setDeduplicationWindow() has been called */
+    private volatile EventDeduplicator deduplicator;
+    /** Drops a part of the events, null unless setSamplingRules() has been called */
+    private volatile EventSampler sampler;
+    /** The user id the sampling is based on, set by setSamplingUserId() */
+    private volatile String samplingUserId;
+    /** The id of this installation of the application, loaded in the background by init() */
+    private volatile String installId;
+
+    /** The directory of the journal, within the files directory of the application */
+    private static final String JOURNAL_DIRECTORY = "cargo-journal";
+    /** The file of the install id, within the files directory of the application */
+    private static final String INSTALL_ID_FILE = "cargo-install-id";
 
     private static final String HANDLER_METHOD = "handlerMethod";
 
@@ -47,18 +96,23 @@ public class Cargo {
     /**
      * Initialize and setup cargo
      * Static method, its call should be followed by Cargo.getInstance()
+     * It has to be called on the main thread, e.g. from Application.onCreate(), which is the
+     * thread watched by the CargoWatchdog.
      *
      * @param application   Your appContext instance
      */
     public static void init(Application  application){
         if (!init){
+            mainThread = Thread.currentThread();
+            CargoWatchdog.setMainThread(mainThread);
             instance = new Cargo();
             instance.setAppContext(application.getApplicationContext());
             instance.initManager(application);
+            instance.loadInstallId();
             init = true;
         }
         else {
-            Log.i("55", "Cargo has already been initialized");
+            LOG.i("Cargo has already been initialized");
         }
     }
 
@@ -81,7 +135,7 @@ public class Cargo {
      */
     public static Cargo getInstance(){
         if(!init){
-            Log.w(TAG, "Cargo instance must be initialized, null will be return");
+            LOG.w("Cargo instance must be initialized, null will be return");
         }
         return instance;
     }
@@ -93,18 +147,42 @@ public class Cargo {
     /**
      * Instantiate several handlers in the same time.
      * It has to be called once Cargo has been initialized.
+     * The handlers are instantiated and initialized in parallel on background threads, see
+     * HandlerRegistration, and this method returns right away: the tags aimed at a handler are
+     * dropped until it is registered, so fire the tags initializing the handlers from a listener
+     * of the returned future, then wait for them with whenAllReady().
+     * Use newRegistration() in order to order the initializations.
      *
      * @param handlers An array of Handler enums corresponding to the handlers to instantiate.
+     * @return a future completed once every handler has been registered, with the list of the
+     *         handlers which have been registered successfully
      */
-    public void registerHandlers(Handler[] handlers){
+    public CargoFuture<List<AbstractTagHandler>> registerHandlers(Handler[] handlers){
         if(!init){
-            Log.w(TAG, "You should initialize Cargo before trying to register handlers");
-            return;
+            LOG.w("You should initialize Cargo before trying to register handlers");
+            CargoFuture<List<AbstractTagHandler>> future =
+                    new CargoFuture<List<AbstractTagHandler>>();
+            future.complete(Collections.<AbstractTagHandler>emptyList());
+            return future;
         }
 
+        HandlerRegistration registration = newRegistration();
         for (Handler handler : handlers) {
-            registerHandler(handler);
+            registration.add(handler);
         }
+        return registration.start();
+    }
+
+    /**
+     * Creates a registration, which instantiates and initializes several handlers in parallel
+     * on background threads, possibly after some others, and returns a future completed once
+     * they all are registered.
+     * It has to be started once Cargo has been initialized.
+     *
+     * @return a new registration, to which the handlers have to be added before starting it.
+     */
+    public HandlerRegistration newRegistration() {
+        return new HandlerRegistration(this);
     }
 
     /**
@@ -114,114 +192,202 @@ public class Cargo {
      * @param handler The Handler enum corresponding to the handler to instantiate.
      */
     public void registerHandler(Handler handler) {
+        registerHandler(handler.name());
+    }
+
+    /**
+     * Instantiate the handler matching the key passed as parameter, from the HandlerFactory
+     * its module declares. Handlers which aren't part of the Handler enum can be registered
+     * this way, as long as they declare a factory.
+     * It has to be called once Cargo has been initialized.
+     *
+     * @param key The key of the handler to instantiate, e.g. "FB".
+     */
+    public void registerHandler(String key) {
         if(!init){
-            Log.w(TAG, "You should initialize Cargo before trying to register handlers");
+            LOG.w("You should initialize Cargo before trying to register handlers");
             return;
         }
 
-        switch (handler.toString()) {
-            case ADOBE:
-                register("com.fiftyfive.cargo.handlers.AdobeHandler");
-                break;
-            case AT_INTERNET:
-                register("com.fiftyfive.cargo.handlers.ATInternetHandler");
-                break;
-            case FACEBOOK:
-                register("com.fiftyfive.cargo.handlers.FacebookHandler");
-                break;
-            case TUNE:
-                register("com.fiftyfive.cargo.handlers.TuneHandler");
-                break;
-            default:
-                Log.w(TAG, handler.toString()+" hasn't been recognized as a correct " +
-                        "handler and won't be initialized");
-        }
+        register(key);
     }
 
     /**
-     * Register the class from its classpath
-     * Calls on register(which takes tagHandler Class as parameter) if the Class has been found.
-     * Throws a ClassNotFoundException if not.
+     * Instantiates and registers the handler matching a key, from its HandlerFactory.
      *
-     * @param classPath     the class path of the handler you want to register
+     * @param key The key of the handler to instantiate, e.g. "FB".
+     * @return the handler if it has been registered, null otherwise.
      */
-    private void register(String classPath) {
-        try {
-            Class tagHandler = Class.forName(classPath);
-            register(tagHandler);
-        } catch (ClassNotFoundException e) {
-            Log.i(TAG, "Handler "+classPath+" is not registered");
-            e.printStackTrace();
-        }
+    AbstractTagHandler register(String key) {
+        AbstractTagHandler instance = create(key);
+        return instance != null ? register(instance) : null;
     }
 
     /**
-     * Instantiates the handler after its class type
-     * Calls on TagHandlerManager.registerHandlers() method in order to store all the handlers
-     * Calls on the register method of each handler to register the callbacks based on GTM tags
+     * Instantiates the handler matching a key, from its HandlerFactory, without initializing it.
      *
-     * Display an exception if a fail occurs
-     *
-     * @param tagHandler    the class of the handler
+     * @param key The key of the handler to instantiate, e.g. "FB".
+     * @return the handler, or null if no factory matches the key.
      */
-    private void register(Class<AbstractTagHandler> tagHandler) {
-        try {
-            AbstractTagHandler instance = tagHandler.newInstance();
+    AbstractTagHandler create(String key) {
+        HandlerFactory factory = HandlerFactories.get(key);
+        if (factory == null) {
+            LOG.w("{} hasn't been recognized as a correct handler and won't be initialized", key);
+            return null;
+        }
+        return lazyHandlers
+                ? new LazyHandler(factory, manager)
+                : factory.create();
+    }
 
-            // Calls the tagHandlerManager.registerHandler() method to store handlers in a list
-            manager.registerHandler(instance);
-        } catch (InstantiationException e) {
-            e.printStackTrace();
-        } catch (IllegalAccessException e) {
-            e.printStackTrace();
+    /**
+     * Initializes and registers a handler created with create().
+     *
+     * @param instance the handler
+     * @return the handler if it has been registered, null otherwise.
+     */
+    AbstractTagHandler register(AbstractTagHandler instance) {
+        // Calls the tagHandlerManager.registerHandler() method to store handlers in a list
+        manager.registerHandler(instance);
+        if (!instance.valid) {
+            return null;
         }
+        replayJournal();
+        return instance;
     }
 
     /**
      * The method handling callbacks from GTM container when a tag is triggered.
      * Actually, this one is called from the class Tags, which redirects the callback here.
      * The execute() method will dispatch the map of parameters to the corresponding handler method.
+     * The events are first sampled on the raw map, when rules have been set with
+     * setSamplingRules(), then repeated events are dropped, when a window has been set with
+     * setDeduplicationWindow().
      *
      * @param map the map obtained from the container, containing the following :
      *            * handlerKey (String) : the key of the handler
      *                                  (the same as the one used in the registerHandler() method)
      *            * handlerMethod (String) : the method aimed by this call. e.g : 'FB_init'
+     *                                     or several methods separated with commas, in order
+     *                                     to send the same event to several handlers.
      *            * parameters : other key-value pairs are used as parameters for the method.
      */
     void execute(Map<String, Object> map) {
         if(!init){
-            Log.w(TAG, "You should initialize Cargo before trying to call its methods");
+            LOG.w("You should initialize Cargo before trying to call its methods");
+            return;
+        }
+        EventSampler currentSampler = sampler;
+        if (currentSampler != null && map != null && isSampledOut(currentSampler, map)) {
+            return;
+        }
+        ParamBag params = ParamBag.of(map);
+        String handlerMethod = getString(params, HANDLER_METHOD);
+        params.remove(HANDLER_METHOD);
+
+        EventDeduplicator currentDeduplicator = deduplicator;
+        if (handlerMethod != null && currentDeduplicator != null
+                && currentDeduplicator.isDuplicate(handlerMethod, params)) {
+            CargoTrace.record(CargoTrace.DUPLICATE_DROPPED, traceIdOf(handlerMethod), 0);
+            LOG.d("'{}' has already been received with the same parameters, it is dropped.",
+                    handlerMethod);
             return;
         }
-        String handlerMethod = getString(map, HANDLER_METHOD);
-        map.remove(HANDLER_METHOD);
-
-        if (handlerMethod != null) {
-            String handlerKey = handlerMethod.split("\\_")[0];
 
-            if (handlerKey != null && handlerKey.length() > 1 && handlerKey.length() < 4) {
-                Log.d(TAG, "Received '"+ handlerMethod + "' method name " +
-                        "for the handler matching the '"+ handlerKey +"' key.");
-                List<AbstractTagHandler> handlers = manager.getHandlers();
-                for (AbstractTagHandler handler : handlers) {
-                    if (handlerKey.toUpperCase().equals(handler.key.toUpperCase())) {
-                        handler.execute(handlerMethod, map);
-                        return ;
-                    }
-                }
-                Log.w(TAG, "Unable to find a handler matching the key '" + handlerKey + "'.");
+        if (handlerMethod != null
+                && handlerMethod.indexOf(TagHandlerManager.MULTICAST_SEPARATOR) >= 0) {
+            multicast(handlerMethod, params);
+        }
+        else if (handlerMethod != null) {
+            TagRoute route = manager.getRoute(handlerMethod);
+
+            if (route != null) {
+                CargoTrace.record(CargoTrace.ROUTE_RESOLVED, route.traceId, 1);
+                LOG.d("Received '{}' method name.", handlerMethod);
+                journal(route, params);
+                dispatchExecutor.dispatch(route, params);
+                return ;
+            }
+            CargoTrace.record(CargoTrace.ROUTE_NOT_FOUND, CargoTrace.UNRESOLVED_ID, 0);
+            int keyLength = HandlerRoutingIndex.keyLength(handlerMethod);
+            if (keyLength > 1 && keyLength < 4) {
+                LOG.w("Unable to find a handler matching the key '{}'.",
+                        handlerMethod.substring(0, keyLength));
             }
             else {
-                Log.w(TAG, "Something went wrong while analyzing '"+HANDLER_METHOD+"' format, " +
+                LOG.w("Something went wrong while analyzing '"+HANDLER_METHOD+"' format, " +
                         "check it again please.");
             }
         }
         else {
-            Log.w(TAG, "Parameter '"+ HANDLER_METHOD +"' is " +
+            CargoTrace.record(CargoTrace.ROUTE_NOT_FOUND, 0, 0);
+            LOG.w("Parameter '"+ HANDLER_METHOD +"' is " +
                     "required in method cargo.execute(Map<String, Object> map)");
         }
     }
 
+    /**
+     * Delivers a tag to several handler methods. The parameters are shared by all the handlers,
+     * each one receiving its own overlay of the map so that the parameters it consumes don't
+     * disappear for the others. The deliveries go through the dispatch executor, which runs
+     * them in parallel when it has one lane per handler, e.g. DispatchExecutors.threadPerHandler().
+     *
+     * @param handlerMethods the methods separated with commas, e.g. 'FB_tagEvent,AT_tagEvent'
+     * @param map            the parameters of the tag, which aren't modified afterwards
+     */
+    private void multicast(String handlerMethods, Map<String, Object> map) {
+        TagRoute[] routes = manager.getRoutes(handlerMethods);
+        if (routes.length == 0) {
+            CargoTrace.record(CargoTrace.ROUTE_NOT_FOUND, CargoTrace.UNRESOLVED_ID, 0);
+            LOG.w("Unable to find any handler matching '{}'.", handlerMethods);
+            return;
+        }
+        LOG.d("Received '{}' method names.", handlerMethods);
+        EventSampler currentSampler = sampler;
+        Object eventName = currentSampler != null ? map.get(Event.EVENT_NAME) : null;
+        for (TagRoute route : routes) {
+            if (currentSampler != null
+                    && currentSampler.isSampledOut(route.functionTag, eventName)) {
+                CargoTrace.record(CargoTrace.SAMPLED_OUT, route.traceId, 0);
+                continue;
+            }
+            CargoTrace.record(CargoTrace.ROUTE_RESOLVED, route.traceId, routes.length);
+            ParamsOverlay params = new ParamsOverlay(map);
+            journal(route, params);
+            dispatchExecutor.dispatch(route, params);
+        }
+    }
+
+    /**
+     * Gets the CargoTrace id of a handlerMethod received from the container. Only the function
+     * tags of the declared routes are interned, the other handlerMethods, including the
+     * multicast ones, are recorded with CargoTrace.UNRESOLVED_ID so that they don't fill the
+     * table of names.
+     *
+     * @param handlerMethod the handlerMethod, e.g. 'FB_tagEvent'
+     * @return the id of its route, or CargoTrace.UNRESOLVED_ID
+     */
+    private int traceIdOf(String handlerMethod) {
+        if (handlerMethod.indexOf(TagHandlerManager.MULTICAST_SEPARATOR) >= 0) {
+            return CargoTrace.UNRESOLVED_ID;
+        }
+        TagRoute route = manager.getRoute(handlerMethod);
+        return route != null ? route.traceId : CargoTrace.UNRESOLVED_ID;
+    }
+
+    /**
+     * Writes a routed event to the journal, if it is enabled.
+     *
+     * @param route  the route of the event
+     * @param params the parameters of the event, which carry its sequence number afterwards
+     */
+    private void journal(TagRoute route, Map<String, Object> params) {
+        CargoJournal current = journal;
+        if (current != null) {
+            current.append(route.functionTag, params);
+        }
+    }
+
     /**
      * An enum which allows to initialize the desired handlers without any risk of mistake.
      */
@@ -258,6 +424,325 @@ public class Cargo {
     }
 
 
+/* ****************************************** Journal ******************************************* */
+
+    /**
+     * Enables the journal of the routed events, stored in the files directory of the application.
+     * See enableJournal(File).
+     */
+    public void enableJournal() {
+        enableJournal(new File(appContext.getFilesDir(), JOURNAL_DIRECTORY));
+    }
+
+    /**
+     * Enables the journal of the routed events, so that the events held by Cargo until their
+     * handler is initialized, or queued by the dispatch executor, aren't lost if the process dies.
+     * The events of the previous runs which haven't been delivered are replayed into their
+     * handler once it is registered, so this method should be called right after init().
+     * Writing an event to the journal takes a few microseconds, and nothing is written until
+     * this method is called.
+     *
+     * @param directory the directory of the journal, created if needed
+     */
+    public void enableJournal(File directory) {
+        synchronized (this) {
+            if (journal != null) {
+                LOG.i("The journal has already been enabled");
+                return;
+            }
+            try {
+                journal = CargoJournal.open(directory, CargoJournal.DEFAULT_SEGMENT_SIZE);
+            } catch (IOException e) {
+                LOG.e("Unable to open the journal, the events won't be journaled", e);
+                return;
+            }
+            CargoJournal.setActive(journal);
+        }
+        replayJournal();
+    }
+
+    /**
+     * Disables the journal. The events not yet delivered are kept on the disk, and replayed
+     * once the journal is enabled again.
+     */
+    public synchronized void disableJournal() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Replays the events of the journal aimed at the handlers registered so far. They go
+     * through the dispatch executor, as the live events, so that they are delivered in the lane
+     * of their handler and never at the same time as its other events.
+     */
+    private void replayJournal() {
+        CargoJournal current = journal;
+        if (current == null || manager == null) {
+            return;
+        }
+        for (CargoJournal.PendingEvent event : current.takeReplays(manager)) {
+            LOG.d("Replaying '{}' from the journal.", event.functionTag);
+            try {
+                dispatchExecutor.dispatch(event.route, event.params);
+            } catch (RuntimeException e) {
+                event.route.handler.log().e("Failed to replay " + event.functionTag, e);
+            }
+        }
+    }
+
+
+/* ***************************************** Sampling ******************************************* */
+
+    /**
+     * Sets the rules keeping a percentage of the events of some handler methods, e.g. the scroll
+     * depth or list impressions which are only useful statistically. A rule is written as
+     * 'ADB_tagEvent:scroll=5%' to keep 5% of the 'ADB_tagEvent' named 'scroll', or as
+     * 'ADB_tagEvent=50%' to keep 50% of the other 'ADB_tagEvent'. The events without any
+     * matching rule are all kept, and the invalid rules are logged and ignored.
+     *
+     * The decisions are consistent for a user: the same users are kept by all the rules of an
+     * event name, see setSamplingUserId(). The rules are evaluated before the parameters of the
+     * event are copied, so that the events dropped cost almost nothing. Disabled by default.
+     *
+     * @param rules the rules, none to disable the sampling
+     */
+    public void setSamplingRules(String... rules) {
+        if (rules == null || rules.length == 0) {
+            sampler = null;
+            return;
+        }
+        sampler = EventSampler.parse(rules, getSamplingUserKey());
+        // the install id may have been loaded while the rules were parsed
+        updateSamplingUserKey();
+    }
+
+    /**
+     * Sets the user id the sampling decisions are based on, which takes precedence over the
+     * User.USER_ID parameter of the events. Without any user id, the decisions are based on an
+     * id of the installation of the application, loaded in the background by init(): the
+     * events are all kept until it is loaded.
+     *
+     * @param userId the id of the user, null to go back to the user id of the events
+     */
+    public void setSamplingUserId(String userId) {
+        samplingUserId = userId;
+        updateSamplingUserKey();
+    }
+
+    /**
+     * Checks the sampling rules against the map received from the container, before it is
+     * copied. The decision is based on the User.USER_ID parameter of the event, unless a user
+     * id has been set with setSamplingUserId().
+     *
+     * @param currentSampler the sampling rules
+     * @param map            the map obtained from the container
+     * @return true if the event has been dropped
+     */
+    private boolean isSampledOut(EventSampler currentSampler, Map<String, Object> map) {
+        Object handlerMethod = map.get(HANDLER_METHOD);
+        if (!(handlerMethod instanceof String)) {
+            return false;
+        }
+        Object eventUserId = samplingUserId == null ? map.get(User.USER_ID) : null;
+        if (!currentSampler.isSampledOut((String) handlerMethod, map.get(Event.EVENT_NAME),
+                eventUserId != null ? eventUserId.toString() : null)) {
+            return false;
+        }
+        CargoTrace.record(CargoTrace.SAMPLED_OUT, traceIdOf((String) handlerMethod), 0);
+        LOG.v("'{}' isn't sampled for this user, it is dropped.", handlerMethod);
+        return true;
+    }
+
+    /**
+     * Gets the key the sampling decisions are based on when the events don't carry any
+     * User.USER_ID: the user id set by setSamplingUserId(), or else the install id.
+     *
+     * @return the key of the user, null until the install id is loaded
+     */
+    private String getSamplingUserKey() {
+        String key = samplingUserId;
+        return key != null ? key : installId;
+    }
+
+    /**
+     * Passes the current key of the user to the sampling rules, if they are set.
+     */
+    private void updateSamplingUserKey() {
+        EventSampler currentSampler = sampler;
+        if (currentSampler != null) {
+            currentSampler.setUserKey(getSamplingUserKey());
+        }
+    }
+
+    /**
+     * Loads the install id on the scheduler, as it reads a file, so that it is known by the
+     * time the first events are sampled.
+     */
+    private void loadInstallId() {
+        getScheduler().execute(new Runnable() {
+            @Override
+            public void run() {
+                getInstallId();
+                updateSamplingUserKey();
+            }
+        });
+    }
+
+    /**
+     * Gets the id of this installation of the application, which is created and persisted in
+     * the files directory of the application the first time. If it can't be persisted, an id
+     * only valid until the application is killed is used. Reads a file, so it is called on the
+     * scheduler of Cargo rather than on the main thread.
+     *
+     * @return the id of the installation
+     */
+    private synchronized String getInstallId() {
+        if (installId != null) {
+            return installId;
+        }
+        CargoWatchdog.Section section =
+                CargoWatchdog.enter(CargoWatchdog.IO, null, "file:" + INSTALL_ID_FILE);
+        File file = new File(appContext.getFilesDir(), INSTALL_ID_FILE);
+        String id = null;
+        try {
+            if (file.exists()) {
+                id = readInstallId(file);
+            }
+            if (id == null || id.length() == 0) {
+                id = UUID.randomUUID().toString();
+                OutputStream output = new FileOutputStream(file);
+                try {
+                    output.write(id.getBytes("UTF-8"));
+                } finally {
+                    output.close();
+                }
+            }
+        } catch (IOException e) {
+            LOG.w("Unable to persist the install id, the sampling may change at the next launch.",
+                    e);
+            if (id == null || id.length() == 0) {
+                id = UUID.randomUUID().toString();
+            }
+        } finally {
+            CargoWatchdog.exit(section);
+        }
+        installId = id;
+        return id;
+    }
+
+    /**
+     * Reads the id of the installation of the application.
+     *
+     * @param file the file of the install id
+     * @return the install id
+     * @throws IOException if the file can't be read
+     */
+    private static String readInstallId(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                content.write(buffer, 0, read);
+            }
+            return content.toString("UTF-8").trim();
+        } finally {
+            input.close();
+        }
+    }
+
+
+/* ********************************************* I/O ******************************************** */
+
+    /**
+     * Opens a file of the assets folder of the application. Handlers read their files through
+     * this method, so that an I/O made on the main thread is reported by the CargoWatchdog.
+     *
+     * @param fileName the path of the file within the assets folder, e.g. 'ADBMobileConfig.json'
+     * @return the content of the file, which has to be closed by the caller
+     * @throws IOException if the file doesn't exist or can't be opened
+     */
+    public InputStream openAsset(String fileName) throws IOException {
+        CargoWatchdog.Section section =
+                CargoWatchdog.enter(CargoWatchdog.IO, null, "asset:" + fileName);
+        try {
+            return appContext.getAssets().open(fileName);
+        } finally {
+            CargoWatchdog.exit(section);
+        }
+    }
+
+
+/* ***************************************** Scheduling ***************************************** */
+
+    /**
+     * Gets the thread running the small timed tasks of Cargo, and creates it if needed.
+     * Its tasks must return quickly: the calls to the third part SDKs are never run on it,
+     * but dispatched to the lane of their handler, see dispatchTask().
+     *
+     * @return the scheduler of Cargo
+     */
+    static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "Cargo-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Runs a task on the main thread of the application: right away if it is called from
+     * the main thread or if Cargo isn't initialized, posted to the main looper otherwise.
+     *
+     * @param task the task, e.g. a call to a third part SDK which has to run on the main thread
+     */
+    static void runOnMainThread(Runnable task) {
+        Thread main = mainThread;
+        if (main == null || main == Thread.currentThread()) {
+            task.run();
+            return;
+        }
+        getMainHandler().post(task);
+    }
+
+    /**
+     * Gets the handler posting the tasks to the main thread, and creates it if needed.
+     *
+     * @return the handler of the main looper
+     */
+    private static synchronized android.os.Handler getMainHandler() {
+        if (mainHandler == null) {
+            mainHandler = new android.os.Handler(Looper.getMainLooper());
+        }
+        return mainHandler;
+    }
+
+    /**
+     * Runs a task of Cargo in the lane of a handler of the dispatch executor, after the events
+     * already dispatched to the handler, e.g. the delivery of a batch. The task runs on the
+     * calling thread if Cargo isn't initialized.
+     *
+     * @param route the route of the task, see TagRoute.task()
+     */
+    static void dispatchTask(TagRoute route) {
+        Cargo current = instance;
+        if (current == null) {
+            route.execute(Collections.<String, Object>emptyMap());
+            return;
+        }
+        current.dispatchExecutor.dispatch(route, Collections.<String, Object>emptyMap());
+    }
+
+
 /* ************************************** Getters - Setters ************************************* */
 
     /**
@@ -280,14 +765,207 @@ public class Cargo {
         }
     }
 
+    /**
+     * Retrieves a registered handler from its key, e.g. in order to configure it.
+     *
+     * @param key the key of the handler, e.g. 'FB'
+     * @return the handler, or null if no handler has been registered with this key
+     */
+    public AbstractTagHandler getHandler(String key) {
+        if (key == null || manager == null) {
+            return null;
+        }
+        return manager.getHandler(key, key.length());
+    }
+
+    /**
+     * Sets whether the handlers registered afterwards are created lazily. A lazy handler is
+     * registered as a lightweight proxy, and the third part SDK is only loaded and initialized
+     * when the first tag aimed at this handler is received, e.g. its init tag, on the thread
+     * routing this tag. A handler whose initialize() needs the main thread, see
+     * AbstractTagHandler.initializesOnMainThread(), is initialized on the main thread, the
+     * events received meanwhile being kept and forwarded to it afterwards. Its lifecycle
+     * callbacks are replayed on the main thread. Until then, getHandler() returns the proxy.
+     * Disabled by default.
+     *
+     * @param lazy true to create the handlers on their first tag
+     */
+    public void setLazyHandlers(boolean lazy) {
+        lazyHandlers = lazy;
+    }
+
+    /**
+     * Sets the window during which an event identical to a previous one is dropped, e.g. the
+     * same tag fired twice by a double tap. Events are identical when they have the same
+     * handlerMethod and the same Event.EVENT_ID, or the same parameters if they have no id.
+     * The window starts with the first event. Disabled by default.
+     *
+     * @param duration the duration of the window, 0 to disable the deduplication
+     * @param unit     the unit of the duration
+     */
+    public void setDeduplicationWindow(long duration, TimeUnit unit) {
+        deduplicator = duration > 0
+                ? new EventDeduplicator(unit.toNanos(duration), EventDeduplicator.DEFAULT_CAPACITY)
+                : null;
+    }
+
+    /**
+     * Gets the executor which runs the handler methods once a tag has been routed.
+     *
+     * @return the current dispatch executor, or the one being set if it is replacing another one
+     */
+    public DispatchExecutor getDispatchExecutor() {
+        DispatchExecutor current = dispatchExecutor;
+        return current instanceof DispatchExecutors.Handover
+                ? ((DispatchExecutors.Handover) current).next : current;
+    }
+
+    /**
+     * Sets the executor which runs the handler methods once a tag has been routed.
+     * With a background executor, Tags.execute() returns as soon as the event is queued,
+     * instead of waiting for the third part SDK calls to be done.
+     * The previous executor is shut down on a background thread. Until it has delivered the
+     * events it has been given, the new events are queued, so that no handler receives an
+     * event before the previous ones or from two threads at once.
+     *
+     * @param executor the new executor, see DispatchExecutors for the available implementations.
+     *                 A null value restores the default caller runs executor.
+     */
+    public synchronized void setDispatchExecutor(DispatchExecutor executor) {
+        DispatchExecutor next = executor != null ? executor : DispatchExecutors.callerRuns();
+        if (next == getDispatchExecutor()) {
+            return;
+        }
+        final DispatchExecutors.Handover handover =
+                new DispatchExecutors.Handover(dispatchExecutor, next);
+        dispatchExecutor = handover;
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                handover.run();
+                completeHandover(handover);
+            }
+        }, "Cargo-dispatch-handover");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Replaces the handover executor with the new executor once the handover is done,
+     * unless another executor has been set in the meantime.
+     *
+     * @param handover the handover which is done
+     */
+    private synchronized void completeHandover(DispatchExecutors.Handover handover) {
+        if (dispatchExecutor == handover) {
+            dispatchExecutor = handover.next;
+        }
+    }
+
     /**
      * A setter which is triggered when a handler has been initialized correctly.
-     * When all the handlers are ready to be used, triggers a callback to inform cargo is ready.
+     * Completes the readiness of the handler, and when all the registered handlers are
+     * initialized, triggers a callback to inform cargo is ready.
+     *
+     * @param handler the handler which has been initialized
+     */
+    void setHandlerInit(AbstractTagHandler handler) {
+        if (handler.key != null) {
+            readinessOf(handler.key).complete(handler);
+        }
+        CargoInterface callback;
+        synchronized (this) {
+            if (trackingReadyNotified || manager == null) {
+                return;
+            }
+            for (AbstractTagHandler registered : manager.getHandlers()) {
+                if (!registered.isInitialized()) {
+                    return;
+                }
+            }
+            callback = trackingReady;
+            trackingReadyNotified = callback != null;
+        }
+        if (callback != null) {
+            callback.isReady();
+        }
+    }
+
+
+/* ****************************************** Readiness ***************************************** */
+
+    /**
+     * Returns a future completed once the handler matching the key has been initialized,
+     * whether it has already been registered or not.
+     * Use its get(timeout, unit) or addListener(listener, executor, timeout, unit) methods
+     * in order not to wait indefinitely for a SDK which fails to start.
+     *
+     * @param key the key of the handler, e.g. "FB"
+     * @return the future of the initialized handler
+     */
+    public CargoFuture<AbstractTagHandler> whenReady(String key) {
+        CargoFuture<AbstractTagHandler> future = readinessOf(key);
+        AbstractTagHandler handler = getHandler(key);
+        if (handler != null && handler.isInitialized()) {
+            future.complete(handler);
+        }
+        return future;
+    }
+
+    /**
+     * Returns a future completed once the handler has been initialized.
+     *
+     * @param handler the Handler enum of the handler
+     * @return the future of the initialized handler
      */
-    void setHandlerInit() {
-        if (++handlersReady == manager.getHandlers().size()) {
-            trackingReady.isReady();
+    public CargoFuture<AbstractTagHandler> whenReady(Handler handler) {
+        return whenReady(handler.name());
+    }
+
+    /**
+     * Returns a future completed once all the handlers matching the keys have been initialized.
+     * Without any key, waits for all the handlers registered at the time of the call.
+     *
+     * @param keys the keys of the handlers, e.g. "FB", "ADB"
+     * @return the future of the initialized handlers, in the order of the keys
+     */
+    public CargoFuture<List<AbstractTagHandler>> whenAllReady(String... keys) {
+        List<CargoFuture<AbstractTagHandler>> futures =
+                new ArrayList<CargoFuture<AbstractTagHandler>>();
+        if (keys == null || keys.length == 0) {
+            if (manager != null) {
+                for (AbstractTagHandler handler : manager.getHandlers()) {
+                    if (handler.key != null) {
+                        futures.add(whenReady(handler.key));
+                    }
+                }
+            }
+        }
+        else {
+            for (String key : keys) {
+                futures.add(whenReady(key));
+            }
+        }
+        return CargoFuture.allOf(futures);
+    }
+
+    /**
+     * Gets the readiness of a handler, and creates it if needed.
+     *
+     * @param key the key of the handler
+     * @return the future completed once the handler is initialized
+     */
+    private CargoFuture<AbstractTagHandler> readinessOf(String key) {
+        String upperKey = key.toUpperCase(Locale.US);
+        CargoFuture<AbstractTagHandler> future = readiness.get(upperKey);
+        if (future == null) {
+            CargoFuture<AbstractTagHandler> created = new CargoFuture<AbstractTagHandler>();
+            future = readiness.putIfAbsent(upperKey, created);
+            if (future == null) {
+                future = created;
+            }
         }
+        return future;
     }
 
 /* ********************************************************************************************** */
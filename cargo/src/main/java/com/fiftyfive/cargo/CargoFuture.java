@@ -0,0 +1,217 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * A Future completed by Cargo itself once an asynchronous operation is done,
+ * e.g. the registration or the initialization of the handlers. It can't be cancelled.
+ *
+ * Besides the blocking get() methods, listeners can be notified once it is completed,
+ * possibly after a timeout, so that the UI never has to wait for the slowest SDK.
+ *
+ * @param <T> the type of the result
+ */
+public final class CargoFuture<T> implements Future<T> {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** Released once the future is completed */
+    private final CountDownLatch done = new CountDownLatch(1);
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+
+    /** The result of the operation */
+    private volatile T result;
+    /** The listeners waiting for the completion, null once it is completed */
+    private List<Runnable> listeners = new ArrayList<Runnable>();
+
+
+/* ***************************************** Completion ***************************************** */
+
+    /**
+     * Completes the future with its result. Only the first call has an effect.
+     *
+     * @param value the result of the operation
+     * @return true if this call completed the future, false if it was already completed
+     */
+    boolean complete(T value) {
+        List<Runnable> toNotify;
+        synchronized (this) {
+            if (isDone()) {
+                return false;
+            }
+            result = value;
+            done.countDown();
+            toNotify = listeners;
+            listeners = null;
+        }
+        for (Runnable listener : toNotify) {
+            listener.run();
+        }
+        return true;
+    }
+
+    /**
+     * Creates a future completed once all the given futures are, with their results.
+     *
+     * @param futures the futures to wait for
+     * @param <T>     the type of their results
+     * @return the future of the results, in the order of the futures
+     */
+    static <T> CargoFuture<List<T>> allOf(final List<CargoFuture<T>> futures) {
+        final CargoFuture<List<T>> all = new CargoFuture<List<T>>();
+        if (futures.isEmpty()) {
+            all.complete(Collections.<T>emptyList());
+            return all;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        Runnable countDown = new Runnable() {
+            @Override
+            public void run() {
+                if (remaining.decrementAndGet() == 0) {
+                    List<T> results = new ArrayList<T>(futures.size());
+                    for (CargoFuture<T> future : futures) {
+                        results.add(future.result);
+                    }
+                    all.complete(Collections.unmodifiableList(results));
+                }
+            }
+        };
+        for (CargoFuture<T> future : futures) {
+            future.addListener(countDown);
+        }
+        return all;
+    }
+
+
+/* ***************************************** Listeners ****************************************** */
+
+    /**
+     * Runs a listener once the future is completed, right away if it already is.
+     *
+     * @param listener the listener, which can call get() without blocking
+     * @param executor runs the listener, e.g. to run it on the main thread
+     */
+    public void addListener(final Runnable listener, final Executor executor) {
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                execute(executor, listener);
+            }
+        });
+    }
+
+    /**
+     * Runs a listener once the future is completed, or once the timeout has elapsed,
+     * whichever comes first. The listener is run only once, and can check isDone() to know
+     * whether the operation has completed in time.
+     *
+     * @param listener the listener
+     * @param executor runs the listener, e.g. to run it on the main thread
+     * @param timeout  the maximum time to wait for the completion
+     * @param unit     the unit of the timeout
+     */
+    public void addListener(final Runnable listener, final Executor executor,
+                            long timeout, TimeUnit unit) {
+        final AtomicBoolean notified = new AtomicBoolean(false);
+        Runnable once = new Runnable() {
+            @Override
+            public void run() {
+                if (notified.compareAndSet(false, true)) {
+                    execute(executor, listener);
+                }
+            }
+        };
+        if (!isDone()) {
+            Cargo.getScheduler().schedule(once, timeout, unit);
+        }
+        addListener(once);
+    }
+
+    /**
+     * Runs a listener on the thread completing the future, right away if it already is.
+     *
+     * @param listener the listener
+     */
+    private void addListener(Runnable listener) {
+        synchronized (this) {
+            if (listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Runs a listener on an executor, logging the failures so that they don't prevent
+     * the other listeners to be notified.
+     *
+     * @param executor the executor
+     * @param listener the listener
+     */
+    private static void execute(Executor executor, Runnable listener) {
+        try {
+            executor.execute(listener);
+        } catch (RejectedExecutionException e) {
+            LOG.w("Unable to notify a listener", e);
+        } catch (RuntimeException e) {
+            LOG.e("A listener has failed", e);
+        }
+    }
+
+
+/* ******************************************* Future ******************************************* */
+
+    /**
+     * Cargo operations can't be cancelled.
+     *
+     * @param mayInterruptIfRunning ignored
+     * @return false
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        done.await();
+        return result;
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (!done.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result;
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -1,7 +1,6 @@
 package com.fiftyfive.cargo;
 
 import android.support.annotation.NonNull;
-import android.util.Log;
 
 import com.fiftyfive.cargo.models.Item;
 
@@ -21,6 +20,13 @@ public class CargoItem {
     private static ArrayList<CargoItem> itemsList = null;
     /** boolean set to true when a tag custom function is called */
     private static boolean tagFiredSinceLastChange = false;
+    /** the list of items of the event being delivered on the current thread, if any */
+    private static final ThreadLocal<ArrayList<CargoItem>> deliveredItemsList =
+            new ThreadLocal<ArrayList<CargoItem>>();
+    /** stored in deliveredItemsList when the event being delivered doesn't have any item */
+    private static final ArrayList<CargoItem> NO_ITEMS = new ArrayList<CargoItem>(0);
+    /** the logger of the class */
+    private static final CargoLog LOG = new CargoLog("CargoItem");
 
     /** name of the item */
     private String name;
@@ -103,13 +109,36 @@ public class CargoItem {
     /**
      * A getter for the list of items which will be sent to the next "item relative" event.
      * May be used to modify some objects before setting a new list with setItemsList() method.
+     * When called by a handler from a dispatch thread, returns the items which were attached
+     * to the event being delivered when its tag has been fired.
      *
      * @return an ArrayList of CargoItem object.
      */
     public static ArrayList<CargoItem> getItemsList() {
+        ArrayList<CargoItem> delivered = deliveredItemsList.get();
+        if (delivered != null) {
+            return delivered == NO_ITEMS ? null : delivered;
+        }
         return itemsList;
     }
 
+    /**
+     * Called before delivering an event on a dispatch thread, in order to make the items which
+     * were attached to it visible to the handler through getItemsList().
+     *
+     * @param items the items attached to the event when its tag has been fired, may be null.
+     */
+    static void setDeliveredItemsList(ArrayList<CargoItem> items) {
+        deliveredItemsList.set(items != null ? items : NO_ITEMS);
+    }
+
+    /**
+     * Called once an event has been delivered on a dispatch thread.
+     */
+    static void clearDeliveredItemsList() {
+        deliveredItemsList.remove();
+    }
+
     /**
      * Verifies whether a tag has been fired since the last list modification.
      * If applicable, reset the 'tagFiredSinceLastChange' boolean to 'false' and set the 'itemsList'
@@ -120,8 +149,8 @@ public class CargoItem {
         if (tagFiredSinceLastChange) {
             tagFiredSinceLastChange = false;
             CargoItem.setItemsList(null);
-            Log.d("CargoItem", "CargoItem.itemsList is set to 'null' after an event " +
-                    "has been sent and before any other itemsList manipulation.");
+            LOG.d("CargoItem.itemsList is set to 'null' after an event "
+                    + "has been sent and before any other itemsList manipulation.");
         }
     }
 
@@ -0,0 +1,808 @@
+package com.fiftyfive.cargo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * An append-only journal of the routed events, so that the events held by Cargo (waiting for
+ * the initialization of their handler, queued on a dispatch thread or batched) aren't lost when
+ * the process dies. It is enabled with Cargo.enableJournal().
+ *
+ * Each event is written when it is routed, and acknowledged once its handler method has been
+ * called, or once it has been dropped. The records are written to segments of a fixed size
+ * mapped in memory, so that appending an event is a copy to the page cache, which survives
+ * the death of the process. A record is committed by writing its length last, a record
+ * without its length is ignored. A record is made of:
+ *  * its length (int), which doesn't include itself
+ *  * its type (byte), EVENT or ACK
+ *  * the sequence number of the event (long)
+ *  * for an event, its function tag and its parameters (see writeValue())
+ *
+ * When a segment is full, a new one is created. The oldest segments are deleted as soon as all
+ * their events are acknowledged, and when there are more than MAX_SEGMENTS segments, the events
+ * still pending in the previous ones are copied to the current one, which compacts the journal.
+ * Segments are only created by a rotation or an opening, which both compact the journal when
+ * needed, so the journal never takes more than MAX_SEGMENTS + 1 segments on the disk without
+ * having to be compacted periodically.
+ *
+ * When the journal is opened, the events which haven't been acknowledged are read back and
+ * replayed into their handler once it is registered. Events are delivered at least once:
+ * an event whose method has run right before the process died may be replayed.
+ * The items attached with CargoItem aren't journaled.
+ */
+final class CargoJournal {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The sequence number of the events which aren't journaled */
+    static final long NOT_JOURNALED = -1;
+    /** The default size of a segment, in bytes */
+    static final int DEFAULT_SEGMENT_SIZE = 256 * 1024;
+    /** The number of segments from which the journal is compacted */
+    static final int MAX_SEGMENTS = 4;
+
+    /** The type of the record of an event */
+    private static final byte EVENT = 1;
+    /** The type of the record acknowledging an event */
+    private static final byte ACK = 2;
+    /** The size of the length, type and sequence number of a record */
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+
+    /** The type of a null value */
+    private static final byte NULL = 0;
+    /** The type of a String value, the unknown types being written as their toString() */
+    private static final byte STRING = 1;
+    /** The type of an Integer value */
+    private static final byte INT = 2;
+    /** The type of a Long value */
+    private static final byte LONG = 3;
+    /** The type of a Double value */
+    private static final byte DOUBLE = 4;
+    /** The type of a Boolean value */
+    private static final byte BOOLEAN = 5;
+    /** The type of a List value, followed by its size and its values */
+    private static final byte LIST = 6;
+    /** The type of a Map value, followed by its size and its keys and values */
+    private static final byte MAP = 7;
+    /** The type of a Date value, written as its milliseconds since the epoch */
+    private static final byte DATE = 8;
+    /** The type of a Float value */
+    private static final byte FLOAT = 9;
+    /** The type of a Short value */
+    private static final byte SHORT = 10;
+    /** The type of a Byte value */
+    private static final byte BYTE = 11;
+    /** The type of a Character value */
+    private static final byte CHAR = 12;
+
+    /** The prefix of the name of the segment files, followed by their id */
+    private static final String SEGMENT_PREFIX = "segment-";
+    /** The suffix of the name of the segment files */
+    private static final String SEGMENT_SUFFIX = ".journal";
+    /** The charset of the strings */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+
+    /** The journal acknowledging the events once they are delivered, null if disabled */
+    private static volatile CargoJournal active;
+
+    /** The directory of the segments */
+    private final File directory;
+    /** The size of the segments created */
+    private final int segmentSize;
+    /** The segments, from the oldest to the current one */
+    private final ArrayDeque<Segment> segments = new ArrayDeque<Segment>();
+    /** The segment the records are appended to */
+    private Segment current;
+    /** The location of the events not yet acknowledged, stored with their sequence number */
+    private final HashMap<Long, Location> pending = new HashMap<Long, Location>();
+    /** The events read from a previous run, waiting for their handler to be registered */
+    private final List<PendingEvent> replays = new ArrayList<PendingEvent>();
+    /** The buffer used to encode a record, grown when needed */
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    /** The sequence number of the next event */
+    private long nextSequence = 0;
+    /** The id of the next segment */
+    private long nextSegmentId = 0;
+    /** Whether the journal is being compacted, in which case new segments don't trigger it */
+    private boolean compacting = false;
+    /** Whether the journal has been closed or has failed, in which case nothing is written */
+    private boolean closed = false;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * @param directory   the directory of the segments
+     * @param segmentSize the size of the segments created
+     */
+    private CargoJournal(File directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Opens the journal stored in a directory, reading the events of the previous runs which
+     * haven't been acknowledged, and starts a new segment.
+     *
+     * @param directory   the directory of the segments, created if needed
+     * @param segmentSize the size of the segments, in bytes
+     * @return the journal
+     * @throws IOException if the directory or the segments can't be read or written
+     */
+    static CargoJournal open(File directory, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the directory " + directory);
+        }
+        CargoJournal journal = new CargoJournal(directory, segmentSize);
+        synchronized (journal) {
+            journal.load();
+            journal.current = journal.createSegment();
+            journal.deleteDeliveredSegments();
+            if (journal.segments.size() > MAX_SEGMENTS) {
+                journal.compact();
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Sets the journal acknowledging the delivered events.
+     *
+     * @param journal the journal, null to disable it
+     */
+    static void setActive(CargoJournal journal) {
+        active = journal;
+    }
+
+
+/* ****************************************** Appending ***************************************** */
+
+    /**
+     * Writes an event to the journal, and attaches its sequence number to its parameters so that
+     * it is acknowledged once delivered. Only the parameters built by Cargo, a ParamBag or a
+     * ParamsOverlay, can carry it, other events aren't journaled.
+     *
+     * @param functionTag the function tag of the event, e.g. 'FB_tagEvent'
+     * @param params      the parameters of the event
+     */
+    void append(String functionTag, Map<String, Object> params) {
+        if (!(params instanceof ParamBag) && !(params instanceof ParamsOverlay)) {
+            return;
+        }
+        long sequence;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            sequence = nextSequence;
+            try {
+                scratch.clear();
+                ensureCapacity(HEADER_SIZE);
+                scratch.position(4);
+                scratch.put(EVENT).putLong(sequence);
+                writeString(functionTag);
+                writeEntries(params);
+            } catch (RuntimeException e) {
+                LOG.e("Unable to journal " + functionTag, e);
+                return;
+            }
+            scratch.flip();
+            scratch.position(4);
+            Location location = write(scratch);
+            if (location == null) {
+                return;
+            }
+            nextSequence++;
+            pending.put(sequence, location);
+            location.segment.pending++;
+        }
+        if (params instanceof ParamBag) {
+            ((ParamBag) params).journalSequence = sequence;
+        }
+        else {
+            ((ParamsOverlay) params).journalSequence = sequence;
+        }
+    }
+
+    /**
+     * Acknowledges an event once it has been delivered to its handler or dropped, if it has
+     * been journaled. Calling it several times for the same event has no effect.
+     *
+     * @param params the parameters of the event
+     */
+    static void acknowledge(Map<String, Object> params) {
+        long sequence;
+        if (params instanceof ParamBag) {
+            sequence = ((ParamBag) params).journalSequence;
+            ((ParamBag) params).journalSequence = NOT_JOURNALED;
+        }
+        else if (params instanceof ParamsOverlay) {
+            sequence = ((ParamsOverlay) params).journalSequence;
+            ((ParamsOverlay) params).journalSequence = NOT_JOURNALED;
+        }
+        else {
+            return;
+        }
+        CargoJournal journal = active;
+        if (sequence != NOT_JOURNALED && journal != null) {
+            journal.acknowledge(sequence);
+        }
+    }
+
+    /**
+     * Acknowledges an event, and deletes the oldest segments once all their events are.
+     *
+     * @param sequence the sequence number of the event
+     */
+    synchronized void acknowledge(long sequence) {
+        Location location = pending.remove(sequence);
+        if (location == null) {
+            return;
+        }
+        location.segment.pending--;
+        if (!closed) {
+            scratch.clear();
+            scratch.position(4);
+            scratch.put(ACK).putLong(sequence);
+            scratch.flip();
+            scratch.position(4);
+            write(scratch);
+        }
+        deleteDeliveredSegments();
+    }
+
+    /**
+     * Appends a record to the current segment, creating a new one if it is full.
+     *
+     * @param record the type, sequence number and content of the record, from its position
+     *               to its limit
+     * @return the location of the record, or null if it couldn't be written
+     */
+    private Location write(ByteBuffer record) {
+        int length = record.remaining();
+        if (length + 4 > segmentSize) {
+            LOG.w("An event of {} bytes is too large for the journal", length);
+            return null;
+        }
+        while (current.end + 4 + length > current.buffer.capacity()) {
+            try {
+                rotate();
+            } catch (IOException e) {
+                LOG.e("Unable to create a journal segment, the journal is disabled", e);
+                closed = true;
+                return null;
+            }
+        }
+        int offset = current.end;
+        current.buffer.position(offset + 4);
+        current.buffer.put(record);
+        current.buffer.putInt(offset, length);
+        current.end = offset + 4 + length;
+        return new Location(current, offset);
+    }
+
+    /**
+     * Starts a new segment, and compacts the journal if there are too many of them.
+     *
+     * @throws IOException if the segment can't be created
+     */
+    private void rotate() throws IOException {
+        current = createSegment();
+        if (segments.size() > MAX_SEGMENTS && !compacting) {
+            compact();
+        }
+    }
+
+
+/* ***************************************** Compaction ***************************************** */
+
+    /**
+     * Copies the events still pending in the previous segments to the current one,
+     * and deletes the previous segments.
+     */
+    synchronized void compact() {
+        if (closed) {
+            return;
+        }
+        List<Segment> previous = new ArrayList<Segment>(segments);
+        previous.remove(current);
+        compacting = true;
+        try {
+            for (Location location : new TreeMap<Long, Location>(pending).values()) {
+                if (location.segment == current) {
+                    continue;
+                }
+                ByteBuffer record = location.segment.buffer.duplicate();
+                int length = record.getInt(location.offset);
+                record.limit(location.offset + 4 + length);
+                record.position(location.offset + 4);
+                Location copy = write(record);
+                if (copy == null) {
+                    return;
+                }
+                location.segment.pending--;
+                location.segment = copy.segment;
+                location.offset = copy.offset;
+                copy.segment.pending++;
+            }
+            for (Segment segment : previous) {
+                if (segment.pending == 0) {
+                    delete(segment);
+                }
+            }
+        } finally {
+            compacting = false;
+        }
+    }
+
+    /**
+     * Deletes the oldest segments as long as all their events are acknowledged. Segments are
+     * deleted in order, so that an acknowledgement is never deleted before its event.
+     */
+    private void deleteDeliveredSegments() {
+        Segment oldest;
+        while ((oldest = segments.peekFirst()) != null && oldest != current
+                && oldest.pending == 0) {
+            delete(oldest);
+        }
+    }
+
+    /**
+     * Deletes a segment and its file.
+     *
+     * @param segment the segment, whose events are all acknowledged or copied
+     */
+    private void delete(Segment segment) {
+        segments.remove(segment);
+        if (!segment.file.delete()) {
+            LOG.w("Unable to delete the journal segment {}", segment.file);
+        }
+    }
+
+
+/* ****************************************** Segments ****************************************** */
+
+    /**
+     * Creates a new segment file and maps it in memory.
+     *
+     * @return the segment, added to the segments
+     * @throws IOException if the file can't be created or mapped
+     */
+    private Segment createSegment() throws IOException {
+        File file = new File(directory, SEGMENT_PREFIX + nextSegmentId++ + SEGMENT_SUFFIX);
+        Segment segment = new Segment(file, map(file, segmentSize));
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * Maps a file in memory, the mapping staying valid once the file is closed.
+     *
+     * @param file the file
+     * @param size the size of the file, which is extended with zeros if needed
+     * @return the content of the file
+     * @throws IOException if the file can't be mapped
+     */
+    private static MappedByteBuffer map(File file, long size) throws IOException {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try {
+            if (access.length() < size) {
+                access.setLength(size);
+            }
+            return access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } finally {
+            access.close();
+        }
+    }
+
+    /**
+     * Writes the records of the current segment to the disk, e.g. before the device shuts down.
+     * It isn't needed to survive the death of the process.
+     */
+    synchronized void sync() {
+        if (!closed) {
+            current.buffer.force();
+        }
+    }
+
+    /**
+     * Closes the journal, the events still pending are replayed on the next opening.
+     */
+    synchronized void close() {
+        sync();
+        closed = true;
+        if (active == this) {
+            active = null;
+        }
+    }
+
+
+/* ******************************************* Replay ******************************************* */
+
+    /**
+     * Reads the segments of the previous runs, in order to rebuild the events not acknowledged.
+     *
+     * @throws IOException if a segment can't be read
+     */
+    private void load() throws IOException {
+        TreeMap<Long, File> files = new TreeMap<Long, File>();
+        File[] listed = directory.listFiles();
+        for (File file : listed != null ? listed : new File[0]) {
+            String name = file.getName();
+            if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    files.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    LOG.w("Unexpected file in the journal: {}", name);
+                }
+            }
+        }
+        for (Map.Entry<Long, File> entry : files.entrySet()) {
+            Segment segment = new Segment(entry.getValue(),
+                    map(entry.getValue(), entry.getValue().length()));
+            segments.addLast(segment);
+            nextSegmentId = entry.getKey() + 1;
+            scan(segment);
+        }
+        for (Map.Entry<Long, Location> entry : new TreeMap<Long, Location>(pending).entrySet()) {
+            Location location = entry.getValue();
+            ByteBuffer record = location.segment.buffer.duplicate();
+            record.position(location.offset + HEADER_SIZE);
+            try {
+                String functionTag = readString(record);
+                ParamBag params = readEntries(record);
+                params.journalSequence = entry.getKey();
+                replays.add(new PendingEvent(functionTag, params));
+            } catch (RuntimeException e) {
+                LOG.e("Unable to read the journaled event " + entry.getKey(), e);
+                pending.remove(entry.getKey());
+                location.segment.pending--;
+            }
+        }
+        if (!replays.isEmpty()) {
+            LOG.i("{} events of the journal will be replayed", replays.size());
+        }
+    }
+
+    /**
+     * Reads the records of a segment, up to the first one which isn't committed.
+     *
+     * @param segment the segment to read
+     */
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = 0;
+        while (offset + 4 <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length < HEADER_SIZE - 4 || offset + 4 + length > buffer.capacity()) {
+                break;
+            }
+            byte type = buffer.get(offset + 4);
+            long sequence = buffer.getLong(offset + 5);
+            if (type == EVENT) {
+                Location previous = pending.put(sequence, new Location(segment, offset));
+                if (previous != null) {
+                    previous.segment.pending--;
+                }
+                segment.pending++;
+            }
+            else if (type == ACK) {
+                Location location = pending.remove(sequence);
+                if (location != null) {
+                    location.segment.pending--;
+                }
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            offset += 4 + length;
+        }
+        segment.end = offset;
+    }
+
+    /**
+     * Takes the events of the previous runs whose handler is now registered, in the order
+     * they have been received. They are delivered with TagDelivery.deliver(), and acknowledged
+     * as any other event.
+     *
+     * @param manager the manager resolving the routes of the events
+     * @return the events which can be replayed, removed from the journal's list
+     */
+    synchronized List<PendingEvent> takeReplays(TagHandlerManager manager) {
+        List<PendingEvent> ready = new ArrayList<PendingEvent>();
+        Iterator<PendingEvent> iterator = replays.iterator();
+        while (iterator.hasNext()) {
+            PendingEvent event = iterator.next();
+            event.route = manager.getRoute(event.functionTag);
+            if (event.route != null) {
+                ready.add(event);
+                iterator.remove();
+            }
+        }
+        return ready;
+    }
+
+
+/* ****************************************** Encoding ****************************************** */
+
+    /**
+     * Grows the scratch buffer if it can't hold some more bytes.
+     *
+     * @param bytes the number of bytes about to be written
+     */
+    private void ensureCapacity(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(
+                    Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            grown.put(scratch);
+            scratch = grown;
+        }
+    }
+
+    /**
+     * Writes a string as its length in bytes, -1 if it is null, followed by its UTF-8 bytes.
+     *
+     * @param value the string
+     */
+    private void writeString(String value) {
+        if (value == null) {
+            ensureCapacity(4);
+            scratch.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        ensureCapacity(4 + bytes.length);
+        scratch.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Writes the entries of a map as their number followed by each key and value.
+     *
+     * @param map the map
+     */
+    private void writeEntries(Map<?, ?> map) {
+        ensureCapacity(4);
+        scratch.putInt(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            writeString(entry.getKey() != null ? entry.getKey().toString() : null);
+            writeValue(entry.getValue());
+        }
+    }
+
+    /**
+     * Writes a value as its type followed by its content. Strings, numbers, booleans,
+     * characters, dates, lists and maps keep their type, any other value is written as its
+     * toString().
+     *
+     * @param value the value
+     */
+    private void writeValue(Object value) {
+        ensureCapacity(9);
+        if (value == null) {
+            scratch.put(NULL);
+        }
+        else if (value instanceof Integer) {
+            scratch.put(INT).putInt((Integer) value);
+        }
+        else if (value instanceof Long) {
+            scratch.put(LONG).putLong((Long) value);
+        }
+        else if (value instanceof Double) {
+            scratch.put(DOUBLE).putDouble((Double) value);
+        }
+        else if (value instanceof Boolean) {
+            scratch.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+        }
+        else if (value instanceof Date) {
+            scratch.put(DATE).putLong(((Date) value).getTime());
+        }
+        else if (value instanceof Float) {
+            scratch.put(FLOAT).putFloat((Float) value);
+        }
+        else if (value instanceof Short) {
+            scratch.put(SHORT).putShort((Short) value);
+        }
+        else if (value instanceof Byte) {
+            scratch.put(BYTE).put((Byte) value);
+        }
+        else if (value instanceof Character) {
+            scratch.put(CHAR).putChar((Character) value);
+        }
+        else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            scratch.put(LIST).putInt(list.size());
+            for (Object element : list) {
+                writeValue(element);
+            }
+        }
+        else if (value instanceof Map) {
+            scratch.put(MAP);
+            writeEntries((Map<?, ?>) value);
+        }
+        else if (value instanceof Object[]) {
+            writeValue(Arrays.asList((Object[]) value));
+        }
+        else {
+            scratch.put(STRING);
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * Reads a string written by writeString().
+     *
+     * @param buffer the record, at the position of the string
+     * @return the string
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Reads the parameters of an event, written by writeEntries().
+     *
+     * @param buffer the record, at the position of the parameters
+     * @return the parameters
+     */
+    private static ParamBag readEntries(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        ParamBag params = new ParamBag(size);
+        for (int i = 0; i < size; i++) {
+            String key = readString(buffer);
+            Object value = readValue(buffer);
+            if (key != null) {
+                params.put(key, value);
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Reads a value written by writeValue().
+     *
+     * @param buffer the record, at the position of the value
+     * @return the value
+     */
+    private static Object readValue(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(buffer);
+            case INT:
+                return buffer.getInt();
+            case LONG:
+                return buffer.getLong();
+            case DOUBLE:
+                return buffer.getDouble();
+            case BOOLEAN:
+                return buffer.get() != 0;
+            case DATE:
+                return new Date(buffer.getLong());
+            case FLOAT:
+                return buffer.getFloat();
+            case SHORT:
+                return buffer.getShort();
+            case BYTE:
+                return buffer.get();
+            case CHAR:
+                return buffer.getChar();
+            case LIST:
+                int size = buffer.getInt();
+                List<Object> list = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(buffer));
+                }
+                return list;
+            case MAP:
+                int entries = buffer.getInt();
+                Map<String, Object> map = new HashMap<String, Object>();
+                for (int i = 0; i < entries; i++) {
+                    String key = readString(buffer);
+                    map.put(key, readValue(buffer));
+                }
+                return map;
+            default:
+                throw new IllegalStateException("Unknown type of value " + type);
+        }
+    }
+
+
+/* ****************************************** Classes ******************************************* */
+
+    /**
+     * A segment of the journal, a file mapped in memory.
+     */
+    private static final class Segment {
+
+        /** The file of the segment */
+        final File file;
+        /** The content of the file */
+        final MappedByteBuffer buffer;
+        /** The offset of the end of the last record */
+        int end;
+        /** The number of events of the segment not yet acknowledged */
+        int pending;
+
+        /**
+         * @param file   the file of the segment
+         * @param buffer the content of the file
+         */
+        Segment(File file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * The location of the record of an event.
+     */
+    private static final class Location {
+
+        /** The segment holding the record */
+        Segment segment;
+        /** The offset of the record within the segment */
+        int offset;
+
+        /**
+         * @param segment the segment holding the record
+         * @param offset  the offset of the record within the segment
+         */
+        Location(Segment segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * An event of a previous run, waiting to be replayed.
+     */
+    static final class PendingEvent {
+
+        /** The function tag of the event, e.g. 'FB_tagEvent' */
+        final String functionTag;
+        /** The parameters of the event, carrying its sequence number */
+        final ParamBag params;
+        /** The route of the event, once its handler is registered */
+        TagRoute route;
+
+        /**
+         * @param functionTag the function tag of the event
+         * @param params      the parameters of the event
+         */
+        PendingEvent(String functionTag, ParamBag params) {
+            this.functionTag = functionTag;
+            this.params = params;
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
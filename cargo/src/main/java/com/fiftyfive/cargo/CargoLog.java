@@ -0,0 +1,440 @@
+package com.fiftyfive.cargo;
+
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The logger of Cargo and its handlers, writing to logcat through android.util.Log.
+ *
+ * Each CargoLog holds its tag, so that it is built once per handler rather than on every call.
+ * Messages are patterns where each '{}' is replaced by the next argument, and they are only
+ * formatted when their level is enabled with setLevel(), which is checked first.
+ * Arrays and maps are rendered with their content, e.g. "[key1=value1, key2=value2]".
+ *
+ * Verbose and debug calls are removed from the release builds of the applications using
+ * Cargo by the rules of consumer-proguard-rules.pro, provided they are built with
+ * proguard-android-optimize.txt. Otherwise they only cost the check of the level.
+ */
+public final class CargoLog {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The default level, which only keeps warnings and errors. */
+    public static final int DEFAULT_LEVEL = Log.WARN;
+
+    /** The lowest priority written to logcat, as one of the android.util.Log constants. */
+    private static volatile int level = DEFAULT_LEVEL;
+
+    /** The placeholder replaced by an argument in a message */
+    private static final String PLACEHOLDER = "{}";
+
+    /** The tag of the logs, e.g. 'FB_handler' */
+    final String tag;
+    /** The key of the handler this logger has been created for, null if none */
+    final String key;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates a logger writing with a tag.
+     *
+     * @param tag the tag of the logs
+     */
+    public CargoLog(String tag) {
+        this(tag, null);
+    }
+
+    /**
+     * @param tag the tag of the logs
+     * @param key the key of the handler, null if none
+     */
+    private CargoLog(String tag, String key) {
+        this.tag = tag;
+        this.key = key;
+    }
+
+    /**
+     * Creates the logger of a handler, which tag is its key followed by '_handler'.
+     *
+     * @param key the key of the handler, e.g. 'FB'
+     * @return the logger of this handler
+     */
+    static CargoLog forHandler(String key) {
+        return new CargoLog(key + "_handler", key);
+    }
+
+
+/* ******************************************* Level ******************************************** */
+
+    /**
+     * Sets the lowest priority written to logcat, e.g. Log.VERBOSE to debug the setup
+     * of the GTM container. Warnings and errors only are written by default.
+     *
+     * @param priority one of the android.util.Log constants, from Log.VERBOSE to Log.ASSERT
+     */
+    public static void setLevel(int priority) {
+        level = priority;
+    }
+
+    /**
+     * @return the lowest priority written to logcat
+     */
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * Checks whether the logs of a priority are written, in order to avoid building
+     * a costly argument otherwise.
+     *
+     * @param priority one of the android.util.Log constants
+     * @return true if the logs of this priority are written
+     */
+    public static boolean isLoggable(int priority) {
+        return priority >= level;
+    }
+
+
+/* ****************************************** Verbose ******************************************* */
+
+    /**
+     * Writes a verbose log.
+     *
+     * @param message the message
+     */
+    public void v(String message) {
+        if (Log.VERBOSE >= level) {
+            Log.v(tag, message);
+        }
+    }
+
+    /**
+     * Writes a verbose log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg     the argument
+     */
+    public void v(String pattern, Object arg) {
+        if (Log.VERBOSE >= level) {
+            Log.v(tag, format(pattern, 1, arg, null, null));
+        }
+    }
+
+    /**
+     * Writes a verbose log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     */
+    public void v(String pattern, Object arg1, Object arg2) {
+        if (Log.VERBOSE >= level) {
+            Log.v(tag, format(pattern, 2, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Writes a verbose log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     * @param arg3    the third argument
+     */
+    public void v(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (Log.VERBOSE >= level) {
+            Log.v(tag, format(pattern, 3, arg1, arg2, arg3));
+        }
+    }
+
+
+/* ******************************************* Debug ******************************************** */
+
+    /**
+     * Writes a debug log.
+     *
+     * @param message the message
+     */
+    public void d(String message) {
+        if (Log.DEBUG >= level) {
+            Log.d(tag, message);
+        }
+    }
+
+    /**
+     * Writes a debug log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg     the argument
+     */
+    public void d(String pattern, Object arg) {
+        if (Log.DEBUG >= level) {
+            Log.d(tag, format(pattern, 1, arg, null, null));
+        }
+    }
+
+    /**
+     * Writes a debug log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     */
+    public void d(String pattern, Object arg1, Object arg2) {
+        if (Log.DEBUG >= level) {
+            Log.d(tag, format(pattern, 2, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Writes a debug log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     * @param arg3    the third argument
+     */
+    public void d(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (Log.DEBUG >= level) {
+            Log.d(tag, format(pattern, 3, arg1, arg2, arg3));
+        }
+    }
+
+
+/* ******************************************** Info ******************************************** */
+
+    /**
+     * Writes an info log.
+     *
+     * @param message the message
+     */
+    public void i(String message) {
+        if (Log.INFO >= level) {
+            Log.i(tag, message);
+        }
+    }
+
+    /**
+     * Writes an info log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg     the argument
+     */
+    public void i(String pattern, Object arg) {
+        if (Log.INFO >= level) {
+            Log.i(tag, format(pattern, 1, arg, null, null));
+        }
+    }
+
+    /**
+     * Writes an info log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     */
+    public void i(String pattern, Object arg1, Object arg2) {
+        if (Log.INFO >= level) {
+            Log.i(tag, format(pattern, 2, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Writes an info log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     * @param arg3    the third argument
+     */
+    public void i(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (Log.INFO >= level) {
+            Log.i(tag, format(pattern, 3, arg1, arg2, arg3));
+        }
+    }
+
+
+/* ****************************************** Warning ******************************************* */
+
+    /**
+     * Writes a warning log.
+     *
+     * @param message the message
+     */
+    public void w(String message) {
+        if (Log.WARN >= level) {
+            Log.w(tag, message);
+        }
+    }
+
+    /**
+     * Writes a warning log, followed by the stack trace of an exception.
+     *
+     * @param message the message
+     * @param tr      the exception
+     */
+    public void w(String message, Throwable tr) {
+        if (Log.WARN >= level) {
+            Log.w(tag, message, tr);
+        }
+    }
+
+    /**
+     * Writes a warning log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg     the argument
+     */
+    public void w(String pattern, Object arg) {
+        if (Log.WARN >= level) {
+            Log.w(tag, format(pattern, 1, arg, null, null));
+        }
+    }
+
+    /**
+     * Writes a warning log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     */
+    public void w(String pattern, Object arg1, Object arg2) {
+        if (Log.WARN >= level) {
+            Log.w(tag, format(pattern, 2, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Writes a warning log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     * @param arg3    the third argument
+     */
+    public void w(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (Log.WARN >= level) {
+            Log.w(tag, format(pattern, 3, arg1, arg2, arg3));
+        }
+    }
+
+
+/* ******************************************* Error ******************************************** */
+
+    /**
+     * Writes an error log.
+     *
+     * @param message the message
+     */
+    public void e(String message) {
+        if (Log.ERROR >= level) {
+            Log.e(tag, message);
+        }
+    }
+
+    /**
+     * Writes an error log, followed by the stack trace of an exception.
+     *
+     * @param message the message
+     * @param tr      the exception
+     */
+    public void e(String message, Throwable tr) {
+        if (Log.ERROR >= level) {
+            Log.e(tag, message, tr);
+        }
+    }
+
+    /**
+     * Writes an error log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg     the argument
+     */
+    public void e(String pattern, Object arg) {
+        if (Log.ERROR >= level) {
+            Log.e(tag, format(pattern, 1, arg, null, null));
+        }
+    }
+
+    /**
+     * Writes an error log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     */
+    public void e(String pattern, Object arg1, Object arg2) {
+        if (Log.ERROR >= level) {
+            Log.e(tag, format(pattern, 2, arg1, arg2, null));
+        }
+    }
+
+    /**
+     * Writes an error log, which is only formatted if this level is enabled.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param arg1    the first argument
+     * @param arg2    the second argument
+     * @param arg3    the third argument
+     */
+    public void e(String pattern, Object arg1, Object arg2, Object arg3) {
+        if (Log.ERROR >= level) {
+            Log.e(tag, format(pattern, 3, arg1, arg2, arg3));
+        }
+    }
+
+
+/* ****************************************** Utility ******************************************* */
+
+    /**
+     * Replaces the placeholders of a pattern with the arguments, in their order.
+     * Placeholders without any argument left are kept as is.
+     *
+     * @param pattern the message, with a '{}' for each argument
+     * @param count   the number of arguments given
+     * @param arg1    the first argument
+     * @param arg2    the second argument, ignored if count is lower than 2
+     * @param arg3    the third argument, ignored if count is lower than 3
+     * @return the formatted message
+     */
+    static String format(String pattern, int count, Object arg1, Object arg2, Object arg3) {
+        StringBuilder builder = new StringBuilder(pattern.length() + 32);
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int index = pattern.indexOf(PLACEHOLDER, start);
+            if (index < 0) {
+                break;
+            }
+            builder.append(pattern, start, index);
+            render(builder, i == 0 ? arg1 : i == 1 ? arg2 : arg3);
+            start = index + PLACEHOLDER.length();
+        }
+        return builder.append(pattern, start, pattern.length()).toString();
+    }
+
+    /**
+     * Appends an argument to a message.
+     *
+     * @param builder the message being formatted
+     * @param arg     the argument, may be null
+     */
+    private static void render(StringBuilder builder, Object arg) {
+        if (arg instanceof Object[]) {
+            builder.append(Arrays.deepToString((Object[]) arg));
+        }
+        else if (arg instanceof Map) {
+            builder.append(((Map<?, ?>) arg).entrySet());
+        }
+        else {
+            builder.append(arg);
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -0,0 +1,141 @@
+package com.fiftyfive.cargo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The registry of the metrics of the handlers, in order to watch the number of events each
+ * handler receives or drops, and the time its methods take.
+ * Metrics are always collected, with atomic counters and fixed-size histograms, and can be
+ * polled at any time with snapshot(), e.g. to be exported to a monitoring backend.
+ */
+public final class CargoMetrics {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The metrics of each handler, stored with its key as key */
+    private static final ConcurrentHashMap<String, HandlerMetrics> handlers =
+            new ConcurrentHashMap<String, HandlerMetrics>();
+
+    /** The default duration from which a call to a third part SDK is slow, a frame at 60 fps */
+    public static final long DEFAULT_SLOW_CALL_THRESHOLD_MS = 16;
+
+    /** The duration from which a call to a third part SDK is slow, in nanoseconds */
+    private static volatile long slowCallThresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_SLOW_CALL_THRESHOLD_MS);
+    /** Notified of the slow calls to the third part SDKs, may be null */
+    private static volatile SlowCallListener slowCallListener;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    private CargoMetrics() {
+    }
+
+
+/* ****************************************** Registry ****************************************** */
+
+    /**
+     * Retrieves the metrics of a handler, creating them on their first use.
+     *
+     * @param key the key of the handler, e.g. 'FB'
+     * @return the metrics of the handler
+     */
+    static HandlerMetrics forHandler(String key) {
+        String name = String.valueOf(key);
+        HandlerMetrics metrics = handlers.get(name);
+        if (metrics == null) {
+            HandlerMetrics created = new HandlerMetrics(name);
+            metrics = handlers.putIfAbsent(name, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Copies the current metrics of all the handlers.
+     *
+     * @return the snapshot of each handler, sorted by key
+     */
+    public static Map<String, HandlerMetrics.Snapshot> snapshot() {
+        Map<String, HandlerMetrics.Snapshot> result =
+                new TreeMap<String, HandlerMetrics.Snapshot>();
+        for (Map.Entry<String, HandlerMetrics> entry : handlers.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Formats the current metrics of all the handlers, one handler after the other.
+     *
+     * @return the metrics as a text
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (HandlerMetrics.Snapshot snapshot : snapshot().values()) {
+            builder.append(snapshot).append('\n');
+        }
+        return builder.toString();
+    }
+
+
+/* ***************************************** Slow calls ***************************************** */
+
+    /**
+     * Sets the duration from which a call to a third part SDK is slow. Slow calls are logged
+     * as warnings, counted as HandlerMetrics.SLOW_SDK_CALL and notified to the SlowCallListener.
+     *
+     * @param duration the duration, 16 milliseconds by default
+     * @param unit     the unit of the duration
+     */
+    public static void setSlowCallThreshold(long duration, TimeUnit unit) {
+        slowCallThresholdNanos = unit.toNanos(Math.max(0, duration));
+    }
+
+    /**
+     * Sets the listener notified of the slow calls to the third part SDKs.
+     *
+     * @param listener the listener, null to remove it
+     */
+    public static void setSlowCallListener(SlowCallListener listener) {
+        slowCallListener = listener;
+    }
+
+    /**
+     * Records a call to a third part SDK, and reports it if it is slow.
+     *
+     * @param handler   the handler which has made the call
+     * @param sdkMethod the SDK method, e.g. 'AppEventsLogger.logEvent'
+     * @param nanos     the duration of the call
+     */
+    static void recordSdkCall(AbstractTagHandler handler, String sdkMethod, long nanos) {
+        HandlerMetrics metrics = handler.metrics();
+        metrics.sdkCall(sdkMethod).record(nanos);
+        if (nanos < slowCallThresholdNanos) {
+            return;
+        }
+        metrics.increment(HandlerMetrics.SLOW_SDK_CALL);
+        Thread thread = Thread.currentThread();
+        handler.log().w("{} took {}ms on the thread '{}'",
+                sdkMethod, TimeUnit.NANOSECONDS.toMillis(nanos), thread.getName());
+        SlowCallListener listener = slowCallListener;
+        if (listener != null) {
+            try {
+                listener.onSlowCall(metrics.key, sdkMethod, thread, nanos);
+            } catch (RuntimeException e) {
+                handler.log().e("The slow call listener has failed", e);
+            }
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
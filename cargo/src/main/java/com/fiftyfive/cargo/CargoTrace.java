@@ -0,0 +1,357 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * An always-on trace of the flow of the tags, from their reception in Tags.execute() to the
+ * return of the handler method, meant to find out where a tag went missing once the logs are off.
+ *
+ * The trace is a fixed-size ring of the last CAPACITY records, each made of four longs:
+ *  * the sequence number of the record, which tells whether it has been completely written
+ *  * its timestamp, from System.nanoTime()
+ *  * the id of the thread, the type of the record and the id of its name
+ *  * a value depending on the type, e.g. the duration of a method in nanoseconds
+ * Names (function tags, parameters) are stored once in a table and referred to by their id,
+ * so that recording doesn't allocate nor take any lock. Older records are overwritten.
+ *
+ * The records can be read at any time with snapshot() or dump().
+ */
+public final class CargoTrace {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** A tag has been received from the container, the value is its number of parameters */
+    public static final int TAG_RECEIVED = 1;
+    /** A handlerMethod has been resolved to a route, the value is the number of routes */
+    public static final int ROUTE_RESOLVED = 2;
+    /** No handler matches the handlerMethod, which is the name of the record if present */
+    public static final int ROUTE_NOT_FOUND = 3;
+    /** A handler method is about to be called */
+    public static final int METHOD_INVOKED = 4;
+    /** A handler method has returned, the value is its duration in nanoseconds */
+    public static final int METHOD_DONE = 5;
+    /** A handler method has thrown, the value is its duration in nanoseconds */
+    public static final int METHOD_FAILED = 6;
+    /** An event is kept until its handler is initialized */
+    public static final int METHOD_DELAYED = 7;
+    /** An event has been dropped, as too many events are waiting for its handler */
+    public static final int METHOD_DROPPED = 8;
+    /** A mandatory parameter is missing, the parameter is the name of the record */
+    public static final int PARAM_MISSING = 9;
+    /** A parameter can't be converted to the expected type */
+    public static final int PARAM_UNCASTABLE = 10;
+    /** A call to the third part SDK has returned, the value is its duration in nanoseconds */
+    public static final int SDK_CALL = 11;
+    /** A repeated event has been dropped, the handlerMethod is the name of the record */
+    public static final int DUPLICATE_DROPPED = 12;
+    /** An event has been dropped by the sampling rules, the handlerMethod is the name */
+    public static final int SAMPLED_OUT = 13;
+
+    /** The labels of the types of records, in the order of their values */
+    private static final String[] TYPES = {"?", "TAG_RECEIVED", "ROUTE_RESOLVED",
+            "ROUTE_NOT_FOUND", "METHOD_INVOKED", "METHOD_DONE", "METHOD_FAILED",
+            "METHOD_DELAYED", "METHOD_DROPPED", "PARAM_MISSING", "PARAM_UNCASTABLE", "SDK_CALL",
+            "DUPLICATE_DROPPED", "SAMPLED_OUT"};
+
+    /** The number of records kept, a power of two */
+    public static final int CAPACITY = 1024;
+    /** The number of longs of a record */
+    private static final int RECORD_SIZE = 4;
+    /** The maximum number of names, further names are recorded with the id 0 */
+    static final int MAX_NAMES = 4096;
+    /** The id all the names which aren't interned are recorded with, e.g. the handlerMethods
+        which don't match any declared route */
+    static final int UNRESOLVED_ID = 1;
+
+    /** The records, CAPACITY times RECORD_SIZE longs */
+    private static final AtomicLongArray records = new AtomicLongArray(CAPACITY * RECORD_SIZE);
+    /** The sequence number of the next record */
+    private static final AtomicLong cursor = new AtomicLong();
+
+    /** The ids of the names, the id 0 stands for no name */
+    private static final ConcurrentHashMap<String, Integer> ids =
+            new ConcurrentHashMap<String, Integer>();
+    /** The names, stored at the index of their id */
+    private static final AtomicReferenceArray<String> names =
+            new AtomicReferenceArray<String>(MAX_NAMES);
+    /** The id of the next name */
+    private static final AtomicInteger nextId = new AtomicInteger(UNRESOLVED_ID + 1);
+
+    /** Whether the records are written */
+    private static volatile boolean enabled = true;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    static {
+        names.set(UNRESOLVED_ID, "(unresolved)");
+    }
+
+    private CargoTrace() {
+    }
+
+
+/* ***************************************** Recording ****************************************** */
+
+    /**
+     * Enables or disables the trace, which is enabled by default.
+     *
+     * @param enable false to stop writing records
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * @return whether the records are written
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the id of a name, registering it on its first use.
+     * The lookup doesn't allocate, routes resolve the id of their function tag once.
+     * Names are never released, so only a bounded set of names must be given, e.g. the function
+     * tags declared by the handlers, and not the raw handlerMethods received from the container,
+     * which are recorded with UNRESOLVED_ID when they don't match a declared route.
+     *
+     * @param name the name, e.g. a function tag or a parameter
+     * @return the id of the name, or 0 if the name is null or the table is full
+     */
+    static int idOf(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (ids) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            int next = nextId.get();
+            if (next >= MAX_NAMES) {
+                return 0;
+            }
+            names.set(next, name);
+            ids.put(name, next);
+            nextId.set(next + 1);
+            return next;
+        }
+    }
+
+    /**
+     * Writes a record, timestamped now.
+     *
+     * @param type   the type of the record, e.g. TAG_RECEIVED
+     * @param nameId the id of the name of the record, from idOf()
+     * @param value  the value of the record
+     * @return the timestamp of the record, or 0 if the trace is disabled
+     */
+    static long record(int type, int nameId, long value) {
+        if (!enabled) {
+            return 0;
+        }
+        long time = System.nanoTime();
+        record(type, nameId, value, time);
+        return time;
+    }
+
+    /**
+     * Writes a record. Each writer owns the slot given by its sequence number, which it marks
+     * as being written before filling it, so that readers skip the records not yet complete.
+     *
+     * @param type   the type of the record, e.g. TAG_RECEIVED
+     * @param nameId the id of the name of the record, from idOf()
+     * @param value  the value of the record
+     * @param time   the timestamp of the record, from System.nanoTime()
+     */
+    static void record(int type, int nameId, long value, long time) {
+        if (!enabled) {
+            return;
+        }
+        long sequence = cursor.getAndIncrement();
+        int base = (int) (sequence & (CAPACITY - 1)) * RECORD_SIZE;
+        records.set(base, ~sequence);
+        records.set(base + 1, time);
+        records.set(base + 2, (Thread.currentThread().getId() << 32)
+                | ((long) (type & 0xFF) << 24) | (nameId & 0xFFFFFF));
+        records.set(base + 3, value);
+        records.lazySet(base, sequence);
+    }
+
+
+/* ****************************************** Reading ******************************************* */
+
+    /**
+     * Reads the records currently held by the trace, from the oldest to the newest.
+     * Records being written or overwritten during the read are left out.
+     *
+     * @return the records
+     */
+    public static List<Record> snapshot() {
+        long end = cursor.get();
+        long start = Math.max(0, end - CAPACITY);
+        List<Record> result = new ArrayList<Record>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            int base = (int) (sequence & (CAPACITY - 1)) * RECORD_SIZE;
+            if (records.get(base) != sequence) {
+                continue;
+            }
+            long time = records.get(base + 1);
+            long code = records.get(base + 2);
+            long value = records.get(base + 3);
+            if (records.get(base) != sequence) {
+                continue;
+            }
+            result.add(new Record(sequence, time, code, value));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Formats the records currently held by the trace, one per line, from the oldest to the newest.
+     *
+     * @return the records as a text
+     */
+    public static String dump() {
+        List<Record> snapshot = snapshot();
+        StringBuilder builder = new StringBuilder(snapshot.size() * 64);
+        long now = System.nanoTime();
+        for (Record record : snapshot) {
+            record.appendTo(builder, now);
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Forgets all the records, names are kept as routes hold their ids.
+     */
+    static void clear() {
+        for (int i = 0; i < CAPACITY * RECORD_SIZE; i += RECORD_SIZE) {
+            records.set(i, -1);
+        }
+        cursor.set(0);
+    }
+
+
+/* ******************************************* Record ******************************************* */
+
+    /**
+     * A record read from the trace.
+     */
+    public static final class Record {
+
+        /** The sequence number of the record */
+        private final long sequence;
+        /** The timestamp of the record, from System.nanoTime() */
+        private final long time;
+        /** The thread id, type and name id of the record */
+        private final long code;
+        /** The value of the record */
+        private final long value;
+
+        /**
+         * @param sequence the sequence number of the record
+         * @param time     the timestamp of the record
+         * @param code     the thread id, type and name id of the record
+         * @param value    the value of the record
+         */
+        Record(long sequence, long time, long code, long value) {
+            this.sequence = sequence;
+            this.time = time;
+            this.code = code;
+            this.value = value;
+        }
+
+        /**
+         * @return the sequence number of the record, which orders the records
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the timestamp of the record, from System.nanoTime()
+         */
+        public long getTimeNanos() {
+            return time;
+        }
+
+        /**
+         * @return the id of the thread which has written the record
+         */
+        public long getThreadId() {
+            return code >>> 32;
+        }
+
+        /**
+         * @return the type of the record, e.g. CargoTrace.TAG_RECEIVED
+         */
+        public int getType() {
+            return (int) (code >>> 24) & 0xFF;
+        }
+
+        /**
+         * @return the name of the record, e.g. a function tag, or null if none
+         */
+        public String getName() {
+            int id = (int) code & 0xFFFFFF;
+            return id > 0 && id < MAX_NAMES ? names.get(id) : null;
+        }
+
+        /**
+         * @return the value of the record, which meaning depends on its type
+         */
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * Appends the description of the record.
+         *
+         * @param builder the text to append to
+         * @param now     the current timestamp, from System.nanoTime()
+         */
+        void appendTo(StringBuilder builder, long now) {
+            int type = getType();
+            builder.append('#').append(sequence)
+                    .append(" -").append((now - time) / 1000).append("us")
+                    .append(" thread=").append(getThreadId())
+                    .append(' ').append(type < TYPES.length ? TYPES[type] : "?");
+            String name = getName();
+            if (name != null) {
+                builder.append(' ').append(name);
+            }
+            builder.append(" value=").append(value);
+        }
+
+        /**
+         * The toString method for the Record object.
+         *
+         * @return the description of the record, with its age when this method is called
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(64);
+            appendTo(builder, System.nanoTime());
+            return builder.toString();
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
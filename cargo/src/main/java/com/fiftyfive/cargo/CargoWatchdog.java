@@ -0,0 +1,393 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * A watchdog of the work Cargo does on the main thread, in order to keep it out of the frame
+ * budget of the application. Once enabled, it times each lifecycle callback of each handler and
+ * each handler method called on the main thread, and reports the ones lasting longer than the
+ * threshold. Any I/O made through Cargo on the main thread, e.g. Cargo.openAsset(), is reported
+ * whatever its duration.
+ *
+ * While a section of work lasts longer than the threshold, the stack of the main thread is
+ * sampled at each threshold period, so that the violation tells where the time went. Only the
+ * outermost section schedules the sampling, each sample being given to the sections open when
+ * it is taken.
+ * Violations are logged as warnings and passed to the WatchdogListener.
+ *
+ * The watchdog is disabled by default, and then costs a volatile read per section.
+ */
+public final class CargoWatchdog {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** A lifecycle callback of a handler, e.g. onActivityResumed */
+    public static final int LIFECYCLE_CALLBACK = 1;
+    /** A handler method, called from Tags.execute() or once its handler is initialized */
+    public static final int EXECUTE = 2;
+    /** A disk or asset I/O */
+    public static final int IO = 3;
+
+    /** The labels of the types of sections, in the order of their values */
+    private static final String[] TYPES = {"?", "LIFECYCLE_CALLBACK", "EXECUTE", "IO"};
+
+    /** The default duration from which a section is reported, half a frame at 60 fps */
+    public static final long DEFAULT_THRESHOLD_MS = 8;
+    /** The maximum number of stack samples of a violation */
+    static final int MAX_SAMPLES = 8;
+    /** The shortest period between two stack samples, in nanoseconds */
+    private static final long MIN_SAMPLING_PERIOD = TimeUnit.MILLISECONDS.toNanos(1);
+    /** The number of frames of each sample written in the logs */
+    private static final int LOGGED_FRAMES = 8;
+
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+
+    /** Whether the sections are timed */
+    private static volatile boolean enabled = false;
+    /** The main thread, the only one watched */
+    private static volatile Thread mainThread;
+    /** The duration from which a section is reported, in nanoseconds */
+    private static volatile long thresholdNanos =
+            TimeUnit.MILLISECONDS.toNanos(DEFAULT_THRESHOLD_MS);
+    /** Notified of the violations, may be null */
+    private static volatile WatchdogListener listener;
+
+    /** The innermost section running on the main thread, only written from it and read by
+        the sampling of the outermost section */
+    private static volatile Section current;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    private CargoWatchdog() {
+    }
+
+
+/* **************************************** Configuration *************************************** */
+
+    /**
+     * Enables or disables the watchdog, which is disabled by default.
+     *
+     * @param enable true to time the work done on the main thread
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * @return whether the watchdog is enabled
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the duration from which a section of work on the main thread is reported.
+     *
+     * @param duration the duration, 8 milliseconds by default
+     * @param unit     the unit of the duration
+     */
+    public static void setThreshold(long duration, TimeUnit unit) {
+        thresholdNanos = unit.toNanos(Math.max(0, duration));
+    }
+
+    /**
+     * Sets the listener notified of the violations.
+     *
+     * @param watchdogListener the listener, null to remove it
+     */
+    public static void setListener(WatchdogListener watchdogListener) {
+        listener = watchdogListener;
+    }
+
+    /**
+     * Sets the thread watched, called from Cargo.init() which runs on the main thread.
+     *
+     * @param thread the main thread of the application
+     */
+    static void setMainThread(Thread thread) {
+        mainThread = thread;
+    }
+
+
+/* ****************************************** Sections ****************************************** */
+
+    /**
+     * Starts timing a section of work, if the watchdog is enabled and the calling thread
+     * is the main thread. Each call has to be followed by a call to exit(), in a finally block.
+     *
+     * @param type       the type of the section, e.g. LIFECYCLE_CALLBACK
+     * @param handlerKey the key of the handler doing the work, null to inherit the one of
+     *                   the enclosing section
+     * @param name       the name of the section, e.g. 'onActivityResumed'
+     * @return the section to give to exit(), or null if it isn't timed
+     */
+    static Section enter(int type, String handlerKey, String name) {
+        if (!enabled || Thread.currentThread() != mainThread) {
+            return null;
+        }
+        Section parent = current;
+        String key = handlerKey == null && parent != null ? parent.handlerKey : handlerKey;
+        Section section = new Section(type, key, name, parent);
+        if (parent == null) {
+            long period = Math.max(MIN_SAMPLING_PERIOD, thresholdNanos);
+            section.sampling = Cargo.getScheduler()
+                    .scheduleAtFixedRate(section, period, period, TimeUnit.NANOSECONDS);
+        }
+        current = section;
+        return section;
+    }
+
+    /**
+     * Stops timing a section of work, and reports it if it has lasted longer than
+     * the threshold, or if it is an I/O.
+     *
+     * @param section the value returned by enter(), may be null
+     */
+    static void exit(Section section) {
+        if (section == null) {
+            return;
+        }
+        long nanos = System.nanoTime() - section.start;
+        if (section.sampling != null) {
+            section.sampling.cancel(false);
+        }
+        current = section.parent;
+        List<StackTraceElement[]> samples = section.close();
+        if (section.type == IO) {
+            if (samples.isEmpty()) {
+                samples = Collections.singletonList(section.thread.getStackTrace());
+            }
+        }
+        else if (nanos < thresholdNanos) {
+            return;
+        }
+        report(new Violation(section.type, section.handlerKey, section.name,
+                section.thread.getName(), nanos, samples));
+    }
+
+    /**
+     * Logs a violation and notifies the listener.
+     *
+     * @param violation the violation
+     */
+    private static void report(Violation violation) {
+        LOG.w("{}", violation);
+        WatchdogListener watchdogListener = listener;
+        if (watchdogListener != null) {
+            try {
+                watchdogListener.onViolation(violation);
+            } catch (RuntimeException e) {
+                LOG.e("The watchdog listener has failed", e);
+            }
+        }
+    }
+
+
+/* ****************************************** Section ******************************************* */
+
+    /**
+     * A section of work being timed on the main thread. The outermost section samples the stack
+     * of the thread while it lasts longer than the threshold, for itself and the sections
+     * nested in it.
+     */
+    static final class Section implements Runnable {
+
+        /** The type of the section, e.g. LIFECYCLE_CALLBACK */
+        final int type;
+        /** The key of the handler doing the work, may be null */
+        final String handlerKey;
+        /** The name of the section, e.g. 'onActivityResumed' */
+        final String name;
+        /** The enclosing section, null if none */
+        final Section parent;
+        /** The outermost section, which samples the stack for the sections nested in it */
+        final Section root;
+        /** The thread doing the work */
+        final Thread thread = Thread.currentThread();
+        /** The start of the section, from System.nanoTime() */
+        final long start = System.nanoTime();
+        /** The periodic sampling of the stack, cancelled by exit(), null for a nested section */
+        ScheduledFuture<?> sampling;
+
+        /** The stack samples, guarded by the section */
+        private final List<StackTraceElement[]> samples = new ArrayList<StackTraceElement[]>(2);
+        /** Whether the section is over, guarded by the section */
+        private boolean closed = false;
+
+        /**
+         * @param type       the type of the section
+         * @param handlerKey the key of the handler doing the work
+         * @param name       the name of the section
+         * @param parent     the enclosing section
+         */
+        Section(int type, String handlerKey, String name, Section parent) {
+            this.type = type;
+            this.handlerKey = handlerKey;
+            this.name = name;
+            this.parent = parent;
+            this.root = parent != null ? parent.root : this;
+        }
+
+        /**
+         * Samples the stack of the thread, and gives the sample to the innermost section and
+         * to the sections enclosing it. Called from the scheduler of Cargo, on the outermost
+         * section only.
+         */
+        @Override
+        public void run() {
+            Section innermost = current;
+            if (innermost == null || innermost.root != this) {
+                return;
+            }
+            StackTraceElement[] stack = thread.getStackTrace();
+            for (Section section = innermost; section != null; section = section.parent) {
+                section.add(stack);
+            }
+        }
+
+        /**
+         * Adds a stack sample, unless the section is over or has enough samples.
+         *
+         * @param stack the stack sample
+         */
+        private synchronized void add(StackTraceElement[] stack) {
+            if (!closed && samples.size() < MAX_SAMPLES) {
+                samples.add(stack);
+            }
+        }
+
+        /**
+         * Ends the sampling.
+         *
+         * @return the samples taken
+         */
+        synchronized List<StackTraceElement[]> close() {
+            closed = true;
+            return new ArrayList<StackTraceElement[]>(samples);
+        }
+    }
+
+
+/* ***************************************** Violation ****************************************** */
+
+    /**
+     * A section of work done on the main thread which has exceeded the threshold, or an I/O.
+     */
+    public static final class Violation {
+
+        /** The type of the section */
+        private final int type;
+        /** The key of the handler doing the work, may be null */
+        private final String handlerKey;
+        /** The name of the section */
+        private final String name;
+        /** The name of the thread */
+        private final String threadName;
+        /** The duration of the section in nanoseconds */
+        private final long nanos;
+        /** The stack samples, from the oldest to the newest */
+        private final List<StackTraceElement[]> samples;
+
+        /**
+         * @param type       the type of the section
+         * @param handlerKey the key of the handler doing the work
+         * @param name       the name of the section
+         * @param threadName the name of the thread
+         * @param nanos      the duration of the section
+         * @param samples    the stack samples, owned by the violation
+         */
+        Violation(int type, String handlerKey, String name, String threadName, long nanos,
+                  List<StackTraceElement[]> samples) {
+            this.type = type;
+            this.handlerKey = handlerKey;
+            this.name = name;
+            this.threadName = threadName;
+            this.nanos = nanos;
+            this.samples = Collections.unmodifiableList(samples);
+        }
+
+        /**
+         * @return the type of the section, e.g. CargoWatchdog.LIFECYCLE_CALLBACK
+         */
+        public int getType() {
+            return type;
+        }
+
+        /**
+         * @return the key of the handler doing the work, or null if it isn't known
+         */
+        public String getHandlerKey() {
+            return handlerKey;
+        }
+
+        /**
+         * @return the name of the section, e.g. 'onActivityResumed', 'FB_tagEvent' or
+         * 'asset:ADBMobileConfig.json'
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the name of the thread the work has been done on
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        /**
+         * @return the duration of the section in nanoseconds
+         */
+        public long getDurationNanos() {
+            return nanos;
+        }
+
+        /**
+         * Gets the stacks of the thread sampled while the section was exceeding the threshold.
+         * An I/O has at least the stack of its call. A section only slightly longer than
+         * the threshold may have none.
+         *
+         * @return the stack samples, from the oldest to the newest
+         */
+        public List<StackTraceElement[]> getStackSamples() {
+            return samples;
+        }
+
+        /**
+         * The toString method for the Violation object.
+         *
+         * @return the description of the violation, followed by the top frames of its
+         *         first sample
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("Main thread ");
+            builder.append(type < TYPES.length ? TYPES[type] : "?");
+            if (handlerKey != null) {
+                builder.append(' ').append(handlerKey);
+            }
+            builder.append(' ').append(name)
+                    .append(" took ").append(TimeUnit.NANOSECONDS.toMicros(nanos)).append("us")
+                    .append(" on '").append(threadName).append('\'')
+                    .append(", ").append(samples.size()).append(" stack samples");
+            if (!samples.isEmpty()) {
+                StackTraceElement[] stack = samples.get(0);
+                for (int i = 0; i < stack.length && i < LOGGED_FRAMES; i++) {
+                    builder.append("\n  at ").append(stack[i]);
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
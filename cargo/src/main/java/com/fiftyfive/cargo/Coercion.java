@@ -0,0 +1,413 @@
+package com.fiftyfive.cargo;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Converts the values received from the container to primitive types, whatever the Number type
+ * or the textual form they have been sent with. Text is parsed in place, without allocating,
+ * and a value which can't be converted never throws: the default value given by the caller is
+ * returned instead, and status() tells why when it has to be logged.
+ *
+ * The ModelsUtils getters are built on top of these methods.
+ */
+public final class Coercion {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The value can be converted */
+    public static final int OK = 0;
+    /** There is no value */
+    public static final int MISSING = 1;
+    /** The value is neither a Number, a Boolean nor a CharSequence */
+    public static final int UNSUPPORTED_TYPE = 2;
+    /** The value is a text which isn't a number */
+    public static final int MALFORMED = 3;
+    /** The value is a number which doesn't fit in the requested type */
+    public static final int OUT_OF_RANGE = 4;
+
+    /** The powers of ten which are exactly represented by a double */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    /** The largest mantissa a double represents exactly */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    /** The number of significant digits accumulated before the remaining ones are dropped */
+    private static final int MAX_DIGITS = 18;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    private Coercion() {
+    }
+
+
+/* **************************************** Conversions ***************************************** */
+
+    /**
+     * Converts a value to a long. Decimal numbers are truncated toward zero.
+     *
+     * @param value        a Number or a CharSequence, e.g. 3, 3L, 3.0 or "3"
+     * @param defaultValue the value returned if the conversion fails
+     * @return the converted value, or defaultValue
+     */
+    public static long toLong(Object value, long defaultValue) {
+        if (value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Number) {
+            return doubleToLong(((Number) value).doubleValue(), defaultValue);
+        }
+        if (value instanceof CharSequence) {
+            return parseLong((CharSequence) value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Converts a value to an int. Decimal numbers are truncated toward zero, and numbers which
+     * don't fit in an int are rejected.
+     *
+     * @param value        a Number or a CharSequence, e.g. 3, 3L, 3.0 or "3"
+     * @param defaultValue the value returned if the conversion fails
+     * @return the converted value, or defaultValue
+     */
+    public static int toInt(Object value, int defaultValue) {
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).intValue();
+        }
+        long result = toLong(value, Long.MIN_VALUE);
+        if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+            return defaultValue;
+        }
+        return (int) result;
+    }
+
+    /**
+     * Converts a value to a double.
+     *
+     * @param value        a Number or a CharSequence, e.g. 3, 3.5 or "3.5e2"
+     * @param defaultValue the value returned if the conversion fails
+     * @return the converted value, or defaultValue
+     */
+    public static double toDouble(Object value, double defaultValue) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof CharSequence) {
+            return parseDouble((CharSequence) value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Converts a value to a boolean.
+     *
+     * @param value        a Boolean, a Number equal to 0 or 1, or a CharSequence equal to
+     *                     "true", "false" (ignoring case), "1" or "0"
+     * @param defaultValue the value returned if the conversion fails
+     * @return the converted value, or defaultValue
+     */
+    public static boolean toBoolean(Object value, boolean defaultValue) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            return number == 1 || (number != 0 && defaultValue);
+        }
+        if (value instanceof CharSequence) {
+            return parseBoolean((CharSequence) value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Tells whether a value can be converted to a number, and why not if it can't.
+     * Meant to log the failures, as the conversions only return the default value.
+     *
+     * @param value the value to check
+     * @return OK, MISSING, UNSUPPORTED_TYPE or MALFORMED
+     */
+    public static int status(Object value) {
+        if (value == null) {
+            return MISSING;
+        }
+        if (value instanceof Number) {
+            return OK;
+        }
+        if (value instanceof CharSequence) {
+            CharSequence text = (CharSequence) value;
+            // a malformed text is the only one returning each default value
+            double first = parseDouble(text, 0);
+            return first == parseDouble(text, 1) || first != first ? OK : MALFORMED;
+        }
+        return UNSUPPORTED_TYPE;
+    }
+
+    /**
+     * Tells whether a value can be converted to a long, and why not if it can't.
+     *
+     * @param value the value to check
+     * @return OK, MISSING, UNSUPPORTED_TYPE, MALFORMED or OUT_OF_RANGE
+     */
+    public static int longStatus(Object value) {
+        int status = status(value);
+        if (status == OK && toLong(value, 0) != toLong(value, 1)) {
+            return OUT_OF_RANGE;
+        }
+        return status;
+    }
+
+    /**
+     * Tells whether a value can be converted to an int, and why not if it can't.
+     *
+     * @param value the value to check
+     * @return OK, MISSING, UNSUPPORTED_TYPE, MALFORMED or OUT_OF_RANGE
+     */
+    public static int intStatus(Object value) {
+        int status = status(value);
+        if (status == OK && toInt(value, 0) != toInt(value, 1)) {
+            return OUT_OF_RANGE;
+        }
+        return status;
+    }
+
+
+/* ******************************************* Parsing ****************************************** */
+
+    /**
+     * Parses a long from a text, without allocating. Decimal numbers such as "3.0" or "3e2"
+     * are accepted and truncated toward zero.
+     *
+     * @param text         the text, surrounding whitespaces are ignored
+     * @param defaultValue the value returned if the text isn't a number fitting in a long
+     * @return the parsed value, or defaultValue
+     */
+    public static long parseLong(CharSequence text, long defaultValue) {
+        int end = trimEnd(text);
+        int index = trimStart(text, end);
+        if (index == end) {
+            return defaultValue;
+        }
+        boolean negative = false;
+        char c = text.charAt(index);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            index++;
+        }
+        int start = index;
+        long result = 0;
+        while (index < end) {
+            int digit = text.charAt(index) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            // accumulates negatively, since Long.MIN_VALUE has no positive counterpart
+            if (result < (Long.MIN_VALUE + digit) / 10) {
+                return defaultValue;
+            }
+            result = result * 10 - digit;
+            index++;
+        }
+        if (index == end && index > start) {
+            if (!negative && result == Long.MIN_VALUE) {
+                return defaultValue;
+            }
+            return negative ? result : -result;
+        }
+        return doubleToLong(parseDouble(text, Double.NaN), defaultValue);
+    }
+
+    /**
+     * Parses a double from a decimal text, without allocating in most cases: numbers whose
+     * significant digits fit in 53 bits and whose exponent is small are computed exactly from
+     * their digits, the other ones are given to Double.parseDouble() once their syntax has been
+     * checked, so that the result is always correctly rounded.
+     * "NaN" and "Infinity" are accepted, as by Double.parseDouble().
+     *
+     * @param text         the text, surrounding whitespaces are ignored
+     * @param defaultValue the value returned if the text isn't a number
+     * @return the parsed value, or defaultValue
+     */
+    public static double parseDouble(CharSequence text, double defaultValue) {
+        int end = trimEnd(text);
+        int index = trimStart(text, end);
+        if (index == end) {
+            return defaultValue;
+        }
+        boolean negative = false;
+        char c = text.charAt(index);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            index++;
+        }
+        if (matches(text, index, end, "NaN")) {
+            return Double.NaN;
+        }
+        if (matches(text, index, end, "Infinity")) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean truncated = false;
+        while (index < end && isDigit(text.charAt(index))) {
+            anyDigit = true;
+            int digit = text.charAt(index++) - '0';
+            if (digits < MAX_DIGITS) {
+                if (mantissa != 0 || digit != 0) {
+                    mantissa = mantissa * 10 + digit;
+                    digits++;
+                }
+            }
+            else {
+                exponent++;
+                truncated |= digit != 0;
+            }
+        }
+        if (index < end && text.charAt(index) == '.') {
+            index++;
+            while (index < end && isDigit(text.charAt(index))) {
+                anyDigit = true;
+                int digit = text.charAt(index++) - '0';
+                if (digits < MAX_DIGITS) {
+                    if (mantissa != 0 || digit != 0) {
+                        mantissa = mantissa * 10 + digit;
+                        digits++;
+                    }
+                    exponent--;
+                }
+                else {
+                    truncated |= digit != 0;
+                }
+            }
+        }
+        if (!anyDigit) {
+            return defaultValue;
+        }
+        if (index < end && (text.charAt(index) == 'e' || text.charAt(index) == 'E')) {
+            index++;
+            boolean negativeExponent = false;
+            if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+                negativeExponent = text.charAt(index) == '-';
+                index++;
+            }
+            if (index == end) {
+                return defaultValue;
+            }
+            int explicit = 0;
+            while (index < end && isDigit(text.charAt(index))) {
+                if (explicit < 100000) {
+                    explicit = explicit * 10 + (text.charAt(index) - '0');
+                }
+                index++;
+            }
+            exponent += negativeExponent ? -explicit : explicit;
+        }
+        if (index != end) {
+            return defaultValue;
+        }
+
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        // exact when both the mantissa and the power of ten are exactly represented
+        if (!truncated && mantissa <= MAX_EXACT_MANTISSA
+                && exponent >= -22 && exponent <= 22) {
+            double result = exponent < 0
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -result : result;
+        }
+        // the syntax has been checked, so this can't throw
+        return Double.parseDouble(text.subSequence(trimStart(text, end), end).toString());
+    }
+
+    /**
+     * Parses a boolean from a text, without allocating.
+     *
+     * @param text         "true", "false" (ignoring case), "1" or "0"
+     * @param defaultValue the value returned for any other text
+     * @return the parsed value, or defaultValue
+     */
+    public static boolean parseBoolean(CharSequence text, boolean defaultValue) {
+        int end = trimEnd(text);
+        int start = trimStart(text, end);
+        if (matchesIgnoreCase(text, start, end, "true") || matches(text, start, end, "1")) {
+            return true;
+        }
+        if (matchesIgnoreCase(text, start, end, "false") || matches(text, start, end, "0")) {
+            return false;
+        }
+        return defaultValue;
+    }
+
+
+/* ****************************************** Utility ******************************************* */
+
+    /**
+     * Converts a double to a long, truncating it toward zero.
+     *
+     * @param value        the double
+     * @param defaultValue the value returned for NaN or a double out of the range of a long
+     * @return the converted value, or defaultValue
+     */
+    private static long doubleToLong(double value, long defaultValue) {
+        if (value != value || value >= 0x1p63 || value < -0x1p63) {
+            return defaultValue;
+        }
+        return (long) value;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int trimEnd(CharSequence text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int trimStart(CharSequence text, int end) {
+        int start = 0;
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static boolean matches(CharSequence text, int start, int end, String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (text.charAt(start + i) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesIgnoreCase(CharSequence text, int start, int end,
+                                             String expected) {
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(text.charAt(start + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+/* ********************************************************************************************** */
+
+}
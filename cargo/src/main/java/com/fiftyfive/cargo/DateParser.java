@@ -0,0 +1,318 @@
+package com.fiftyfive.cargo;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Converts the date parameters received from the container to a number of milliseconds since
+ * the epoch. It can be used from any thread.
+ *
+ * Accepted values are:
+ *     * Date objects
+ *     * numbers and numeric texts, read as seconds since the epoch when they are lower than
+ *       EPOCH_SECONDS_LIMIT, and as milliseconds otherwise
+ *     * ISO-8601 texts, e.g. "2018-03-21T14:05:00Z", "2018-03-21T14:05:00.250+01:00",
+ *       "2018-03-21 14:05" or "2018-03-21", read as UTC when they don't have any offset.
+ *       They are parsed by hand, without allocating anything.
+ *     * RFC-1123 texts, e.g. "Wed, 21 Mar 2018 14:05:00 GMT", parsed by a SimpleDateFormat
+ *       kept by each thread.
+ */
+public final class DateParser {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** Numbers lower than this one are seconds, the others milliseconds (i.e. after 1973) */
+    public static final long EPOCH_SECONDS_LIMIT = 100000000000L;
+
+    /** Returned by the conversions when the value isn't a date */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60L * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60L * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24L * MILLIS_PER_HOUR;
+
+    /** The parser of the RFC-1123 dates, which isn't thread safe and is kept by each thread */
+    private static final ThreadLocal<SimpleDateFormat> RFC_1123 =
+            new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    SimpleDateFormat format =
+                            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+                    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+                    format.setLenient(false);
+                    return format;
+                }
+            };
+
+
+/* ***************************************** Constructor **************************************** */
+
+    private DateParser() {
+    }
+
+
+/* **************************************** Conversions ***************************************** */
+
+    /**
+     * Converts a value to a number of milliseconds since the epoch.
+     *
+     * @param value a Date, a Number or a CharSequence
+     * @return the milliseconds since the epoch, or INVALID if the value isn't a date
+     */
+    public static long toMillis(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Long || value instanceof Integer) {
+            return epochToMillis(((Number) value).longValue());
+        }
+        if (value instanceof Number) {
+            double number = ((Number) value).doubleValue();
+            if (number != number || Math.abs(number) >= 0x1p62) {
+                return INVALID;
+            }
+            return epochToMillis((long) number);
+        }
+        if (value instanceof CharSequence) {
+            return parse((CharSequence) value);
+        }
+        return INVALID;
+    }
+
+    /**
+     * Parses a date from a text, either a number of seconds or milliseconds since the epoch,
+     * an ISO-8601 date or a RFC-1123 date.
+     *
+     * @param text the text, surrounding whitespaces are ignored
+     * @return the milliseconds since the epoch, or INVALID if the text isn't a date
+     */
+    public static long parse(CharSequence text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int start = 0;
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == end) {
+            return INVALID;
+        }
+        if (isEpoch(text, start, end)) {
+            long epoch = Coercion.parseLong(text, INVALID);
+            return epoch == INVALID ? INVALID : epochToMillis(epoch);
+        }
+        long millis = parseIso(text, start, end);
+        if (millis == INVALID && end - start > 10 && Character.isLetter(text.charAt(start))) {
+            millis = parseRfc1123(text.subSequence(start, end).toString());
+        }
+        return millis;
+    }
+
+    /**
+     * Reads a number of seconds or milliseconds since the epoch, see EPOCH_SECONDS_LIMIT.
+     *
+     * @param epoch the number of seconds or milliseconds
+     * @return the number of milliseconds
+     */
+    static long epochToMillis(long epoch) {
+        if (Math.abs(epoch) < EPOCH_SECONDS_LIMIT) {
+            return epoch * MILLIS_PER_SECOND;
+        }
+        return epoch;
+    }
+
+
+/* ****************************************** ISO-8601 ****************************************** */
+
+    /**
+     * Parses an ISO-8601 date, with an optional time, fraction of second and offset:
+     * yyyy-MM-dd['T'|' 'HH:mm[:ss[.S*]]][Z|(+|-)HH[[:]mm]]
+     *
+     * @param text  the text
+     * @param start the index of the first character of the date
+     * @param end   the index following the last character of the date
+     * @return the milliseconds since the epoch, or INVALID if the text isn't such a date
+     */
+    static long parseIso(CharSequence text, int start, int end) {
+        if (end - start < 10 || text.charAt(start + 4) != '-' || text.charAt(start + 7) != '-') {
+            return INVALID;
+        }
+        int year = digits(text, start, 4);
+        int month = digits(text, start + 5, 2);
+        int day = digits(text, start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        long millis = daysFromCivil(year, month, day) * MILLIS_PER_DAY;
+        int index = start + 10;
+        if (index == end) {
+            return millis;
+        }
+
+        char separator = text.charAt(index);
+        if (separator == 'T' || separator == 't' || separator == ' ') {
+            if (end - index < 6 || text.charAt(index + 3) != ':') {
+                return INVALID;
+            }
+            int hour = digits(text, index + 1, 2);
+            int minute = digits(text, index + 4, 2);
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                return INVALID;
+            }
+            millis += hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE;
+            index += 6;
+            if (index < end && text.charAt(index) == ':') {
+                int second = end - index >= 3 ? digits(text, index + 1, 2) : -1;
+                if (second < 0 || second > 60) {
+                    return INVALID;
+                }
+                millis += second * MILLIS_PER_SECOND;
+                index += 3;
+                if (index < end && (text.charAt(index) == '.' || text.charAt(index) == ',')) {
+                    index++;
+                    int fractionStart = index;
+                    int fraction = 0;
+                    while (index < end && isDigit(text.charAt(index))) {
+                        if (index - fractionStart < 3) {
+                            fraction = fraction * 10 + (text.charAt(index) - '0');
+                        }
+                        index++;
+                    }
+                    int length = index - fractionStart;
+                    if (length == 0) {
+                        return INVALID;
+                    }
+                    for (int i = length; i < 3; i++) {
+                        fraction *= 10;
+                    }
+                    millis += fraction;
+                }
+            }
+        }
+        if (index == end) {
+            return millis;
+        }
+
+        char zone = text.charAt(index);
+        if ((zone == 'Z' || zone == 'z') && index + 1 == end) {
+            return millis;
+        }
+        if (zone != '+' && zone != '-') {
+            return INVALID;
+        }
+        int remaining = end - index - 1;
+        int offsetHours = remaining >= 2 ? digits(text, index + 1, 2) : -1;
+        int offsetMinutes;
+        if (remaining == 2) {
+            offsetMinutes = 0;
+        }
+        else if (remaining == 4) {
+            offsetMinutes = digits(text, index + 3, 2);
+        }
+        else if (remaining == 5 && text.charAt(index + 3) == ':') {
+            offsetMinutes = digits(text, index + 4, 2);
+        }
+        else {
+            return INVALID;
+        }
+        if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+            return INVALID;
+        }
+        long offset = offsetHours * MILLIS_PER_HOUR + offsetMinutes * MILLIS_PER_MINUTE;
+        return zone == '+' ? millis - offset : millis + offset;
+    }
+
+    /**
+     * Computes the number of days between the epoch and a date of the proleptic Gregorian
+     * calendar, as described by Howard Hinnant in "chrono-Compatible Low-Level Date Algorithms".
+     *
+     * @param year  the year
+     * @param month the month, from 1 to 12
+     * @param day   the day of the month, from 1 to 31
+     * @return the number of days since 1970-01-01
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468L;
+    }
+
+
+/* ****************************************** Utility ******************************************* */
+
+    /**
+     * Parses a RFC-1123 date with the SimpleDateFormat of the current thread.
+     *
+     * @param text the text
+     * @return the milliseconds since the epoch, or INVALID if the text isn't such a date
+     */
+    private static long parseRfc1123(String text) {
+        ParsePosition position = new ParsePosition(0);
+        Date date = RFC_1123.get().parse(text, position);
+        if (date == null || position.getIndex() != text.length()) {
+            return INVALID;
+        }
+        return date.getTime();
+    }
+
+    /**
+     * Returns whether a text is only made of digits, possibly signed.
+     */
+    private static boolean isEpoch(CharSequence text, int start, int end) {
+        int index = start;
+        if (text.charAt(index) == '-' || text.charAt(index) == '+') {
+            index++;
+        }
+        if (index == end) {
+            return false;
+        }
+        while (index < end) {
+            if (!isDigit(text.charAt(index++))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a fixed number of digits.
+     *
+     * @return the number, or -1 if one of the characters isn't a digit
+     */
+    private static int digits(CharSequence text, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+/* ********************************************************************************************** */
+
+}
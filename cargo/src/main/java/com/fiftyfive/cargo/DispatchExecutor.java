@@ -0,0 +1,32 @@
+package com.fiftyfive.cargo;
+
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The interface in charge of running the handler methods once Cargo has routed a tag.
+ * Implementations decide on which thread each event is delivered, but they must deliver the
+ * events of a same handler in the order they have been dispatched.
+ *
+ * Default implementations are available through the DispatchExecutors class.
+ */
+public interface DispatchExecutor {
+
+    /**
+     * Called from Cargo.execute() on the thread the tag has been fired on.
+     * Either calls on route.execute(params), or runs route.newDelivery(params) later on.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method, owned by the executor from now on
+     */
+    void dispatch(TagRoute route, Map<String, Object> params);
+
+    /**
+     * Called when the executor is replaced, from a background thread. The executor stops
+     * accepting new events, and returns once the events already dispatched have been delivered,
+     * so that the next executor doesn't deliver an event before them. The events dispatched
+     * afterwards are dropped with a log rather than run on the calling thread.
+     */
+    void shutdown();
+}
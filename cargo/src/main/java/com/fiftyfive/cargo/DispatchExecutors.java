@@ -0,0 +1,309 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Factory methods for the DispatchExecutor implementations shipped with Cargo.
+ * Use Cargo.setDispatchExecutor() to change the one used to deliver the events to the handlers.
+ */
+public final class DispatchExecutors {
+
+    /** The prefix of the name of the threads created by the executors */
+    private static final String THREAD_NAME = "Cargo-dispatch";
+
+    private DispatchExecutors() {
+    }
+
+
+/* *************************************** Factory methods ************************************** */
+
+    /**
+     * Returns the executor calling on the handler methods on the thread the tag has been fired on.
+     * This is the default behaviour, where Tags.execute() returns once the SDK call is done.
+     *
+     * @return the caller runs executor
+     */
+    public static DispatchExecutor callerRuns() {
+        return CallerRunsExecutor.INSTANCE;
+    }
+
+    /**
+     * Creates an executor delivering the events of all the handlers on one background thread,
+     * in the order they have been dispatched.
+     *
+     * @return a new shared thread executor
+     */
+    public static DispatchExecutor sharedThread() {
+        return new SharedThreadExecutor();
+    }
+
+    /**
+     * Creates an executor delivering the events of each handler on its own background thread,
+     * so that a slow SDK doesn't delay the events of the other handlers.
+     *
+     * @return a new thread per handler executor
+     */
+    public static DispatchExecutor threadPerHandler() {
+        return new ThreadPerHandlerExecutor();
+    }
+
+    /**
+     * Creates an executor delivering the events of each handler on its own background thread,
+     * through a preallocated ring buffer rather than a queue, so that dispatching an event
+     * doesn't allocate. When the ring is full, Tags.execute() waits for a slot.
+     *
+     * @param capacity the number of events the ring can hold, rounded up to a power of two
+     * @return a new ring buffer executor
+     */
+    public static DispatchExecutor ringBuffer(int capacity) {
+        return new RingBufferExecutor(capacity);
+    }
+
+
+/* *************************************** Implementations ************************************** */
+
+    /**
+     * Calls on the handler methods synchronously.
+     */
+    private static final class CallerRunsExecutor implements DispatchExecutor {
+
+        static final CallerRunsExecutor INSTANCE = new CallerRunsExecutor();
+
+        @Override
+        public void dispatch(TagRoute route, Map<String, Object> params) {
+            route.execute(params);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * Delivers the events of all the handlers on a single background thread.
+     */
+    private static final class SharedThreadExecutor implements DispatchExecutor {
+
+        private final ExecutorService worker =
+                Executors.newSingleThreadExecutor(new WorkerThreadFactory(THREAD_NAME));
+
+        @Override
+        public void dispatch(TagRoute route, Map<String, Object> params) {
+            submit(worker, route, params);
+        }
+
+        @Override
+        public void shutdown() {
+            worker.shutdown();
+            awaitTermination(worker);
+        }
+    }
+
+    /**
+     * Delivers the events of each handler on a background thread dedicated to this handler.
+     * The threads are created the first time an event is dispatched to their handler.
+     */
+    private static final class ThreadPerHandlerExecutor implements DispatchExecutor {
+
+        private final Map<AbstractTagHandler, ExecutorService> workers =
+                new ConcurrentHashMap<AbstractTagHandler, ExecutorService>();
+        private volatile boolean shutdown = false;
+
+        @Override
+        public void dispatch(TagRoute route, Map<String, Object> params) {
+            ExecutorService worker = workers.get(route.handler);
+            if (worker == null) {
+                worker = createWorker(route.handler);
+            }
+            submit(worker, route, params);
+        }
+
+        /**
+         * Creates the worker of a handler, unless it has been created in the meantime.
+         *
+         * @param handler the handler the worker delivers the events to
+         * @return the worker of the handler
+         */
+        private synchronized ExecutorService createWorker(AbstractTagHandler handler) {
+            ExecutorService worker = workers.get(handler);
+            if (worker == null) {
+                worker = Executors.newSingleThreadExecutor(
+                        new WorkerThreadFactory(THREAD_NAME + "-" + handler.key));
+                if (shutdown) {
+                    worker.shutdown();
+                }
+                workers.put(handler, worker);
+            }
+            return worker;
+        }
+
+        @Override
+        public void shutdown() {
+            List<ExecutorService> stopped;
+            synchronized (this) {
+                shutdown = true;
+                stopped = new ArrayList<ExecutorService>(workers.values());
+            }
+            for (ExecutorService worker : stopped) {
+                worker.shutdown();
+            }
+            for (ExecutorService worker : stopped) {
+                awaitTermination(worker);
+            }
+        }
+    }
+
+    /**
+     * Stands for the dispatch executor while the previous one is replaced by the next one.
+     * The events dispatched meanwhile are queued, until the previous executor has delivered
+     * all its events. They are then dispatched to the next executor, in order, before any new
+     * event, so that each handler keeps receiving its events one at a time and in order.
+     */
+    static final class Handover implements DispatchExecutor, Runnable {
+
+        /** The executor being replaced */
+        private final DispatchExecutor previous;
+        /** The executor replacing it */
+        final DispatchExecutor next;
+        /** The events dispatched during the handover, null once it is done */
+        private ArrayDeque<TagEvent> queued = new ArrayDeque<TagEvent>();
+
+        /**
+         * @param previous the executor being replaced
+         * @param next     the executor replacing it
+         */
+        Handover(DispatchExecutor previous, DispatchExecutor next) {
+            this.previous = previous;
+            this.next = next;
+        }
+
+        @Override
+        public void dispatch(TagRoute route, Map<String, Object> params) {
+            synchronized (this) {
+                if (queued != null) {
+                    queued.add(new TagEvent(route, params));
+                    return;
+                }
+            }
+            next.dispatch(route, params);
+        }
+
+        /**
+         * Waits for the previous executor to deliver its events, then hands the queued events
+         * over to the next one. Runs on a background thread, as it may take a while.
+         */
+        @Override
+        public void run() {
+            previous.shutdown();
+            synchronized (this) {
+                for (TagEvent event : queued) {
+                    CargoItem.setDeliveredItemsList(event.items);
+                    try {
+                        next.dispatch(event.route, event.params);
+                    } finally {
+                        CargoItem.clearDeliveredItemsList();
+                    }
+                }
+                queued = null;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Waits for the handover to be done, then shuts the next executor down.
+         */
+        @Override
+        public void shutdown() {
+            synchronized (this) {
+                while (queued != null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            next.shutdown();
+        }
+    }
+
+
+/* ****************************************** Utility ******************************************* */
+
+    /**
+     * Submits the delivery of an event to a worker.
+     * If the worker has been shut down, the event is dropped rather than run on the calling
+     * thread, where it would overtake the events the worker is still delivering.
+     *
+     * @param worker the worker to run the event on
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     */
+    private static void submit(ExecutorService worker, TagRoute route, Map<String, Object> params) {
+        try {
+            worker.execute(route.newDelivery(params));
+        } catch (RejectedExecutionException e) {
+            rejected(route);
+        }
+    }
+
+    /**
+     * Drops an event dispatched to an executor which has been shut down. If the CargoJournal
+     * is enabled, the event isn't acknowledged and is replayed at the next launch.
+     *
+     * @param route the route to the handler method
+     */
+    static void rejected(TagRoute route) {
+        CargoTrace.record(CargoTrace.METHOD_DROPPED, route.traceId, 0);
+        route.handler.metrics().increment(HandlerMetrics.DROPPED);
+        route.handler.log().w("The dispatch executor has been shut down, {} is dropped.",
+                route.functionTag);
+    }
+
+    /**
+     * Waits for a worker which has been shut down to deliver its remaining events.
+     *
+     * @param worker the worker
+     */
+    private static void awaitTermination(ExecutorService worker) {
+        try {
+            worker.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the named background threads of the executors.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final String name;
+
+        WorkerThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
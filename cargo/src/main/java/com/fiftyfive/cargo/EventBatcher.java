@@ -0,0 +1,142 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Collects the events routed to a handler and delivers them by batches to its executeBatch()
+ * method, once a number of events has been reached or a delay has passed since the first
+ * event of the batch, whichever comes first.
+ *
+ * The batches are always delivered in the lane of the handler in the dispatch executor, as its
+ * events are: a full batch is delivered by the event completing it, and the timed and explicit
+ * flushes are dispatched to the lane as tasks, after the events already dispatched to it.
+ * The delays are timed by the scheduler of Cargo, which only posts the flushes to the lanes.
+ */
+final class EventBatcher {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The handler the batches are delivered to */
+    private final AbstractTagHandler handler;
+    /** The number of events which triggers the delivery of a batch */
+    private final int maxEvents;
+    /** The delay after which a batch is delivered, even if it isn't full */
+    private final long maxDelayMillis;
+
+    /** The events of the current batch */
+    private ArrayList<TagEvent> batch;
+    /** The delayed flush of the current batch, null if the batch is empty */
+    private ScheduledFuture<?> scheduledFlush;
+    /** Held while a batch is delivered, so that the batches are delivered in order */
+    private final Object deliveryLock = new Object();
+
+    /** The route running flush() in the lane of the handler */
+    private final TagRoute flushRoute;
+
+    /** The task posting the flush of the batch once its delay has passed */
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (EventBatcher.this) {
+                scheduledFlush = null;
+            }
+            requestFlush();
+        }
+    };
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates the batcher of a handler.
+     *
+     * @param handler        the handler the batches are delivered to
+     * @param maxEvents      the number of events which triggers the delivery of a batch
+     * @param maxDelayMillis the delay after which a batch is delivered, even if it isn't full
+     */
+    EventBatcher(AbstractTagHandler handler, int maxEvents, long maxDelayMillis) {
+        this.handler = handler;
+        this.maxEvents = maxEvents;
+        this.maxDelayMillis = maxDelayMillis;
+        this.batch = new ArrayList<TagEvent>(maxEvents);
+        this.flushRoute = TagRoute.task(handler, "flushBatch", new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        });
+    }
+
+
+/* ****************************************** Batching ****************************************** */
+
+    /**
+     * Adds an event to the current batch, and delivers the batch if it is full.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     */
+    void add(TagRoute route, Map<String, Object> params) {
+        boolean full;
+        synchronized (this) {
+            batch.add(new TagEvent(route, params));
+            full = batch.size() >= maxEvents;
+            if (!full && scheduledFlush == null) {
+                scheduledFlush = Cargo.getScheduler().schedule(flushTask, maxDelayMillis,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Dispatches the delivery of the current batch to the lane of the handler, after the events
+     * already dispatched to it. It is delivered right away if Cargo isn't initialized.
+     */
+    void requestFlush() {
+        Cargo.dispatchTask(flushRoute);
+    }
+
+    /**
+     * Delivers the current batch to the handler, if it isn't empty. Called in the lane of the
+     * handler, see requestFlush(). Once executeBatch() returns, the events are acknowledged in
+     * the CargoJournal, as it may send them without calling on their method, unless the handler
+     * isn't initialized and has kept them for later.
+     */
+    void flush() {
+        synchronized (deliveryLock) {
+            List<TagEvent> events;
+            synchronized (this) {
+                if (batch.isEmpty()) {
+                    return;
+                }
+                events = batch;
+                batch = new ArrayList<TagEvent>(maxEvents);
+                if (scheduledFlush != null) {
+                    scheduledFlush.cancel(false);
+                    scheduledFlush = null;
+                }
+            }
+            try {
+                handler.executeBatch(events);
+            } finally {
+                if (handler.isInitialized()) {
+                    for (TagEvent event : events) {
+                        CargoJournal.acknowledge(event.params);
+                    }
+                }
+            }
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
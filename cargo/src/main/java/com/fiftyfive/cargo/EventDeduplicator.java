@@ -0,0 +1,210 @@
+package com.fiftyfive.cargo;
+
+import com.fiftyfive.cargo.models.Event;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Drops the events identical to an event received less than a window ago, e.g. the same tag
+ * fired twice by a double tap, or a screen view sent again at each resume of an activity.
+ *
+ * An event is identified by a 64 bits fingerprint of its handlerMethod, its parameters and the
+ * items attached with CargoItem, or of its handlerMethod and Event.EVENT_ID when it has one.
+ * The fingerprints are kept with the time they have been seen first in a fixed-size open
+ * addressing table: the window starts with the first event, and repeats don't extend it. When
+ * the slots probed for a new fingerprint are all in use, the oldest one is replaced, so that a
+ * full table lets a duplicate through rather than dropping a new event.
+ */
+final class EventDeduplicator {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The default number of slots of the table, a power of two */
+    static final int DEFAULT_CAPACITY = 256;
+    /** The number of slots probed for a fingerprint */
+    private static final int MAX_PROBES = 8;
+
+    /** The FNV-1a offset basis, the initial value of a string hash */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /** The FNV-1a prime */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** The duration during which a repeated event is dropped, in nanoseconds */
+    private final long windowNanos;
+    /** The fingerprints, 0 marking an empty slot */
+    private final long[] fingerprints;
+    /** The time each fingerprint has been seen first, from System.nanoTime() */
+    private final long[] times;
+    /** Used to turn a fingerprint into an index of the table */
+    private final int mask;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * @param windowNanos the duration during which a repeated event is dropped
+     * @param capacity    the number of fingerprints kept, rounded up to a power of two
+     */
+    EventDeduplicator(long windowNanos, int capacity) {
+        this.windowNanos = windowNanos;
+        int size = Integer.highestOneBit(Math.max(MAX_PROBES, capacity - 1)) << 1;
+        this.fingerprints = new long[size];
+        this.times = new long[size];
+        this.mask = size - 1;
+    }
+
+
+/* **************************************** Deduplication *************************************** */
+
+    /**
+     * Checks whether an event has already been received within the window, and remembers it
+     * otherwise.
+     *
+     * @param handlerMethod the handlerMethod of the event, e.g. 'FB_tagEvent'
+     * @param params        the parameters of the event, without the handlerMethod
+     * @return true if the event is a repeat to drop
+     */
+    boolean isDuplicate(String handlerMethod, Map<String, Object> params) {
+        long fingerprint = fingerprint(handlerMethod, params, CargoItem.getItemsList());
+        return isDuplicate(fingerprint, System.nanoTime());
+    }
+
+    /**
+     * Checks whether a fingerprint has already been seen within the window, and remembers it
+     * otherwise.
+     *
+     * @param fingerprint the fingerprint of the event
+     * @param now         the current time, from System.nanoTime()
+     * @return true if the fingerprint has been seen less than a window ago
+     */
+    synchronized boolean isDuplicate(long fingerprint, long now) {
+        long key = fingerprint != 0 ? fingerprint : 1;
+        int index = (int) (key ^ (key >>> 32)) & mask;
+        int free = -1;
+        int oldest = index;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (index + probe) & mask;
+            boolean live = fingerprints[slot] != 0 && now - times[slot] < windowNanos;
+            if (live && fingerprints[slot] == key) {
+                return true;
+            }
+            if (!live && free < 0) {
+                free = slot;
+            }
+            if (now - times[slot] > now - times[oldest]) {
+                oldest = slot;
+            }
+        }
+        int slot = free >= 0 ? free : oldest;
+        fingerprints[slot] = key;
+        times[slot] = now;
+        return false;
+    }
+
+
+/* ***************************************** Fingerprint **************************************** */
+
+    /**
+     * Computes the fingerprint of an event. It doesn't depend on the order of the parameters,
+     * but depends on the order of the items, as a cart is a sequence.
+     *
+     * @param handlerMethod the handlerMethod of the event
+     * @param params        the parameters of the event, without the handlerMethod
+     * @param items         the items attached to the event, may be null
+     * @return the fingerprint of the handlerMethod and Event.EVENT_ID if present,
+     *         or of the handlerMethod, all the parameters and the items otherwise
+     */
+    static long fingerprint(String handlerMethod, Map<String, Object> params,
+                            List<CargoItem> items) {
+        long hash = hash(handlerMethod);
+        Object eventId = params.get(Event.EVENT_ID);
+        if (eventId != null) {
+            return mix(hash ^ mix(hash(Event.EVENT_ID) + 31 * hash(eventId)));
+        }
+        long entries = 0;
+        for (Map.Entry<String, Object> entry : params.entrySet()) {
+            entries += mix(hash(entry.getKey()) + 31 * hash(entry.getValue()));
+        }
+        if (items != null) {
+            long itemsHash = items.size();
+            for (CargoItem item : items) {
+                itemsHash = mix(31 * itemsHash + hash(item));
+            }
+            entries += mix(itemsHash);
+        }
+        return mix(hash ^ mix(entries + params.size()));
+    }
+
+    /**
+     * Hashes all the attributes of an item.
+     *
+     * @param item the item, may be null
+     * @return the hash of the item
+     */
+    static long hash(CargoItem item) {
+        if (item == null) {
+            return 0;
+        }
+        long hash = hash(item.getName());
+        hash = 31 * hash + hash(item.getId());
+        hash = 31 * hash + Double.doubleToLongBits(item.getUnitPrice());
+        hash = 31 * hash + item.getQuantity();
+        hash = 31 * hash + Double.doubleToLongBits(item.getRevenue());
+        hash = 31 * hash + hash(item.getBrand());
+        hash = 31 * hash + hash(item.getCategory());
+        hash = 31 * hash + hash(item.getVariant());
+        hash = 31 * hash + item.getPosition();
+        hash = 31 * hash + hash(item.getCouponCode());
+        hash = 31 * hash + item.getiDimension();
+        hash = 31 * hash + hash(item.getvDimension());
+        hash = 31 * hash + item.getiMetric();
+        hash = 31 * hash + item.getvMetric();
+        hash = 31 * hash + hash(item.getAttribute1());
+        hash = 31 * hash + hash(item.getAttribute2());
+        hash = 31 * hash + hash(item.getAttribute3());
+        hash = 31 * hash + hash(item.getAttribute4());
+        hash = 31 * hash + hash(item.getAttribute5());
+        return hash;
+    }
+
+    /**
+     * Hashes a value on 64 bits, the strings with FNV-1a and the other values from
+     * their hashCode().
+     *
+     * @param value the value, may be null
+     * @return the hash of the value
+     */
+    static long hash(Object value) {
+        if (value instanceof String) {
+            String string = (String) value;
+            long hash = FNV_OFFSET;
+            for (int i = 0; i < string.length(); i++) {
+                hash = (hash ^ string.charAt(i)) * FNV_PRIME;
+            }
+            return hash;
+        }
+        return value != null ? mix(value.hashCode()) : 0;
+    }
+
+    /**
+     * Spreads the bits of a hash, with the finalizer of MurmurHash3.
+     *
+     * @param hash the hash
+     * @return the mixed hash
+     */
+    static long mix(long hash) {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+/* ********************************************************************************************** */
+
+}
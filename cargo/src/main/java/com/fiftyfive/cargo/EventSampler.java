@@ -0,0 +1,222 @@
+package com.fiftyfive.cargo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Keeps a percentage of the events of some handler methods, e.g. the scroll depth or list
+ * impressions which are only useful statistically. A rule is written as:
+ *  * 'ADB_tagEvent:scroll=5%' to keep 5% of the 'ADB_tagEvent' whose Event.EVENT_NAME is 'scroll'
+ *  * 'ADB_tagEvent=50%' to keep 50% of the other 'ADB_tagEvent'
+ * The events without any matching rule are all kept.
+ *
+ * The decision is deterministic for a user: the hash of the user key (User.USER_ID when known,
+ * an install id otherwise) and of the event name is compared to the percentage, so that a user
+ * either keeps all the events of a rule or none of them, and the same users are kept by the
+ * rules of the same event name on several handlers, which keeps the funnels coherent.
+ * A user kept at 5% is also kept at 10%. The events are all kept as long as the user key isn't
+ * known, rather than being sampled with a key which would change afterwards.
+ *
+ * The rules are resolved with two map lookups on the raw parameters, so that the events dropped
+ * cost almost nothing.
+ */
+final class EventSampler {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The number of buckets the users are spread into, a percentage having 4 decimals */
+    static final long BUCKETS = 1000000;
+    /** Separates the handler method from the event name in a rule */
+    private static final char EVENT_SEPARATOR = ':';
+    /** Separates the target of a rule from its percentage */
+    private static final char RATE_SEPARATOR = '=';
+
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+
+    /** The rules of each handler method, stored with the handler method as key */
+    private final Map<String, MethodRules> methods;
+    /** The key of the user, e.g. its User.USER_ID, null until it is known */
+    private volatile String userKey;
+    /** The hash of the user key, written before the key so that it is read after it */
+    private volatile long userHash;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * @param methods the rules of each handler method
+     * @param userKey the key of the user, may be null
+     */
+    private EventSampler(Map<String, MethodRules> methods, String userKey) {
+        this.methods = methods;
+        setUserKey(userKey);
+    }
+
+    /**
+     * Parses sampling rules, the invalid ones being logged and ignored.
+     *
+     * @param rules   the rules, e.g. 'ADB_tagEvent:scroll=5%'
+     * @param userKey the key of the user, null if it isn't known yet
+     * @return the sampler, or null if there isn't any valid rule
+     */
+    static EventSampler parse(String[] rules, String userKey) {
+        Map<String, MethodRules> methods = new HashMap<String, MethodRules>();
+        for (String rule : rules) {
+            int rateIndex = rule != null ? rule.lastIndexOf(RATE_SEPARATOR) : -1;
+            if (rateIndex < 0) {
+                LOG.w("The sampling rule '{}' has no percentage, it is ignored.", rule);
+                continue;
+            }
+            String target = rule.substring(0, rateIndex).trim();
+            String rate = rule.substring(rateIndex + 1).trim();
+            if (rate.endsWith("%")) {
+                rate = rate.substring(0, rate.length() - 1).trim();
+            }
+            double percent;
+            try {
+                percent = Double.parseDouble(rate);
+            } catch (NumberFormatException e) {
+                percent = -1;
+            }
+            int eventIndex = target.indexOf(EVENT_SEPARATOR);
+            String method = eventIndex < 0 ? target : target.substring(0, eventIndex).trim();
+            String event = eventIndex < 0 ? null : target.substring(eventIndex + 1).trim();
+            if (percent < 0 || percent > 100 || method.length() == 0) {
+                LOG.w("The sampling rule '{}' is invalid, it is ignored.", rule);
+                continue;
+            }
+
+            MethodRules methodRules = methods.get(method);
+            if (methodRules == null) {
+                methodRules = new MethodRules();
+                methods.put(method, methodRules);
+            }
+            Rule parsed = new Rule(event, Math.round(percent * BUCKETS / 100));
+            if (event == null) {
+                methodRules.all = parsed;
+            }
+            else {
+                methodRules.events.put(event, parsed);
+            }
+        }
+        return methods.isEmpty() ? null : new EventSampler(methods, userKey);
+    }
+
+
+/* ****************************************** Sampling ****************************************** */
+
+    /**
+     * Sets the key of the user the decisions are based on. Nothing is done if it hasn't changed.
+     *
+     * @param key the key of the user, e.g. its User.USER_ID, null to keep all the events until
+     *            it is known
+     */
+    void setUserKey(String key) {
+        String current = userKey;
+        if (key == null ? current == null : key.equals(current)) {
+            return;
+        }
+        if (key != null) {
+            userHash = EventDeduplicator.hash(key);
+        }
+        userKey = key;
+    }
+
+    /**
+     * Checks whether an event is dropped by the rules, for the user key set with setUserKey().
+     *
+     * @param handlerMethod the handler method of the event, e.g. 'ADB_tagEvent'
+     * @param eventName     the Event.EVENT_NAME parameter of the event, may be null
+     * @return true if the event has to be dropped
+     */
+    boolean isSampledOut(String handlerMethod, Object eventName) {
+        return isSampledOut(handlerMethod, eventName, null);
+    }
+
+    /**
+     * Checks whether an event is dropped by the rules. The key of the user is only hashed when
+     * a rule applies to the event, and the events are kept if there isn't any key.
+     *
+     * @param handlerMethod the handler method of the event, e.g. 'ADB_tagEvent'
+     * @param eventName     the Event.EVENT_NAME parameter of the event, may be null
+     * @param eventUserKey  the key of the user carried by the event, null to use the one set
+     *                      with setUserKey()
+     * @return true if the event has to be dropped
+     */
+    boolean isSampledOut(String handlerMethod, Object eventName, String eventUserKey) {
+        MethodRules methodRules = methods.get(handlerMethod);
+        if (methodRules == null) {
+            return false;
+        }
+        Rule rule = eventName != null ? methodRules.events.get(eventName) : null;
+        if (rule == null) {
+            rule = methodRules.all;
+            if (rule == null) {
+                return false;
+            }
+        }
+        long hash;
+        if (eventUserKey != null) {
+            hash = EventDeduplicator.hash(eventUserKey);
+        }
+        else if (userKey != null) {
+            hash = userHash;
+        }
+        else {
+            return false;
+        }
+        return bucketOf(hash, rule.salt) >= rule.threshold;
+    }
+
+    /**
+     * Computes the bucket of a user for a rule.
+     *
+     * @param userHash the hash of the user key
+     * @param salt     the salt of the rule
+     * @return the bucket, from 0 to BUCKETS - 1
+     */
+    static long bucketOf(long userHash, long salt) {
+        return (EventDeduplicator.mix(userHash ^ salt) >>> 1) % BUCKETS;
+    }
+
+
+/* ****************************************** Classes ******************************************* */
+
+    /**
+     * The rules of a handler method.
+     */
+    private static final class MethodRules {
+
+        /** The rule of the events without any rule of their own, may be null */
+        Rule all;
+        /** The rules of the event names, stored with the event name as key */
+        final Map<String, Rule> events = new HashMap<String, Rule>();
+    }
+
+    /**
+     * A percentage of the events to keep.
+     */
+    private static final class Rule {
+
+        /** The salt of the decisions, the hash of the event name so that the rules of the same
+            event name keep the same users */
+        final long salt;
+        /** The number of buckets kept */
+        final long threshold;
+
+        /**
+         * @param eventName the event name of the rule, null for all the events of the method
+         * @param threshold the number of buckets kept
+         */
+        Rule(String eventName, long threshold) {
+            this.salt = EventDeduplicator.hash(eventName != null ? eventName : "");
+            this.threshold = threshold;
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -0,0 +1,100 @@
+package com.fiftyfive.cargo;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The handler factories declared by the handler modules in the classpath, discovered once
+ * with a ServiceLoader and indexed with their upper cased key.
+ */
+final class HandlerFactories {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+
+    /** The discovered factories, loaded the first time they are needed */
+    private static volatile Map<String, HandlerFactory> factories;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    private HandlerFactories() {
+    }
+
+
+/* ****************************************** Discovery ***************************************** */
+
+    /**
+     * Retrieves the factory of the handler matching a key.
+     *
+     * @param key the key of the handler, e.g. "FB", without case sensitivity
+     * @return the factory, or null if no handler module declares one for this key
+     */
+    static HandlerFactory get(String key) {
+        return key == null ? null : all().get(key.toUpperCase(Locale.US));
+    }
+
+    /**
+     * Returns all the discovered factories, indexed with their upper cased key.
+     * When several factories share a key, the first one found is kept.
+     *
+     * @return an unmodifiable map of the factories
+     */
+    static Map<String, HandlerFactory> all() {
+        Map<String, HandlerFactory> result = factories;
+        if (result == null) {
+            synchronized (HandlerFactories.class) {
+                result = factories;
+                if (result == null) {
+                    result = load();
+                    factories = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Loads the factories declared in META-INF/services/com.fiftyfive.cargo.HandlerFactory.
+     * A factory which can't be loaded is logged and skipped.
+     *
+     * @return an unmodifiable map of the factories, indexed with their upper cased key
+     */
+    private static Map<String, HandlerFactory> load() {
+        Map<String, HandlerFactory> result = new LinkedHashMap<String, HandlerFactory>();
+        Iterator<HandlerFactory> iterator = ServiceLoader.load(HandlerFactory.class,
+                HandlerFactory.class.getClassLoader()).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                HandlerFactory factory = iterator.next();
+                String key = factory.getKey();
+                if (key == null) {
+                    LOG.w("{} doesn't declare any key", factory.getClass().getName());
+                    continue;
+                }
+                key = key.toUpperCase(Locale.US);
+                if (!result.containsKey(key)) {
+                    result.put(key, factory);
+                }
+            } catch (ServiceConfigurationError e) {
+                LOG.w("Unable to load a handler factory", e);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+/* ********************************************************************************************** */
+
+}
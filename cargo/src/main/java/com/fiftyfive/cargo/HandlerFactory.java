@@ -0,0 +1,29 @@
+package com.fiftyfive.cargo;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Creates the instances of a handler. Each handler module declares its factory in
+ * META-INF/services/com.fiftyfive.cargo.HandlerFactory, so that Cargo discovers it with
+ * a ServiceLoader and can register the handler from its key, without any reflection.
+ *
+ * Implementations need a public constructor without parameters.
+ */
+public interface HandlerFactory {
+
+    /**
+     * Returns the key of the handler, which prefixes the functions it is called with
+     * from the GTM container, e.g. "FB" for "FB_tagEvent".
+     *
+     * @return the key of the handler created by this factory
+     */
+    String getKey();
+
+    /**
+     * Creates a new instance of the handler.
+     *
+     * @return the new handler, which hasn't been initialized yet
+     */
+    AbstractTagHandler create();
+
+}
@@ -0,0 +1,250 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The metrics of a handler: counters of the events it has received or dropped,
+ * and a latency histogram of each of its methods. They are shared by all the instances
+ * registered with the same key, e.g. a LazyHandler and the handler it creates,
+ * and retrieved with CargoMetrics.
+ */
+public final class HandlerMetrics {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The events routed to the handler */
+    public static final int RECEIVED = 0;
+    /** The events kept until the handler is initialized */
+    public static final int DELAYED = 1;
+    /** The events dropped as too many were waiting for the initialization */
+    public static final int DROPPED = 2;
+    /** The mandatory parameters missing, see AbstractTagHandler.logMissingParam() */
+    public static final int MISSING_PARAM = 3;
+    /** The parameters which couldn't be converted, see AbstractTagHandler.logUncastableParam() */
+    public static final int UNCASTABLE_PARAM = 4;
+    /** The function tags the handler doesn't declare, see logUnknownFunction() */
+    public static final int UNKNOWN_FUNCTION = 5;
+    /** The methods which have thrown an exception */
+    public static final int FAILED = 6;
+    /** The calls to the third part SDK slower than CargoMetrics.setSlowCallThreshold() */
+    public static final int SLOW_SDK_CALL = 7;
+
+    /** The name of the histogram shared by the function tags the handler doesn't declare */
+    public static final String OTHER_METHODS = "other";
+
+    /** The labels of the counters, in the order of their index */
+    private static final String[] COUNTERS = {"received", "delayed", "dropped", "missingParam",
+            "uncastableParam", "unknownFunction", "failed", "slowSdkCall"};
+
+    /** The key of the handler */
+    final String key;
+    /** The counters, at the index of their constant */
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+    /** The latency of each declared method, stored with its function tag as key, and of the
+        other function tags under OTHER_METHODS */
+    private final ConcurrentHashMap<String, LatencyHistogram> methods =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    /** The latency of each third part SDK method, stored with its name as key */
+    private final ConcurrentHashMap<String, LatencyHistogram> sdkCalls =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * @param key the key of the handler
+     */
+    HandlerMetrics(String key) {
+        this.key = key;
+    }
+
+
+/* ***************************************** Recording ****************************************** */
+
+    /**
+     * Increments a counter.
+     *
+     * @param counter the index of the counter, e.g. RECEIVED
+     */
+    void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    /**
+     * Retrieves the latency histogram of a method, creating it on its first use.
+     * Routes keep the histogram of their method, so that this lookup is done once.
+     * Only the methods declared by the handler get their own histogram: any function tag of the
+     * handler key falls back on its execute(String, Map) method, so they share the OTHER_METHODS
+     * one, and the memory used doesn't depend on the tags received.
+     *
+     * @param route the route to the method
+     * @return the histogram of the method
+     */
+    LatencyHistogram method(TagRoute route) {
+        return histogram(methods, route.method != null ? route.functionTag : OTHER_METHODS);
+    }
+
+    /**
+     * Retrieves the latency histogram of a third part SDK method, creating it on its first use.
+     *
+     * @param sdkMethod the name of the SDK method, e.g. 'AppEventsLogger.logEvent'
+     * @return the histogram of the SDK method
+     */
+    LatencyHistogram sdkCall(String sdkMethod) {
+        return histogram(sdkCalls, sdkMethod);
+    }
+
+    /**
+     * Retrieves a histogram from a map, creating it if it is missing.
+     *
+     * @param histograms the histograms, stored with their name as key
+     * @param name       the name of the histogram
+     * @return the histogram
+     */
+    private static LatencyHistogram histogram(
+            ConcurrentHashMap<String, LatencyHistogram> histograms, String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Copies the current state of the metrics.
+     *
+     * @return the snapshot of the metrics
+     */
+    public Snapshot snapshot() {
+        long[] values = new long[COUNTERS.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counters.get(i);
+        }
+        return new Snapshot(key, values, snapshot(methods), snapshot(sdkCalls));
+    }
+
+    /**
+     * Copies the current state of histograms.
+     *
+     * @param histograms the histograms, stored with their name as key
+     * @return the snapshots, sorted by name
+     */
+    private static Map<String, LatencyHistogram.Snapshot> snapshot(
+            Map<String, LatencyHistogram> histograms) {
+        Map<String, LatencyHistogram.Snapshot> snapshots =
+                new TreeMap<String, LatencyHistogram.Snapshot>();
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+            snapshots.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return Collections.unmodifiableMap(snapshots);
+    }
+
+
+/* ****************************************** Snapshot ****************************************** */
+
+    /**
+     * An immutable copy of the metrics of a handler.
+     */
+    public static final class Snapshot {
+
+        /** The key of the handler */
+        private final String key;
+        /** The counters, at the index of their constant */
+        private final long[] counters;
+        /** The latency of each method, sorted by function tag */
+        private final Map<String, LatencyHistogram.Snapshot> methods;
+        /** The latency of each third part SDK method, sorted by name */
+        private final Map<String, LatencyHistogram.Snapshot> sdkCalls;
+
+        /**
+         * @param key      the key of the handler
+         * @param counters the counters, owned by the snapshot
+         * @param methods  the latency of each method
+         * @param sdkCalls the latency of each third part SDK method
+         */
+        Snapshot(String key, long[] counters, Map<String, LatencyHistogram.Snapshot> methods,
+                 Map<String, LatencyHistogram.Snapshot> sdkCalls) {
+            this.key = key;
+            this.counters = counters;
+            this.methods = methods;
+            this.sdkCalls = sdkCalls;
+        }
+
+        /**
+         * @return the key of the handler
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Gets the value of a counter.
+         *
+         * @param counter the index of the counter, e.g. HandlerMetrics.DROPPED
+         * @return its value
+         */
+        public long getCount(int counter) {
+            return counters[counter];
+        }
+
+        /**
+         * @return the latency of each method, with its function tag as key
+         */
+        public Map<String, LatencyHistogram.Snapshot> getMethods() {
+            return methods;
+        }
+
+        /**
+         * Gets the latency of the calls to the third part SDK, which are part of the latency
+         * of the handler methods making them. The difference is the time spent in Cargo.
+         *
+         * @return the latency of each SDK method, with its name as key
+         */
+        public Map<String, LatencyHistogram.Snapshot> getSdkCalls() {
+            return sdkCalls;
+        }
+
+        /**
+         * @return the latency of all the methods of the handler
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return LatencyHistogram.Snapshot.merge(
+                    new ArrayList<LatencyHistogram.Snapshot>(methods.values()));
+        }
+
+        /**
+         * The toString method for the Snapshot object.
+         *
+         * @return the counters, followed by the latency of each method on its own line
+         */
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder(key);
+            for (int i = 0; i < COUNTERS.length; i++) {
+                builder.append(' ').append(COUNTERS[i]).append('=').append(counters[i]);
+            }
+            for (Map.Entry<String, LatencyHistogram.Snapshot> entry : methods.entrySet()) {
+                builder.append("\n  ").append(entry.getKey()).append(' ').append(entry.getValue());
+            }
+            for (Map.Entry<String, LatencyHistogram.Snapshot> entry : sdkCalls.entrySet()) {
+                builder.append("\n  sdk ").append(entry.getKey()).append(' ')
+                        .append(entry.getValue());
+            }
+            return builder.toString();
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
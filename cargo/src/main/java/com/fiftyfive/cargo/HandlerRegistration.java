@@ -0,0 +1,415 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * Instantiates and initializes several handlers in parallel on a small pool of threads,
+ * so that the registration takes as long as the slowest SDK rather than the sum of all of them.
+ * A handler can be required to be initialized after some others.
+ *
+ * Use Cargo.newRegistration() to create one, e.g.
+ *     cargo.newRegistration()
+ *          .add(Cargo.Handler.AT)
+ *          .add(Cargo.Handler.ADB, Cargo.Handler.AT)
+ *          .start();
+ *
+ * Handlers are instantiated and initialized on background threads, except for the initialize()
+ * method of the handlers which call on SDK methods needing the main thread, see
+ * AbstractTagHandler.initializesOnMainThread(), which is posted to the main thread: the Adobe
+ * handler (Config.setContext()) and the AT Internet one (new Tracker()). The SDKs themselves are
+ * started later on, by the init tags, e.g. Tune.init() or FacebookSdk.sdkInitialize(), on the
+ * thread of the dispatch executor. Tags received for a handler before it has been registered are
+ * dropped, as they would be without any registration: fire the init tags from a listener of the
+ * future returned by start(), and never block the main thread on it.
+ */
+public final class HandlerRegistration {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+    /** The maximum number of threads used to initialize the handlers */
+    private static final int MAX_THREADS = 3;
+
+    /** The Cargo instance the handlers are registered in */
+    private final Cargo cargo;
+    /** The keys of the handlers to register, with the keys of the handlers they have to be
+        initialized after */
+    private final Map<String, String[]> prerequisites = new LinkedHashMap<String, String[]>();
+    /** Whether start() has already been called */
+    private boolean started = false;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates an empty registration, see Cargo.newRegistration().
+     *
+     * @param cargo the Cargo instance the handlers are registered in
+     */
+    HandlerRegistration(Cargo cargo) {
+        this.cargo = cargo;
+    }
+
+
+/* **************************************** Registration **************************************** */
+
+    /**
+     * Adds a handler to register.
+     *
+     * @param handler the handler to register
+     * @param after   the handlers which have to be initialized before this one, if they are part
+     *                of the same registration
+     * @return the current registration
+     */
+    public HandlerRegistration add(Cargo.Handler handler, Cargo.Handler... after) {
+        if (handler == null) {
+            return this;
+        }
+        String[] keys = new String[after != null ? after.length : 0];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = after[i] != null ? after[i].name() : null;
+        }
+        return add(handler.name(), keys);
+    }
+
+    /**
+     * Adds a handler to register from its key, see Cargo.registerHandler(String).
+     *
+     * @param key   the key of the handler to register, e.g. "FB"
+     * @param after the keys of the handlers which have to be initialized before this one,
+     *              if they are part of the same registration
+     * @return the current registration
+     */
+    public HandlerRegistration add(String key, String... after) {
+        if (key != null) {
+            prerequisites.put(upperCase(key), upperCase(after));
+        }
+        return this;
+    }
+
+    /**
+     * Starts instantiating and initializing the handlers. A handler starts once all the handlers
+     * it has to be initialized after are done, the other ones start right away.
+     *
+     * @return a future completed once every handler has been initialized, with the list of the
+     *         handlers which have been registered successfully
+     */
+    public synchronized CargoFuture<List<AbstractTagHandler>> start() {
+        CargoFuture<List<AbstractTagHandler>> future = new CargoFuture<List<AbstractTagHandler>>();
+        if (started || prerequisites.isEmpty()) {
+            if (started) {
+                LOG.w("This registration has already been started");
+            }
+            future.complete(Collections.<AbstractTagHandler>emptyList());
+            return future;
+        }
+        started = true;
+        new Run(buildNodes(), future).start();
+        return future;
+    }
+
+
+/* ****************************************** Ordering ****************************************** */
+
+    /**
+     * Builds the dependency graph of the handlers to register.
+     * Prerequisites which aren't part of the registration are ignored, as well as the ones
+     * forming a cycle, which are logged.
+     *
+     * @return the nodes of the graph, in the order the handlers have been added
+     */
+    List<Node> buildNodes() {
+        Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+        for (String key : prerequisites.keySet()) {
+            nodes.put(key, new Node(key));
+        }
+        for (Map.Entry<String, String[]> entry : prerequisites.entrySet()) {
+            Node node = nodes.get(entry.getKey());
+            for (String prerequisite : entry.getValue()) {
+                Node before = nodes.get(prerequisite);
+                if (before != null && before != node && !before.dependents.contains(node)) {
+                    before.dependents.add(node);
+                    node.remaining.incrementAndGet();
+                }
+            }
+        }
+        List<Node> result = new ArrayList<Node>(nodes.values());
+        breakCycles(result);
+        return result;
+    }
+
+    /**
+     * Drops the prerequisites which form a cycle, so that the handlers of the cycle are still
+     * registered. Only the prerequisites between the handlers of a same strongly connected
+     * component are dropped: a handler which waits for a handler of a cycle, without being
+     * part of it, keeps waiting for it.
+     *
+     * @param nodes all the nodes of the graph
+     */
+    private static void breakCycles(List<Node> nodes) {
+        for (List<Node> component : new Components(nodes).components) {
+            if (component.size() < 2) {
+                continue;
+            }
+            for (Node node : component) {
+                LOG.w("{} is part of a cycle of prerequisites, "
+                        + "it will be initialized without waiting for them", node.key);
+                Iterator<Node> dependents = node.dependents.iterator();
+                while (dependents.hasNext()) {
+                    Node dependent = dependents.next();
+                    if (component.contains(dependent)) {
+                        dependents.remove();
+                        dependent.remaining.decrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A handler to register, with the handlers waiting for it.
+     */
+    static final class Node {
+
+        /** The key of the handler to register */
+        final String key;
+        /** The handlers which have to be initialized after this one */
+        final List<Node> dependents = new ArrayList<Node>();
+        /** The number of prerequisites which haven't been initialized yet */
+        final AtomicInteger remaining = new AtomicInteger();
+
+        Node(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * The strongly connected components of the dependency graph, found with Tarjan's algorithm.
+     * The graph only holds a few handlers, so the search is recursive.
+     */
+    private static final class Components {
+
+        /** The components, a node without any cycle being a component of its own */
+        final List<List<Node>> components = new ArrayList<List<Node>>();
+        /** The order in which each node has been visited */
+        private final Map<Node, Integer> indexes = new HashMap<Node, Integer>();
+        /** The lowest index reachable from each node */
+        private final Map<Node, Integer> lowLinks = new HashMap<Node, Integer>();
+        /** The nodes visited and not assigned to a component yet */
+        private final ArrayDeque<Node> stack = new ArrayDeque<Node>();
+
+        Components(List<Node> nodes) {
+            for (Node node : nodes) {
+                if (!indexes.containsKey(node)) {
+                    visit(node);
+                }
+            }
+        }
+
+        /**
+         * Visits a node and its dependents, and collects the component of the node once all
+         * the nodes reachable from it have been visited.
+         *
+         * @param node the node to visit
+         */
+        private void visit(Node node) {
+            int index = indexes.size();
+            indexes.put(node, index);
+            lowLinks.put(node, index);
+            stack.push(node);
+            for (Node dependent : node.dependents) {
+                if (!indexes.containsKey(dependent)) {
+                    visit(dependent);
+                    lowLinks.put(node, Math.min(lowLinks.get(node), lowLinks.get(dependent)));
+                }
+                else if (stack.contains(dependent)) {
+                    lowLinks.put(node, Math.min(lowLinks.get(node), indexes.get(dependent)));
+                }
+            }
+            if (lowLinks.get(node) == index) {
+                List<Node> component = new ArrayList<Node>();
+                Node member;
+                do {
+                    member = stack.pop();
+                    component.add(member);
+                } while (member != node);
+                components.add(component);
+            }
+        }
+    }
+
+
+    /**
+     * Upper cases handler keys, so that they are compared without case sensitivity.
+     *
+     * @param keys the keys, possibly null
+     * @return the upper cased keys, never null
+     */
+    private static String[] upperCase(String[] keys) {
+        if (keys == null) {
+            return new String[0];
+        }
+        String[] result = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            result[i] = keys[i] != null ? upperCase(keys[i]) : null;
+        }
+        return result;
+    }
+
+    /**
+     * Upper cases a handler key.
+     *
+     * @param key the key
+     * @return the upper cased key
+     */
+    private static String upperCase(String key) {
+        return key.toUpperCase(Locale.US);
+    }
+
+
+/* ******************************************** Run ********************************************* */
+
+    /**
+     * The execution of a registration: submits each handler to the pool once its prerequisites
+     * are done, and completes the future once they all are.
+     */
+    private final class Run {
+
+        private final List<Node> nodes;
+        private final CargoFuture<List<AbstractTagHandler>> future;
+        private final ExecutorService pool;
+        /** The number of handlers which haven't been processed yet */
+        private final AtomicInteger pending;
+        /** The handlers registered successfully */
+        private final List<AbstractTagHandler> registered =
+                Collections.synchronizedList(new ArrayList<AbstractTagHandler>());
+
+        Run(List<Node> nodes, CargoFuture<List<AbstractTagHandler>> future) {
+            this.nodes = nodes;
+            this.future = future;
+            this.pending = new AtomicInteger(nodes.size());
+            this.pool = Executors.newFixedThreadPool(Math.min(MAX_THREADS, nodes.size()),
+                    new ThreadFactory() {
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable,
+                                    "Cargo-register-" + count.incrementAndGet());
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+
+        /**
+         * Submits the handlers which don't wait for any other one. They are all picked before the
+         * first is submitted, as the ones waiting for it may be submitted as soon as it is done.
+         */
+        void start() {
+            List<Node> roots = new ArrayList<Node>();
+            for (Node node : nodes) {
+                if (node.remaining.get() == 0) {
+                    roots.add(node);
+                }
+            }
+            for (Node node : roots) {
+                submit(node);
+            }
+        }
+
+        /**
+         * Instantiates a handler on the pool, and initializes it either on the pool or on the
+         * main thread, then submits the handlers waiting for it.
+         *
+         * @param node the handler to register
+         */
+        private void submit(final Node node) {
+            pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final AbstractTagHandler handler;
+                    try {
+                        handler = cargo.create(node.key);
+                    } catch (RuntimeException e) {
+                        LOG.e("Failed to instantiate " + node.key, e);
+                        done(node);
+                        return;
+                    }
+                    if (handler == null) {
+                        done(node);
+                        return;
+                    }
+                    Runnable registration = new Runnable() {
+                        @Override
+                        public void run() {
+                            register(node, handler);
+                        }
+                    };
+                    if (handler.initializesOnMainThread()) {
+                        Cargo.runOnMainThread(registration);
+                    }
+                    else {
+                        registration.run();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Initializes and registers a handler which has been instantiated.
+         *
+         * @param node    the node of the handler
+         * @param handler the handler
+         */
+        private void register(Node node, AbstractTagHandler handler) {
+            try {
+                if (cargo.register(handler) != null) {
+                    registered.add(handler);
+                }
+            } catch (RuntimeException e) {
+                LOG.e("Failed to register " + node.key, e);
+            } finally {
+                done(node);
+            }
+        }
+
+        /**
+         * Called once a handler has been processed, whether it has been registered or not.
+         *
+         * @param node the handler which has been processed
+         */
+        private void done(Node node) {
+            for (Node dependent : node.dependents) {
+                if (dependent.remaining.decrementAndGet() == 0) {
+                    submit(dependent);
+                }
+            }
+            if (pending.decrementAndGet() == 0) {
+                pool.shutdown();
+                synchronized (registered) {
+                    future.complete(Collections.unmodifiableList(
+                            new ArrayList<AbstractTagHandler>(registered)));
+                }
+            }
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
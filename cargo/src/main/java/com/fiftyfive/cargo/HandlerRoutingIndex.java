@@ -0,0 +1,158 @@
+package com.fiftyfive.cargo;
+
+import java.util.List;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * An immutable lookup table from a handler key to its registered handler.
+ * It is built by the TagHandlerManager each time the list of handlers changes, so that
+ * Cargo.execute() can route a 'handlerMethod' (e.g. 'FB_tagEvent') with a single probe.
+ *
+ * Keys are compared without case sensitivity (ASCII only, as handler keys are), directly on the
+ * prefix of the handlerMethod string, which avoids any regex split or String allocation.
+ */
+final class HandlerRoutingIndex {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** An empty index, used before any handler has been registered */
+    static final HandlerRoutingIndex EMPTY = new HandlerRoutingIndex(new AbstractTagHandler[0]);
+
+    /** The separator between the handler key and the method name, as in 'FB_init' */
+    private static final char KEY_SEPARATOR = '_';
+
+    /** The open addressing table of handlers, its length is a power of two */
+    private final AbstractTagHandler[] table;
+    /** The upper cased keys, stored at the same index than their handler */
+    private final String[] keys;
+    /** Used to turn a hash into an index of the table */
+    private final int mask;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Builds the index from the registered handlers.
+     * When several handlers share the same key, the first one registered is kept,
+     * as the linear search of Cargo.execute() used to do.
+     *
+     * @param handlers the handlers to index, in their registration order
+     */
+    private HandlerRoutingIndex(AbstractTagHandler[] handlers) {
+        int capacity = 4;
+        while (capacity < handlers.length * 2) {
+            capacity <<= 1;
+        }
+        table = new AbstractTagHandler[capacity];
+        keys = new String[capacity];
+        mask = capacity - 1;
+
+        for (AbstractTagHandler handler : handlers) {
+            if (handler.key == null) {
+                continue;
+            }
+            String key = upperCase(handler.key);
+            int index = hash(key, key.length()) & mask;
+            while (keys[index] != null && !keys[index].equals(key)) {
+                index = (index + 1) & mask;
+            }
+            if (keys[index] == null) {
+                keys[index] = key;
+                table[index] = handler;
+            }
+        }
+    }
+
+    /**
+     * Creates the index for a list of handlers.
+     *
+     * @param handlers the registered handlers
+     * @return the index matching these handlers
+     */
+    static HandlerRoutingIndex build(List<AbstractTagHandler> handlers) {
+        if (handlers.isEmpty()) {
+            return EMPTY;
+        }
+        return new HandlerRoutingIndex(handlers.toArray(new AbstractTagHandler[handlers.size()]));
+    }
+
+
+/* ****************************************** Routing ******************************************* */
+
+    /**
+     * Returns the length of the handler key within a handlerMethod string,
+     * which is the position of the first '_' or the whole length if there is none.
+     *
+     * @param handlerMethod the method name received from the container, e.g. 'FB_init'
+     * @return the length of the key prefix
+     */
+    static int keyLength(String handlerMethod) {
+        int separator = handlerMethod.indexOf(KEY_SEPARATOR);
+        return separator < 0 ? handlerMethod.length() : separator;
+    }
+
+    /**
+     * Retrieves the handler matching the first keyLength characters of the handlerMethod.
+     *
+     * @param handlerMethod the method name received from the container, e.g. 'FB_init'
+     * @param keyLength     the length of the key prefix, as returned by keyLength()
+     * @return the matching handler, or null if no handler is registered with this key
+     */
+    AbstractTagHandler get(String handlerMethod, int keyLength) {
+        int index = hash(handlerMethod, keyLength) & mask;
+        String key;
+        while ((key = keys[index]) != null) {
+            if (key.length() == keyLength && key.regionMatches(true, 0, handlerMethod, 0, keyLength)) {
+                return table[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+
+/* ****************************************** Utility ******************************************* */
+
+    /**
+     * Computes a case insensitive hash on the first characters of a string.
+     *
+     * @param value  the string to hash
+     * @param length the number of characters to take into account
+     * @return the hash
+     */
+    private static int hash(String value, int length) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + upperCase(value.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Upper cases an ASCII character, leaving any other character as is.
+     *
+     * @param c the character
+     * @return the upper cased character
+     */
+    private static char upperCase(char c) {
+        return (c >= 'a' && c <= 'z') ? (char) (c - ('a' - 'A')) : c;
+    }
+
+    /**
+     * Upper cases the ASCII characters of a string.
+     *
+     * @param value the string
+     * @return the upper cased string
+     */
+    private static String upperCase(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = upperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+/* ********************************************************************************************** */
+
+}
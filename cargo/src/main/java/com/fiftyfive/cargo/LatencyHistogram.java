@@ -0,0 +1,228 @@
+package com.fiftyfive.cargo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * A lock-free histogram of durations in nanoseconds, with a fixed memory footprint.
+ *
+ * As in an HDR histogram, the buckets are log-linear: each power of two is split into
+ * SUB_BUCKETS buckets of the same width, which bounds the relative error of any percentile
+ * to 1 / SUB_BUCKETS (12.5%), from a nanosecond up to MAX_VALUE. Longer durations are counted
+ * in the last bucket. Recording a value is a few bit operations and an atomic increment.
+ */
+public final class LatencyHistogram {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The number of bits used to split a power of two */
+    private static final int SUB_BUCKET_BITS = 3;
+    /** The number of buckets per power of two */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The highest power of two tracked, about 18 minutes in nanoseconds */
+    private static final int MAX_EXPONENT = 40;
+    /** The highest value tracked precisely */
+    static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    /** The number of buckets */
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    /** The number of values recorded in each bucket */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    /** The number of values recorded */
+    private final AtomicLong count = new AtomicLong();
+    /** The sum of the values recorded */
+    private final AtomicLong sum = new AtomicLong();
+    /** The highest value recorded */
+    private final AtomicLong max = new AtomicLong();
+
+
+/* ***************************************** Recording ****************************************** */
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values are counted as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Copies the current state of the histogram. Values recorded during the copy may be
+     * partially taken into account.
+     *
+     * @return the snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, count.get(), sum.get(), max.get());
+    }
+
+
+/* ****************************************** Buckets ******************************************* */
+
+    /**
+     * Computes the bucket of a value. Values lower than SUB_BUCKETS have their own bucket,
+     * the others are split according to their highest bit and the SUB_BUCKET_BITS following it.
+     *
+     * @param value a positive value
+     * @return the index of its bucket
+     */
+    static int bucketOf(long value) {
+        if (value > MAX_VALUE) {
+            return BUCKETS - 1;
+        }
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Computes the highest value counted in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the highest value of the bucket
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+
+/* ****************************************** Snapshot ****************************************** */
+
+    /**
+     * An immutable copy of a histogram.
+     */
+    public static final class Snapshot {
+
+        /** The number of values of each bucket */
+        private final long[] counts;
+        /** The number of values */
+        private final long count;
+        /** The sum of the values */
+        private final long sum;
+        /** The highest value */
+        private final long max;
+
+        /**
+         * @param counts the number of values of each bucket, owned by the snapshot
+         * @param count  the number of values
+         * @param sum    the sum of the values
+         * @param max    the highest value
+         */
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Merges several snapshots, e.g. the ones of all the methods of a handler.
+         *
+         * @param snapshots the snapshots to merge
+         * @return the snapshot holding all their values
+         */
+        static Snapshot merge(Iterable<Snapshot> snapshots) {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            long sum = 0;
+            long max = 0;
+            for (Snapshot snapshot : snapshots) {
+                for (int i = 0; i < BUCKETS; i++) {
+                    counts[i] += snapshot.counts[i];
+                }
+                count += snapshot.count;
+                sum += snapshot.sum;
+                max = Math.max(max, snapshot.max);
+            }
+            return new Snapshot(counts, count, sum, max);
+        }
+
+        /**
+         * @return the number of values recorded
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the highest value recorded, in nanoseconds
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @return the mean of the values recorded in nanoseconds, 0 if there is none
+         */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Computes a percentile of the values, rounded up to the highest value of its bucket
+         * and never higher than the highest value recorded.
+         *
+         * @param percentile the percentile, from 0 to 100, e.g. 99.9
+         * @return the value in nanoseconds, 0 if there is none
+         */
+        public long getPercentile(double percentile) {
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            double clamped = Math.min(100, Math.max(0, percentile));
+            long rank = Math.max(1, (long) Math.ceil(clamped / 100 * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * The toString method for the Snapshot object.
+         *
+         * @return the count, mean, median, 99th percentile and maximum, in microseconds
+         */
+        @Override
+        public String toString() {
+            return "count=" + count
+                    + " mean=" + (long) (getMean() / 1000) + "us"
+                    + " p50=" + getPercentile(50) / 1000 + "us"
+                    + " p99=" + getPercentile(99) / 1000 + "us"
+                    + " max=" + max / 1000 + "us";
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
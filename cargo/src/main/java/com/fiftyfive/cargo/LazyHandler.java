@@ -0,0 +1,381 @@
+package com.fiftyfive.cargo;
+
+import android.app.Activity;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * A lightweight stand-in registered instead of a handler when lazy handlers are enabled,
+ * see Cargo.setLazyHandlers(). The actual handler, and with it the third part SDK, is only
+ * created when the first tag aimed at its key is received, on the thread routing this tag.
+ * It is initialized on the same thread, or on the main thread if its initialize() method needs
+ * it, see AbstractTagHandler.initializesOnMainThread(). Meanwhile, the events routed to the
+ * proxy are kept as pending events, and forwarded in order to the actual handler once it is
+ * initialized. Then, on the main thread, it receives the lifecycle callbacks of the activity
+ * currently displayed, as if it had been registered from the start, and replaces the proxy in
+ * the TagHandlerManager. As the lifecycle callbacks are received on the main thread as well,
+ * the actual handler receives them in order, and the SDKs get them on the main thread.
+ */
+final class LazyHandler extends AbstractTagHandler {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** Creates the actual handler */
+    private final HandlerFactory factory;
+    /** The manager the proxy is registered in, and where it is replaced by the actual handler */
+    private final TagHandlerManager manager;
+
+    /** The actual handler, null until the first tag has been received and the handler has been
+        initialized, along with the events kept meanwhile */
+    private volatile AbstractTagHandler delegate;
+    /** The actual handler once initialized, which the events kept by the proxy are forwarded to */
+    private volatile AbstractTagHandler target;
+    /** The actual handler once the lifecycle callbacks have been replayed to it on the main
+        thread, guarded by lifecycleLock */
+    private AbstractTagHandler lifecycleDelegate;
+    /** Whether the actual handler failed to start */
+    private boolean failed = false;
+    /** Whether the actual handler is being initialized on the main thread */
+    private boolean starting = false;
+    /** Guards the creation of the actual handler */
+    private final Object materializeLock = new Object();
+
+    /** The activity started and not stopped yet, if any */
+    private WeakReference<Activity> startedActivity;
+    /** The activity resumed and not paused yet, if any */
+    private WeakReference<Activity> resumedActivity;
+    /** Guards the activities and the handover of the lifecycle callbacks to the actual handler */
+    private final Object lifecycleLock = new Object();
+
+    /** The capacity set with setPendingEventsCapacity(), applied to the actual handler */
+    private Integer pendingEventsCapacity;
+    /** The batching set with setBatching(), applied to the actual handler */
+    private int batchMaxEvents = 0;
+    private long batchMaxDelayMillis = 0;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates the proxy of a handler.
+     *
+     * @param factory the factory of the actual handler
+     * @param manager the manager the proxy is going to be registered in
+     */
+    LazyHandler(HandlerFactory factory, TagHandlerManager manager) {
+        this.factory = factory;
+        this.manager = manager;
+    }
+
+
+/* ************************************ Handlers core methods *********************************** */
+
+    /**
+     * Only declares the key of the handler, nothing is loaded from the third part SDK.
+     */
+    @Override
+    protected void initialize() {
+        super.initialize(factory.getKey(), factory.getKey());
+        this.valid = true;
+    }
+
+    /**
+     * Creates the actual handler if needed, and resolves the function tag with it. While the
+     * actual handler is being initialized, the route leads to the proxy, which keeps the event.
+     *
+     * @param functionTag the function tag received from the container
+     * @return the route to the method of the actual handler
+     */
+    @Override
+    TagRoute getRoute(String functionTag) {
+        AbstractTagHandler handler = materialize();
+        if (handler == null) {
+            return new TagRoute(this, functionTag, null, true);
+        }
+        return handler.getRoute(functionTag);
+    }
+
+    /**
+     * Forwards an event kept while the actual handler was being initialized.
+     *
+     * @param function the function tag of the event
+     * @param params   the parameters of the event
+     */
+    @Override
+    public void execute(String function, Map<String, Object> params) {
+        AbstractTagHandler handler = target;
+        if (handler == null) {
+            log().w("The handler failed to start, {} is dropped.", function);
+            return;
+        }
+        handler.getRoute(function).executeReceived(params);
+    }
+
+    /**
+     * Creates the actual handler, and initializes it either right away or on the main thread.
+     *
+     * @return the actual handler, or null if it is being initialized or failed to start
+     */
+    AbstractTagHandler materialize() {
+        AbstractTagHandler handler = delegate;
+        if (handler != null) {
+            return handler;
+        }
+        synchronized (materializeLock) {
+            if (delegate != null || failed || starting) {
+                return delegate;
+            }
+            log().d("Creating the handler on its first tag");
+            try {
+                handler = factory.create();
+            } catch (RuntimeException e) {
+                log().e("Failed to create the handler", e);
+                handler = null;
+            }
+            if (handler != null && !handler.initializesOnMainThread()) {
+                return start(handler) ? handler : null;
+            }
+            starting = handler != null;
+        }
+        if (handler == null) {
+            fail();
+            return null;
+        }
+        final AbstractTagHandler created = handler;
+        Cargo.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                start(created);
+            }
+        });
+        return delegate;
+    }
+
+    /**
+     * Initializes the actual handler, forwards it the events kept meanwhile, then hands the
+     * lifecycle callbacks over to it on the main thread.
+     *
+     * @param handler the actual handler
+     * @return true if the handler has started
+     */
+    private boolean start(AbstractTagHandler handler) {
+        try {
+            handler.initialize();
+        } catch (RuntimeException e) {
+            log().e("Failed to initialize the handler", e);
+            fail();
+            return false;
+        }
+        if (!handler.valid) {
+            fail();
+            return false;
+        }
+        synchronized (materializeLock) {
+            if (pendingEventsCapacity != null) {
+                handler.setPendingEventsCapacity(pendingEventsCapacity);
+            }
+            if (batchMaxEvents > 1) {
+                handler.setBatching(batchMaxEvents, batchMaxDelayMillis);
+            }
+            target = handler;
+        }
+        releasePendingEvents();
+        synchronized (materializeLock) {
+            delegate = handler;
+            starting = false;
+        }
+
+        final AbstractTagHandler created = handler;
+        Cargo.runOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                handOver(created);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Stops the proxy when the actual handler failed to start, dropping the events kept so far.
+     */
+    private void fail() {
+        synchronized (materializeLock) {
+            failed = true;
+            starting = false;
+        }
+        manager.unregisterHandler(this);
+        releasePendingEvents();
+    }
+
+    /**
+     * Forwards the events kept by the proxy, in order, and the ones received meanwhile after
+     * them.
+     */
+    private void releasePendingEvents() {
+        initialized = true;
+        replayPendingEvents(null);
+    }
+
+    /**
+     * Replays the current activity to the actual handler, then replaces the proxy with it.
+     * Runs on the main thread, where the lifecycle callbacks are received, so that the handler
+     * receives the callbacks in order.
+     *
+     * @param handler the actual handler
+     */
+    private void handOver(AbstractTagHandler handler) {
+        synchronized (lifecycleLock) {
+            Activity started = startedActivity != null ? startedActivity.get() : null;
+            Activity resumed = resumedActivity != null ? resumedActivity.get() : null;
+            if (started != null) {
+                handler.onActivityStarted(started);
+            }
+            if (resumed != null) {
+                handler.onActivityResumed(resumed);
+            }
+            lifecycleDelegate = handler;
+        }
+        manager.replaceHandler(this, handler);
+    }
+
+    /**
+     * Returns whether the actual handler has been initialized.
+     *
+     * @return false as long as the actual handler hasn't been created
+     */
+    @Override
+    public boolean isInitialized() {
+        AbstractTagHandler handler = delegate;
+        return handler != null && handler.isInitialized();
+    }
+
+
+/* ************************************* Forwarded settings ************************************* */
+
+    /**
+     * Applies the capacity to the events kept by the proxy, and to the actual handler once it is
+     * created.
+     *
+     * @param capacity the number of events to keep, 0 to drop all of them.
+     */
+    @Override
+    public void setPendingEventsCapacity(int capacity) {
+        super.setPendingEventsCapacity(capacity);
+        synchronized (materializeLock) {
+            pendingEventsCapacity = capacity;
+            if (delegate != null) {
+                delegate.setPendingEventsCapacity(capacity);
+            }
+        }
+    }
+
+    /**
+     * Applies the batching to the actual handler once it is created.
+     *
+     * @param maxEvents      the number of events which triggers the delivery of a batch,
+     *                       1 or less to disable batching.
+     * @param maxDelayMillis the delay after which a batch is delivered, even if it isn't full.
+     */
+    @Override
+    public void setBatching(int maxEvents, long maxDelayMillis) {
+        synchronized (materializeLock) {
+            batchMaxEvents = maxEvents;
+            batchMaxDelayMillis = maxDelayMillis;
+            if (delegate != null) {
+                delegate.setBatching(maxEvents, maxDelayMillis);
+            }
+        }
+    }
+
+    /**
+     * Delivers the current batch of the actual handler, if it has been created.
+     */
+    @Override
+    public void flushBatch() {
+        AbstractTagHandler handler = delegate;
+        if (handler != null) {
+            handler.flushBatch();
+        }
+    }
+
+
+/* ******************************** ActivityLifeCycle callbacks ********************************* */
+
+    /**
+     * Remembers the started activity, in order to replay it to the actual handler.
+     *
+     * @param activity The activity being actually started
+     */
+    @Override
+    public void onActivityStarted(Activity activity) {
+        AbstractTagHandler handler;
+        synchronized (lifecycleLock) {
+            startedActivity = new WeakReference<Activity>(activity);
+            handler = lifecycleDelegate;
+        }
+        if (handler != null) {
+            handler.onActivityStarted(activity);
+        }
+    }
+
+    /**
+     * Remembers the resumed activity, in order to replay it to the actual handler.
+     *
+     * @param activity The activity being actually resumed
+     */
+    @Override
+    public void onActivityResumed(Activity activity) {
+        AbstractTagHandler handler;
+        synchronized (lifecycleLock) {
+            resumedActivity = new WeakReference<Activity>(activity);
+            handler = lifecycleDelegate;
+        }
+        if (handler != null) {
+            handler.onActivityResumed(activity);
+        }
+    }
+
+    /**
+     * Forgets the resumed activity.
+     *
+     * @param activity The activity being actually paused
+     */
+    @Override
+    public void onActivityPaused(Activity activity) {
+        AbstractTagHandler handler;
+        synchronized (lifecycleLock) {
+            if (resumedActivity != null && resumedActivity.get() == activity) {
+                resumedActivity = null;
+            }
+            handler = lifecycleDelegate;
+        }
+        if (handler != null) {
+            handler.onActivityPaused(activity);
+        }
+    }
+
+    /**
+     * Forgets the started activity.
+     *
+     * @param activity The activity being actually stopped
+     */
+    @Override
+    public void onActivityStopped(Activity activity) {
+        AbstractTagHandler handler;
+        synchronized (lifecycleLock) {
+            if (startedActivity != null && startedActivity.get() == activity) {
+                startedActivity = null;
+            }
+            handler = lifecycleDelegate;
+        }
+        if (handler != null) {
+            handler.onActivityStopped(activity);
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
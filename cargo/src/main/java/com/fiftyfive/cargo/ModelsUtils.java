@@ -1,7 +1,6 @@
 package com.fiftyfive.cargo;
 
 
-import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -12,9 +11,17 @@ import java.util.Map;
  * Copyright 2016 fifty-five All rights reserved.
  *
  * A tool class which is used to retrieve a specific typed object within a Map from its key.
+ * The parameters Cargo gives to the handlers are held in a ParamBag, whose typed getters are
+ * used directly for the primitive types, including through the ParamsOverlay of a multicast tag
+ * for the parameters the handler hasn't changed.
+ * A number parameter which is present but can't be converted is logged and recorded in the
+ * CargoTrace as PARAM_UNCASTABLE, with the Coercion status as value.
  */
 public class ModelsUtils {
 
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+
 
 /* ****************************** String, Date & Boolean objects ******************************** */
 
@@ -42,6 +49,7 @@ public class ModelsUtils {
 
     /**
      * Retrieves a boolean object within a map from its key name.
+     * The value is converted without throwing, see Coercion.toBoolean()
      *
      * @param params        the map you want to retrieve your boolean from
      * @param name          the key which has been used to store the parameter
@@ -50,21 +58,17 @@ public class ModelsUtils {
      * @return the boolean if it has been found, or default value if not.
      */
     public static boolean getBoolean(Map<String, Object> params, String name, boolean defaultValue){
-        Object value = params.get(name);
-        if (value instanceof Boolean){
-            return (boolean) value;
-        }
-        else if (value instanceof String){
-            boolean myBool = Boolean.valueOf(value.toString());
-            return myBool;
-        }
-        else {
-            return defaultValue;
+        ParamBag bag = bagOf(params, name);
+        if (bag != null) {
+            return bag.getBoolean(name, defaultValue);
         }
+        return Coercion.toBoolean(params.get(name), defaultValue);
     }
 
     /**
      * Retrieves a Date object within a map from its key name.
+     * Dates can be given as Date objects, as seconds or milliseconds since the epoch,
+     * or as ISO-8601 texts, see DateParser.
      *
      * @param params        the map you want to retrieve your Date from
      * @param name          the key which has been used to store the parameter
@@ -76,19 +80,8 @@ public class ModelsUtils {
         if (value instanceof Date){
             return (Date) value;
         }
-        else if (value instanceof Long) {
-            return new Date((Long)value);
-        }
-        else if (value instanceof String) {
-            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-            try {
-                Date date = format.parse(value.toString());
-                System.out.println(date);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        }
-        return null;
+        long millis = DateParser.toMillis(value);
+        return millis != DateParser.INVALID ? new Date(millis) : null;
     }
 
 
@@ -97,6 +90,7 @@ public class ModelsUtils {
 
     /**
      * Retrieves an int object within a map from its key name.
+     * The value is converted without throwing, see Coercion.toInt()
      *
      * @param params        the map you want to retrieve your int from
      * @param name          the key which has been used to store the parameter
@@ -105,18 +99,34 @@ public class ModelsUtils {
      * @return the int if it has been found, or default value if not.
      */
     public static int getInt(Map<String, Object> params, String name, int defaultValue){
-        Object value = params.get(name);
-        if (value instanceof Integer){
-            return (int) value;
+        long result;
+        Object value;
+        ParamBag bag = bagOf(params, name);
+        if (bag != null) {
+            int slot = bag.slotOf(name);
+            if (slot < 0) {
+                return defaultValue;
+            }
+            result = bag.toLongAt(slot, Long.MIN_VALUE);
+            value = bag.valueAt(slot);
         }
-        else if (value instanceof String){
-            return Integer.valueOf(value.toString());
+        else {
+            value = params.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            result = Coercion.toLong(value, Long.MIN_VALUE);
+        }
+        if (result != Long.MIN_VALUE && result == (int) result) {
+            return (int) result;
         }
+        checkConversion(name, "int", Coercion.intStatus(value));
         return defaultValue;
     }
 
     /**
      * Retrieves a Double object within a map from its key name.
+     * The value is converted without throwing, see Coercion.toDouble()
      *
      * @param params        the map you want to retrieve your Double from
      * @param name          the key which has been used to store the parameter
@@ -125,18 +135,35 @@ public class ModelsUtils {
      * @return  the Double object if it has been found or defaultValue otherwise.
      */
     public static double getDouble(Map<String, Object> params, String name, double defaultValue){
-        Object value = params.get(name);
-        if (value instanceof Double) {
-            return (double) value;
+        double result;
+        Object value;
+        ParamBag bag = bagOf(params, name);
+        if (bag != null) {
+            int slot = bag.slotOf(name);
+            if (slot < 0) {
+                return defaultValue;
+            }
+            result = bag.toDoubleAt(slot, Double.NaN);
+            value = bag.valueAt(slot);
         }
-        else if (value instanceof String){
-            return Double.parseDouble(value.toString());
+        else {
+            value = params.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            result = Coercion.toDouble(value, Double.NaN);
         }
-        return defaultValue;
+        if (result == result) {
+            return result;
+        }
+        int status = Coercion.status(value);
+        checkConversion(name, "double", status);
+        return status == Coercion.OK ? result : defaultValue;
     }
 
     /**
      * Retrieves a Long object within a map from its key name.
+     * The value is converted without throwing, see Coercion.toLong()
      *
      * @param params        the map you want to retrieve your Long from
      * @param name          the key which has been used to store the parameter
@@ -145,17 +172,30 @@ public class ModelsUtils {
      * @return  the Long object if it has been found or defaultValue otherwise.
      */
     public static long getLong(Map<String, Object> params, String name, long defaultValue){
-        Object value = params.get(name);
-        if (value instanceof Long) {
-            return (long)value;
+        long result;
+        Object value;
+        ParamBag bag = bagOf(params, name);
+        if (bag != null) {
+            int slot = bag.slotOf(name);
+            if (slot < 0) {
+                return defaultValue;
+            }
+            result = bag.toLongAt(slot, Long.MIN_VALUE);
+            value = bag.valueAt(slot);
         }
-        else if (value instanceof String) {
-            return Long.parseLong(value.toString());
+        else {
+            value = params.get(name);
+            if (value == null) {
+                return defaultValue;
+            }
+            result = Coercion.toLong(value, Long.MIN_VALUE);
         }
-        else if (value instanceof Integer) {
-            return (Integer)value;
+        if (result != Long.MIN_VALUE) {
+            return result;
         }
-        return defaultValue;
+        int status = Coercion.longStatus(value);
+        checkConversion(name, "long", status);
+        return status == Coercion.OK ? result : defaultValue;
     }
 
 
@@ -194,6 +234,45 @@ public class ModelsUtils {
         return null;
     }
 
+
+/* ****************************************** Utility ******************************************* */
+
+    /**
+     * Retrieves the ParamBag holding a parameter, so that its typed getters can be used.
+     *
+     * @param params the map the parameter is read from
+     * @param name   the key of the parameter
+     * @return the params themselves if they are a ParamBag, the shared ParamBag of a
+     *         ParamsOverlay if the handler hasn't changed the parameter, or null otherwise
+     */
+    private static ParamBag bagOf(Map<String, Object> params, String name) {
+        if (params instanceof ParamBag) {
+            return (ParamBag) params;
+        }
+        if (params instanceof ParamsOverlay) {
+            return ((ParamsOverlay) params).sharedBag(name);
+        }
+        return null;
+    }
+
+    /**
+     * Records a number parameter which has been read as the default value because it can't be
+     * converted. The number getters convert each parameter once, against a value which can't
+     * be a valid result, e.g. NaN for a double, and only check the status of the parameters
+     * which have failed, so that the parameters converted successfully aren't parsed twice.
+     *
+     * @param name   the key of the parameter
+     * @param type   the type the parameter was converted to, for the log
+     * @param status the Coercion status of the parameter
+     */
+    private static void checkConversion(String name, String type, int status) {
+        if (status == Coercion.OK || status == Coercion.MISSING) {
+            return;
+        }
+        CargoTrace.record(CargoTrace.PARAM_UNCASTABLE, CargoTrace.idOf(name), status);
+        LOG.w("Parameter {} cannot be converted to {} (Coercion status {}).", name, type, status);
+    }
+
 /* ********************************************************************************************** */
 
 }
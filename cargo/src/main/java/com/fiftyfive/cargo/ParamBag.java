@@ -0,0 +1,548 @@
+package com.fiftyfive.cargo;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The parameters of an event, built once by Cargo from the map received from the container.
+ * It is a small open addressing map which stores along with each value its type and, for
+ * numbers and booleans, its primitive value, so that the ModelsUtils getters resolve a parameter
+ * with a single probe and without unboxing or instanceof chains.
+ *
+ * It behaves as any other Map, handlers can remove the parameters they have consumed.
+ */
+public final class ParamBag extends AbstractMap<String, Object> {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The type of a value which has no primitive representation */
+    static final byte OTHER = 0;
+    /** The type of a String value */
+    static final byte STRING = 1;
+    /** The type of an Integer value, stored in the long slot */
+    static final byte INT = 2;
+    /** The type of a Long value, stored in the long slot */
+    static final byte LONG = 3;
+    /** The type of a Double value, stored in the double slot */
+    static final byte DOUBLE = 4;
+    /** The type of a Boolean value, stored in the long slot as 0 or 1 */
+    static final byte BOOLEAN = 5;
+
+    /** The keys of the table, a removed key is kept so that it doesn't break the probe chains */
+    private String[] keys;
+    /** The values, at the same index than their key */
+    private Object[] values;
+    /** The type of each value */
+    private byte[] types;
+    /** The primitive value of the Integer, Long and Boolean values */
+    private long[] longs;
+    /** The primitive value of the Double values */
+    private double[] doubles;
+    /** A bit per slot, set when the slot holds a parameter which hasn't been removed */
+    private long[] present;
+
+    /** The number of parameters */
+    private int size;
+    /** The number of slots holding a key, removed or not */
+    private int used;
+    /** Used to turn a hash into an index of the table */
+    private int mask;
+
+    /** The view of the entries, created on demand */
+    private Set<Entry<String, Object>> entries;
+
+    /** The sequence number of the event in the CargoJournal, until it is acknowledged */
+    long journalSequence = CargoJournal.NOT_JOURNALED;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates an empty bag able to hold the given number of parameters without resizing.
+     *
+     * @param expectedSize the expected number of parameters
+     */
+    public ParamBag(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Creates a bag holding the parameters of a map.
+     *
+     * @param params the parameters to copy
+     */
+    public ParamBag(Map<String, Object> params) {
+        this(params.size());
+        for (Entry<String, Object> entry : params.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the parameters as a bag, copying them only if they aren't one already.
+     *
+     * @param params the parameters of the event
+     * @return the bag holding the parameters
+     */
+    public static ParamBag of(Map<String, Object> params) {
+        if (params instanceof ParamBag) {
+            return (ParamBag) params;
+        }
+        return new ParamBag(params);
+    }
+
+
+/* ****************************************** Lookups ******************************************* */
+
+    /**
+     * Finds the slot of a parameter.
+     *
+     * @param name the name of the parameter
+     * @return the index of its slot, or -1 if the bag doesn't hold it
+     */
+    int slotOf(Object name) {
+        if (name == null) {
+            return -1;
+        }
+        int index = hash(name) & mask;
+        String key;
+        while ((key = keys[index]) != null) {
+            if (key.equals(name)) {
+                return isPresent(index) ? index : -1;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the type of the value held in a slot.
+     *
+     * @param slot the index of the slot, as returned by slotOf()
+     * @return one of the type constants
+     */
+    byte typeAt(int slot) {
+        return types[slot];
+    }
+
+    /**
+     * Returns the value held in a slot.
+     *
+     * @param slot the index of the slot, as returned by slotOf()
+     * @return the value of the parameter
+     */
+    Object valueAt(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Returns the primitive value of an Integer, Long or Boolean held in a slot.
+     *
+     * @param slot the index of the slot, as returned by slotOf()
+     * @return the value as a long
+     */
+    long longAt(int slot) {
+        return longs[slot];
+    }
+
+    /**
+     * Returns the primitive value of a Double held in a slot.
+     *
+     * @param slot the index of the slot, as returned by slotOf()
+     * @return the value as a double
+     */
+    double doubleAt(int slot) {
+        return doubles[slot];
+    }
+
+
+/* *************************************** Typed getters **************************************** */
+
+    /**
+     * Retrieves a boolean parameter, see ModelsUtils.getBoolean().
+     *
+     * @param name          the name of the parameter
+     * @param defaultValue  the value returned if the parameter is missing or isn't a boolean
+     * @return the boolean if it has been found, or default value if not.
+     */
+    public boolean getBoolean(String name, boolean defaultValue) {
+        int slot = slotOf(name);
+        if (slot < 0) {
+            return defaultValue;
+        }
+        if (types[slot] == BOOLEAN) {
+            return longs[slot] != 0;
+        }
+        return Coercion.toBoolean(values[slot], defaultValue);
+    }
+
+    /**
+     * Retrieves an int parameter, see ModelsUtils.getInt().
+     *
+     * @param name          the name of the parameter
+     * @param defaultValue  the value returned if the parameter is missing or isn't an int
+     * @return the int if it has been found, or default value if not.
+     */
+    public int getInt(String name, int defaultValue) {
+        int slot = slotOf(name);
+        return slot >= 0 ? toIntAt(slot, defaultValue) : defaultValue;
+    }
+
+    /**
+     * Converts the value held in a slot to an int.
+     *
+     * @param slot          the index of the slot, as returned by slotOf()
+     * @param defaultValue  the value returned if the value isn't an int
+     * @return the int, or default value
+     */
+    int toIntAt(int slot, int defaultValue) {
+        switch (types[slot]) {
+            case INT:
+                return (int) longs[slot];
+            case LONG:
+                long value = longs[slot];
+                return value == (int) value ? (int) value : defaultValue;
+            default:
+                return Coercion.toInt(values[slot], defaultValue);
+        }
+    }
+
+    /**
+     * Retrieves a long parameter, see ModelsUtils.getLong().
+     *
+     * @param name          the name of the parameter
+     * @param defaultValue  the value returned if the parameter is missing or isn't a long
+     * @return the long if it has been found, or default value if not.
+     */
+    public long getLong(String name, long defaultValue) {
+        int slot = slotOf(name);
+        return slot >= 0 ? toLongAt(slot, defaultValue) : defaultValue;
+    }
+
+    /**
+     * Converts the value held in a slot to a long.
+     *
+     * @param slot          the index of the slot, as returned by slotOf()
+     * @param defaultValue  the value returned if the value isn't a long
+     * @return the long, or default value
+     */
+    long toLongAt(int slot, long defaultValue) {
+        switch (types[slot]) {
+            case INT:
+            case LONG:
+                return longs[slot];
+            default:
+                return Coercion.toLong(values[slot], defaultValue);
+        }
+    }
+
+    /**
+     * Retrieves a double parameter, see ModelsUtils.getDouble().
+     *
+     * @param name          the name of the parameter
+     * @param defaultValue  the value returned if the parameter is missing or isn't a double
+     * @return the double if it has been found, or default value if not.
+     */
+    public double getDouble(String name, double defaultValue) {
+        int slot = slotOf(name);
+        return slot >= 0 ? toDoubleAt(slot, defaultValue) : defaultValue;
+    }
+
+    /**
+     * Converts the value held in a slot to a double.
+     *
+     * @param slot          the index of the slot, as returned by slotOf()
+     * @param defaultValue  the value returned if the value isn't a double
+     * @return the double, or default value
+     */
+    double toDoubleAt(int slot, double defaultValue) {
+        switch (types[slot]) {
+            case DOUBLE:
+                return doubles[slot];
+            case INT:
+            case LONG:
+                return longs[slot];
+            default:
+                return Coercion.toDouble(values[slot], defaultValue);
+        }
+    }
+
+
+/* ******************************************** Map ********************************************* */
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object name) {
+        return slotOf(name) >= 0;
+    }
+
+    @Override
+    public Object get(Object name) {
+        int slot = slotOf(name);
+        return slot >= 0 ? values[slot] : null;
+    }
+
+    @Override
+    public Object put(String name, Object value) {
+        if (name == null) {
+            throw new NullPointerException("The name of a parameter can't be null");
+        }
+        int index = hash(name) & mask;
+        String key;
+        while ((key = keys[index]) != null) {
+            if (key.equals(name)) {
+                Object previous = isPresent(index) ? values[index] : null;
+                if (!isPresent(index)) {
+                    setPresent(index, true);
+                    size++;
+                }
+                store(index, value);
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        if ((used + 1) * 2 > keys.length) {
+            resize();
+            return put(name, value);
+        }
+        keys[index] = name;
+        store(index, value);
+        setPresent(index, true);
+        used++;
+        size++;
+        return null;
+    }
+
+    @Override
+    public Object remove(Object name) {
+        int slot = slotOf(name);
+        if (slot < 0) {
+            return null;
+        }
+        Object previous = values[slot];
+        removeAt(slot);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(present, 0L);
+        size = 0;
+        used = 0;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entries == null) {
+            entries = new EntrySet();
+        }
+        return entries;
+    }
+
+
+/* ****************************************** Storage ******************************************* */
+
+    /**
+     * Stores a value in a slot, along with its type and primitive value.
+     *
+     * @param slot  the index of the slot
+     * @param value the value of the parameter
+     */
+    private void store(int slot, Object value) {
+        values[slot] = value;
+        if (value instanceof String) {
+            types[slot] = STRING;
+        }
+        else if (value instanceof Double) {
+            types[slot] = DOUBLE;
+            doubles[slot] = (Double) value;
+        }
+        else if (value instanceof Integer) {
+            types[slot] = INT;
+            longs[slot] = (Integer) value;
+        }
+        else if (value instanceof Long) {
+            types[slot] = LONG;
+            longs[slot] = (Long) value;
+        }
+        else if (value instanceof Boolean) {
+            types[slot] = BOOLEAN;
+            longs[slot] = (Boolean) value ? 1L : 0L;
+        }
+        else {
+            types[slot] = OTHER;
+        }
+    }
+
+    /**
+     * Removes the parameter held in a slot, keeping its key for the probe chains.
+     *
+     * @param slot the index of the slot
+     */
+    private void removeAt(int slot) {
+        values[slot] = null;
+        setPresent(slot, false);
+        size--;
+    }
+
+    /**
+     * Doubles the table if it is getting full of parameters, or only drops the removed keys.
+     */
+    private void resize() {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] oldPresent = present;
+        allocate(capacityFor(Math.max(size + 1, 4)));
+        size = 0;
+        used = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if ((oldPresent[i >>> 6] & (1L << i)) != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Allocates the arrays of the table.
+     *
+     * @param capacity the number of slots, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        values = new Object[capacity];
+        types = new byte[capacity];
+        longs = new long[capacity];
+        doubles = new double[capacity];
+        present = new long[(capacity + 63) >>> 6];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns whether a slot holds a parameter.
+     *
+     * @param slot the index of the slot
+     * @return true if the parameter hasn't been removed
+     */
+    private boolean isPresent(int slot) {
+        return (present[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Sets or clears the presence bit of a slot.
+     *
+     * @param slot  the index of the slot
+     * @param value whether the slot holds a parameter
+     */
+    private void setPresent(int slot, boolean value) {
+        if (value) {
+            present[slot >>> 6] |= 1L << slot;
+        }
+        else {
+            present[slot >>> 6] &= ~(1L << slot);
+        }
+    }
+
+
+/* ****************************************** Utility ******************************************* */
+
+    /**
+     * Computes the number of slots needed to hold some parameters with a low load factor.
+     *
+     * @param expectedSize the number of parameters
+     * @return a power of two
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = 8;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Spreads the hash code of a name over the low bits used to index the table.
+     *
+     * @param name the name of the parameter
+     * @return the spread hash
+     */
+    private static int hash(Object name) {
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+
+/* ****************************************** Entries ******************************************* */
+
+    /**
+     * The entries of the bag, in the order of the table.
+     */
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new Iterator<Entry<String, Object>>() {
+                private int next = advance(0);
+                private int last = -1;
+
+                @Override
+                public boolean hasNext() {
+                    return next < keys.length;
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    if (next >= keys.length) {
+                        throw new NoSuchElementException();
+                    }
+                    last = next;
+                    next = advance(next + 1);
+                    return new SimpleImmutableEntry<String, Object>(keys[last], values[last]);
+                }
+
+                @Override
+                public void remove() {
+                    if (last < 0 || !isPresent(last)) {
+                        throw new IllegalStateException();
+                    }
+                    removeAt(last);
+                    last = -1;
+                }
+
+                /**
+                 * Finds the next slot holding a parameter.
+                 *
+                 * @param from the first slot to look at
+                 * @return the index of the slot, or the length of the table if there is none
+                 */
+                private int advance(int from) {
+                    int index = from;
+                    while (index < keys.length && !isPresent(index)) {
+                        index++;
+                    }
+                    return index;
+                }
+            };
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -0,0 +1,209 @@
+package com.fiftyfive.cargo;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The parameters of a multicast tag, as seen by one of the handlers it is delivered to.
+ * All the handlers read the same map of parameters, which is never modified, and the changes a
+ * handler makes (e.g. removing the parameters it has consumed) are only kept in its own overlay,
+ * so that they don't leak into the parameters of the other handlers.
+ */
+final class ParamsOverlay extends AbstractMap<String, Object> {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The parameters shared by all the handlers, never modified */
+    private final Map<String, Object> shared;
+    /** The parameters added or replaced by the handler, null until the first one */
+    private HashMap<String, Object> added;
+    /** The shared parameters removed by the handler, null until the first one */
+    private HashSet<Object> removed;
+    /** The view of the entries, created on demand */
+    private Set<Entry<String, Object>> entries;
+
+    /** The sequence number of the event in the CargoJournal, until it is acknowledged */
+    long journalSequence = CargoJournal.NOT_JOURNALED;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates the view of a handler on the shared parameters.
+     *
+     * @param shared the parameters of the tag, which must not be modified afterwards
+     */
+    ParamsOverlay(Map<String, Object> shared) {
+        this.shared = shared;
+    }
+
+
+/* ******************************************* Reads ******************************************** */
+
+    @Override
+    public Object get(Object key) {
+        if (added != null && added.containsKey(key)) {
+            return added.get(key);
+        }
+        return isHidden(key) ? null : shared.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (added != null && added.containsKey(key)) {
+            return true;
+        }
+        return !isHidden(key) && shared.containsKey(key);
+    }
+
+    /**
+     * Retrieves the shared ParamBag a parameter can be read from with its typed getters.
+     *
+     * @param key the name of the parameter
+     * @return the shared parameters if they are a ParamBag and the handler hasn't added, replaced
+     *         or removed the parameter, null otherwise
+     */
+    ParamBag sharedBag(Object key) {
+        if (!(shared instanceof ParamBag) || isHidden(key)
+                || (added != null && added.containsKey(key))) {
+            return null;
+        }
+        return (ParamBag) shared;
+    }
+
+    @Override
+    public int size() {
+        int size = added != null ? added.size() : 0;
+        for (String key : shared.keySet()) {
+            if (!isHidden(key) && (added == null || !added.containsKey(key))) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entries == null) {
+            entries = new EntrySet();
+        }
+        return entries;
+    }
+
+
+/* ****************************************** Changes ******************************************* */
+
+    @Override
+    public Object put(String key, Object value) {
+        Object previous = get(key);
+        if (added == null) {
+            added = new HashMap<String, Object>();
+        }
+        added.put(key, value);
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Object previous = get(key);
+        if (added != null) {
+            added.remove(key);
+        }
+        if (shared.containsKey(key)) {
+            if (removed == null) {
+                removed = new HashSet<Object>();
+            }
+            removed.add(key);
+        }
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        if (added != null) {
+            added.clear();
+        }
+        if (removed == null) {
+            removed = new HashSet<Object>();
+        }
+        removed.addAll(shared.keySet());
+    }
+
+    /**
+     * Returns whether a shared parameter has been removed by the handler.
+     *
+     * @param key the name of the parameter
+     * @return true if the handler has removed it
+     */
+    private boolean isHidden(Object key) {
+        return removed != null && removed.contains(key);
+    }
+
+
+/* ****************************************** Entries ******************************************* */
+
+    /**
+     * The entries of the overlay: the shared parameters which haven't been removed or replaced,
+     * followed by the ones added by the handler. Iterators work on a snapshot of the entries,
+     * so that the handler can remove parameters while iterating.
+     */
+    private final class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+        @Override
+        public int size() {
+            return ParamsOverlay.this.size();
+        }
+
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            final List<Entry<String, Object>> snapshot = new ArrayList<Entry<String, Object>>();
+            for (Entry<String, Object> entry : shared.entrySet()) {
+                String key = entry.getKey();
+                if (!isHidden(key) && (added == null || !added.containsKey(key))) {
+                    snapshot.add(new SimpleImmutableEntry<String, Object>(entry));
+                }
+            }
+            if (added != null) {
+                for (Entry<String, Object> entry : added.entrySet()) {
+                    snapshot.add(new SimpleImmutableEntry<String, Object>(entry));
+                }
+            }
+            return new Iterator<Entry<String, Object>>() {
+                private final Iterator<Entry<String, Object>> iterator = snapshot.iterator();
+                private Entry<String, Object> last;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<String, Object> next() {
+                    last = iterator.next();
+                    return last;
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    ParamsOverlay.this.remove(last.getKey());
+                    last = null;
+                }
+            };
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -0,0 +1,368 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * A DispatchExecutor passing the events to the handlers through a bounded, preallocated ring
+ * buffer, in the way of a single producer / multiple consumers Disruptor.
+ *
+ * The producer is the thread firing the tags, which claims the next slot, fills it and publishes
+ * its sequence. As tags may be fired from several threads (GTM, the application, the replay of
+ * the CargoJournal), the producers take turns on a lock, which is uncontended most of the time.
+ * Each handler has its own consumer, running on a dedicated thread with its own sequence: it goes
+ * through every published slot and delivers the ones routed to its handler. The slots are event
+ * holders reused from one lap to another, so that the steady state dispatch doesn't allocate
+ * anything.
+ *
+ * When the ring is full, the producer waits for the slowest consumer to release a slot, without
+ * holding the lock, and drops the event if no slot is released within PRODUCER_TIMEOUT_NANOS,
+ * so that a stuck handler can't block the threads firing the tags. An event dispatched by a
+ * consumer itself, e.g. from a handler method, is delivered right away on its thread, as it
+ * could otherwise wait for a slot only this consumer can release.
+ * Once the executor is shut down, the consumers deliver every event published until then,
+ * and the events dispatched afterwards are dropped.
+ */
+final class RingBufferExecutor implements DispatchExecutor {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The number of times a consumer checks for new events before blocking */
+    private static final int SPIN_TRIES = 100;
+    /** The time the producer waits before checking again whether a slot has been released */
+    private static final long PRODUCER_WAIT_NANOS = 50000L;
+    /** The time the producer waits for a slot at most before dropping the event */
+    static final long PRODUCER_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    /** The reused event holders */
+    private final Slot[] slots;
+    /** Used to turn a sequence into an index of the slots array */
+    private final int mask;
+
+    /** The sequence of the last published event */
+    private final AtomicLong cursor = new AtomicLong(-1);
+    /** Held by the producer while it claims, fills and publishes a slot, and by shutdown() */
+    private final Object producerLock = new Object();
+    /** The sequence the next dispatched event will be stored at, guarded by producerLock */
+    private long nextSequence = 0;
+    /** The lowest consumer sequence seen by the producer the last time it had to check it,
+        guarded by producerLock */
+    private long cachedGatingSequence = -1;
+
+    /** The consumers, one per handler which has been dispatched an event */
+    private volatile Consumer[] consumers = new Consumer[0];
+    /** The number of consumers waiting for an event, in order to wake them up when needed */
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    /** The monitor the consumers wait on */
+    private final Object lock = new Object();
+    /** Set to false once the executor has been shut down, under producerLock, so that no event
+        is published afterwards */
+    private volatile boolean running = true;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates the ring buffer and preallocates its slots.
+     *
+     * @param capacity the number of slots, rounded up to the next power of two
+     */
+    RingBufferExecutor(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        mask = size - 1;
+    }
+
+
+/* ****************************************** Producer ****************************************** */
+
+    /**
+     * Stores the event in the next slot and publishes it to the consumers.
+     * If the executor has been shut down, or if the ring stays full for PRODUCER_TIMEOUT_NANOS,
+     * the event is dropped. If it is called by a consumer, the event is delivered right away.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     */
+    @Override
+    public void dispatch(TagRoute route, Map<String, Object> params) {
+        if (isConsumerThread()) {
+            if (running) {
+                TagDelivery.deliver(route, params, CargoItem.getItemsList());
+            }
+            else {
+                DispatchExecutors.rejected(route);
+            }
+            return;
+        }
+        long deadline = 0;
+        while (!tryPublish(route, params)) {
+            long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + PRODUCER_TIMEOUT_NANOS;
+            }
+            else if (now - deadline >= 0) {
+                dropped(route);
+                return;
+            }
+            LockSupport.parkNanos(PRODUCER_WAIT_NANOS);
+        }
+
+        if (waitingConsumers.get() > 0) {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stores the event in the next slot and publishes it, if a slot is free.
+     * If the executor has been shut down, the event is dropped and considered as published.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     * @return false if the ring is full
+     */
+    private boolean tryPublish(TagRoute route, Map<String, Object> params) {
+        synchronized (producerLock) {
+            if (!running) {
+                DispatchExecutors.rejected(route);
+                return true;
+            }
+            long sequence = nextSequence;
+            ensureConsumer(route.handler, sequence);
+
+            long wrapPoint = sequence - slots.length;
+            if (wrapPoint > cachedGatingSequence) {
+                cachedGatingSequence = minimumConsumerSequence(sequence);
+                if (wrapPoint > cachedGatingSequence) {
+                    return false;
+                }
+            }
+
+            nextSequence++;
+            Slot slot = slots[(int) sequence & mask];
+            slot.route = route;
+            slot.params = params;
+            slot.items = CargoItem.getItemsList();
+            cursor.set(sequence);
+            return true;
+        }
+    }
+
+    /**
+     * Drops an event for which no slot has been released in time. If the CargoJournal is
+     * enabled, the event isn't acknowledged and is replayed at the next launch.
+     *
+     * @param route the route to the handler method
+     */
+    private static void dropped(TagRoute route) {
+        CargoTrace.record(CargoTrace.METHOD_DROPPED, route.traceId, 0);
+        route.handler.metrics().increment(HandlerMetrics.DROPPED);
+        route.handler.log().w("The ring buffer of the dispatch is full, {} is dropped.",
+                route.functionTag);
+    }
+
+    /**
+     * Checks whether the calling thread is the thread of a consumer.
+     *
+     * @return true if it is called from a handler method delivered by this executor
+     */
+    private boolean isConsumerThread() {
+        Thread current = Thread.currentThread();
+        for (Consumer consumer : consumers) {
+            if (consumer.thread == current) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts the consumer of a handler the first time an event is dispatched to it.
+     * The consumer starts with the event being dispatched.
+     *
+     * @param handler  the handler the event is routed to
+     * @param sequence the sequence of the event being dispatched
+     */
+    private void ensureConsumer(AbstractTagHandler handler, long sequence) {
+        Consumer[] current = consumers;
+        for (Consumer consumer : current) {
+            if (consumer.handler == handler) {
+                return;
+            }
+        }
+        Consumer consumer = new Consumer(handler, sequence - 1);
+        Consumer[] updated = new Consumer[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = consumer;
+        consumers = updated;
+        consumer.thread.start();
+    }
+
+    /**
+     * Retrieves the sequence of the slowest consumer.
+     *
+     * @param fallback the value returned when there isn't any consumer
+     * @return the lowest sequence among the consumers
+     */
+    private long minimumConsumerSequence(long fallback) {
+        long minimum = fallback;
+        for (Consumer consumer : consumers) {
+            minimum = Math.min(minimum, consumer.sequence.get());
+        }
+        return minimum;
+    }
+
+    /**
+     * Stops accepting events, and waits for the consumers to deliver the events already
+     * published, unless it is called by a consumer itself.
+     */
+    @Override
+    public void shutdown() {
+        synchronized (producerLock) {
+            running = false;
+        }
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        for (Consumer consumer : consumers) {
+            if (consumer.thread == Thread.currentThread()) {
+                continue;
+            }
+            try {
+                consumer.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+
+/* ****************************************** Consumer ****************************************** */
+
+    /**
+     * The consumer of a handler, which delivers the events routed to it on its own thread.
+     */
+    private final class Consumer implements Runnable {
+
+        /** The handler this consumer delivers the events to */
+        final AbstractTagHandler handler;
+        /** The sequence of the last slot this consumer is done with */
+        final AtomicLong sequence;
+        /** The thread of the consumer */
+        final Thread thread;
+
+        Consumer(AbstractTagHandler handler, long initialSequence) {
+            this.handler = handler;
+            this.sequence = new AtomicLong(initialSequence);
+            this.thread = new Thread(this, "Cargo-ring-" + handler.key);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (true) {
+                long available = waitFor(next);
+                if (available < next) {
+                    return;
+                }
+                for (; next <= available; next++) {
+                    Slot slot = slots[(int) next & mask];
+                    try {
+                        if (slot.route.handler == handler) {
+                            deliver(slot);
+                        }
+                    } finally {
+                        sequence.lazySet(next);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Delivers the event of a slot. Any throwable, e.g. an Error thrown while an SDK class is
+         * loaded, is logged, so that the consumer keeps releasing its slots.
+         *
+         * @param slot the slot of the event
+         */
+        private void deliver(Slot slot) {
+            Map<String, Object> params = slot.params;
+            ArrayList<CargoItem> items = slot.items;
+            slot.params = null;
+            slot.items = null;
+            try {
+                TagDelivery.deliver(slot.route, params, items);
+            } catch (Throwable t) {
+                handler.log().e("Failed to execute " + slot.route.functionTag, t);
+            }
+        }
+
+        /**
+         * Waits until the event at the given sequence has been published. Once the executor
+         * has been shut down, the cursor is read again, as no event can be published afterwards:
+         * the consumer then delivers the events up to the final cursor before stopping.
+         *
+         * @param next the sequence of the next event to deliver
+         * @return the sequence of the last published event,
+         *         lower than next if the executor has been shut down and every event has been seen
+         */
+        private long waitFor(long next) {
+            long available;
+            for (int i = 0; i < SPIN_TRIES; i++) {
+                if ((available = cursor.get()) >= next) {
+                    return available;
+                }
+                Thread.yield();
+            }
+            synchronized (lock) {
+                waitingConsumers.incrementAndGet();
+                try {
+                    while ((available = cursor.get()) < next && running) {
+                        lock.wait();
+                    }
+                    if (available < next) {
+                        available = cursor.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    available = cursor.get();
+                } finally {
+                    waitingConsumers.decrementAndGet();
+                }
+            }
+            return available;
+        }
+    }
+
+
+/* ******************************************** Slot ******************************************** */
+
+    /**
+     * A reusable event holder.
+     * Its fields are written by the producer before publishing the sequence of the slot,
+     * and read by the consumers after having seen it.
+     */
+    private static final class Slot {
+        TagRoute route;
+        Map<String, Object> params;
+        ArrayList<CargoItem> items;
+    }
+
+/* ********************************************************************************************** */
+
+}
@@ -0,0 +1,21 @@
+package com.fiftyfive.cargo;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The interface notified when a call to a third part SDK takes longer than the threshold set
+ * with CargoMetrics.setSlowCallThreshold(), in order to find out which SDK causes jank.
+ * It is called on the thread which has made the slow call, right after it.
+ */
+public interface SlowCallListener {
+
+    /**
+     * Called after a slow call to a third part SDK.
+     *
+     * @param handlerKey the key of the handler which has made the call, e.g. 'FB'
+     * @param sdkMethod  the SDK method, e.g. 'AppEventsLogger.logEvent'
+     * @param thread     the thread the call has been made on
+     * @param nanos      the duration of the call in nanoseconds
+     */
+    void onSlowCall(String handlerKey, String sdkMethod, Thread thread, long nanos);
+}
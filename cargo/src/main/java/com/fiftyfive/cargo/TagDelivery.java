@@ -0,0 +1,72 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * A task delivering an event to a handler method, used when the method isn't called
+ * on the thread the tag has been fired on.
+ */
+final class TagDelivery implements Runnable {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The route to the handler method */
+    private final TagRoute route;
+    /** The parameters of the method */
+    private final Map<String, Object> params;
+    /** The items which were attached to the event when the tag has been fired */
+    private final ArrayList<CargoItem> items;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates the delivery of an event.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     * @param items  the items attached to the event, may be null
+     */
+    TagDelivery(TagRoute route, Map<String, Object> params, ArrayList<CargoItem> items) {
+        this.route = route;
+        this.params = params;
+        this.items = items;
+    }
+
+
+/* ****************************************** Delivery ****************************************** */
+
+    /**
+     * Delivers the event.
+     */
+    @Override
+    public void run() {
+        deliver(route, params, items);
+    }
+
+    /**
+     * Calls on a handler method, with the items of the event made visible through
+     * CargoItem.getItemsList() for the duration of the call.
+     * An exception thrown by the handler is logged, so that it doesn't stop the worker thread.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     * @param items  the items attached to the event, may be null
+     */
+    static void deliver(TagRoute route, Map<String, Object> params, ArrayList<CargoItem> items) {
+        CargoItem.setDeliveredItemsList(items);
+        try {
+            route.execute(params);
+        } catch (RuntimeException e) {
+            route.handler.log().e("Failed to execute " + route.functionTag, e);
+        } finally {
+            CargoItem.clearDeliveredItemsList();
+        }
+    }
+
+/* ********************************************************************************************** */
+
+}
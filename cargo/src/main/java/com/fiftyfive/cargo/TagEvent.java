@@ -0,0 +1,93 @@
+package com.fiftyfive.cargo;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * An event routed to a handler method which is delivered later on, either because the third part
+ * SDK isn't initialized yet or because the handler receives its events by batches.
+ * It keeps the items which were attached with CargoItem when its tag has been fired.
+ */
+public final class TagEvent {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The route to the handler method */
+    final TagRoute route;
+    /** The parameters of the method */
+    final Map<String, Object> params;
+    /** The items which were attached to the event when its tag has been fired */
+    final ArrayList<CargoItem> items;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates an event, capturing the items currently attached with CargoItem.
+     *
+     * @param route  the route to the handler method
+     * @param params the parameters of the method
+     */
+    TagEvent(TagRoute route, Map<String, Object> params) {
+        this.route = route;
+        this.params = params;
+        this.items = CargoItem.getItemsList();
+    }
+
+
+/* ****************************************** Delivery ****************************************** */
+
+    /**
+     * Calls on the handler method of the event, or keeps it until the handler is initialized.
+     * This is what AbstractTagHandler.executeBatch() does for each event by default.
+     */
+    public void execute() {
+        CargoItem.setDeliveredItemsList(items);
+        try {
+            route.handler.executeWhenInitialized(route, params);
+        } finally {
+            CargoItem.clearDeliveredItemsList();
+        }
+    }
+
+    /**
+     * Calls on the handler method of the event, whether the handler is initialized or not.
+     * An exception thrown by the handler is logged, so that it doesn't stop the other events.
+     */
+    void invoke() {
+        CargoItem.setDeliveredItemsList(items);
+        try {
+            route.invoke(params);
+        } catch (RuntimeException e) {
+            route.handler.log().e("Failed to execute " + route.functionTag, e);
+        } finally {
+            CargoItem.clearDeliveredItemsList();
+        }
+    }
+
+
+/* ************************************** Getters - Setters ************************************* */
+
+    /**
+     * Gets the function tag of the event.
+     *
+     * @return the function tag, e.g. 'FB_tagEvent'
+     */
+    public String getFunctionTag() {
+        return route.functionTag;
+    }
+
+    /**
+     * Gets the parameters of the event.
+     *
+     * @return the map of parameters received from the container
+     */
+    public Map<String, Object> getParams() {
+        return params;
+    }
+
+/* ********************************************************************************************** */
+
+}
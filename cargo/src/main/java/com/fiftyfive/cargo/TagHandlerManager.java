@@ -5,22 +5,36 @@ import android.app.Application;
 import android.os.Bundle;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Created by louis on 04/11/15.
  * Copyright 2016 fifty-five All rights reserved.
  *
- * The TagHandlerManager stores all the registered handlers.
+ * The TagHandlerManager stores all the registered handlers, as an immutable snapshot which is
+ * republished at each registration change, so that tags and lifecycle callbacks can be
+ * dispatched from any thread while handlers are added or removed.
  * Since the class implements ActivityLifecycleCallbacks, it calls on the associated method
- * in each handler when an activity lifecycle callback is triggered.
+ * in each handler when an activity lifecycle callback is triggered, each call being timed
+ * by the CargoWatchdog when it is enabled.
  */
 public class TagHandlerManager implements Application.ActivityLifecycleCallbacks {
 
 /* *********************************** Variables declaration ************************************ */
 
-   /** The list which stores all the registered handlers */
-    private List<AbstractTagHandler> handlers = new ArrayList<AbstractTagHandler>();
+    /** The logger of the class, writing with the 'Cargo' tag */
+    private static final CargoLog LOG = new CargoLog("Cargo");
+    /** Separates the handlerMethods of a multicast tag, as in 'FB_tagEvent,AT_tagEvent' */
+    static final char MULTICAST_SEPARATOR = ',';
+    /** The maximum number of multicast lists whose routes are cached by a registry */
+    static final int MAX_MULTICAST_ROUTES = 32;
+
+    /** The current registry, an immutable snapshot replaced at each registration change */
+    private volatile Registry registry = Registry.EMPTY;
 
 
 /* ********************************* Register handlers method *********************************** */
@@ -35,10 +49,138 @@ public class TagHandlerManager implements Application.ActivityLifecycleCallbacks
     public void registerHandler(AbstractTagHandler tagHandler) {
         tagHandler.initialize();
         if(tagHandler.valid) {
-            handlers.add(tagHandler);
+            addHandler(tagHandler);
         }
     }
 
+    /**
+     * Adds an already initialized handler to the registered ones.
+     * Readers keep on using the previous snapshot until the new one is published.
+     *
+     * @param tagHandler The handler to add
+     */
+    synchronized void addHandler(AbstractTagHandler tagHandler) {
+        List<AbstractTagHandler> handlers = new ArrayList<AbstractTagHandler>(registry.handlers);
+        handlers.add(tagHandler);
+        registry = new Registry(handlers);
+    }
+
+    /**
+     * Removes a handler from the registered ones, it won't receive any tag nor lifecycle callback
+     * once this method returns, except for the ones already being dispatched.
+     *
+     * @param tagHandler The handler to remove
+     * @return true if the handler was registered, false otherwise
+     */
+    public synchronized boolean unregisterHandler(AbstractTagHandler tagHandler) {
+        List<AbstractTagHandler> handlers = new ArrayList<AbstractTagHandler>(registry.handlers);
+        if (!handlers.remove(tagHandler)) {
+            return false;
+        }
+        registry = new Registry(handlers);
+        return true;
+    }
+
+    /**
+     * Replaces a registered handler with another one, at the same position.
+     * Used to swap a lazy proxy for the actual handler once it has been created.
+     *
+     * @param previous The handler to replace
+     * @param next     The handler replacing it, already initialized
+     * @return true if the previous handler was registered, false otherwise
+     */
+    synchronized boolean replaceHandler(AbstractTagHandler previous, AbstractTagHandler next) {
+        List<AbstractTagHandler> handlers = new ArrayList<AbstractTagHandler>(registry.handlers);
+        int index = handlers.indexOf(previous);
+        if (index < 0) {
+            return false;
+        }
+        handlers.set(index, next);
+        registry = new Registry(handlers);
+        return true;
+    }
+
+    /**
+     * Retrieves the registered handler matching the key prefix of a handlerMethod.
+     *
+     * @param handlerMethod the method name received from the container, e.g. 'FB_init'
+     * @param keyLength     the length of the handler key within the handlerMethod
+     * @return the handler matching the key, or null if none has been registered with it
+     */
+    AbstractTagHandler getHandler(String handlerMethod, int keyLength) {
+        return registry.routingIndex.get(handlerMethod, keyLength);
+    }
+
+    /**
+     * Resolves a handlerMethod to the handler and the method it is aimed at.
+     * The resolution is done once per handlerMethod, and then cached until the registered
+     * handlers change. The routes to no method, whose functionTag may be anything the container
+     * sends, are not cached so that they can't grow the registry without bound.
+     *
+     * @param handlerMethod the method name received from the container, e.g. 'FB_init'
+     * @return the route to the method, or null if the key doesn't match any registered handler
+     */
+    TagRoute getRoute(String handlerMethod) {
+        Registry current = registry;
+        TagRoute route = current.routes.get(handlerMethod);
+        if (route == null) {
+            int keyLength = HandlerRoutingIndex.keyLength(handlerMethod);
+            if (keyLength < 2 || keyLength > 3) {
+                return null;
+            }
+            AbstractTagHandler handler = current.routingIndex.get(handlerMethod, keyLength);
+            if (handler == null) {
+                return null;
+            }
+            route = handler.getRoute(handlerMethod);
+            if (route.method != null) {
+                current.routes.put(handlerMethod, route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Resolves a list of handlerMethods separated with commas, as used by the multicast tags,
+     * to the routes of the methods they are aimed at.
+     * The list is parsed once, and then cached until the registered handlers change, as long as
+     * fewer than MAX_MULTICAST_ROUTES lists are cached already.
+     * The handlerMethods which don't match any registered handler are logged and skipped.
+     *
+     * @param handlerMethods the methods received from the container, e.g. 'FB_tagEvent,AT_tagEvent'
+     * @return the routes to the methods, in the order of the list, possibly empty
+     */
+    TagRoute[] getRoutes(String handlerMethods) {
+        Registry current = registry;
+        TagRoute[] routes = current.multicastRoutes.get(handlerMethods);
+        if (routes == null) {
+            List<TagRoute> resolved = new ArrayList<TagRoute>();
+            int start = 0;
+            while (start <= handlerMethods.length()) {
+                int end = handlerMethods.indexOf(MULTICAST_SEPARATOR, start);
+                if (end < 0) {
+                    end = handlerMethods.length();
+                }
+                String handlerMethod = handlerMethods.substring(start, end).trim();
+                if (handlerMethod.length() > 0) {
+                    TagRoute route = getRoute(handlerMethod);
+                    if (route != null) {
+                        resolved.add(route);
+                    }
+                    else {
+                        LOG.w("Unable to find a handler matching '{}'.", handlerMethod);
+                    }
+                }
+                start = end + 1;
+            }
+            routes = resolved.toArray(new TagRoute[resolved.size()]);
+            if (current.multicastRoutes.size() < MAX_MULTICAST_ROUTES) {
+                current.multicastRoutes.put(handlerMethods, routes);
+            }
+        }
+        return routes;
+    }
+
 
 /* ******************************** ActivityLifeCycle callbacks ********************************* */
 
@@ -50,8 +192,14 @@ public class TagHandlerManager implements Application.ActivityLifecycleCallbacks
      */
     @Override
     public void onActivityStarted(Activity activity) {
-        for(AbstractTagHandler handler : handlers){
-            handler.onActivityStarted(activity);
+        for(AbstractTagHandler handler : registry.handlerArray){
+            CargoWatchdog.Section section = CargoWatchdog.enter(
+                    CargoWatchdog.LIFECYCLE_CALLBACK, handler.key, "onActivityStarted");
+            try {
+                handler.onActivityStarted(activity);
+            } finally {
+                CargoWatchdog.exit(section);
+            }
         }
     }
 
@@ -63,21 +211,35 @@ public class TagHandlerManager implements Application.ActivityLifecycleCallbacks
      */
     @Override
     public void onActivityResumed(Activity activity) {
-        for(AbstractTagHandler handler : handlers){
-            handler.onActivityResumed(activity);
+        for(AbstractTagHandler handler : registry.handlerArray){
+            CargoWatchdog.Section section = CargoWatchdog.enter(
+                    CargoWatchdog.LIFECYCLE_CALLBACK, handler.key, "onActivityResumed");
+            try {
+                handler.onActivityResumed(activity);
+            } finally {
+                CargoWatchdog.exit(section);
+            }
         }
     }
 
     /**
      * A callback triggered when an activity is paused,
-     * which calls the associated method for all the registered handlers.
+     * which delivers the pending batches and calls the associated method for all the
+     * registered handlers.
      *
      * @param activity The activity being actually paused
      */
     @Override
     public void onActivityPaused(Activity activity) {
-        for(AbstractTagHandler handler : handlers){
-            handler.onActivityPaused(activity);
+        for(AbstractTagHandler handler : registry.handlerArray){
+            CargoWatchdog.Section section = CargoWatchdog.enter(
+                    CargoWatchdog.LIFECYCLE_CALLBACK, handler.key, "onActivityPaused");
+            try {
+                handler.flushBatch();
+                handler.onActivityPaused(activity);
+            } finally {
+                CargoWatchdog.exit(section);
+            }
         }
     }
 
@@ -89,8 +251,14 @@ public class TagHandlerManager implements Application.ActivityLifecycleCallbacks
      */
     @Override
     public void onActivityStopped(Activity activity) {
-        for(AbstractTagHandler handler : handlers){
-            handler.onActivityStopped(activity);
+        for(AbstractTagHandler handler : registry.handlerArray){
+            CargoWatchdog.Section section = CargoWatchdog.enter(
+                    CargoWatchdog.LIFECYCLE_CALLBACK, handler.key, "onActivityStopped");
+            try {
+                handler.onActivityStopped(activity);
+            } finally {
+                CargoWatchdog.exit(section);
+            }
         }
     }
 
@@ -112,8 +280,44 @@ public class TagHandlerManager implements Application.ActivityLifecycleCallbacks
 
 /* ************************************** Getters - Setters ************************************* */
 
+    /**
+     * Gets the registered handlers. The list is an immutable snapshot,
+     * which can be iterated while handlers are registered.
+     *
+     * @return the registered handlers, in their registration order
+     */
     public List<AbstractTagHandler> getHandlers() {
-        return this.handlers;
+        return registry.handlers;
+    }
+
+
+/* ****************************************** Registry ****************************************** */
+
+    /**
+     * An immutable snapshot of the registered handlers, along with the structures used to route
+     * the tags to them. A new one is published each time the registered handlers change,
+     * so that readers never need to lock or copy anything.
+     */
+    private static final class Registry {
+
+        static final Registry EMPTY = new Registry(new ArrayList<AbstractTagHandler>());
+
+        /** The registered handlers, in their registration order */
+        final List<AbstractTagHandler> handlers;
+        /** The same handlers, iterated by the lifecycle callbacks */
+        final AbstractTagHandler[] handlerArray;
+        /** The index used to retrieve a handler from its key */
+        final HandlerRoutingIndex routingIndex;
+        /** The routes to a method already resolved, stored with their handlerMethod as key */
+        final Map<String, TagRoute> routes = new ConcurrentHashMap<String, TagRoute>();
+        /** Some multicast routes already resolved, stored with their list of handlerMethods */
+        final Map<String, TagRoute[]> multicastRoutes = new ConcurrentHashMap<String, TagRoute[]>();
+
+        Registry(List<AbstractTagHandler> handlers) {
+            this.handlerArray = handlers.toArray(new AbstractTagHandler[handlers.size()]);
+            this.handlers = Collections.unmodifiableList(Arrays.asList(handlerArray));
+            this.routingIndex = HandlerRoutingIndex.build(handlers);
+        }
     }
 
 
@@ -0,0 +1,20 @@
+package com.fiftyfive.cargo;
+
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The interface of a handler method which can be called through the GTM container.
+ * Handlers declare their methods once, with AbstractTagHandler.registerMethod(), so that Cargo
+ * is able to resolve a 'handlerMethod' to the method to call only once.
+ */
+public interface TagMethod {
+
+    /**
+     * Calls on the handler method.
+     *
+     * @param params a map of the arguments which have been sent with the datalayer.push()
+     */
+    void execute(Map<String, Object> params);
+}
@@ -0,0 +1,211 @@
+package com.fiftyfive.cargo;
+
+import java.util.Map;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The resolution of a 'handlerMethod' (e.g. 'FB_tagEvent'): the handler it is aimed at and
+ * the method to call on it. Routes are built once per handlerMethod and cached by the
+ * TagHandlerManager, so that the dispatch of a tag doesn't involve any string comparison.
+ *
+ * Routes are handed to the DispatchExecutor in charge of running the handler methods.
+ */
+public final class TagRoute {
+
+/* ************************************ Variables declaration *********************************** */
+
+    /** The handler this route leads to */
+    final AbstractTagHandler handler;
+    /** The function tag, as received from the container */
+    final String functionTag;
+    /** The method to call, or null if the handler doesn't declare it */
+    final TagMethod method;
+    /** Whether the third part SDK needs to be initialized before calling the method,
+        in which case the calls received before the initialization are delayed */
+    final boolean requiresInitialization;
+    /** The id of the function tag in the CargoTrace, CargoTrace.UNRESOLVED_ID if the handler
+        doesn't declare it, as any function tag of the handler key falls back on such a route */
+    final int traceId;
+    /** The task run instead of a handler method, for the routes Cargo uses to run its own work
+        in the lane of a handler, e.g. the timed flush of a batch. Null for the other routes */
+    final Runnable task;
+    /** The latency histogram of the method, retrieved on the first call once the handler
+        has its key */
+    private LatencyHistogram latency;
+
+
+/* ***************************************** Constructor **************************************** */
+
+    /**
+     * Creates a route to a handler method.
+     *
+     * @param handler                the handler this route leads to
+     * @param functionTag            the function tag, e.g. 'FB_tagEvent'
+     * @param method                 the method to call, null to fall back on the handler
+     *                               execute(String, Map) method
+     * @param requiresInitialization whether the handler has to be initialized before the call
+     */
+    TagRoute(AbstractTagHandler handler, String functionTag, TagMethod method,
+             boolean requiresInitialization) {
+        this(handler, functionTag, method, requiresInitialization, null);
+    }
+
+    /**
+     * @param handler                the handler this route leads to
+     * @param functionTag            the function tag
+     * @param method                 the method to call
+     * @param requiresInitialization whether the handler has to be initialized before the call
+     * @param task                   the task to run instead of a handler method, may be null
+     */
+    private TagRoute(AbstractTagHandler handler, String functionTag, TagMethod method,
+                     boolean requiresInitialization, Runnable task) {
+        this.handler = handler;
+        this.functionTag = functionTag;
+        this.method = method;
+        this.requiresInitialization = requiresInitialization;
+        this.traceId = method != null || task != null
+                ? CargoTrace.idOf(functionTag) : CargoTrace.UNRESOLVED_ID;
+        this.task = task;
+    }
+
+    /**
+     * Creates a route running a task of Cargo in the lane of a handler, so that the dispatch
+     * executor runs it after the events already dispatched to the handler, and never at the
+     * same time as them. The task isn't counted as an event of the handler.
+     *
+     * @param handler the handler whose lane the task runs in
+     * @param name    the name of the task, e.g. 'flushBatch'
+     * @param task    the task
+     * @return the route of the task
+     */
+    static TagRoute task(AbstractTagHandler handler, String name, Runnable task) {
+        return new TagRoute(handler, name, null, false, task);
+    }
+
+
+/* ****************************************** Dispatch ****************************************** */
+
+    /**
+     * Calls on the handler method this route leads to, on the calling thread.
+     * If the handler doesn't declare the method, its execute(String, Map) method is called instead.
+     * If the method requires the handler to be initialized and it isn't yet, the call is kept
+     * until it is. If the handler has batching enabled, the call is added to the current batch.
+     *
+     * @param params the parameters of the method
+     */
+    public void execute(Map<String, Object> params) {
+        if (task != null) {
+            task.run();
+            return;
+        }
+        handler.metrics().increment(HandlerMetrics.RECEIVED);
+        executeReceived(params);
+    }
+
+    /**
+     * Calls on the handler method as execute() does, for an event which has already been
+     * counted as received, e.g. an event kept by a LazyHandler until its actual handler is
+     * initialized.
+     *
+     * @param params the parameters of the method
+     */
+    void executeReceived(Map<String, Object> params) {
+        if (method != null) {
+            handler.logReceivedFunction(functionTag, params);
+        }
+        if (requiresInitialization) {
+            handler.executeOrBatch(this, params);
+        }
+        else {
+            invoke(params);
+        }
+    }
+
+    /**
+     * Calls on the handler method right away, recording the call in the CargoTrace and its
+     * duration in the metrics of the handler, and in the CargoWatchdog if it is called on the
+     * main thread. The event is then acknowledged in the CargoJournal, whether the method has
+     * succeeded or not. If the handler doesn't declare the method, its execute(String, Map)
+     * method is called instead.
+     *
+     * @param params the parameters of the method
+     */
+    void invoke(Map<String, Object> params) {
+        CargoWatchdog.Section section =
+                CargoWatchdog.enter(CargoWatchdog.EXECUTE, handler.key, functionTag);
+        long start = System.nanoTime();
+        CargoTrace.record(CargoTrace.METHOD_INVOKED, traceId, 0, start);
+        boolean done = false;
+        try {
+            if (method != null) {
+                method.execute(params);
+            }
+            else {
+                handler.execute(functionTag, params);
+            }
+            done = true;
+        } finally {
+            long end = System.nanoTime();
+            CargoTrace.record(done ? CargoTrace.METHOD_DONE : CargoTrace.METHOD_FAILED,
+                    traceId, end - start, end);
+            recordLatency(end - start, done);
+            CargoJournal.acknowledge(params);
+            CargoWatchdog.exit(section);
+        }
+    }
+
+    /**
+     * Records the duration of a call in the metrics of the handler.
+     *
+     * @param nanos the duration of the call
+     * @param done  false if the method has thrown
+     */
+    private void recordLatency(long nanos, boolean done) {
+        LatencyHistogram histogram = latency;
+        if (histogram == null) {
+            histogram = handler.metrics().method(this);
+            latency = histogram;
+        }
+        histogram.record(nanos);
+        if (!done) {
+            handler.metrics().increment(HandlerMetrics.FAILED);
+        }
+    }
+
+    /**
+     * Creates a task calling on the handler method, in order to run it on another thread.
+     * The items attached with CargoItem at the time of this call are delivered with the task,
+     * as the list may have changed once the task runs.
+     *
+     * @param params the parameters of the method
+     * @return the task to run
+     */
+    public Runnable newDelivery(Map<String, Object> params) {
+        return new TagDelivery(this, params, CargoItem.getItemsList());
+    }
+
+
+/* ************************************** Getters - Setters ************************************* */
+
+    /**
+     * Gets the handler this route leads to, which defines the lane the event should be run on.
+     *
+     * @return the handler
+     */
+    public AbstractTagHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Gets the function tag this route has been resolved from.
+     *
+     * @return the function tag, e.g. 'FB_tagEvent'
+     */
+    public String getFunctionTag() {
+        return functionTag;
+    }
+
+/* ********************************************************************************************** */
+
+}
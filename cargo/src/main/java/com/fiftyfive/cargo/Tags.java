@@ -10,7 +10,8 @@ import static com.fiftyfive.cargo.CargoItem.notifyTagFired;
  * The Tags class implements the CustomTagProvider interface of the GTM SDK in order to be able
  * to receive and redirect custom functions calls with parameters.
  * Once a function call has been received, calls on the Cargo execute method to redirect it to
- * the handler matching the call.
+ * the handler matching the call. Depending on the DispatchExecutor set in Cargo, the handler
+ * method is either called before execute() returns, or queued to a background thread.
  *
  * This class also plays a role in the CargoItem.itemsList, notifies it when a tag is fired.
  */
@@ -27,6 +28,7 @@ public class Tags implements com.google.android.gms.tagmanager.CustomTagProvider
      */
     @Override
     public void execute(Map<String, Object> map) {
+        CargoTrace.record(CargoTrace.TAG_RECEIVED, 0, map != null ? map.size() : 0);
         Cargo.getInstance().execute(map);
         notifyTagFired();
     }
@@ -0,0 +1,19 @@
+package com.fiftyfive.cargo;
+
+/**
+ * Copyright 2018 fifty-five All rights reserved.
+ *
+ * The interface notified of the work done by Cargo on the main thread which exceeds the
+ * threshold set with CargoWatchdog.setThreshold(), and of the I/O it makes there.
+ * It is called on the main thread, right after the work, e.g. to send the violation to
+ * a monitoring backend.
+ */
+public interface WatchdogListener {
+
+    /**
+     * Called after a violation on the main thread.
+     *
+     * @param violation the violation, with its duration and its stack samples
+     */
+    void onViolation(CargoWatchdog.Violation violation);
+}
@@ -0,0 +1,205 @@
+package com.fiftyfive.cargo;
+
+import android.app.Activity;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests of the method tables of AbstractTagHandler
+ */
+public class AbstractTagHandlerTest extends TestCase {
+
+    private SampleHandler handler;
+
+
+    public void setUp() throws Exception {
+        handler = new SampleHandler();
+        handler.key = "SPL";
+        handler.name = "Sample";
+    }
+
+
+    @Test
+    public void testExecute_callsInitMethodBeforeInitialization(){
+        handler.execute("SPL_init", new HashMap<String, Object>());
+        assertEquals(1, handler.calls.size());
+        assertEquals("init", handler.calls.get(0));
+    }
+
+    @Test
+    public void testExecute_delaysMethodBeforeInitialization(){
+        handler.execute("SPL_tagEvent", new HashMap<String, Object>());
+        assertTrue(handler.calls.isEmpty());
+    }
+
+    @Test
+    public void testSetInitialized_replaysPendingEventsInOrder(){
+        handler.execute("SPL_tagEvent", new HashMap<String, Object>());
+        handler.execute("SPL_tagScreen", new HashMap<String, Object>());
+        handler.setInitialized(true);
+        handler.execute("SPL_tagEvent", new HashMap<String, Object>());
+
+        assertEquals(3, handler.calls.size());
+        assertEquals("tagEvent", handler.calls.get(0));
+        assertEquals("tagScreen", handler.calls.get(1));
+        assertEquals("tagEvent", handler.calls.get(2));
+    }
+
+    @Test
+    public void testSetInitialized_withReplayFromInitMethod(){
+        handler.execute("SPL_tagEvent", new HashMap<String, Object>());
+        handler.initializeOnInit = true;
+        handler.execute("SPL_init", new HashMap<String, Object>());
+
+        assertEquals(2, handler.calls.size());
+        assertEquals("init", handler.calls.get(0));
+        assertEquals("tagEvent", handler.calls.get(1));
+    }
+
+    @Test
+    public void testExecute_dropsEventsBeyondCapacity(){
+        handler.setPendingEventsCapacity(1);
+        handler.execute("SPL_tagEvent", new HashMap<String, Object>());
+        handler.execute("SPL_tagScreen", new HashMap<String, Object>());
+        handler.setInitialized(true);
+
+        assertEquals(1, handler.calls.size());
+        assertEquals("tagEvent", handler.calls.get(0));
+    }
+
+    @Test
+    public void testExecute_withoutPendingEvents(){
+        handler.setPendingEventsCapacity(0);
+        handler.execute("SPL_tagEvent", new HashMap<String, Object>());
+        handler.setInitialized(true);
+
+        assertTrue(handler.calls.isEmpty());
+    }
+
+    @Test
+    public void testExecute_callsMethodOnceInitialized(){
+        handler.initialized = true;
+        handler.execute("SPL_tagEvent", new HashMap<String, Object>());
+        assertEquals(1, handler.calls.size());
+        assertEquals("tagEvent", handler.calls.get(0));
+    }
+
+    @Test
+    public void testExecute_withUnknownFunction(){
+        handler.initialized = true;
+        handler.execute("SPL_unknown", new HashMap<String, Object>());
+        assertTrue(handler.calls.isEmpty());
+    }
+
+    @Test
+    public void testSetBatching_deliversFullBatch(){
+        handler.initialized = true;
+        handler.setBatching(3, 60000);
+        TagRoute route = handler.getRoute("SPL_tagEvent");
+        route.execute(new HashMap<String, Object>());
+        route.execute(new HashMap<String, Object>());
+        assertTrue(handler.calls.isEmpty());
+
+        route.execute(new HashMap<String, Object>());
+        assertEquals(3, handler.calls.size());
+        assertEquals(1, handler.batches);
+    }
+
+    @Test
+    public void testSetBatching_deliversBatchAfterDelay() throws Exception {
+        handler.initialized = true;
+        handler.setBatching(10, 20);
+        handler.getRoute("SPL_tagEvent").execute(new HashMap<String, Object>());
+
+        for (int i = 0; i < 100 && handler.batches == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, handler.batches);
+        assertEquals(1, handler.calls.size());
+    }
+
+    @Test
+    public void testFlushBatch_keepsEventsUntilInitialization(){
+        handler.setBatching(10, 60000);
+        handler.getRoute("SPL_tagEvent").execute(new HashMap<String, Object>());
+        handler.flushBatch();
+        assertTrue(handler.calls.isEmpty());
+
+        handler.setInitialized(true);
+        assertEquals(1, handler.calls.size());
+    }
+
+    @Test
+    public void testGetRoute_resolvesRegisteredMethod(){
+        TagRoute route = handler.getRoute("SPL_tagEvent");
+        assertSame(handler, route.handler);
+        assertNotNull(route.method);
+        assertTrue(route.requiresInitialization);
+        assertNull(handler.getRoute("SPL_unknown").method);
+    }
+
+
+    /**
+     * A handler which records the calls made on its methods.
+     */
+    static class SampleHandler extends AbstractTagHandler {
+
+        final List<String> calls = new ArrayList<>();
+        boolean initializeOnInit = false;
+        volatile int batches = 0;
+
+        SampleHandler() {
+            registerInitMethod("SPL_init", new TagMethod() {
+                @Override
+                public void execute(Map<String, Object> params) {
+                    calls.add("init");
+                    if (initializeOnInit) {
+                        setInitialized(true);
+                    }
+                }
+            });
+            registerMethod("SPL_tagScreen", new TagMethod() {
+                @Override
+                public void execute(Map<String, Object> params) {
+                    calls.add("tagScreen");
+                }
+            });
+            registerMethod("SPL_tagEvent", new TagMethod() {
+                @Override
+                public void execute(Map<String, Object> params) {
+                    calls.add("tagEvent");
+                }
+            });
+        }
+
+        @Override
+        protected void executeBatch(List<TagEvent> events) {
+            super.executeBatch(events);
+            batches++;
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit tests of the futures returned by Cargo
+ */
+public class CargoFutureTest extends TestCase {
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable runnable) {
+            runnable.run();
+        }
+    };
+
+    private CargoFuture<String> future;
+    private AtomicInteger notified;
+
+
+    public void setUp() throws Exception {
+        future = new CargoFuture<>();
+        notified = new AtomicInteger();
+    }
+
+
+    @Test
+    public void testComplete_onlyOnce() throws Exception {
+        assertTrue(future.complete("first"));
+        assertFalse(future.complete("second"));
+        assertEquals("first", future.get());
+    }
+
+    @Test
+    public void testGet_withTimeout() throws Exception {
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail("the future shouldn't be completed");
+        } catch (TimeoutException e) {
+            assertFalse(future.isDone());
+        }
+    }
+
+    @Test
+    public void testAddListener_notifiesOnCompletion(){
+        future.addListener(counter(), DIRECT);
+        assertEquals(0, notified.get());
+        future.complete("done");
+        assertEquals(1, notified.get());
+
+        future.addListener(counter(), DIRECT);
+        assertEquals(2, notified.get());
+    }
+
+    @Test
+    public void testAddListener_notifiesOnceAfterTimeout() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                notified.incrementAndGet();
+                latch.countDown();
+            }
+        }, DIRECT, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertFalse(future.isDone());
+        future.complete("late");
+        assertEquals(1, notified.get());
+    }
+
+    @Test
+    public void testAllOf_keepsTheOrder() throws Exception {
+        CargoFuture<String> other = new CargoFuture<>();
+        List<CargoFuture<String>> futures = new ArrayList<>();
+        futures.add(future);
+        futures.add(other);
+        CargoFuture<List<String>> all = CargoFuture.allOf(futures);
+
+        other.complete("second");
+        assertFalse(all.isDone());
+        future.complete("first");
+        assertEquals("first", all.get().get(0));
+        assertEquals("second", all.get().get(1));
+    }
+
+
+    private Runnable counter() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                notified.incrementAndGet();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests of the journal of the routed events
+ */
+public class CargoJournalTest extends TestCase {
+
+    private File directory;
+    private TagHandlerManager manager;
+    private AbstractTagHandlerTest.SampleHandler handler;
+
+
+    public void setUp() throws Exception {
+        directory = File.createTempFile("journal", "");
+        assertTrue(directory.delete());
+        handler = new AbstractTagHandlerTest.SampleHandler();
+        handler.key = "SPL";
+        manager = new TagHandlerManager();
+        manager.addHandler(handler);
+    }
+
+    public void tearDown() throws Exception {
+        CargoJournal.setActive(null);
+        File[] files = directory.listFiles();
+        for (File file : files != null ? files : new File[0]) {
+            assertTrue(file.delete());
+        }
+        assertTrue(directory.delete());
+    }
+
+
+    @Test
+    public void testOpen_replaysTheEventsNotAcknowledged() throws Exception {
+        CargoJournal journal = CargoJournal.open(directory, 4096);
+        ParamBag delivered = event("eventName", "delivered");
+        journal.append("SPL_tagEvent", delivered);
+        ParamBag lost = event("eventName", "lost");
+        lost.put("count", 3);
+        lost.put("revenue", 9.99);
+        lost.put("id", 42L);
+        lost.put("repeat", true);
+        lost.put("missing", null);
+        lost.put("tags", Arrays.asList("a", "b"));
+        lost.put("extra", Collections.singletonMap("k", (Object) "v"));
+        journal.append("SPL_tagScreen", lost);
+        CargoJournal.setActive(journal);
+        CargoJournal.acknowledge(delivered);
+        journal.close();
+
+        List<CargoJournal.PendingEvent> replays =
+                CargoJournal.open(directory, 4096).takeReplays(manager);
+        assertEquals(1, replays.size());
+        CargoJournal.PendingEvent replay = replays.get(0);
+        assertEquals("SPL_tagScreen", replay.functionTag);
+        assertSame(handler, replay.route.handler);
+        assertEquals(lost, replay.params);
+        assertEquals(Integer.valueOf(3), replay.params.get("count"));
+        assertEquals(Long.valueOf(42), replay.params.get("id"));
+    }
+
+    @Test
+    public void testOpen_replaysTheValuesWithTheirType() throws Exception {
+        CargoJournal journal = CargoJournal.open(directory, 4096);
+        Date date = new Date(1521626400123L);
+        ParamBag lost = event("eventDate1", date);
+        lost.put("ratio", 0.5f);
+        lost.put("level", (short) 7);
+        lost.put("flag", (byte) 1);
+        lost.put("grade", 'A');
+        journal.append("SPL_tagEvent", lost);
+        journal.close();
+
+        List<CargoJournal.PendingEvent> replays =
+                CargoJournal.open(directory, 4096).takeReplays(manager);
+        assertEquals(1, replays.size());
+        Map<String, Object> params = replays.get(0).params;
+        assertEquals(lost, params);
+        assertEquals(date, ModelsUtils.getDate(params, "eventDate1"));
+        assertEquals(Float.valueOf(0.5f), params.get("ratio"));
+        assertEquals(Short.valueOf((short) 7), params.get("level"));
+        assertEquals(Byte.valueOf((byte) 1), params.get("flag"));
+        assertEquals(Character.valueOf('A'), params.get("grade"));
+    }
+
+    @Test
+    public void testTakeReplays_waitsForTheHandler() throws Exception {
+        CargoJournal journal = CargoJournal.open(directory, 4096);
+        journal.append("OTH_tagEvent", event("eventName", "other"));
+        journal.close();
+
+        journal = CargoJournal.open(directory, 4096);
+        assertTrue(journal.takeReplays(manager).isEmpty());
+        AbstractTagHandlerTest.SampleHandler other = new AbstractTagHandlerTest.SampleHandler();
+        other.key = "OTH";
+        manager.addHandler(other);
+        assertEquals(1, journal.takeReplays(manager).size());
+        assertTrue(journal.takeReplays(manager).isEmpty());
+    }
+
+    @Test
+    public void testInvoke_acknowledgesTheEvent() throws Exception {
+        CargoJournal journal = CargoJournal.open(directory, 4096);
+        CargoJournal.setActive(journal);
+        handler.setInitialized(true);
+        TagRoute route = manager.getRoute("SPL_tagEvent");
+        ParamBag params = event("eventName", "sent");
+        journal.append(route.functionTag, params);
+        route.execute(params);
+        journal.close();
+
+        assertEquals(Collections.singletonList("tagEvent"), handler.calls);
+        assertTrue(CargoJournal.open(directory, 4096).takeReplays(manager).isEmpty());
+    }
+
+    @Test
+    public void testRotation_compactsAndDeletesTheDeliveredSegments() throws Exception {
+        CargoJournal journal = CargoJournal.open(directory, 256);
+        CargoJournal.setActive(journal);
+        ParamBag first = event("eventName", "first");
+        journal.append("SPL_tagEvent", first);
+        for (int i = 0; i < 100; i++) {
+            ParamBag params = event("eventName", "event" + i);
+            journal.append("SPL_tagEvent", params);
+            CargoJournal.acknowledge(params);
+        }
+        assertTrue(directory.listFiles().length <= CargoJournal.MAX_SEGMENTS + 1);
+        journal.close();
+
+        List<CargoJournal.PendingEvent> replays =
+                CargoJournal.open(directory, 256).takeReplays(manager);
+        assertEquals(1, replays.size());
+        assertEquals("first", replays.get(0).params.get("eventName"));
+    }
+
+    @Test
+    public void testOpen_compactsTheSegmentsOfThePreviousRuns() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            CargoJournal journal = CargoJournal.open(directory, 256);
+            journal.append("SPL_tagEvent", event("eventName", "run" + i));
+            journal.close();
+        }
+        assertTrue(directory.listFiles().length <= CargoJournal.MAX_SEGMENTS + 1);
+
+        List<CargoJournal.PendingEvent> replays =
+                CargoJournal.open(directory, 256).takeReplays(manager);
+        assertEquals(10, replays.size());
+        assertEquals("run0", replays.get(0).params.get("eventName"));
+        assertEquals("run9", replays.get(9).params.get("eventName"));
+    }
+
+    @Test
+    public void testAppend_ignoresTheEventsTooLarge() throws Exception {
+        CargoJournal journal = CargoJournal.open(directory, 64);
+        char[] name = new char[100];
+        Arrays.fill(name, 'a');
+        ParamBag params = event("eventName", new String(name));
+        journal.append("SPL_tagEvent", params);
+        assertEquals(CargoJournal.NOT_JOURNALED, params.journalSequence);
+    }
+
+
+    private static ParamBag event(String name, Object value) {
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(name, value);
+        return new ParamBag(params);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.fiftyfive.cargo;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Unit tests of the logging facade used by Cargo and its handlers
+ */
+public class CargoLogTest extends TestCase {
+
+    private CargoLog log = new CargoLog("Test");
+
+
+    public void setUp() throws Exception {
+        CargoLog.setLevel(CargoLog.DEFAULT_LEVEL);
+    }
+
+    public void tearDown() throws Exception {
+        CargoLog.setLevel(CargoLog.DEFAULT_LEVEL);
+    }
+
+
+    @Test
+    public void testFormat_replacesPlaceholdersInOrder(){
+        assertEquals("a=1, b=two.", CargoLog.format("a={}, b={}.", 2, 1, "two", null));
+        assertEquals("[x] [null] [{}]", CargoLog.format("[{}] [{}] [{}]", 2, "x", null, null));
+        assertEquals("no placeholder", CargoLog.format("no placeholder", 1, "x", null, null));
+    }
+
+    @Test
+    public void testFormat_rendersArraysAndMaps(){
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("eventName", "purchase");
+        map.put("eventRevenue", 4.5);
+        assertEquals("[a, b] [eventName=purchase, eventRevenue=4.5]",
+                CargoLog.format("{} {}", 2, new String[]{"a", "b"}, map, null));
+    }
+
+    @Test
+    public void testLevel_skipsFormattingBelowLevel(){
+        CountingArgument argument = new CountingArgument();
+        log.v("{}", argument);
+        log.d("{}", argument);
+        log.i("{}", argument);
+        assertEquals(0, argument.count);
+
+        log.w("{}", argument);
+        assertEquals(1, argument.count);
+    }
+
+    @Test
+    public void testLevel_canBeLowered(){
+        assertFalse(CargoLog.isLoggable(Log.DEBUG));
+        CargoLog.setLevel(Log.VERBOSE);
+        assertTrue(CargoLog.isLoggable(Log.DEBUG));
+
+        CountingArgument argument = new CountingArgument();
+        log.v("{} {}", argument, argument);
+        assertEquals(2, argument.count);
+    }
+
+    @Test
+    public void testForHandler_buildsTagFromKey(){
+        CargoLog handlerLog = CargoLog.forHandler("FB");
+        assertEquals("FB_handler", handlerLog.tag);
+        assertEquals("FB", handlerLog.key);
+    }
+
+
+    /** An argument counting how many times it has been formatted */
+    private static class CountingArgument {
+        int count;
+
+        @Override
+        public String toString() {
+            count++;
+            return "counted";
+        }
+    }
+
+}
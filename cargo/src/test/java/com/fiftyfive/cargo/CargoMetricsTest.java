@@ -0,0 +1,118 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests of the metrics collected for each handler
+ */
+public class CargoMetricsTest extends TestCase {
+
+    private AbstractTagHandlerTest.SampleHandler handler;
+
+
+    public void setUp() throws Exception {
+        handler = new AbstractTagHandlerTest.SampleHandler();
+        handler.key = "MET" + System.nanoTime();
+    }
+
+    public void tearDown() throws Exception {
+        CargoMetrics.setSlowCallThreshold(CargoMetrics.DEFAULT_SLOW_CALL_THRESHOLD_MS,
+                TimeUnit.MILLISECONDS);
+        CargoMetrics.setSlowCallListener(null);
+    }
+
+
+    @Test
+    public void testForHandler_isSharedByKey(){
+        assertSame(CargoMetrics.forHandler(handler.key), handler.metrics());
+        assertSame(handler.metrics(), handler.metrics());
+    }
+
+    @Test
+    public void testRoute_countsEventsAndLatency(){
+        handler.setInitialized(true);
+        TagRoute route = handler.getRoute("SPL_tagEvent");
+        route.execute(new HashMap<String, Object>());
+        route.execute(new HashMap<String, Object>());
+
+        HandlerMetrics.Snapshot snapshot = CargoMetrics.snapshot().get(handler.key);
+        assertEquals(2, snapshot.getCount(HandlerMetrics.RECEIVED));
+        assertEquals(0, snapshot.getCount(HandlerMetrics.FAILED));
+        assertEquals(2, snapshot.getMethods().get("SPL_tagEvent").getCount());
+        assertEquals(2, snapshot.getLatency().getCount());
+    }
+
+    @Test
+    public void testRoute_sharesOneHistogramForTheUndeclaredTags(){
+        handler.getRoute("SPL_unknown1").execute(new HashMap<String, Object>());
+        handler.getRoute("SPL_unknown2").execute(new HashMap<String, Object>());
+
+        Map<String, LatencyHistogram.Snapshot> methods = handler.metrics().snapshot().getMethods();
+        assertEquals(1, methods.size());
+        assertEquals(2, methods.get(HandlerMetrics.OTHER_METHODS).getCount());
+    }
+
+    @Test
+    public void testRoute_countsDelayedEvents(){
+        handler.getRoute("SPL_tagEvent").execute(new HashMap<String, Object>());
+        handler.logMissingParam(new String[]{"eventName", "eventRevenue"}, "SPL_tagEvent");
+
+        HandlerMetrics.Snapshot snapshot = handler.metrics().snapshot();
+        assertEquals(1, snapshot.getCount(HandlerMetrics.DELAYED));
+        assertEquals(2, snapshot.getCount(HandlerMetrics.MISSING_PARAM));
+        String description = snapshot.toString();
+        assertTrue(description, description.startsWith(handler.key + " received=1"));
+    }
+
+    @Test
+    public void testSdkCall_isTimedAndSlowCallsReported(){
+        final String[] reported = new String[3];
+        CargoMetrics.setSlowCallListener(new SlowCallListener() {
+            @Override
+            public void onSlowCall(String handlerKey, String sdkMethod, Thread thread,
+                                   long nanos) {
+                reported[0] = handlerKey;
+                reported[1] = sdkMethod;
+                reported[2] = thread.getName();
+            }
+        });
+
+        handler.sdkCallDone("Sdk.fast", handler.sdkCallStart());
+        assertNull(reported[0]);
+
+        CargoMetrics.setSlowCallThreshold(0, TimeUnit.MILLISECONDS);
+        handler.sdkCallDone("Sdk.slow", handler.sdkCallStart());
+        assertEquals(handler.key, reported[0]);
+        assertEquals("Sdk.slow", reported[1]);
+        assertEquals(Thread.currentThread().getName(), reported[2]);
+
+        HandlerMetrics.Snapshot snapshot = handler.metrics().snapshot();
+        assertEquals(1, snapshot.getCount(HandlerMetrics.SLOW_SDK_CALL));
+        assertEquals(1, snapshot.getSdkCalls().get("Sdk.fast").getCount());
+        assertEquals(1, snapshot.getSdkCalls().get("Sdk.slow").getCount());
+    }
+
+    @Test
+    public void testCallSdk_recordsTheCallsWhichThrow(){
+        try {
+            handler.callSdk("Sdk.failing", new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException("sdk failure");
+                }
+            });
+            fail("the exception of the SDK should be thrown back");
+        } catch (IllegalStateException e) {
+            assertEquals("sdk failure", e.getMessage());
+        }
+        HandlerMetrics.Snapshot snapshot = handler.metrics().snapshot();
+        assertEquals(1, snapshot.getSdkCalls().get("Sdk.failing").getCount());
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Unit tests of the trace ring of the flow of the tags
+ */
+public class CargoTraceTest extends TestCase {
+
+    public void setUp() throws Exception {
+        CargoTrace.setEnabled(true);
+        CargoTrace.clear();
+    }
+
+    public void tearDown() throws Exception {
+        CargoTrace.setEnabled(true);
+        CargoTrace.clear();
+    }
+
+
+    @Test
+    public void testRecord_isReadInOrder(){
+        int id = CargoTrace.idOf("SPL_tagEvent");
+        CargoTrace.record(CargoTrace.TAG_RECEIVED, 0, 3);
+        CargoTrace.record(CargoTrace.ROUTE_RESOLVED, id, 1);
+
+        List<CargoTrace.Record> records = CargoTrace.snapshot();
+        assertEquals(2, records.size());
+        assertEquals(CargoTrace.TAG_RECEIVED, records.get(0).getType());
+        assertNull(records.get(0).getName());
+        assertEquals(3, records.get(0).getValue());
+        assertEquals(CargoTrace.ROUTE_RESOLVED, records.get(1).getType());
+        assertEquals("SPL_tagEvent", records.get(1).getName());
+        assertEquals(Thread.currentThread().getId(), records.get(1).getThreadId());
+    }
+
+    @Test
+    public void testRecord_overwritesOldestRecords(){
+        for (int i = 0; i < CargoTrace.CAPACITY + 10; i++) {
+            CargoTrace.record(CargoTrace.TAG_RECEIVED, 0, i);
+        }
+        List<CargoTrace.Record> records = CargoTrace.snapshot();
+        assertEquals(CargoTrace.CAPACITY, records.size());
+        assertEquals(10, records.get(0).getValue());
+        assertEquals(CargoTrace.CAPACITY + 9, records.get(CargoTrace.CAPACITY - 1).getValue());
+    }
+
+    @Test
+    public void testRecord_whenDisabled(){
+        CargoTrace.setEnabled(false);
+        assertEquals(0, CargoTrace.record(CargoTrace.TAG_RECEIVED, 0, 1));
+        assertTrue(CargoTrace.snapshot().isEmpty());
+    }
+
+    @Test
+    public void testIdOf_isStable(){
+        int id = CargoTrace.idOf("eventName");
+        assertTrue(id > 0);
+        assertEquals(id, CargoTrace.idOf("eventName"));
+        assertEquals(0, CargoTrace.idOf(null));
+    }
+
+    @Test
+    public void testRoutes_onlyInternTheDeclaredFunctionTags(){
+        AbstractTagHandlerTest.SampleHandler handler = new AbstractTagHandlerTest.SampleHandler();
+        CargoTrace.record(CargoTrace.ROUTE_RESOLVED, handler.getRoute("SPL_init").traceId, 1);
+        CargoTrace.record(CargoTrace.ROUTE_RESOLVED, handler.getRoute("SPL_random42").traceId, 1);
+
+        List<CargoTrace.Record> records = CargoTrace.snapshot();
+        assertEquals("SPL_init", records.get(0).getName());
+        assertEquals("(unresolved)", records.get(1).getName());
+    }
+
+    @Test
+    public void testInvoke_recordsTheMethodCall(){
+        AbstractTagHandlerTest.SampleHandler handler = new AbstractTagHandlerTest.SampleHandler();
+        handler.getRoute("SPL_init").invoke(new HashMap<String, Object>());
+
+        List<CargoTrace.Record> records = CargoTrace.snapshot();
+        assertEquals(2, records.size());
+        assertEquals(CargoTrace.METHOD_INVOKED, records.get(0).getType());
+        assertEquals(CargoTrace.METHOD_DONE, records.get(1).getType());
+        assertEquals("SPL_init", records.get(1).getName());
+        assertTrue(records.get(1).getValue() >= 0);
+    }
+
+    @Test
+    public void testDump_describesEachRecord(){
+        CargoTrace.record(CargoTrace.PARAM_MISSING, CargoTrace.idOf("eventName"), 0);
+        String dump = CargoTrace.dump();
+        assertTrue(dump, dump.startsWith("#0 -"));
+        assertTrue(dump, dump.contains(" PARAM_MISSING eventName value=0\n"));
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests of the watchdog of the work done on the main thread
+ */
+public class CargoWatchdogTest extends TestCase {
+
+    private final List<CargoWatchdog.Violation> violations =
+            new ArrayList<CargoWatchdog.Violation>();
+
+
+    public void setUp() throws Exception {
+        CargoWatchdog.setMainThread(Thread.currentThread());
+        CargoWatchdog.setEnabled(true);
+        CargoWatchdog.setListener(new WatchdogListener() {
+            @Override
+            public void onViolation(CargoWatchdog.Violation violation) {
+                violations.add(violation);
+            }
+        });
+    }
+
+    public void tearDown() throws Exception {
+        CargoWatchdog.setEnabled(false);
+        CargoWatchdog.setMainThread(null);
+        CargoWatchdog.setListener(null);
+        CargoWatchdog.setThreshold(CargoWatchdog.DEFAULT_THRESHOLD_MS, TimeUnit.MILLISECONDS);
+    }
+
+
+    @Test
+    public void testEnter_onlyWatchesTheMainThreadWhenEnabled() throws Exception {
+        final CargoWatchdog.Section[] other = new CargoWatchdog.Section[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other[0] = CargoWatchdog.enter(CargoWatchdog.EXECUTE, "FB", "FB_tagEvent");
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNull(other[0]);
+
+        CargoWatchdog.setEnabled(false);
+        assertNull(CargoWatchdog.enter(CargoWatchdog.EXECUTE, "FB", "FB_tagEvent"));
+    }
+
+    @Test
+    public void testExit_ignoresFastSections(){
+        CargoWatchdog.setThreshold(1, TimeUnit.MINUTES);
+        CargoWatchdog.exit(CargoWatchdog.enter(CargoWatchdog.EXECUTE, "FB", "FB_tagEvent"));
+        assertTrue(violations.isEmpty());
+    }
+
+    @Test
+    public void testExit_reportsSlowSectionsWithStackSamples() throws Exception {
+        CargoWatchdog.setThreshold(2, TimeUnit.MILLISECONDS);
+        CargoWatchdog.Section section = CargoWatchdog.enter(
+                CargoWatchdog.LIFECYCLE_CALLBACK, "ADB", "onActivityResumed");
+        Thread.sleep(50);
+        CargoWatchdog.exit(section);
+
+        assertEquals(1, violations.size());
+        CargoWatchdog.Violation violation = violations.get(0);
+        assertEquals(CargoWatchdog.LIFECYCLE_CALLBACK, violation.getType());
+        assertEquals("ADB", violation.getHandlerKey());
+        assertEquals("onActivityResumed", violation.getName());
+        assertTrue(violation.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertFalse(violation.getStackSamples().isEmpty());
+        assertTrue(violation.getStackSamples().size() <= CargoWatchdog.MAX_SAMPLES);
+        assertTrue(violation.toString(),
+                violation.toString().startsWith("Main thread LIFECYCLE_CALLBACK ADB"));
+    }
+
+    @Test
+    public void testEnter_samplesNestedSectionsFromTheOutermostOne() throws Exception {
+        CargoWatchdog.setThreshold(2, TimeUnit.MILLISECONDS);
+        CargoWatchdog.Section callback = CargoWatchdog.enter(
+                CargoWatchdog.LIFECYCLE_CALLBACK, "ADB", "onActivityResumed");
+        CargoWatchdog.Section method = CargoWatchdog.enter(
+                CargoWatchdog.EXECUTE, null, "ADB_tagScreen");
+        assertNotNull(callback.sampling);
+        assertNull(method.sampling);
+        Thread.sleep(50);
+        CargoWatchdog.exit(method);
+        CargoWatchdog.exit(callback);
+
+        assertEquals(2, violations.size());
+        assertEquals("ADB_tagScreen", violations.get(0).getName());
+        assertFalse(violations.get(0).getStackSamples().isEmpty());
+        assertEquals("onActivityResumed", violations.get(1).getName());
+        assertFalse(violations.get(1).getStackSamples().isEmpty());
+    }
+
+    @Test
+    public void testExit_reportsIoWithTheKeyOfTheEnclosingSection(){
+        CargoWatchdog.setThreshold(1, TimeUnit.MINUTES);
+        CargoWatchdog.Section callback = CargoWatchdog.enter(
+                CargoWatchdog.LIFECYCLE_CALLBACK, "ADB", "onActivityResumed");
+        CargoWatchdog.exit(CargoWatchdog.enter(CargoWatchdog.IO, null, "asset:config.json"));
+        CargoWatchdog.exit(callback);
+
+        assertEquals(1, violations.size());
+        CargoWatchdog.Violation violation = violations.get(0);
+        assertEquals(CargoWatchdog.IO, violation.getType());
+        assertEquals("ADB", violation.getHandlerKey());
+        assertEquals("asset:config.json", violation.getName());
+        assertEquals(1, violation.getStackSamples().size());
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+/**
+ * Unit tests of the conversions of the parameters to primitive types
+ */
+public class CoercionTest extends TestCase {
+
+    @Test
+    public void testToLong_fromNumbers(){
+        assertEquals(3L, Coercion.toLong(3, -1));
+        assertEquals(3000000000L, Coercion.toLong(3000000000L, -1));
+        assertEquals(3L, Coercion.toLong(3.9, -1));
+        assertEquals(-3L, Coercion.toLong(-3.9f, -1));
+        assertEquals(12L, Coercion.toLong(new BigDecimal("12.5"), -1));
+        assertEquals(-1L, Coercion.toLong(Double.NaN, -1));
+        assertEquals(-1L, Coercion.toLong(1e30, -1));
+    }
+
+    @Test
+    public void testParseLong(){
+        assertEquals(123456L, Coercion.parseLong("123456", -1));
+        assertEquals(-42L, Coercion.parseLong(" -42 ", -1));
+        assertEquals(Long.MAX_VALUE, Coercion.parseLong("9223372036854775807", -1));
+        assertEquals(Long.MIN_VALUE, Coercion.parseLong("-9223372036854775808", -1));
+        assertEquals(123456L, Coercion.parseLong("123456.0", -1));
+        assertEquals(1500L, Coercion.parseLong("1.5e3", -1));
+        assertEquals(-1L, Coercion.parseLong("9223372036854775808", -1));
+        assertEquals(-1L, Coercion.parseLong("12a", -1));
+        assertEquals(-1L, Coercion.parseLong("", -1));
+        assertEquals(-1L, Coercion.parseLong("-", -1));
+    }
+
+    @Test
+    public void testToInt(){
+        assertEquals(3, Coercion.toInt(3L, -1));
+        assertEquals(3, Coercion.toInt(3.0, -1));
+        assertEquals(3, Coercion.toInt("3", -1));
+        assertEquals(-1, Coercion.toInt(3000000000L, -1));
+        assertEquals(-1, Coercion.toInt(true, -1));
+        assertEquals(-1, Coercion.toInt(null, -1));
+    }
+
+    @Test
+    public void testParseDouble_matchesTheJdk(){
+        String[] values = {"0", "-0", "3.5", "0.1", "0.05", "-12.75", "1e10", "1.5E-7", "+2.5",
+                ".5", "5.", "123456789012345678901234567890", "0.000000000000000000000000001",
+                "4.9e-324", "1.7976931348623157e308", "1e400", "2.2250738585072014E-308",
+                "9007199254740993", "0.30000000000000004", "NaN", "-Infinity", " 42 "};
+        for (String value : values) {
+            assertEquals(value, Double.parseDouble(value), Coercion.parseDouble(value, -1));
+        }
+    }
+
+    @Test
+    public void testParseDouble_malformed(){
+        String[] values = {"", " ", "abc", "1.2.3", "1e", "1e+", "--1", ".", "e5", "0x10", "1f"};
+        for (String value : values) {
+            assertEquals(value, -1.0, Coercion.parseDouble(value, -1));
+        }
+    }
+
+    @Test
+    public void testToBoolean(){
+        assertTrue(Coercion.toBoolean("TRUE", false));
+        assertTrue(Coercion.toBoolean("1", false));
+        assertTrue(Coercion.toBoolean(1, false));
+        assertFalse(Coercion.toBoolean("false", true));
+        assertFalse(Coercion.toBoolean(0L, true));
+        assertTrue(Coercion.toBoolean("yes", true));
+        assertFalse(Coercion.toBoolean(2, false));
+    }
+
+    @Test
+    public void testStatus(){
+        assertEquals(Coercion.OK, Coercion.status("0"));
+        assertEquals(Coercion.OK, Coercion.status("NaN"));
+        assertEquals(Coercion.OK, Coercion.status(12));
+        assertEquals(Coercion.MISSING, Coercion.status(null));
+        assertEquals(Coercion.MALFORMED, Coercion.status("1,5"));
+        assertEquals(Coercion.UNSUPPORTED_TYPE, Coercion.status(new Object()));
+        assertEquals(Coercion.OUT_OF_RANGE, Coercion.longStatus("1e30"));
+        assertEquals(Coercion.OK, Coercion.longStatus("-12"));
+        assertEquals(Coercion.OUT_OF_RANGE, Coercion.intStatus(3000000000L));
+        assertEquals(Coercion.OK, Coercion.intStatus("-1"));
+    }
+
+}
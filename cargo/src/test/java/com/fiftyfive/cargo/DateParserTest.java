@@ -0,0 +1,92 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Unit tests of the parsing of the date parameters
+ */
+public class DateParserTest extends TestCase {
+
+    @Test
+    public void testParseIso_utc(){
+        assertEquals(utc(2018, 3, 21, 14, 5, 30, 0), DateParser.parse("2018-03-21T14:05:30Z"));
+        assertEquals(utc(2018, 3, 21, 14, 5, 30, 0), DateParser.parse("2018-03-21T14:05:30"));
+        assertEquals(utc(2018, 3, 21, 14, 5, 0, 0), DateParser.parse("2018-03-21 14:05"));
+        assertEquals(utc(2018, 3, 21, 0, 0, 0, 0), DateParser.parse(" 2018-03-21 "));
+    }
+
+    @Test
+    public void testParseIso_fractionAndOffset(){
+        assertEquals(utc(2018, 3, 21, 13, 5, 30, 250),
+                DateParser.parse("2018-03-21T14:05:30.25+01:00"));
+        assertEquals(utc(2018, 3, 21, 16, 35, 30, 123),
+                DateParser.parse("2018-03-21T14:05:30.123456-0230"));
+        assertEquals(utc(2018, 3, 21, 9, 5, 30, 0), DateParser.parse("2018-03-21T14:05:30+05"));
+    }
+
+    @Test
+    public void testDaysFromCivil(){
+        for (int year = 1600; year <= 2400; year += 7) {
+            for (int month = 1; month <= 12; month++) {
+                assertEquals(utc(year, month, 28, 0, 0, 0, 0),
+                        DateParser.daysFromCivil(year, month, 28) * 86400000L);
+            }
+        }
+        assertEquals(0, DateParser.daysFromCivil(1970, 1, 1));
+        assertEquals(-1, DateParser.daysFromCivil(1969, 12, 31));
+    }
+
+    @Test
+    public void testParse_invalid(){
+        String[] values = {"", "2018-02-30", "2018-13-01", "2018-03-21T25:00", "2018-03-21T14",
+                "2018-03-21T14:05:30.", "2018-03-21T14:05+1", "21/03/2018", "now"};
+        for (String value : values) {
+            assertEquals(value, DateParser.INVALID, DateParser.parse(value));
+        }
+    }
+
+    @Test
+    public void testEpoch_secondsAndMillis(){
+        assertEquals(1521641130000L, DateParser.parse("1521641130"));
+        assertEquals(1521641130123L, DateParser.parse("1521641130123"));
+        assertEquals(1521641130000L, DateParser.toMillis(1521641130L));
+        assertEquals(1521641130000L, DateParser.toMillis(1521641130000L));
+        assertEquals(1521641130500L, DateParser.toMillis(1521641130500.0));
+    }
+
+    @Test
+    public void testParse_rfc1123(){
+        assertEquals(utc(2018, 3, 21, 14, 5, 30, 0),
+                DateParser.parse("Wed, 21 Mar 2018 14:05:30 GMT"));
+    }
+
+    @Test
+    public void testGetDate_returnsTheParsedDate(){
+        Map<String, Object> params = new HashMap<>();
+        params.put("eventDate1", "2018-03-21T14:05:30Z");
+        params.put("eventDate2", "not a date");
+        assertEquals(new Date(utc(2018, 3, 21, 14, 5, 30, 0)),
+                ModelsUtils.getDate(params, "eventDate1"));
+        assertNull(ModelsUtils.getDate(params, "eventDate2"));
+        assertNull(ModelsUtils.getDate(params, "missing"));
+    }
+
+
+    private static long utc(int year, int month, int day, int hour, int minute, int second,
+                            int millis) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute, second);
+        calendar.set(Calendar.MILLISECOND, millis);
+        return calendar.getTimeInMillis();
+    }
+
+}
@@ -0,0 +1,254 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests of the DispatchExecutor implementations
+ */
+public class DispatchExecutorsTest extends TestCase {
+
+    private static final int EVENTS = 200;
+
+    private AbstractTagHandlerTest.SampleHandler handler;
+    private final List<Object> delivered = Collections.synchronizedList(new ArrayList<Object>());
+    private final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+    private CountDownLatch done;
+    private TagRoute route;
+
+
+    public void setUp() throws Exception {
+        handler = new AbstractTagHandlerTest.SampleHandler();
+        handler.key = "SPL";
+        done = new CountDownLatch(EVENTS);
+        route = new TagRoute(handler, "SPL_record", new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                delivered.add(params.get("index"));
+                threads.add(Thread.currentThread().getName());
+                done.countDown();
+            }
+        }, false);
+    }
+
+
+    @Test
+    public void testCallerRuns_deliversSynchronously(){
+        dispatchAll(DispatchExecutors.callerRuns());
+        assertEquals(EVENTS, delivered.size());
+        assertEquals(Thread.currentThread().getName(), threads.get(0));
+    }
+
+    @Test
+    public void testSharedThread_deliversInOrder() throws Exception {
+        DispatchExecutor executor = DispatchExecutors.sharedThread();
+        dispatchAll(executor);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertInOrder();
+        assertEquals("Cargo-dispatch", threads.get(0));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testThreadPerHandler_deliversInOrder() throws Exception {
+        DispatchExecutor executor = DispatchExecutors.threadPerHandler();
+        dispatchAll(executor);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertInOrder();
+        assertEquals("Cargo-dispatch-SPL", threads.get(0));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRingBuffer_deliversInOrder() throws Exception {
+        DispatchExecutor executor = DispatchExecutors.ringBuffer(16);
+        dispatchAll(executor);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertInOrder();
+        assertEquals("Cargo-ring-SPL", threads.get(0));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testRingBuffer_deliversToEachHandler() throws Exception {
+        AbstractTagHandlerTest.SampleHandler other = new AbstractTagHandlerTest.SampleHandler();
+        other.key = "OTH";
+        final List<Object> otherDelivered = Collections.synchronizedList(new ArrayList<Object>());
+        TagRoute otherRoute = new TagRoute(other, "OTH_record", new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                otherDelivered.add(params.get("index"));
+            }
+        }, false);
+
+        DispatchExecutor executor = DispatchExecutors.ringBuffer(8);
+        for (int i = 0; i < EVENTS; i++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("index", i);
+            executor.dispatch(i % 2 == 0 ? route : otherRoute, params);
+        }
+        executor.shutdown();
+        for (int i = 0; i < 500 && otherDelivered.size() + delivered.size() < EVENTS; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(EVENTS / 2, otherDelivered.size());
+        assertEquals(EVENTS / 2, delivered.size());
+        assertEquals(1, otherDelivered.get(0));
+        assertEquals(0, delivered.get(0));
+    }
+
+    @Test
+    public void testRingBuffer_deliversEveryEventFromSeveralProducers() throws Exception {
+        final DispatchExecutor executor = DispatchExecutors.ringBuffer(8);
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            final int first = p * EVENTS / producers.length;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = first; i < first + EVENTS / 4; i++) {
+                        executor.dispatch(route, index(i));
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        executor.shutdown();
+        assertEquals(EVENTS, delivered.size());
+        assertEquals(EVENTS, new HashSet<Object>(delivered).size());
+        executor.dispatch(route, index(EVENTS));
+        assertEquals(EVENTS, delivered.size());
+    }
+
+    @Test
+    public void testRingBuffer_keepsDeliveringAfterAnError() throws Exception {
+        TagRoute failing = new TagRoute(handler, "SPL_fail", new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                throw new NoClassDefFoundError("com/sdk/Tracker");
+            }
+        }, false);
+        long dropped = droppedCount();
+        DispatchExecutor executor = DispatchExecutors.ringBuffer(4);
+        for (int i = 0; i < EVENTS; i++) {
+            executor.dispatch(i % 2 == 0 ? failing : route, index(i));
+        }
+        executor.shutdown();
+        assertEquals(EVENTS / 2, delivered.size());
+        assertEquals(dropped, droppedCount());
+    }
+
+    @Test
+    public void testRingBuffer_deliversTheEventsDispatchedByAConsumerRightAway()
+            throws Exception {
+        final DispatchExecutor executor = DispatchExecutors.ringBuffer(2);
+        done = new CountDownLatch(4);
+        TagRoute forwarding = new TagRoute(handler, "SPL_forward", new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                for (int i = 0; i < 4; i++) {
+                    executor.dispatch(route, index(i));
+                }
+            }
+        }, false);
+        executor.dispatch(forwarding, index(-1));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(4, delivered.size());
+        assertEquals("Cargo-ring-SPL", threads.get(3));
+    }
+
+    @Test
+    public void testRingBuffer_dropsTheEventsOnceTheRingStaysFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        TagRoute blocking = new TagRoute(handler, "SPL_block", new TagMethod() {
+            @Override
+            public void execute(Map<String, Object> params) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, false);
+        long before = droppedCount();
+        DispatchExecutor executor = DispatchExecutors.ringBuffer(2);
+        executor.dispatch(blocking, index(-1));
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            executor.dispatch(route, index(i));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        release.countDown();
+        executor.shutdown();
+        long dropped = droppedCount() - before;
+        assertTrue(dropped > 0);
+        assertEquals(4, delivered.size() + dropped);
+    }
+
+    @Test
+    public void testShutdown_dropsLateEvents(){
+        DispatchExecutor executor = DispatchExecutors.sharedThread();
+        executor.shutdown();
+        dispatchAll(executor);
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    public void testHandover_deliversTheQueuedEventsAfterThePreviousOnes() throws Exception {
+        DispatchExecutor previous = DispatchExecutors.sharedThread();
+        DispatchExecutor next = DispatchExecutors.threadPerHandler();
+        for (int i = 0; i < EVENTS / 2; i++) {
+            previous.dispatch(route, index(i));
+        }
+        DispatchExecutors.Handover handover = new DispatchExecutors.Handover(previous, next);
+        for (int i = EVENTS / 2; i < EVENTS; i++) {
+            handover.dispatch(route, index(i));
+        }
+        Thread thread = new Thread(handover);
+        thread.start();
+        thread.join();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertInOrder();
+        assertEquals("Cargo-dispatch", threads.get(0));
+        assertEquals("Cargo-dispatch-SPL", threads.get(EVENTS - 1));
+        handover.shutdown();
+    }
+
+
+    private void dispatchAll(DispatchExecutor executor) {
+        for (int i = 0; i < EVENTS; i++) {
+            executor.dispatch(route, index(i));
+        }
+    }
+
+    private static Map<String, Object> index(int index) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("index", index);
+        return params;
+    }
+
+    private long droppedCount() {
+        return handler.metrics().snapshot().getCount(HandlerMetrics.DROPPED);
+    }
+
+    private void assertInOrder() {
+        for (int i = 0; i < EVENTS; i++) {
+            assertEquals(i, delivered.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.fiftyfive.cargo;
+
+import com.fiftyfive.cargo.models.Event;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests of the deduplication of the repeated events
+ */
+public class EventDeduplicatorTest extends TestCase {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private EventDeduplicator deduplicator;
+
+
+    public void setUp() throws Exception {
+        deduplicator = new EventDeduplicator(WINDOW, EventDeduplicator.DEFAULT_CAPACITY);
+    }
+
+
+    @Test
+    public void testFingerprint_ignoresTheOrderOfTheParameters(){
+        Map<String, Object> first = new LinkedHashMap<String, Object>();
+        first.put(Event.EVENT_NAME, "purchase");
+        first.put("revenue", 42.5);
+        Map<String, Object> second = new LinkedHashMap<String, Object>();
+        second.put("revenue", 42.5);
+        second.put(Event.EVENT_NAME, "purchase");
+
+        assertEquals(EventDeduplicator.fingerprint("FB_tagEvent", first, null),
+                EventDeduplicator.fingerprint("FB_tagEvent", new ParamBag(second), null));
+        assertFalse(EventDeduplicator.fingerprint("FB_tagEvent", first, null)
+                == EventDeduplicator.fingerprint("AT_tagEvent", first, null));
+        second.put("revenue", 42.6);
+        assertFalse(EventDeduplicator.fingerprint("FB_tagEvent", first, null)
+                == EventDeduplicator.fingerprint("FB_tagEvent", second, null));
+    }
+
+    @Test
+    public void testFingerprint_usesTheEventId(){
+        Map<String, Object> first = new HashMap<String, Object>();
+        first.put(Event.EVENT_ID, "order-1");
+        first.put("timestamp", 1L);
+        Map<String, Object> second = new HashMap<String, Object>();
+        second.put(Event.EVENT_ID, "order-1");
+        second.put("timestamp", 2L);
+
+        assertEquals(EventDeduplicator.fingerprint("FB_tagEvent", first, null),
+                EventDeduplicator.fingerprint("FB_tagEvent", second, null));
+        second.put(Event.EVENT_ID, "order-2");
+        assertFalse(EventDeduplicator.fingerprint("FB_tagEvent", first, null)
+                == EventDeduplicator.fingerprint("FB_tagEvent", second, null));
+    }
+
+    @Test
+    public void testFingerprint_includesTheItems(){
+        Map<String, Object> params = new HashMap<String, Object>();
+        params.put(Event.EVENT_NAME, "purchase");
+        ArrayList<CargoItem> cart = new ArrayList<CargoItem>();
+        cart.add(new CargoItem("shoes", 59.9, 1));
+        ArrayList<CargoItem> sameCart = new ArrayList<CargoItem>();
+        sameCart.add(new CargoItem("shoes", 59.9, 1));
+        ArrayList<CargoItem> otherCart = new ArrayList<CargoItem>();
+        otherCart.add(new CargoItem("shoes", 59.9, 2));
+
+        long fingerprint = EventDeduplicator.fingerprint("FB_tagEvent", params, cart);
+        assertEquals(fingerprint, EventDeduplicator.fingerprint("FB_tagEvent", params, sameCart));
+        assertFalse(fingerprint == EventDeduplicator.fingerprint("FB_tagEvent", params, otherCart));
+        assertFalse(fingerprint == EventDeduplicator.fingerprint("FB_tagEvent", params, null));
+    }
+
+    @Test
+    public void testIsDuplicate_dropsRepeatsWithinTheWindow(){
+        long now = 1000000000L;
+        assertFalse(deduplicator.isDuplicate(42, now));
+        assertTrue(deduplicator.isDuplicate(42, now + 1000));
+        assertFalse(deduplicator.isDuplicate(43, now + 1000));
+        assertTrue(deduplicator.isDuplicate(42, now + WINDOW - 1));
+        assertFalse(deduplicator.isDuplicate(42, now + WINDOW));
+        assertTrue(deduplicator.isDuplicate(42, now + WINDOW + 1));
+    }
+
+    @Test
+    public void testIsDuplicate_replacesTheOldestFingerprintWhenFull(){
+        EventDeduplicator small = new EventDeduplicator(WINDOW, 8);
+        long now = 1000000000L;
+        for (int i = 0; i < 64; i++) {
+            assertFalse(small.isDuplicate(i * 16L, now + i));
+        }
+        assertTrue(small.isDuplicate(63 * 16L, now + 64));
+        assertFalse(small.isDuplicate(0, now + 64));
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of the sampling of the events
+ */
+public class EventSamplerTest extends TestCase {
+
+    private static final int USERS = 20000;
+
+
+    @Test
+    public void testParse_ignoresTheInvalidRules() {
+        assertNull(EventSampler.parse(new String[]{"ADB_tagEvent", "ADB_tagEvent=abc%",
+                "ADB_tagEvent=150%", "=5%", null}, "user"));
+
+        EventSampler sampler = EventSampler.parse(
+                new String[]{"ADB_tagEvent:scroll=0%", "ADB_tagEvent=oops"}, "user");
+        assertTrue(sampler.isSampledOut("ADB_tagEvent", "scroll"));
+        assertFalse(sampler.isSampledOut("ADB_tagEvent", "purchase"));
+        assertFalse(sampler.isSampledOut("FB_tagEvent", "scroll"));
+    }
+
+    @Test
+    public void testIsSampledOut_eventRulesOverrideTheMethodRule() {
+        EventSampler sampler = EventSampler.parse(
+                new String[]{"ADB_tagEvent=0%", " ADB_tagEvent : purchase = 100 % "}, "user");
+        assertFalse(sampler.isSampledOut("ADB_tagEvent", "purchase"));
+        assertTrue(sampler.isSampledOut("ADB_tagEvent", "scroll"));
+        assertTrue(sampler.isSampledOut("ADB_tagEvent", null));
+        assertFalse(sampler.isSampledOut("ADB_tagScreen", null));
+    }
+
+    @Test
+    public void testIsSampledOut_keepsThePercentageOfTheUsers() {
+        EventSampler sampler = EventSampler.parse(new String[]{"ADB_tagEvent:scroll=5%"}, "");
+        int kept = 0;
+        for (int i = 0; i < USERS; i++) {
+            sampler.setUserKey("user" + i);
+            boolean sampledOut = sampler.isSampledOut("ADB_tagEvent", "scroll");
+            assertEquals(sampledOut, sampler.isSampledOut("ADB_tagEvent", "scroll"));
+            if (!sampledOut) {
+                kept++;
+            }
+        }
+        assertTrue(String.valueOf(kept), kept > USERS * 4 / 100 && kept < USERS * 6 / 100);
+    }
+
+    @Test
+    public void testIsSampledOut_keepsTheEventsUntilTheUserKeyIsKnown() {
+        EventSampler sampler = EventSampler.parse(new String[]{"ADB_tagEvent=0%"}, null);
+        assertFalse(sampler.isSampledOut("ADB_tagEvent", null));
+        assertTrue(sampler.isSampledOut("ADB_tagEvent", null, "user"));
+        sampler.setUserKey("install");
+        assertTrue(sampler.isSampledOut("ADB_tagEvent", null));
+        sampler.setUserKey(null);
+        assertFalse(sampler.isSampledOut("ADB_tagEvent", null));
+    }
+
+    @Test
+    public void testIsSampledOut_usesTheUserKeyOfTheEvent() {
+        EventSampler sampler = EventSampler.parse(new String[]{"ADB_tagEvent:scroll=50%"}, "");
+        for (int i = 0; i < 100; i++) {
+            sampler.setUserKey("user" + i);
+            boolean expected = sampler.isSampledOut("ADB_tagEvent", "scroll");
+            sampler.setUserKey("other");
+            assertEquals(expected, sampler.isSampledOut("ADB_tagEvent", "scroll", "user" + i));
+        }
+    }
+
+    @Test
+    public void testIsSampledOut_keepsTheSameUsersAcrossRules() {
+        EventSampler sampler = EventSampler.parse(new String[]{"ADB_tagEvent:scroll=5%",
+                "FB_tagEvent:scroll=5%", "AT_tagEvent:scroll=10.5%"}, "");
+        for (int i = 0; i < USERS; i++) {
+            sampler.setUserKey("user" + i);
+            boolean adobe = sampler.isSampledOut("ADB_tagEvent", "scroll");
+            assertEquals(adobe, sampler.isSampledOut("FB_tagEvent", "scroll"));
+            if (!adobe) {
+                assertFalse(sampler.isSampledOut("AT_tagEvent", "scroll"));
+            }
+        }
+    }
+
+}
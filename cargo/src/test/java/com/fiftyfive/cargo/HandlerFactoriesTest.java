@@ -0,0 +1,50 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of the discovery of the handler factories
+ */
+public class HandlerFactoriesTest extends TestCase {
+
+    @Test
+    public void testGet_ignoresCase(){
+        HandlerFactory factory = HandlerFactories.get("spl");
+        assertNotNull(factory);
+        assertSame(factory, HandlerFactories.get("SPL"));
+    }
+
+    @Test
+    public void testGet_withUnknownKey(){
+        assertNull(HandlerFactories.get("UNK"));
+        assertNull(HandlerFactories.get(null));
+    }
+
+    @Test
+    public void testCreate_returnsNewInstances(){
+        HandlerFactory factory = HandlerFactories.get("SPL");
+        AbstractTagHandler handler = factory.create();
+        assertTrue(handler instanceof AbstractTagHandlerTest.SampleHandler);
+        assertNotSame(handler, factory.create());
+    }
+
+
+    /**
+     * Declared in the META-INF/services of the tests.
+     */
+    public static final class SampleHandlerFactory implements HandlerFactory {
+
+        @Override
+        public String getKey() {
+            return "SPL";
+        }
+
+        @Override
+        public AbstractTagHandler create() {
+            return new AbstractTagHandlerTest.SampleHandler();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests of the parallel registration of the handlers
+ */
+public class HandlerRegistrationTest extends TestCase {
+
+    private HandlerRegistration registration;
+
+
+    public void setUp() throws Exception {
+        registration = new HandlerRegistration(new Cargo());
+    }
+
+
+    @Test
+    public void testBuildNodes_ordersThePrerequisites(){
+        List<HandlerRegistration.Node> nodes = registration
+                .add("c", "b", "unknown")
+                .add("B", "A")
+                .add("A")
+                .buildNodes();
+        assertEquals("C", nodes.get(0).key);
+        assertEquals(1, nodes.get(0).remaining.get());
+        assertEquals(1, nodes.get(1).remaining.get());
+        assertEquals(0, nodes.get(2).remaining.get());
+        assertSame(nodes.get(0), nodes.get(1).dependents.get(0));
+        assertSame(nodes.get(1), nodes.get(2).dependents.get(0));
+    }
+
+    @Test
+    public void testBuildNodes_onlyBreaksTheCycles(){
+        List<HandlerRegistration.Node> nodes = registration
+                .add("A", "B")
+                .add("B", "A")
+                .add("C", "A")
+                .add("D", "E")
+                .add("E", "F")
+                .add("F", "D")
+                .buildNodes();
+        assertEquals(0, nodes.get(0).remaining.get());
+        assertEquals(0, nodes.get(1).remaining.get());
+        assertEquals(1, nodes.get(2).remaining.get());
+        assertEquals(1, nodes.get(0).dependents.size());
+        assertSame(nodes.get(2), nodes.get(0).dependents.get(0));
+        for (HandlerRegistration.Node node : nodes.subList(3, 6)) {
+            assertEquals(0, node.remaining.get());
+            assertTrue(node.dependents.isEmpty());
+        }
+    }
+
+    @Test
+    public void testStart_completesOnceEveryHandlerIsProcessed() throws Exception {
+        CargoFuture<List<AbstractTagHandler>> future = registration
+                .add("UNK", "SPL")
+                .add("SPL", "UNK")
+                .add("OTH", "UNK")
+                .start();
+        assertTrue(future.get(5, TimeUnit.SECONDS).isEmpty());
+        assertTrue(registration.start().get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.fiftyfive.cargo;
+
+import android.app.Activity;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit tests of the handler lookup used by Cargo.execute()
+ */
+public class HandlerRoutingIndexTest extends TestCase {
+
+    private AbstractTagHandler adobe = handler("ADB");
+    private AbstractTagHandler facebook = handler("FB");
+    private HandlerRoutingIndex index;
+
+
+    public void setUp() throws Exception {
+        List<AbstractTagHandler> handlers = new ArrayList<>();
+        handlers.add(adobe);
+        handlers.add(facebook);
+        handlers.add(handler("fb"));
+        index = HandlerRoutingIndex.build(handlers);
+    }
+
+
+    @Test
+    public void testKeyLength_withSeparator(){
+        assertEquals(3, HandlerRoutingIndex.keyLength("ADB_tagEvent_v2"));
+    }
+
+    @Test
+    public void testKeyLength_withoutSeparator(){
+        assertEquals(2, HandlerRoutingIndex.keyLength("FB"));
+    }
+
+    @Test
+    public void testGet_ignoresCase(){
+        assertSame(adobe, index.get("adb_tagScreen", 3));
+        assertSame(facebook, index.get("Fb_init", 2));
+    }
+
+    @Test
+    public void testGet_keepsFirstRegisteredHandler(){
+        assertSame(facebook, index.get("FB_tagEvent", 2));
+    }
+
+    @Test
+    public void testGet_withUnknownKey(){
+        assertNull(index.get("TUN_init", 3));
+        assertNull(index.get("AD_init", 2));
+        assertNull(HandlerRoutingIndex.EMPTY.get("ADB_init", 3));
+    }
+
+
+    private static AbstractTagHandler handler(String key) {
+        AbstractTagHandler handler = new AbstractTagHandler() {
+            @Override
+            public void execute(String s, Map<String, Object> map) {
+            }
+
+            @Override
+            public void onActivityStarted(Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(Activity activity) {
+            }
+        };
+        handler.key = key;
+        return handler;
+    }
+
+}
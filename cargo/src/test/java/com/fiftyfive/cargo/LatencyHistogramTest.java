@@ -0,0 +1,55 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+/**
+ * Unit tests of the fixed-size latency histogram
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    @Test
+    public void testBuckets_areContiguous(){
+        for (long value = 0; value < 100000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueOf(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValueOf(bucket - 1));
+        }
+        int last = LatencyHistogram.BUCKETS - 1;
+        assertEquals(last, LatencyHistogram.bucketOf(LatencyHistogram.MAX_VALUE));
+        assertEquals(last, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testBuckets_boundTheRelativeError(){
+        for (long value = 8; value < LatencyHistogram.MAX_VALUE; value = value * 3 + 1) {
+            long highest = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+            assertTrue(value + " -> " + highest, highest - value <= value / 8);
+        }
+    }
+
+    @Test
+    public void testSnapshot_percentiles(){
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1000000L, snapshot.getMax());
+        assertEquals(500500.0, snapshot.getMean());
+        assertEquals(500000, snapshot.getPercentile(50), 500000 / 8);
+        assertEquals(990000, snapshot.getPercentile(99), 990000 / 8);
+        assertEquals(1000000L, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void testSnapshot_whenEmpty(){
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0.0, snapshot.getMean());
+        assertEquals(0, snapshot.getPercentile(99));
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.fiftyfive.cargo;
+
+import android.app.Activity;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Unit tests of the lazy creation of the handlers
+ */
+public class LazyHandlerTest extends TestCase {
+
+    private TagHandlerManager manager;
+    private LazyHandler proxy;
+    private int created;
+
+
+    public void setUp() throws Exception {
+        manager = new TagHandlerManager();
+        created = 0;
+        proxy = new LazyHandler(new HandlerFactory() {
+            @Override
+            public String getKey() {
+                return "SPL";
+            }
+
+            @Override
+            public AbstractTagHandler create() {
+                created++;
+                return new LifecycleHandler();
+            }
+        }, manager);
+        manager.registerHandler(proxy);
+    }
+
+
+    @Test
+    public void testRegistration_doesNotCreateTheHandler(){
+        assertTrue(proxy.valid);
+        assertEquals(0, created);
+        assertSame(proxy, manager.getHandlers().get(0));
+    }
+
+    @Test
+    public void testFirstTag_replacesTheProxy(){
+        TagRoute route = manager.getRoute("SPL_init");
+        assertEquals(1, created);
+        AbstractTagHandler handler = manager.getHandlers().get(0);
+        assertTrue(handler instanceof LifecycleHandler);
+        assertSame(handler, route.handler);
+
+        route.execute(new HashMap<String, Object>());
+        manager.getRoute("SPL_tagEvent");
+        assertEquals(1, created);
+        assertEquals("init", ((LifecycleHandler) handler).calls.get(0));
+    }
+
+    @Test
+    public void testFirstTag_replaysTheCurrentActivity(){
+        Activity first = new Activity();
+        Activity second = new Activity();
+        manager.onActivityStarted(first);
+        manager.onActivityResumed(first);
+        manager.onActivityPaused(first);
+        manager.onActivityStarted(second);
+        manager.onActivityResumed(second);
+        manager.onActivityStopped(first);
+
+        manager.getRoute("SPL_init");
+        LifecycleHandler handler = (LifecycleHandler) manager.getHandlers().get(0);
+        assertEquals(2, handler.lifecycle.size());
+        assertEquals("started", handler.lifecycle.get(0));
+        assertEquals("resumed", handler.lifecycle.get(1));
+    }
+
+    @Test
+    public void testSettings_areAppliedToTheHandler(){
+        proxy.setBatching(5, 1000);
+        manager.getRoute("SPL_init");
+        LifecycleHandler handler = (LifecycleHandler) manager.getHandlers().get(0);
+        handler.setInitialized(true);
+        manager.getRoute("SPL_tagEvent").execute(new HashMap<String, Object>());
+        assertTrue(handler.calls.isEmpty());
+        handler.flushBatch();
+        assertEquals(1, handler.calls.size());
+    }
+
+
+    @Test
+    public void testMainThreadInitialization_keepsTheEventsUntilItIsDone(){
+        final List<String> callsDuringInitialization = new ArrayList<>();
+        final LifecycleHandler[] handler = new LifecycleHandler[1];
+        manager = new TagHandlerManager();
+        proxy = new LazyHandler(new HandlerFactory() {
+            @Override
+            public String getKey() {
+                return "SPL";
+            }
+
+            @Override
+            public AbstractTagHandler create() {
+                handler[0] = new LifecycleHandler() {
+                    @Override
+                    protected boolean initializesOnMainThread() {
+                        return true;
+                    }
+
+                    @Override
+                    protected void initialize() {
+                        manager.getRoute("SPL_init").execute(new HashMap<String, Object>());
+                        callsDuringInitialization.addAll(calls);
+                        super.initialize();
+                    }
+                };
+                return handler[0];
+            }
+        }, manager);
+        manager.registerHandler(proxy);
+
+        manager.getRoute("SPL_tagScreen");
+        assertTrue(callsDuringInitialization.isEmpty());
+        assertEquals(1, handler[0].calls.size());
+        assertEquals("init", handler[0].calls.get(0));
+        assertSame(handler[0], manager.getHandlers().get(0));
+    }
+
+
+    /**
+     * A handler which records its lifecycle callbacks.
+     */
+    static class LifecycleHandler extends AbstractTagHandlerTest.SampleHandler {
+
+        final List<String> lifecycle = new ArrayList<>();
+
+        @Override
+        protected void initialize() {
+            super.initialize("SPL", "Sample");
+            valid = true;
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            lifecycle.add("started");
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            lifecycle.add("resumed");
+        }
+    }
+
+}
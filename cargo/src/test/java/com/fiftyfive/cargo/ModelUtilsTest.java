@@ -4,11 +4,15 @@ import junit.framework.TestCase;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.fiftyfive.cargo.ModelsUtils.getBoolean;
+import static com.fiftyfive.cargo.ModelsUtils.getDouble;
 import static com.fiftyfive.cargo.ModelsUtils.getInt;
+import static com.fiftyfive.cargo.ModelsUtils.getLong;
 import static com.fiftyfive.cargo.ModelsUtils.getString;
 
 /**
@@ -27,6 +31,9 @@ public class ModelUtilsTest extends TestCase {
         sampleMap.put("booleanValue", true);
         sampleMap.put("BooleanValue", new Boolean(true));
         sampleMap.put("stringTrue", "true");
+        sampleMap.put("LongValue", 3L);
+        sampleMap.put("DoubleValue", 3.5);
+        sampleMap.put("stringDouble", "3.5");
 
 
 
@@ -66,6 +73,66 @@ public class ModelUtilsTest extends TestCase {
         assertTrue(3 == getInt(sampleMap, "intValue", 10) );
     }
 
+    @Test
+    public void testGetInt_withLongAndDouble(){
+        assertEquals(3, getInt(sampleMap, "LongValue", 10));
+        assertEquals(3, getInt(sampleMap, "DoubleValue", 10));
+    }
+
+    @Test
+    public void testGetInt_withMalformedString(){
+        assertEquals(10, getInt(sampleMap, "stringValue", 10));
+    }
+
+    @Test
+    public void testGetDouble_withIntegerAndString(){
+        assertEquals(3.0, getDouble(sampleMap, "IntegerValue", -1));
+        assertEquals(3.5, getDouble(sampleMap, "stringDouble", -1));
+        assertEquals(-1.0, getDouble(sampleMap, "stringValue", -1));
+    }
 
+    @Test
+    public void testGetLong_withDouble(){
+        assertEquals(3L, getLong(sampleMap, "DoubleValue", -1));
+    }
+
+    @Test
+    public void testGetters_recordTheUncastableParameters(){
+        CargoTrace.clear();
+        assertEquals(10, getInt(sampleMap, "stringValue", 10));
+        assertEquals(10, getInt(sampleMap, "missingValue", 10));
+        assertEquals(-1.0, getDouble(sampleMap, "MapValue", -1));
+        assertEquals(3L, getLong(sampleMap, "LongValue", 3L));
+
+        List<CargoTrace.Record> records = CargoTrace.snapshot();
+        assertEquals(2, records.size());
+        assertEquals(CargoTrace.PARAM_UNCASTABLE, records.get(0).getType());
+        assertEquals("stringValue", records.get(0).getName());
+        assertEquals(Coercion.MALFORMED, records.get(0).getValue());
+        assertEquals("MapValue", records.get(1).getName());
+        assertEquals(Coercion.UNSUPPORTED_TYPE, records.get(1).getValue());
+        CargoTrace.clear();
+    }
+
+    @Test
+    public void testGetters_returnTheValuesEqualToTheDefaultOne(){
+        sampleMap.put("minusOne", "-1");
+        sampleMap.put("minLong", Long.MIN_VALUE);
+        sampleMap.put("nan", "NaN");
+        sampleMap.put("tooLarge", 1L << 40);
+        CargoTrace.clear();
+        for (Map<String, Object> params : Arrays.asList(sampleMap, new ParamBag(sampleMap))) {
+            assertEquals(-1, getInt(params, "minusOne", -1));
+            assertEquals(-1, getInt(params, "tooLarge", -1));
+            assertEquals(Long.MIN_VALUE, getLong(params, "minLong", 0));
+            assertTrue(Double.isNaN(getDouble(params, "nan", 0)));
+            assertEquals(-1.0, getDouble(params, "minusOne", -1));
+        }
+        List<CargoTrace.Record> records = CargoTrace.snapshot();
+        assertEquals(2, records.size());
+        assertEquals("tooLarge", records.get(0).getName());
+        assertEquals(Coercion.OUT_OF_RANGE, records.get(0).getValue());
+        CargoTrace.clear();
+    }
 
-}
\ No newline at end of file
+}
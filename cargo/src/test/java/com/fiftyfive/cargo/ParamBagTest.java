@@ -0,0 +1,104 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Unit tests of the map of parameters built by Cargo for each event
+ */
+public class ParamBagTest extends TestCase {
+
+    private Map<String, Object> map;
+    private ParamBag bag;
+
+
+    public void setUp() throws Exception {
+        map = new HashMap<>();
+        map.put("eventName", "purchase");
+        map.put("eventRevenue", 12.5);
+        map.put("eventQuantity", 3);
+        map.put("timestamp", 1500000000000L);
+        map.put("enableDebug", true);
+        map.put("eventRating", "4.5");
+        bag = new ParamBag(map);
+    }
+
+
+    @Test
+    public void testCopy_equalsTheMap(){
+        assertEquals(map, bag);
+        assertEquals(map.hashCode(), bag.hashCode());
+        assertSame(bag, ParamBag.of(bag));
+    }
+
+    @Test
+    public void testTypedGetters(){
+        assertEquals(12.5, bag.getDouble("eventRevenue", -1));
+        assertEquals(4.5, bag.getDouble("eventRating", -1));
+        assertEquals(3, bag.getInt("eventQuantity", -1));
+        assertEquals(3L, bag.getLong("eventQuantity", -1));
+        assertEquals(1500000000000L, bag.getLong("timestamp", -1));
+        assertTrue(bag.getBoolean("enableDebug", false));
+        assertEquals(3.0, bag.getDouble("eventQuantity", -1));
+        assertEquals(-1.0, bag.getDouble("enableDebug", -1));
+        assertEquals(-1, bag.getInt("missing", -1));
+    }
+
+    @Test
+    public void testModelsUtils_sameResultsAsMap(){
+        String[] names = {"eventRevenue", "eventQuantity", "timestamp", "eventRating", "missing"};
+        for (String name : names) {
+            assertEquals(ModelsUtils.getDouble(map, name, -1),
+                    ModelsUtils.getDouble(bag, name, -1));
+            assertEquals(ModelsUtils.getBoolean(map, name, false),
+                    ModelsUtils.getBoolean(bag, name, false));
+            assertEquals(ModelsUtils.getString(map, name), ModelsUtils.getString(bag, name));
+        }
+        assertEquals(ModelsUtils.getLong(map, "timestamp", -1),
+                ModelsUtils.getLong(bag, "timestamp", -1));
+        assertEquals(ModelsUtils.getInt(map, "eventQuantity", -1),
+                ModelsUtils.getInt(bag, "eventQuantity", -1));
+    }
+
+    @Test
+    public void testRemoveAndPut(){
+        assertEquals("purchase", bag.remove("eventName"));
+        assertFalse(bag.containsKey("eventName"));
+        assertNull(bag.remove("eventName"));
+        assertEquals(5, bag.size());
+
+        assertNull(bag.put("eventName", "refund"));
+        assertEquals("refund", bag.get("eventName"));
+        assertEquals(12.5, bag.put("eventRevenue", 7.0));
+        assertEquals(7.0, bag.getDouble("eventRevenue", -1));
+        assertEquals(6, bag.size());
+    }
+
+    @Test
+    public void testPut_growsTheTable(){
+        for (int i = 0; i < 100; i++) {
+            bag.put("param" + i, i);
+            bag.remove("param" + (i / 2));
+        }
+        assertEquals(6 + 50, bag.size());
+        assertEquals(99, bag.getInt("param99", -1));
+        assertFalse(bag.containsKey("param10"));
+    }
+
+    @Test
+    public void testIterator_remove(){
+        for (Iterator<Map.Entry<String, Object>> it = bag.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getValue() instanceof String) {
+                it.remove();
+            }
+        }
+        assertEquals(4, bag.size());
+        assertFalse(bag.containsKey("eventRating"));
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Unit tests of the parameters shared by the handlers of a multicast tag
+ */
+public class ParamsOverlayTest extends TestCase {
+
+    private Map<String, Object> shared;
+    private ParamsOverlay first;
+    private ParamsOverlay second;
+
+
+    public void setUp() throws Exception {
+        shared = new HashMap<>();
+        shared.put("eventName", "purchase");
+        shared.put("eventRevenue", 12.5);
+        first = new ParamsOverlay(shared);
+        second = new ParamsOverlay(shared);
+    }
+
+
+    @Test
+    public void testRemove_isLocalToTheHandler(){
+        assertEquals("purchase", first.remove("eventName"));
+        assertNull(first.get("eventName"));
+        assertFalse(first.containsKey("eventName"));
+        assertEquals(1, first.size());
+
+        assertEquals("purchase", second.get("eventName"));
+        assertEquals(2, shared.size());
+    }
+
+    @Test
+    public void testPut_isLocalToTheHandler(){
+        first.put("eventName", "refund");
+        first.put("currency", "EUR");
+        assertEquals("refund", first.get("eventName"));
+        assertEquals(3, first.size());
+        assertEquals("purchase", second.get("eventName"));
+        assertFalse(shared.containsKey("currency"));
+    }
+
+    @Test
+    public void testIterator_removesFromTheOverlay(){
+        first.put("currency", "EUR");
+        int count = 0;
+        for (Iterator<Map.Entry<String, Object>> it = first.entrySet().iterator(); it.hasNext(); ) {
+            it.next();
+            it.remove();
+            count++;
+        }
+        assertEquals(3, count);
+        assertTrue(first.isEmpty());
+        assertEquals(2, second.size());
+    }
+
+    @Test
+    public void testEquals_sharedMap(){
+        assertEquals(shared, first);
+        first.remove("eventRevenue");
+        assertFalse(shared.equals(first));
+    }
+
+    @Test
+    public void testSharedBag_onlyForTheUnchangedParameters(){
+        ParamBag bag = ParamBag.of(shared);
+        first = new ParamsOverlay(bag);
+        first.put("eventRevenue", "7");
+        first.remove("eventName");
+        assertSame(bag, first.sharedBag("eventQuantity"));
+        assertNull(first.sharedBag("eventRevenue"));
+        assertNull(first.sharedBag("eventName"));
+        assertNull(second.sharedBag("eventQuantity"));
+
+        assertEquals(7.0, ModelsUtils.getDouble(first, "eventRevenue", -1));
+        assertEquals(12.5, ModelsUtils.getDouble(new ParamsOverlay(bag), "eventRevenue", -1));
+        assertEquals(-1, ModelsUtils.getInt(first, "eventName", -1));
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.fiftyfive.cargo;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests of the handlers registry of the TagHandlerManager
+ */
+public class TagHandlerManagerTest extends TestCase {
+
+    private TagHandlerManager manager;
+    private AbstractTagHandlerTest.SampleHandler sample;
+
+
+    public void setUp() throws Exception {
+        manager = new TagHandlerManager();
+        sample = handler("SPL");
+        manager.addHandler(sample);
+    }
+
+
+    @Test
+    public void testGetHandlers_isASnapshot(){
+        List<AbstractTagHandler> handlers = manager.getHandlers();
+        for (AbstractTagHandler handler : handlers) {
+            manager.addHandler(handler("OTH"));
+        }
+        assertEquals(1, handlers.size());
+        assertEquals(2, manager.getHandlers().size());
+    }
+
+    @Test
+    public void testGetHandlers_isImmutable(){
+        try {
+            manager.getHandlers().clear();
+            fail("the list of handlers should be immutable");
+        } catch (UnsupportedOperationException e) {
+            assertEquals(1, manager.getHandlers().size());
+        }
+    }
+
+    @Test
+    public void testGetRoute_resolvesRegisteredHandler(){
+        TagRoute route = manager.getRoute("SPL_tagEvent");
+        assertSame(sample, route.handler);
+        assertSame(route, manager.getRoute("SPL_tagEvent"));
+        assertNull(manager.getRoute("OTH_tagEvent"));
+        assertNull(manager.getRoute("SAMPLE_tagEvent"));
+    }
+
+    @Test
+    public void testUnregisterHandler_invalidatesRoutes(){
+        assertNotNull(manager.getRoute("SPL_tagEvent"));
+        assertTrue(manager.unregisterHandler(sample));
+        assertNull(manager.getRoute("SPL_tagEvent"));
+        assertFalse(manager.unregisterHandler(sample));
+    }
+
+    @Test
+    public void testGetRoutes_resolvesEachHandlerMethod(){
+        AbstractTagHandlerTest.SampleHandler other = handler("OTH");
+        manager.addHandler(other);
+        TagRoute[] routes = manager.getRoutes("SPL_tagEvent, OTH_tagScreen,UNK_tagEvent,");
+        assertEquals(2, routes.length);
+        assertSame(sample, routes[0].handler);
+        assertEquals("OTH_tagScreen", routes[1].functionTag);
+        assertSame(routes, manager.getRoutes("SPL_tagEvent, OTH_tagScreen,UNK_tagEvent,"));
+    }
+
+    @Test
+    public void testGetRoute_doesNotCacheTheUnknownMethods(){
+        TagRoute route = manager.getRoute("SPL_unknown");
+        assertSame(sample, route.handler);
+        assertNull(route.method);
+        assertNotSame(route, manager.getRoute("SPL_unknown"));
+    }
+
+    @Test
+    public void testGetRoutes_capsTheCachedLists(){
+        for (int i = 0; i < TagHandlerManager.MAX_MULTICAST_ROUTES; i++) {
+            String handlerMethods = "SPL_tagEvent,SPL_unknown" + i;
+            assertSame(manager.getRoutes(handlerMethods), manager.getRoutes(handlerMethods));
+        }
+        TagRoute[] routes = manager.getRoutes("SPL_tagEvent,SPL_tagScreen");
+        assertEquals(2, routes.length);
+        assertNotSame(routes, manager.getRoutes("SPL_tagEvent,SPL_tagScreen"));
+    }
+
+
+    private static AbstractTagHandlerTest.SampleHandler handler(String key) {
+        AbstractTagHandlerTest.SampleHandler handler = new AbstractTagHandlerTest.SampleHandler();
+        handler.key = key;
+        return handler;
+    }
+
+}